@@ -0,0 +1,334 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.index.Index;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.TypedComparator;
+import org.hsqldb.types.Types;
+
+/**
+ * Overflow of a GROUP BY query with aggregates.<p>
+ *
+ * When the number of groups held in memory reaches
+ * hsqldb.result_max_memory_rows, no more groups are added to the in-memory
+ * result. The input rows of any new group are instead written to one of the
+ * partitions of this table, together with the argument values of the
+ * aggregate functions. The partition is chosen by the hash of the group
+ * columns, so all the rows of a group are in the same partition. Each
+ * partition is a session result store that overflows to the session data
+ * file in the temp directory as the result stores do.<p>
+ *
+ * Once all input rows have been read, the partitions are aggregated one
+ * after another. When a partition has more groups than the memory limit,
+ * the rows of the extra groups are written to the partitions of a new
+ * table that uses different bits of the hash. If the group columns have
+ * no hash that agrees with the comparison of their values, all rows are
+ * written to a single partition with an index on the group columns and are
+ * returned in group order, so that the groups can be aggregated in batches
+ * without an overflow table.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+final class AggregateSpillTable {
+
+    static final int partitionBits  = 4;
+    static final int partitionCount = 1 << partitionBits;
+
+    //
+    final Session               session;
+    final int                   level;
+    final Type[]                types;
+    final int                   dataColumnCount;
+    final int                   rowColumn;
+    final int[]                 groupColumns;
+    final boolean               isHashable;
+    final ExpressionAggregate[] aggregates;
+    final Index[]               indexes = new Index[partitionCount];
+    final PersistentStore[]     stores  = new PersistentStore[partitionCount];
+
+    /**
+     * @param session the session
+     * @param dataTypes types of the non-aggregate columns of the result
+     * @param groupColumns the group columns of the result
+     * @param aggregates the aggregate expressions
+     */
+    AggregateSpillTable(
+            Session session,
+            Type[] dataTypes,
+            int[] groupColumns,
+            ExpressionAggregate[] aggregates) {
+
+        this.session         = session;
+        this.level           = 0;
+        this.dataColumnCount = dataTypes.length;
+        this.groupColumns    = groupColumns;
+        this.aggregates      = aggregates;
+        this.types           = new Type[dataColumnCount
+                                        + aggregates.length * 2];
+
+        int     pos      = -1;
+        boolean hashable = true;
+
+        ArrayUtil.copyArray(dataTypes, types, dataColumnCount);
+
+        // the column for the Row object of the result is not stored
+        for (int i = 0; i < dataColumnCount; i++) {
+            if (types[i].typeCode == Types.SQL_ALL_TYPES) {
+                types[i] = Type.SQL_INTEGER;
+                pos      = i;
+            }
+        }
+
+        this.rowColumn = pos;
+
+        for (int i = 0; i < aggregates.length; i++) {
+            Expression e    = aggregates[i].nodes[Expression.LEFT];
+            Type       type = e.getDataType();
+
+            types[dataColumnCount + i * 2]     = Type.SQL_BOOLEAN;
+            types[dataColumnCount + i * 2 + 1] = type == null
+                                                 ? Type.SQL_INTEGER
+                                                 : type;
+        }
+
+        for (int i = 0; i < groupColumns.length; i++) {
+            if (!TypedComparator.isKeyHashable(types[groupColumns[i]])) {
+                hashable = false;
+            }
+        }
+
+        this.isHashable = hashable;
+    }
+
+    /**
+     * Table for the groups of a partition of the parent table that exceed
+     * the memory limit.
+     */
+    private AggregateSpillTable(AggregateSpillTable parent) {
+
+        this.session         = parent.session;
+        this.level           = parent.level + 1;
+        this.types           = parent.types;
+        this.dataColumnCount = parent.dataColumnCount;
+        this.rowColumn       = parent.rowColumn;
+        this.groupColumns    = parent.groupColumns;
+        this.isHashable      = parent.isHashable;
+        this.aggregates      = parent.aggregates;
+    }
+
+    /**
+     * Returns true if the aggregates can be computed from stored argument
+     * values.
+     */
+    static boolean canSpill(Expression[] exprColumns, int start, int limit) {
+
+        for (int i = start; i < limit; i++) {
+            if (!(exprColumns[i] instanceof ExpressionAggregate)) {
+                return false;
+            }
+
+            Expression arg = exprColumns[i].nodes[Expression.LEFT];
+
+            if (arg.opType != OpTypes.ASTERISK
+                    && arg.getDataType().isLobType()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Stores the group column values of the current row and the argument
+     * values of the aggregates.
+     */
+    void add(Object[] data) {
+
+        Object[] spillData = new Object[types.length];
+
+        ArrayUtil.copyArray(data, spillData, dataColumnCount);
+
+        if (rowColumn >= 0) {
+            spillData[rowColumn] = null;
+        }
+
+        for (int i = 0; i < aggregates.length; i++) {
+            ExpressionAggregate e = aggregates[i];
+
+            if (e.condition.testCondition(session)) {
+                Expression arg = e.nodes[Expression.LEFT];
+
+                spillData[dataColumnCount + i * 2] = Boolean.TRUE;
+
+                if (arg.opType != OpTypes.ASTERISK) {
+                    spillData[dataColumnCount + i * 2 + 1] =
+                        arg.getValue(session);
+                }
+            } else {
+                spillData[dataColumnCount + i * 2] = Boolean.FALSE;
+            }
+        }
+
+        addStored(spillData);
+    }
+
+    /**
+     * Stores a row read from a partition of the parent table.
+     */
+    void addStored(Object[] spillData) {
+
+        PersistentStore store = getStore(getPartition(spillData));
+        Row row = (Row) store.getNewCachedObject(session, spillData, false);
+
+        store.indexRow(session, row);
+    }
+
+    /**
+     * Returns a new table for the rows of the groups of a partition that
+     * exceed the memory limit.
+     */
+    AggregateSpillTable getOverflowTable() {
+        return new AggregateSpillTable(this);
+    }
+
+    /**
+     * Returns the rows of the partition, or null if the partition is empty.
+     * The rows are in the order they were added, or in the order of the
+     * group columns if they are not hashable.
+     */
+    RowIterator getRowIterator(int partition) {
+
+        if (stores[partition] == null) {
+            return null;
+        }
+
+        return indexes[partition].firstRow(
+            session,
+            stores[partition],
+            null,
+            0,
+            null);
+    }
+
+    void release(int partition) {
+
+        if (stores[partition] != null) {
+            stores[partition].release();
+
+            stores[partition]  = null;
+            indexes[partition] = null;
+        }
+    }
+
+    /**
+     * Returns a new result row for the group of the stored row.
+     */
+    Object[] getGroupData(Object[] spillData, int columnCount) {
+
+        Object[] data = new Object[columnCount];
+
+        ArrayUtil.copyArray(spillData, data, dataColumnCount);
+
+        return data;
+    }
+
+    /**
+     * Adds the argument values of the stored row to the aggregates of the
+     * group.
+     */
+    void updateAggregates(Object[] spillData, Object[] data, int start) {
+
+        for (int i = 0; i < aggregates.length; i++) {
+            if (Boolean.TRUE.equals(spillData[dataColumnCount + i * 2])) {
+                data[start + i] = aggregates[i].addAggregatingValue(
+                    session,
+                    (SetFunction) data[start + i],
+                    spillData[dataColumnCount + i * 2 + 1]);
+            }
+        }
+    }
+
+    /**
+     * Each level uses a different group of bits of the hash.
+     */
+    private int getPartition(Object[] spillData) {
+
+        if (!isHashable) {
+            return 0;
+        }
+
+        int hash = 0;
+
+        for (int i = 0; i < groupColumns.length; i++) {
+            int col = groupColumns[i];
+
+            hash = 31 * hash + TypedComparator.getKeyHash(types[col],
+                    spillData[col]);
+        }
+
+        hash *= 0x9E3779B9;
+        hash = Integer.rotateLeft(hash, level * partitionBits);
+
+        return hash >>> (Integer.SIZE - partitionBits);
+    }
+
+    private PersistentStore getStore(int partition) {
+
+        if (stores[partition] == null) {
+            HsqlName name =
+                session.database.nameManager.getSubqueryTableName();
+            TableDerived table = new TableDerived(
+                session.database,
+                name,
+                TableBase.SYSTEM_SUBQUERY);
+
+            TableUtil.addAutoColumns(table, types);
+            table.createPrimaryKey(null, null, false);
+
+            indexes[partition] = isHashable
+                                 ? table.getPrimaryIndex()
+                                 : table.createIndexForColumns(
+                                     session,
+                                     groupColumns);
+            stores[partition] =
+                session.sessionData.getNewResultRowStore(table, true);
+        }
+
+        return stores[partition];
+    }
+}
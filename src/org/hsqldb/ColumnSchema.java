@@ -45,7 +45,7 @@ import org.hsqldb.types.Types;
  * Implementation of SQL table column metadata.<p>
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public class ColumnSchema extends ColumnBase implements SchemaObject {
@@ -63,6 +63,7 @@ public class ColumnSchema extends ColumnBase implements SchemaObject {
     private OrderedHashSet<HsqlName> generatedColumnReferences;
     private Expression               accessor;
     private int                      systemPeriodType;
+    private ColumnStatistics         statistics;
 
     ColumnSchema(HsqlName name, Type type) {
         this.columnName = name;
@@ -197,7 +198,9 @@ public class ColumnSchema extends ColumnBase implements SchemaObject {
     }
 
     public void setType(Type type) {
-        this.dataType = type;
+
+        this.dataType   = type;
+        this.statistics = null;
 
         setReferences();
     }
@@ -373,6 +376,17 @@ public class ColumnSchema extends ColumnBase implements SchemaObject {
         return systemPeriodType;
     }
 
+    /**
+     * Returns the statistics collected by ANALYZE, or null.
+     */
+    public ColumnStatistics getStatistics() {
+        return statistics;
+    }
+
+    void setStatistics(ColumnStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     void setSystemPeriodType(int type) {
 
         systemPeriodType = type;
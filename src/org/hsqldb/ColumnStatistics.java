@@ -0,0 +1,391 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import java.util.Random;
+
+import org.hsqldb.error.HsqlException;
+import org.hsqldb.lib.ArraySort;
+import org.hsqldb.lib.HyperLogLog;
+import org.hsqldb.lib.StringConverter;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.TypedComparator;
+
+/**
+ * Statistics of the values of a table column, collected by ANALYZE.<p>
+ *
+ * The row count, the count of nulls and an estimate of the count of distinct
+ * values are kept for each column. The distinct count is estimated with a
+ * HyperLogLog sketch over all the rows. For number, character and datetime
+ * columns, an equi-depth histogram is built from a random sample of rows. The
+ * histogram holds the lowest value, the highest value and the values between
+ * buckets that each contain the same number of rows.<p>
+ *
+ * The statistics are used by the optimizer as fractions of the row count,
+ * therefore they remain useful as the row count of the table changes. They
+ * are saved in the *.script file and are dropped when the column type is
+ * changed.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public final class ColumnStatistics {
+
+    static final int histogramBuckets = 32;
+    static final int sampleSize       = 30000;
+
+    final long     rowCount;
+    final long     nullCount;
+    final long     distinctCount;
+    final Object[] histogram;
+
+    ColumnStatistics(
+            long rowCount,
+            long nullCount,
+            long distinctCount,
+            Object[] histogram) {
+
+        this.rowCount      = rowCount;
+        this.nullCount     = nullCount;
+        this.distinctCount = distinctCount;
+        this.histogram     = histogram;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    public long getDistinctCount() {
+        return distinctCount;
+    }
+
+    /**
+     * Returns the boundary values of the histogram or null if there is no
+     * histogram.
+     */
+    public Object[] getHistogram() {
+        return histogram;
+    }
+
+    public double getNullFraction() {
+
+        if (rowCount == 0) {
+            return 0;
+        }
+
+        return (double) nullCount / rowCount;
+    }
+
+    /**
+     * Returns the fraction of the rows that have a given non-null value.
+     */
+    public double getEqualFraction() {
+
+        if (distinctCount == 0) {
+            return 0;
+        }
+
+        return (1 - getNullFraction()) / distinctCount;
+    }
+
+    /**
+     * Returns the fraction of the rows that have a non-null value smaller than
+     * the given value, or -1 if there is no histogram or the value cannot be
+     * compared.
+     */
+    public double getSmallerFraction(
+            Session session,
+            Type type,
+            Object value,
+            Type valueType) {
+
+        if (histogram == null || value == null) {
+            return -1;
+        }
+
+        try {
+            if (valueType != null && valueType.typeCode != type.typeCode) {
+                value = type.convertToType(session, value, valueType);
+            }
+
+            int buckets = histogram.length - 1;
+            int low     = 0;
+            int high    = histogram.length;
+
+            // first boundary that is not smaller than the value
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+
+                if (type.compare(session, histogram[mid], value) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            double fraction;
+
+            if (low == 0) {
+                fraction = 0;
+            } else if (low > buckets) {
+                fraction = 1;
+            } else {
+                fraction = (low - 1 + interpolate(
+                    histogram[low - 1],
+                    histogram[low],
+                    value)) / buckets;
+            }
+
+            return fraction * (1 - getNullFraction());
+        } catch (HsqlException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the position of the value between the two boundaries as a
+     * fraction.
+     */
+    private static double interpolate(Object low, Object high, Object value) {
+
+        if (low instanceof Number && high instanceof Number
+                && value instanceof Number) {
+            double l = ((Number) low).doubleValue();
+            double h = ((Number) high).doubleValue();
+            double v = ((Number) value).doubleValue();
+
+            if (h > l && v >= l && v <= h) {
+                return (v - l) / (h - l);
+            }
+        }
+
+        return 0.5;
+    }
+
+    /**
+     * Returns the SQL statement that restores the statistics of the column.
+     */
+    String getSQL(Table table, ColumnSchema column) {
+
+        StringBuilder sb = new StringBuilder(128);
+
+        sb.append(Tokens.T_SET)
+          .append(' ')
+          .append(Tokens.T_TABLE)
+          .append(' ')
+          .append(table.getName().getSchemaQualifiedStatementName())
+          .append(' ')
+          .append(Tokens.T_STATISTICS)
+          .append(' ')
+          .append(column.getName().statementName)
+          .append(' ')
+          .append(Tokens.T_ROWS)
+          .append(' ')
+          .append(rowCount)
+          .append(' ')
+          .append(Tokens.T_NULLS)
+          .append(' ')
+          .append(nullCount)
+          .append(' ')
+          .append(Tokens.T_DISTINCT)
+          .append(' ')
+          .append(distinctCount);
+
+        if (histogram != null) {
+            Type type = column.getDataType();
+
+            sb.append(' ').append(Tokens.T_VALUES).append(' ').append('(');
+
+            for (int i = 0; i < histogram.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+
+                String value = type.convertToString(histogram[i]);
+
+                sb.append(StringConverter.toQuotedString(value, '\'', true));
+            }
+
+            sb.append(')');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns true if a histogram is built for columns of the type.
+     */
+    static boolean hasHistogram(Type type) {
+        return type.isNumberType() || type.isCharacterType()
+               || type.isDateTimeType();
+    }
+
+    /**
+     * Reads all the rows of the table and sets the statistics of its columns.
+     * LOB columns are not analyzed.
+     */
+    static void analyze(Session session, Table table) {
+
+        int           columnCount = table.getColumnCount();
+        Type[]        types       = new Type[columnCount];
+        HyperLogLog[] sketches    = new HyperLogLog[columnCount];
+        long[]        nullCounts  = new long[columnCount];
+        Object[][]    sample      = new Object[sampleSize][];
+        Random        random      = new Random(sampleSize);
+        long          rowCount    = 0;
+
+        for (int i = 0; i < columnCount; i++) {
+            types[i] = table.getColumn(i).getDataType();
+
+            if (!types[i].isLobType()) {
+                sketches[i] = new HyperLogLog();
+            }
+        }
+
+        PersistentStore store = table.getRowStore(session);
+        RowIterator it = table.getPrimaryIndex().firstRow(
+            session,
+            store,
+            null,
+            0,
+            null);
+
+        try {
+            while (it.next()) {
+                Object[] data = it.getCurrent();
+
+                for (int i = 0; i < columnCount; i++) {
+                    if (sketches[i] == null) {
+                        continue;
+                    }
+
+                    Object value = data[i];
+
+                    if (value == null) {
+                        nullCounts[i]++;
+                    } else {
+                        sketches[i].add(getHash(types[i], value));
+                    }
+                }
+
+                // reservoir sampling
+                if (rowCount < sampleSize) {
+                    sample[(int) rowCount] = data;
+                } else {
+                    long pos = (long) (random.nextDouble() * (rowCount + 1));
+
+                    if (pos < sampleSize) {
+                        sample[(int) pos] = data;
+                    }
+                }
+
+                rowCount++;
+            }
+        } finally {
+            it.release();
+        }
+
+        int             sampleCount = (int) Math.min(rowCount, sampleSize);
+        Object[]        values      = new Object[sampleCount];
+        TypedComparator comparator  = new TypedComparator(session);
+
+        for (int i = 0; i < columnCount; i++) {
+            ColumnSchema column = table.getColumn(i);
+
+            if (sketches[i] == null) {
+                column.setStatistics(null);
+
+                continue;
+            }
+
+            long nonNullCount  = rowCount - nullCounts[i];
+            long distinctCount = Math.min(sketches[i].estimate(), nonNullCount);
+
+            if (distinctCount == 0 && nonNullCount > 0) {
+                distinctCount = 1;
+            }
+
+            Object[] histogram = null;
+
+            if (hasHistogram(types[i])) {
+                int count = 0;
+
+                for (int j = 0; j < sampleCount; j++) {
+                    Object value = sample[j][i];
+
+                    if (value != null) {
+                        values[count++] = value;
+                    }
+                }
+
+                if (count > 0) {
+                    comparator.setType(types[i], null);
+                    ArraySort.sort(values, count, comparator);
+
+                    int buckets = Math.max(
+                        1,
+                        Math.min(histogramBuckets, count - 1));
+
+                    histogram = new Object[buckets + 1];
+
+                    for (int j = 0; j < buckets; j++) {
+                        histogram[j] = values[(int) ((long) j * count / buckets)];
+                    }
+
+                    histogram[buckets] = values[count - 1];
+                }
+            }
+
+            column.setStatistics(
+                new ColumnStatistics(
+                    rowCount,
+                    nullCounts[i],
+                    distinctCount,
+                    histogram));
+        }
+    }
+
+    private static int getHash(Type type, Object value) {
+
+        if (TypedComparator.isKeyHashable(type)) {
+            return TypedComparator.getKeyHash(type, value);
+        }
+
+        return value.hashCode();
+    }
+}
@@ -52,7 +52,7 @@ import org.hsqldb.types.Type;
  * by the constraint.<p>
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.6.0
  */
 public final class Constraint implements SchemaObject {
@@ -880,10 +880,13 @@ public final class Constraint implements SchemaObject {
                         }
                     }
 
-                    if (core.mainIndex.existsParent(session,
-                                                    store,
-                                                    data,
-                                                    core.refCols)) {
+                    Index mainIndex = core.mainTable.getHashIndexOrSelf(
+                        core.mainIndex);
+
+                    if (mainIndex.existsParent(session,
+                                               store,
+                                               data,
+                                               core.refCols)) {
                         return;
                     }
                 }
@@ -1032,9 +1035,11 @@ public final class Constraint implements SchemaObject {
             return RowIterator.emptyRowIterator;
         }
 
-        PersistentStore store = core.refTable.getRowStore(session);
+        PersistentStore store    = core.refTable.getRowStore(session);
+        Index           refIndex = core.refTable.getHashIndexOrSelf(
+            core.refIndex);
 
-        return core.refIndex.findFirstRow(session, store, row, core.mainCols);
+        return refIndex.findFirstRow(session, store, row, core.mainCols);
     }
 
     /**
@@ -32,6 +32,7 @@
 package org.hsqldb;
 
 import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
 
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.Session.TimeoutManager;
@@ -65,7 +66,7 @@ import org.hsqldb.types.Collation;
  * It holds the data structures that form an HSQLDB database instance.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public class Database {
@@ -133,6 +134,8 @@ public class Database {
     public HsqlDatabaseProperties databaseProperties;
     private final boolean         shutdownOnNoConnection;
     int                           resultMaxMemoryRows;
+    int                           parallelThreads;
+    private volatile ForkJoinPool parallelPool;
 
     // schema invariant objects
     public UserManager     userManager;
@@ -289,6 +292,14 @@ public class Database {
             timeoutRunner.stop();
         }
 
+        synchronized (this) {
+            if (parallelPool != null) {
+                parallelPool.shutdown();
+
+                parallelPool = null;
+            }
+        }
+
         lobManager       = null;
         granteeManager   = null;
         userManager      = null;
@@ -497,6 +508,42 @@ public class Database {
         resultMaxMemoryRows = size;
     }
 
+    public int getParallelThreads() {
+        return parallelThreads;
+    }
+
+    public void setParallelThreads(int threads) {
+        parallelThreads = threads;
+    }
+
+    /**
+     * Returns the pool used for parallel execution of queries, index builds
+     * and sorts, and for loading the .script file.<p>
+     *
+     * The pool is created lazily on first use, with the number of threads
+     * set by hsqldb.parallel_threads, while holding the lock on this
+     * Database. The field is volatile, so once the pool exists it is
+     * returned without the lock. The pool is shut down and discarded when
+     * the database is closed.
+     */
+    public ForkJoinPool getParallelPool() {
+
+        ForkJoinPool pool = parallelPool;
+
+        if (pool == null) {
+            synchronized (this) {
+                pool = parallelPool;
+
+                if (pool == null) {
+                    pool         = new ForkJoinPool(parallelThreads);
+                    parallelPool = pool;
+                }
+            }
+        }
+
+        return pool;
+    }
+
     public void setRestrictExec(boolean mode) {
         sqlRestrictExec = mode;
     }
@@ -47,7 +47,7 @@ import org.hsqldb.types.Types;
  * Implementation of aggregate operations
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public class ExpressionAggregate extends Expression {
@@ -513,6 +513,28 @@ public class ExpressionAggregate extends Expression {
         return currValue;
     }
 
+    /**
+     * Adds an argument value that was evaluated earlier, when the condition
+     * of the aggregate was true.
+     */
+    SetFunction addAggregatingValue(
+            Session session,
+            SetFunction currValue,
+            Object value) {
+
+        if (currValue == null) {
+            currValue = getSetFunction(session);
+        }
+
+        if (nodes[LEFT].opType == OpTypes.ASTERISK) {
+            value = ValuePool.INTEGER_1;
+        }
+
+        currValue.add(value);
+
+        return currValue;
+    }
+
     public SetFunction updateAggregatingValue(
             Session session,
             SetFunction currValue,
@@ -0,0 +1,448 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.RangeVariable.RangeVariableConditions;
+import org.hsqldb.index.Index;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.TypedComparator;
+
+/**
+ * Build side of a hash join.<p>
+ *
+ * The rows of the inner range variable are read once per execution and
+ * hashed on the join columns. Each outer row then probes the table with the
+ * values of the outer join expressions. The join condition itself remains
+ * part of the non-index condition of the range and is tested again on each
+ * returned row, therefore the hash only needs to be consistent with the SQL
+ * equality of the key values.<p>
+ *
+ * When the build side is not held in memory and has more rows than
+ * hsqldb.result_max_memory_rows, the rows are instead copied to a session
+ * result store with an index on the join columns. This store overflows to
+ * the session data file as the result stores do.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+final class HashJoinTable {
+
+    private static final int MAX_BUCKETS = 1 << 30;
+
+    final Session         session;
+    final RangeVariable   rangeVar;
+    final PersistentStore store;
+    final int[]           keyColumns;
+    final Type[]          keyTypes;
+
+    // in memory
+    private Row[] rows;
+    private int[] rowHashes;
+    private int[] nextRow;
+    private int[] buckets;
+    private int   rowCount;
+
+    // spilled to result store
+    private PersistentStore spillStore;
+    private Index           spillIndex;
+
+    HashJoinTable(
+            Session session,
+            RangeVariable rangeVar,
+            PersistentStore store,
+            RangeVariableConditions conditions) {
+
+        this.session    = session;
+        this.rangeVar   = rangeVar;
+        this.store      = store;
+        this.keyColumns = conditions.hashJoinColumns;
+        this.keyTypes   = new Type[keyColumns.length];
+
+        ArrayUtil.projectRow(
+            rangeVar.rangeTable.getColumnTypes(),
+            keyColumns,
+            keyTypes);
+        build();
+    }
+
+    /**
+     * Returns true if values of the two types that compare as equal always
+     * have the same hash value.
+     */
+    static boolean isHashable(Type buildType, Type probeType) {
+
+        if (buildType.isLobType() || probeType.isLobType()) {
+            return false;
+        }
+
+        if (buildType.isNumberType()) {
+            return probeType.isNumberType();
+        }
+
+        if (buildType.isCharacterType()) {
+            if (!probeType.isCharacterType()
+                    || !buildType.getCollation().equals(
+                        probeType.getCollation())) {
+                return false;
+            }
+        } else if (buildType.typeCode != probeType.typeCode) {
+            return false;
+        }
+
+        return TypedComparator.isKeyHashable(buildType);
+    }
+
+    RowIterator findRows(Object[] key) {
+
+        if (spillStore != null) {
+            RowIterator it = spillIndex.findFirstRow(
+                session,
+                spillStore,
+                key,
+                keyColumns.length,
+                0,
+                OpTypes.EQUAL,
+                false,
+                null);
+
+            return new SpillRowIterator(key, it);
+        }
+
+        int hash = getHash(key);
+
+        return new HashRowIterator(
+            key,
+            hash,
+            buckets[hash & (buckets.length - 1)]);
+    }
+
+    /**
+     * Returns the number of rows in the build side.
+     */
+    long getRowCount() {
+        return spillStore == null
+               ? rowCount
+               : spillStore.elementCount();
+    }
+
+    private void build() {
+
+        long count       = store.elementCount();
+        int  memoryLimit = session.getResultMemoryRowCount();
+
+        if (memoryLimit > 0 && count > memoryLimit && !store.isMemory()
+                && !rangeVar.rangeTable.hasLobColumn()) {
+            buildSpilled();
+
+            return;
+        }
+
+        int capacity = 16;
+
+        while (capacity < count && capacity < MAX_BUCKETS) {
+            capacity <<= 1;
+        }
+
+        buckets   = new int[capacity];
+        rows      = new Row[capacity];
+        rowHashes = new int[capacity];
+        nextRow   = new int[capacity];
+
+        ArrayUtil.fillArray(buckets, -1);
+
+        RowIterator it = rangeVar.rangeTable.getPrimaryIndex().firstRow(
+            session,
+            store,
+            null,
+            0,
+            null);
+
+        try {
+            while (it.next()) {
+                Row      row  = it.getCurrentRow();
+                Object[] data = row.getData();
+
+                if (hasNullKey(data)) {
+                    continue;
+                }
+
+                if (rowCount == rows.length) {
+                    resize();
+                }
+
+                int hash   = getRowHash(data);
+                int bucket = hash & (buckets.length - 1);
+
+                rows[rowCount]      = row;
+                rowHashes[rowCount] = hash;
+                nextRow[rowCount]   = buckets[bucket];
+                buckets[bucket]     = rowCount;
+
+                rowCount++;
+            }
+        } finally {
+            it.release();
+        }
+    }
+
+    private void buildSpilled() {
+
+        Table    table = rangeVar.rangeTable;
+        HsqlName name  = session.database.nameManager.getSubqueryTableName();
+        TableDerived spillTable = new TableDerived(
+            session.database,
+            name,
+            TableBase.SYSTEM_SUBQUERY);
+
+        TableUtil.addAutoColumns(spillTable, table.getColumnTypes());
+        spillTable.createPrimaryKey(null, null, false);
+
+        spillIndex = spillTable.createIndexForColumns(session, keyColumns);
+        spillStore = session.sessionData.getNewResultRowStore(spillTable, true);
+
+        RowIterator it = table.getPrimaryIndex().firstRow(
+            session,
+            store,
+            null,
+            0,
+            null);
+
+        try {
+            while (it.next()) {
+                Object[] data = it.getCurrent();
+
+                if (hasNullKey(data)) {
+                    continue;
+                }
+
+                Row row = (Row) spillStore.getNewCachedObject(
+                    session,
+                    data,
+                    false);
+
+                spillStore.indexRow(session, row);
+            }
+        } finally {
+            it.release();
+        }
+    }
+
+    private void resize() {
+
+        int newSize = rows.length * 2;
+
+        rows      = (Row[]) ArrayUtil.resizeArray(rows, newSize);
+        rowHashes = (int[]) ArrayUtil.resizeArray(rowHashes, newSize);
+        nextRow   = (int[]) ArrayUtil.resizeArray(nextRow, newSize);
+
+        if (newSize <= MAX_BUCKETS) {
+            buckets = new int[newSize];
+
+            ArrayUtil.fillArray(buckets, -1);
+
+            for (int i = 0; i < rowCount; i++) {
+                int bucket = rowHashes[i] & (buckets.length - 1);
+
+                nextRow[i]      = buckets[bucket];
+                buckets[bucket] = i;
+            }
+        }
+    }
+
+    private boolean isEqualKey(Object[] data, Object[] key) {
+
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (keyTypes[i].compare(session, data[keyColumns[i]], key[i])
+                    != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean hasNullKey(Object[] data) {
+
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (data[keyColumns[i]] == null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int getRowHash(Object[] data) {
+
+        int hash = 0;
+
+        for (int i = 0; i < keyColumns.length; i++) {
+            hash = 31 * hash
+                   + TypedComparator.getKeyHash(keyTypes[i], data[keyColumns[i]]);
+        }
+
+        return mix(hash);
+    }
+
+    private int getHash(Object[] key) {
+
+        int hash = 0;
+
+        for (int i = 0; i < keyColumns.length; i++) {
+            hash = 31 * hash + TypedComparator.getKeyHash(keyTypes[i], key[i]);
+        }
+
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Iterates over the rows in one hash chain that have the same key.
+     */
+    private class HashRowIterator implements RowIterator {
+
+        final Object[] key;
+        final int      hash;
+        int            next;
+        Row            currentRow;
+
+        HashRowIterator(Object[] key, int hash, int first) {
+            this.key  = key;
+            this.hash = hash;
+            this.next = first;
+        }
+
+        public Object getField(int col) {
+            return currentRow.getField(col);
+        }
+
+        public boolean next() {
+
+            while (next >= 0) {
+                int current = next;
+
+                next = nextRow[current];
+
+                if (rowHashes[current] != hash) {
+                    continue;
+                }
+
+                Object[] data = rows[current].getData();
+
+                if (isEqualKey(data, key)) {
+                    currentRow = rows[current];
+
+                    return true;
+                }
+            }
+
+            currentRow = null;
+
+            return false;
+        }
+
+        public Row getCurrentRow() {
+            return currentRow;
+        }
+
+        public Object[] getCurrent() {
+            return currentRow.getData();
+        }
+
+        public void removeCurrent() {}
+
+        public void release() {}
+
+        public long getRowId() {
+            return currentRow.getId();
+        }
+    }
+
+    /**
+     * Iterates over the rows of the spilled store that have the same key.
+     * The index iterator is positioned on the first such row.
+     */
+    private class SpillRowIterator implements RowIterator {
+
+        final Object[] key;
+        RowIterator    it;
+
+        SpillRowIterator(Object[] key, RowIterator it) {
+            this.key = key;
+            this.it  = it;
+        }
+
+        public Object getField(int col) {
+            return it.getField(col);
+        }
+
+        public boolean next() {
+
+            if (it.next()) {
+                if (isEqualKey(it.getCurrent(), key)) {
+                    return true;
+                }
+            }
+
+            it.release();
+
+            it = RowIterator.emptyRowIterator;
+
+            return false;
+        }
+
+        public Row getCurrentRow() {
+            return it.getCurrentRow();
+        }
+
+        public Object[] getCurrent() {
+            return it.getCurrent();
+        }
+
+        public void removeCurrent() {}
+
+        public void release() {
+            it.release();
+        }
+
+        public long getRowId() {
+            return it.getRowId();
+        }
+    }
+}
@@ -0,0 +1,622 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import org.hsqldb.index.Index;
+import org.hsqldb.index.Index.IndexUse;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.List;
+import org.hsqldb.lib.OrderedHashSet;
+import org.hsqldb.lib.OrderedIntHashSet;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.Type;
+
+/**
+ * Cost based enumeration of the order of inner joined tables.<p>
+ *
+ * The estimated number of rows of each table is the current row count of its
+ * store. Conditions on a single table reduce this count by the fraction
+ * estimated from the statistics collected by ANALYZE, or from the index
+ * selectivity, or by a default fraction. Equality join conditions reduce the
+ * count of the joined rows by the inverse of the larger distinct count of the
+ * two columns.<p>
+ *
+ * The cost of adding a table to a join is the number of rows read from the
+ * table. This is the number of index lookups plus the rows returned when an
+ * equality condition with the previous tables can use an index, the size of
+ * the table plus the number of probes for a hash join, or the size of the
+ * table for each previous row otherwise.<p>
+ *
+ * All orders are compared by dynamic programming when the number of tables
+ * does not exceed DP_RANGE_LIMIT. For larger joins, the table with the
+ * lowest cost is added at each step. In both cases, a table without a join
+ * condition with the previous tables is added only when no other table has
+ * one.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+final class JoinOrderEnumerator {
+
+    /** the maximum count of tables for exhaustive enumeration */
+    static final int DP_RANGE_LIMIT = 8;
+
+    /** the estimated row count of derived tables and views */
+    static final double DEFAULT_ROW_COUNT = 1000;
+
+    /** the estimated fraction of rows selected by a non-equality condition */
+    static final double DEFAULT_FRACTION = 1.0 / 3;
+
+    /** the estimated fraction of rows selected by an equality condition */
+    static final double DEFAULT_EQUAL_FRACTION = 0.1;
+
+    /** the maximum count of tables, as sets of tables are int bit masks */
+    static final int MAX_RANGE_COUNT = 30;
+
+    private final Session             session;
+    private final RangeVariable[]     ranges;
+    private final int                 rangeCount;
+    private final boolean             useHashJoin;
+    private final double[]            rowCounts;
+    private final double[]            localFractions;
+    private final boolean[]           hasRangeIndex;
+    private final OrderedIntHashSet[] equalColumns;
+
+    // equality join conditions between two tables
+    private final HsqlArrayList<int[]> joinColumns = new HsqlArrayList<>();
+    private final HsqlArrayList<Double> joinFractions = new HsqlArrayList<>();
+
+    // other conditions on more than one table
+    private final HsqlArrayList<Integer> otherMasks = new HsqlArrayList<>();
+
+    //
+    private final OrderedIntHashSet tempColumns = new OrderedIntHashSet();
+    private final OrderedHashSet<RangeVariable> tempRangeSet =
+        new OrderedHashSet<>();
+
+    /**
+     * Uses the first rangeCount ranges and the conditions that reference
+     * only these ranges.
+     */
+    JoinOrderEnumerator(
+            Session session,
+            RangeVariable[] ranges,
+            int rangeCount,
+            List<Expression> conditions,
+            boolean useHashJoin) {
+
+        this.session        = session;
+        this.ranges         = ranges;
+        this.rangeCount     = rangeCount;
+        this.useHashJoin    = useHashJoin;
+        this.rowCounts      = new double[rangeCount];
+        this.localFractions = new double[rangeCount];
+        this.hasRangeIndex  = new boolean[rangeCount];
+        this.equalColumns   = new OrderedIntHashSet[rangeCount];
+
+        for (int i = 0; i < rangeCount; i++) {
+            Table table = ranges[i].rangeTable;
+
+            if (RangeVariableResolver.isHashJoinTable(table)
+                    || table.isTemp()) {
+                rowCounts[i] = Math.max(
+                    1,
+                    table.getRowStore(session).elementCount());
+            } else {
+                rowCounts[i] = DEFAULT_ROW_COUNT;
+            }
+
+            localFractions[i] = 1;
+            equalColumns[i]   = new OrderedIntHashSet();
+        }
+
+        for (int i = 0; i < conditions.size(); i++) {
+            addCondition(conditions.get(i));
+        }
+    }
+
+    /**
+     * Returns the order with the lowest estimated cost as an array of range
+     * positions.
+     */
+    int[] getOrder() {
+
+        if (rangeCount > DP_RANGE_LIMIT) {
+            return getGreedyOrder();
+        }
+
+        int      full   = (1 << rangeCount) - 1;
+        double[] costs  = new double[full + 1];
+        double[] counts = new double[full + 1];
+        int[]    last   = new int[full + 1];
+
+        counts[0] = 1;
+
+        for (int mask = 1; mask <= full; mask++) {
+            counts[mask] = getRowCount(mask);
+            costs[mask]  = Double.MAX_VALUE;
+
+            // cross joins are used only when there is no other choice
+            for (int pass = 0; pass < 2 && costs[mask] == Double.MAX_VALUE;
+                    pass++) {
+
+                // on equal cost the range that is last in the FROM list is used
+                for (int i = rangeCount - 1; i >= 0; i--) {
+                    int bit = 1 << i;
+
+                    if ((mask & bit) == 0) {
+                        continue;
+                    }
+
+                    int prev = mask & ~bit;
+
+                    if (pass == 0 && !isJoined(i, prev)) {
+                        continue;
+                    }
+
+                    double cost = costs[prev]
+                                  + getAccessCost(i, prev, counts[prev]);
+
+                    if (cost < costs[mask]) {
+                        costs[mask] = cost;
+                        last[mask]  = i;
+                    }
+                }
+            }
+        }
+
+        int[] order = new int[rangeCount];
+
+        for (int i = rangeCount - 1, mask = full; i >= 0; i--) {
+            order[i] = last[mask];
+            mask     &= ~(1 << order[i]);
+        }
+
+        return order;
+    }
+
+    /**
+     * Returns the estimated cost of executing the join in the given order.
+     */
+    double getCost(int[] order) {
+
+        double cost  = 0;
+        double count = 1;
+        int    mask  = 0;
+
+        for (int i = 0; i < order.length; i++) {
+            cost  += getAccessCost(order[i], mask, count);
+            mask  |= 1 << order[i];
+            count = getRowCount(mask);
+        }
+
+        return cost;
+    }
+
+    /**
+     * Returns the estimated row count of the join of the first tables in the
+     * given order, for each position.
+     */
+    double[] getRowCounts(int[] order) {
+
+        double[] counts = new double[order.length];
+        int      mask   = 0;
+
+        for (int i = 0; i < order.length; i++) {
+            mask      |= 1 << order[i];
+            counts[i] = getRowCount(mask);
+        }
+
+        return counts;
+    }
+
+    private int[] getGreedyOrder() {
+
+        int[]  order = new int[rangeCount];
+        int    mask  = 0;
+        double count = 1;
+
+        for (int position = 0; position < rangeCount; position++) {
+            int    best     = -1;
+            double bestCost = Double.MAX_VALUE;
+
+            for (int pass = 0; pass < 2 && best < 0; pass++) {
+                for (int i = 0; i < rangeCount; i++) {
+                    int bit = 1 << i;
+
+                    if ((mask & bit) != 0) {
+                        continue;
+                    }
+
+                    if (pass == 0 && !isJoined(i, mask)) {
+                        continue;
+                    }
+
+                    double cost = getAccessCost(i, mask, count)
+                                  + getRowCount(mask | bit);
+
+                    if (best < 0 || cost < bestCost) {
+                        best     = i;
+                        bestCost = cost;
+                    }
+                }
+            }
+
+            order[position] = best;
+            mask            |= 1 << best;
+            count           = getRowCount(mask);
+        }
+
+        return order;
+    }
+
+    /**
+     * Returns true if the mask is empty or there is a join condition between
+     * the range and a range in the mask.
+     */
+    private boolean isJoined(int position, int mask) {
+
+        if (mask == 0) {
+            return true;
+        }
+
+        int bit = 1 << position;
+
+        for (int i = 0; i < joinColumns.size(); i++) {
+            int[] cols    = joinColumns.get(i);
+            int   bitMask = (1 << cols[0]) | (1 << cols[2]);
+
+            if ((bitMask & bit) != 0 && (bitMask & mask) != 0) {
+                return true;
+            }
+        }
+
+        for (int i = 0; i < otherMasks.size(); i++) {
+            int bitMask = otherMasks.get(i);
+
+            if ((bitMask & bit) != 0 && (bitMask & mask) != 0
+                    && (bitMask & ~(mask | bit)) == 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the estimated number of rows of the join of the tables in the
+     * mask.
+     */
+    private double getRowCount(int mask) {
+
+        double count = 1;
+
+        for (int i = 0; i < rangeCount; i++) {
+            if ((mask & (1 << i)) != 0) {
+                count *= rowCounts[i] * localFractions[i];
+            }
+        }
+
+        for (int i = 0; i < joinColumns.size(); i++) {
+            int[] cols    = joinColumns.get(i);
+            int   bitMask = (1 << cols[0]) | (1 << cols[2]);
+
+            if ((mask & bitMask) == bitMask) {
+                count *= joinFractions.get(i);
+            }
+        }
+
+        for (int i = 0; i < otherMasks.size(); i++) {
+            int bitMask = otherMasks.get(i);
+
+            if ((mask & bitMask) == bitMask) {
+                count *= DEFAULT_FRACTION;
+            }
+        }
+
+        // the bounds avoid overflow of the costs with many tables
+        return Math.max(Math.min(count, 1e100), Double.MIN_NORMAL);
+    }
+
+    /**
+     * Returns the estimated number of rows read from a table when it is
+     * joined to the tables in the mask, which return outerCount rows.
+     */
+    private double getAccessCost(int position, int mask, double outerCount) {
+
+        Table   table   = ranges[position].rangeTable;
+        double  count   = rowCounts[position];
+        boolean hasJoin = false;
+
+        tempColumns.clear();
+        tempColumns.addAll(equalColumns[position]);
+
+        for (int i = 0; i < joinColumns.size(); i++) {
+            int[] cols = joinColumns.get(i);
+
+            if (cols[0] == position && (mask & (1 << cols[2])) != 0) {
+                tempColumns.add(cols[1]);
+
+                hasJoin = true;
+            } else if (cols[2] == position && (mask & (1 << cols[0])) != 0) {
+                tempColumns.add(cols[3]);
+
+                hasJoin = true;
+            }
+        }
+
+        double lookupCount = -1;
+
+        if (!tempColumns.isEmpty()) {
+            if (table instanceof TableDerived) {
+
+                // derived tables are indexed on the join columns
+                lookupCount = count
+                              * Math.pow(
+                                  DEFAULT_EQUAL_FRACTION,
+                                  tempColumns.size());
+            } else {
+                IndexUse[] indexes = table.getIndexForColumns(
+                    session,
+                    tempColumns,
+                    OpTypes.EQUAL,
+                    false);
+
+                for (int i = 0; i < indexes.length; i++) {
+                    double rows = getEqualityRowCount(
+                        table,
+                        indexes[i].index,
+                        indexes[i].columnCount);
+
+                    if (lookupCount < 0 || rows < lookupCount) {
+                        lookupCount = rows;
+                    }
+                }
+            }
+        }
+
+        if (lookupCount >= 0) {
+            return outerCount * (1 + Math.max(1, lookupCount));
+        }
+
+        if (hasRangeIndex[position]) {
+            return outerCount
+                   * (1 + Math.max(1, count * localFractions[position]));
+        }
+
+        if (hasJoin && useHashJoin
+                && RangeVariableResolver.isHashJoinTable(table)) {
+            return count + outerCount;
+        }
+
+        return outerCount * count;
+    }
+
+    private double getEqualityRowCount(Table table, Index index, int count) {
+
+        PersistentStore store = table.getRowStore(session);
+        double rows = RangeVariableResolver.getEqualityRowCount(
+            table,
+            store,
+            index,
+            count);
+
+        if (rows < 0) {
+            rows = store.searchCost(session, index, count, OpTypes.EQUAL);
+        }
+
+        return rows;
+    }
+
+    private void addCondition(Expression e) {
+
+        if (e == null || e.isTrue()) {
+            return;
+        }
+
+        tempRangeSet.clear();
+        e.collectRangeVariables(ranges, tempRangeSet);
+
+        int mask = 0;
+
+        for (int i = 0; i < tempRangeSet.size(); i++) {
+            int position = ArrayUtil.find(ranges, tempRangeSet.get(i));
+
+            if (position < 0 || position >= rangeCount) {
+                return;
+            }
+
+            mask |= 1 << position;
+        }
+
+        if (mask == 0) {
+            return;
+        }
+
+        if (Integer.bitCount(mask) == 1) {
+            int position = Integer.numberOfTrailingZeros(mask);
+
+            localFractions[position] *= getLocalFraction(e, position);
+
+            return;
+        }
+
+        if (Integer.bitCount(mask) == 2 && e.isColumnEqual) {
+            Expression left  = e.getLeftNode();
+            Expression right = e.getRightNode();
+            int leftPosition = ArrayUtil.find(ranges, left.getRangeVariable());
+            int rightPosition = ArrayUtil.find(
+                ranges,
+                right.getRangeVariable());
+            double leftCount = getDistinctCount(
+                leftPosition,
+                left.getColumnIndex());
+            double rightCount = getDistinctCount(
+                rightPosition,
+                right.getColumnIndex());
+
+            // a column with no known count is assumed to reference the other
+            if (leftCount < 0 && rightCount < 0) {
+                leftCount  = rowCounts[leftPosition] * DEFAULT_EQUAL_FRACTION;
+                rightCount = rowCounts[rightPosition] * DEFAULT_EQUAL_FRACTION;
+            }
+
+            double fraction = 1
+                              / Math.max(1, Math.max(leftCount, rightCount));
+
+            joinColumns.add(
+                new int[] {
+                leftPosition, left.getColumnIndex(), rightPosition,
+                right.getColumnIndex()
+            });
+            joinFractions.add(fraction);
+
+            return;
+        }
+
+        otherMasks.add(mask);
+    }
+
+    /**
+     * Returns the estimated fraction of rows of a table that satisfy a
+     * condition that references only that table.
+     */
+    private double getLocalFraction(Expression e, int position) {
+
+        if (!e.isSingleColumnCondition && !e.isColumnEqual) {
+            return DEFAULT_FRACTION;
+        }
+
+        RangeVariable range  = ranges[position];
+        Expression    column = e.getLeftNode();
+        Expression    value  = e.getRightNode();
+
+        if (column.getRangeVariable() != range) {
+            column = e.getRightNode();
+            value  = e.getLeftNode();
+        }
+
+        if (column.getType() != OpTypes.COLUMN
+                || column.getRangeVariable() != range) {
+            return DEFAULT_FRACTION;
+        }
+
+        int              colIndex   = column.getColumnIndex();
+        Table            table      = range.rangeTable;
+        ColumnSchema     schema     = table.getColumn(colIndex);
+        ColumnStatistics statistics = schema.getStatistics();
+
+        if (e.isSingleColumnEqual || e.isColumnEqual) {
+
+            // equal to a constant or to a column of an outer query
+            if (value.getRangeVariable() == range) {
+                return DEFAULT_FRACTION;
+            }
+
+            equalColumns[position].add(colIndex);
+
+            double count = getDistinctCount(position, colIndex);
+
+            return count < 0
+                   ? DEFAULT_EQUAL_FRACTION
+                   : 1 / count;
+        }
+
+        if (!(table instanceof TableDerived)
+                && table.getIndexForColumn(session, colIndex) != null) {
+            hasRangeIndex[position] = true;
+        }
+
+        if (statistics == null || value.getType() != OpTypes.VALUE
+                || column != e.getLeftNode()) {
+            return DEFAULT_FRACTION;
+        }
+
+        Type   type     = schema.getDataType();
+        double fraction = statistics.getSmallerFraction(
+            session,
+            type,
+            value.getValue(session),
+            value.getDataType());
+
+        if (fraction < 0) {
+            return DEFAULT_FRACTION;
+        }
+
+        switch (e.getType()) {
+
+            case OpTypes.SMALLER :
+            case OpTypes.SMALLER_EQUAL :
+                return Math.max(fraction, 1 / rowCounts[position]);
+
+            case OpTypes.GREATER :
+            case OpTypes.GREATER_EQUAL :
+            case OpTypes.GREATER_EQUAL_PRE :
+                return Math.max(
+                    1 - statistics.getNullFraction() - fraction,
+                    1 / rowCounts[position]);
+
+            default :
+                return DEFAULT_FRACTION;
+        }
+    }
+
+    /**
+     * Returns the estimated count of distinct values of a column, from the
+     * statistics collected by ANALYZE or from the selectivity of an index on
+     * the column, or -1 if the count is not known.
+     */
+    private double getDistinctCount(int position, int colIndex) {
+
+        Table            table      = ranges[position].rangeTable;
+        double           count      = rowCounts[position];
+        ColumnStatistics statistics =
+            table.getColumn(colIndex).getStatistics();
+
+        if (statistics != null) {
+            return Math.max(1, statistics.getDistinctCount());
+        }
+
+        if (!(table instanceof TableDerived)) {
+            Index index = table.getIndexForColumn(session, colIndex);
+
+            if (index != null && index.getColumns()[0] == colIndex) {
+                double rows = getEqualityRowCount(table, index, 1);
+
+                return Math.max(1, count / Math.max(1, rows));
+            }
+        }
+
+        return -1;
+    }
+}
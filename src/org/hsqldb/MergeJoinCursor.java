@@ -0,0 +1,268 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import org.hsqldb.index.Index;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.Type;
+
+/**
+ * Inner side of a merge join.<p>
+ *
+ * Used when the outer range returns its rows in the order of the join column
+ * and the inner range has an index on the matching column. The cursor on the
+ * inner index is kept between outer rows and is moved forward to the next
+ * key instead of searching the index from the root for each outer row. The
+ * rows for the current key are kept so that outer rows with the same key can
+ * reuse them.<p>
+ *
+ * If the outer key is smaller than the previous one, or the next key is far
+ * ahead of the cursor, the index is searched again. The results are the same
+ * as for a nested loop join in all cases.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+final class MergeJoinCursor {
+
+    // rows skipped before searching the index from the root
+    private static final int maxScanCount = 16;
+
+    // probes that search from the root after a scan reached maxScanCount
+    private static final int maxSeekCount = 8;
+
+    // rows with the same key that are kept for reuse
+    private static final int maxGroupSize = 4096;
+
+    final Session         session;
+    final PersistentStore store;
+    final Index           index;
+    final int             keyColumn;
+    final Type            keyType;
+
+    //
+    private RowIterator         cursor     = RowIterator.emptyRowIterator;
+    private Row                 cursorRow;
+    private Object              lastKey;
+    private boolean             isLargeGroup;
+    private int                 seekCount;
+    private HsqlArrayList<Row>  group      = new HsqlArrayList<>();
+    private final Object[]      searchData = new Object[1];
+
+    MergeJoinCursor(Session session, PersistentStore store, Index index) {
+
+        this.session   = session;
+        this.store     = store;
+        this.index     = index;
+        this.keyColumn = index.getColumns()[0];
+        this.keyType   = index.getColumnTypes()[0];
+    }
+
+    /**
+     * Returns an iterator on the rows with the given non-null key.
+     */
+    RowIterator findRows(Object key) {
+
+        if (lastKey != null) {
+            int compare = keyType.compare(session, lastKey, key);
+
+            if (compare == 0) {
+                return getGroupIterator(key);
+            }
+
+            if (compare < 0 && !isLargeGroup && seekCount == 0) {
+                advance(key);
+            } else {
+                seek(key);
+            }
+        } else {
+            seek(key);
+        }
+
+        lastKey      = key;
+        isLargeGroup = false;
+
+        group.clear();
+
+        while (cursorRow != null && compareKey(cursorRow, key) == 0) {
+            if (group.size() == maxGroupSize) {
+                isLargeGroup = true;
+
+                group.clear();
+                cursor.release();
+
+                cursor    = RowIterator.emptyRowIterator;
+                cursorRow = null;
+
+                return getGroupIterator(key);
+            }
+
+            group.add(cursorRow);
+            nextRow();
+        }
+
+        return getGroupIterator(key);
+    }
+
+    void release() {
+
+        cursor.release();
+
+        cursor    = RowIterator.emptyRowIterator;
+        cursorRow = null;
+        lastKey   = null;
+
+        group.clear();
+    }
+
+    private RowIterator getGroupIterator(Object key) {
+
+        if (isLargeGroup) {
+            searchData[0] = key;
+
+            return index.findFirstRow(
+                session,
+                store,
+                searchData,
+                1,
+                0,
+                OpTypes.EQUAL,
+                false,
+                null);
+        }
+
+        if (group.isEmpty()) {
+            return RowIterator.emptyRowIterator;
+        }
+
+        return new GroupRowIterator();
+    }
+
+    private void advance(Object key) {
+
+        for (int count = 0; cursorRow != null; count++) {
+            if (compareKey(cursorRow, key) >= 0) {
+                return;
+            }
+
+            if (count == maxScanCount) {
+                seek(key);
+
+                seekCount = maxSeekCount;
+
+                return;
+            }
+
+            nextRow();
+        }
+    }
+
+    private void seek(Object key) {
+
+        if (seekCount > 0) {
+            seekCount--;
+        }
+
+        cursor.release();
+
+        searchData[0] = key;
+        cursor = index.findFirstRow(
+            session,
+            store,
+            searchData,
+            1,
+            0,
+            OpTypes.GREATER_EQUAL,
+            false,
+            null);
+
+        nextRow();
+    }
+
+    private void nextRow() {
+
+        if (cursor.next()) {
+            cursorRow = cursor.getCurrentRow();
+        } else {
+            cursor.release();
+
+            cursor    = RowIterator.emptyRowIterator;
+            cursorRow = null;
+        }
+    }
+
+    private int compareKey(Row row, Object key) {
+        return keyType.compare(session, row.getData()[keyColumn], key);
+    }
+
+    private class GroupRowIterator implements RowIterator {
+
+        final HsqlArrayList<Row> rows = group;
+        int                      position;
+        Row                      currentRow;
+
+        public Object getField(int col) {
+            return currentRow.getField(col);
+        }
+
+        public boolean next() {
+
+            if (position < rows.size()) {
+                currentRow = rows.get(position++);
+
+                return true;
+            }
+
+            currentRow = null;
+
+            return false;
+        }
+
+        public Row getCurrentRow() {
+            return currentRow;
+        }
+
+        public Object[] getCurrent() {
+            return currentRow.getData();
+        }
+
+        public void removeCurrent() {}
+
+        public void release() {}
+
+        public long getRowId() {
+            return currentRow.getId();
+        }
+    }
+}
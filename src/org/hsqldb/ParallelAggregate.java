@@ -0,0 +1,479 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+import org.hsqldb.RangeVariable.RangeIteratorCheck;
+import org.hsqldb.RangeVariable.RangeVariableConditions;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.error.HsqlException;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.navigator.RowSetNavigatorData;
+import org.hsqldb.persist.PersistentStore;
+
+/**
+ * Parallel execution of an aggregate query on a single table without
+ * GROUP BY.<p>
+ *
+ * The session thread reads the rows of the table and passes them in chunks
+ * to worker tasks on the database ForkJoinPool. Each worker evaluates the
+ * WHERE condition and the aggregate functions on its own session and keeps
+ * partial aggregates, which are merged when the scan is complete. The number
+ * of workers is limited by the hsqldb.parallel_threads property.<p>
+ *
+ * Used only when all the expressions can be evaluated on another session:
+ * no subqueries, routines, sequences, non-deterministic functions or LOB
+ * values.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+final class ParallelAggregate {
+
+    // rows passed to a worker at a time
+    private static final int chunkSize = 1024;
+
+    // smaller tables are aggregated by the session thread
+    private static final int minRowCount = 16 * 1024;
+
+    // marks the end of the rows
+    private static final Object[][] endOfRows = new Object[0][];
+
+    //
+    final RangeVariable rangeVar;
+    final Expression    condition;
+    final Expression[]  aggregates;
+    final int           aggregateStart;
+    final int           dataLength;
+
+    private ParallelAggregate(
+            RangeVariable rangeVar,
+            Expression condition,
+            Expression[] aggregates,
+            int aggregateStart,
+            int dataLength) {
+
+        this.rangeVar       = rangeVar;
+        this.condition      = condition;
+        this.aggregates     = aggregates;
+        this.aggregateStart = aggregateStart;
+        this.dataLength     = dataLength;
+    }
+
+    /**
+     * Returns an instance if the aggregates of the single range variable can
+     * be computed in parallel, otherwise null.
+     */
+    static ParallelAggregate newParallelAggregate(
+            RangeVariable rangeVar,
+            Expression[] aggregates,
+            int aggregateStart,
+            int dataLength) {
+
+        if (rangeVar.rangeType != RangeVariable.TABLE_RANGE
+                || rangeVar.isLeftJoin
+                || rangeVar.isRightJoin
+                || rangeVar.periodCondition != null
+                || rangeVar.filterCondition != null
+                || rangeVar.indexDistinctCount != 0) {
+            return null;
+        }
+
+        Table table = rangeVar.rangeTable;
+
+        switch (table.getTableType()) {
+
+            case TableBase.MEMORY_TABLE :
+            case TableBase.CACHED_TABLE :
+                break;
+
+            default :
+                return null;
+        }
+
+        if (table.isSystemVersioned()
+                || rangeVar.joinConditions.length != 1
+                || rangeVar.whereConditions.length != 1) {
+            return null;
+        }
+
+        RangeVariableConditions joinConditions  = rangeVar.joinConditions[0];
+        RangeVariableConditions whereConditions = rangeVar.whereConditions[0];
+
+        if (!isFullScan(joinConditions) || !isFullScan(whereConditions)) {
+            return null;
+        }
+
+        Expression condition = ExpressionLogical.andExpressions(
+            joinConditions.nonIndexCondition,
+            whereConditions.nonIndexCondition);
+
+        if (condition != null && !isParallelSafe(condition, rangeVar)) {
+            return null;
+        }
+
+        for (int i = 0; i < aggregates.length; i++) {
+            Expression e = aggregates[i];
+
+            if (e.getClass() != ExpressionAggregate.class) {
+                return null;
+            }
+
+            if (!isParallelSafe(e.getLeftNode(), rangeVar)
+                    || !isParallelSafe(
+                        ((ExpressionAggregate) e).getCondition(),
+                        rangeVar)) {
+                return null;
+            }
+        }
+
+        return new ParallelAggregate(
+            rangeVar,
+            condition,
+            aggregates,
+            aggregateStart,
+            dataLength);
+    }
+
+    private static boolean isFullScan(RangeVariableConditions conditions) {
+
+        return !conditions.isFalse
+               && !conditions.hasIndexCondition()
+               && !conditions.isHashJoin()
+               && !conditions.isMergeJoin
+               && !conditions.reversed
+               && conditions.indexEndCondition == null
+               && conditions.terminalCondition == null
+               && conditions.excludeConditions == null;
+    }
+
+    /**
+     * Returns true if the expression can be evaluated by a worker session
+     * from the values of the columns of the range variable.
+     */
+    static boolean isParallelSafe(Expression e, RangeVariable rangeVar) {
+
+        if (e == null) {
+            return true;
+        }
+
+        if (e.dataType != null && e.dataType.isLobType()) {
+            return false;
+        }
+
+        if (e instanceof ExpressionValue) {
+            return true;
+        }
+
+        if (e instanceof ExpressionColumn) {
+            switch (e.opType) {
+
+                case OpTypes.COLUMN :
+                    return e.getRangeVariable() == rangeVar;
+
+                case OpTypes.ASTERISK :
+                case OpTypes.DYNAMIC_PARAM :
+                    return true;
+
+                default :
+                    return false;
+            }
+        }
+
+        if (e instanceof FunctionSQL) {
+            if (!((FunctionSQL) e).isDeterministic()) {
+                return false;
+            }
+        } else if (e.getClass() == Expression.class) {
+            if (e.opType != OpTypes.ROW) {
+                return false;
+            }
+        } else if (e.getClass() != ExpressionArithmetic.class
+                   && e.getClass() != ExpressionLogical.class
+                   && e.getClass() != ExpressionLike.class
+                   && e.getClass() != ExpressionOp.class) {
+            return false;
+        }
+
+        for (int i = 0; i < e.nodes.length; i++) {
+            if (!isParallelSafe(e.nodes[i], rangeVar)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Computes the aggregates in parallel and adds the row with the merged
+     * aggregates to the navigator if any row satisfies the conditions.
+     * Returns false without reading any rows if parallel execution is
+     * disabled or the table is too small.
+     */
+    boolean addAggregatedData(Session session, RowSetNavigatorData navigator) {
+
+        int threads = session.database.getParallelThreads();
+
+        if (threads < 2
+                || (session.sessionOptimization & Session.FEATURE_PARALLEL)
+                   == 0) {
+            return false;
+        }
+
+        PersistentStore store = rangeVar.rangeTable.getRowStore(session);
+
+        if (store.elementCount() < minRowCount) {
+            return false;
+        }
+
+        Execution execution = new Execution(session, threads);
+
+        execution.run(store);
+
+        Object[] data     = new Object[dataLength];
+        long     rowCount = 0;
+
+        for (int i = 0; i < threads; i++) {
+            Worker worker = execution.workers[i];
+
+            rowCount += worker.rowCount;
+
+            for (int j = 0; j < aggregates.length; j++) {
+                if (worker.partials[j] != null) {
+                    data[aggregateStart + j] =
+                        aggregates[j].updateAggregatingValue(
+                            session,
+                            (SetFunction) data[aggregateStart + j],
+                            worker.partials[j]);
+                }
+            }
+        }
+
+        if (rowCount > 0) {
+            navigator.add(data);
+        }
+
+        return true;
+    }
+
+    /**
+     * The state of one parallel execution.
+     */
+    private final class Execution {
+
+        final Session                        session;
+        final Worker[]                       workers;
+        final ArrayBlockingQueue<Object[][]> queue;
+        volatile boolean                     isCancelled;
+        volatile Throwable                   failure;
+
+        Execution(Session session, int threads) {
+
+            this.session = session;
+            this.workers = new Worker[threads];
+            this.queue   = new ArrayBlockingQueue<>(threads * 2);
+
+            for (int i = 0; i < threads; i++) {
+                workers[i] = new Worker(this, session.getWorkerSession(i));
+            }
+        }
+
+        void run(PersistentStore store) {
+
+            ForkJoinPool       pool  = session.database.getParallelPool();
+            ForkJoinTask<?>[]  tasks = new ForkJoinTask<?>[workers.length];
+            RowIterator        it    = RowIterator.emptyRowIterator;
+            boolean            ended = false;
+
+            for (int i = 0; i < workers.length; i++) {
+                tasks[i] = pool.submit(workers[i]);
+            }
+
+            try {
+                it = rangeVar.rangeTable.getPrimaryIndex().firstRow(
+                    session,
+                    store,
+                    null,
+                    0,
+                    null);
+
+                Object[][] chunk = new Object[chunkSize][];
+                int        count = 0;
+
+                while (it.next()) {
+                    chunk[count++] = it.getCurrent();
+
+                    if (count == chunkSize) {
+                        put(chunk);
+
+                        chunk = new Object[chunkSize][];
+                        count = 0;
+                    }
+                }
+
+                if (count > 0) {
+                    put((Object[][]) ArrayUtil.resizeArray(chunk, count));
+                }
+
+                for (int i = 0; i < workers.length; i++) {
+                    put(endOfRows);
+                }
+
+                ended = true;
+            } finally {
+                it.release();
+
+                if (!ended) {
+                    isCancelled = true;
+
+                    queue.clear();
+
+                    for (int i = 0; i < workers.length; i++) {
+                        queue.offer(endOfRows);
+                    }
+                }
+
+                for (int i = 0; i < tasks.length; i++) {
+                    tasks[i].join();
+                }
+            }
+
+            checkFailure();
+
+            for (int i = 0; i < workers.length; i++) {
+                HsqlException[] warnings =
+                    workers[i].session.getAndClearWarnings();
+
+                for (int j = 0; j < warnings.length; j++) {
+                    session.addWarning(warnings[j]);
+                }
+            }
+        }
+
+        private void put(Object[][] chunk) {
+
+            try {
+                while (!queue.offer(chunk, 10, TimeUnit.MILLISECONDS)) {
+                    checkFailure();
+                }
+            } catch (InterruptedException e) {
+                throw Error.error(ErrorCode.X_40502);
+            }
+
+            checkFailure();
+        }
+
+        private void checkFailure() {
+
+            if (session.abortTransaction) {
+                throw Error.error(ErrorCode.X_40000);
+            }
+
+            if (session.abortAction) {
+                throw Error.error(ErrorCode.X_40502);
+            }
+
+            Throwable t = failure;
+
+            if (t == null) {
+                return;
+            }
+
+            if (t instanceof HsqlException) {
+                throw (HsqlException) t;
+            }
+
+            throw Error.error(ErrorCode.GENERAL_ERROR, t);
+        }
+    }
+
+    /**
+     * Evaluates the conditions and aggregates for chunks of rows.
+     */
+    private final class Worker implements Runnable {
+
+        final Execution     execution;
+        final Session       session;
+        final SetFunction[] partials = new SetFunction[aggregates.length];
+        long                rowCount;
+
+        Worker(Execution execution, Session session) {
+            this.execution = execution;
+            this.session   = session;
+        }
+
+        public void run() {
+
+            RangeIteratorCheck it =
+                new RangeIteratorCheck(rangeVar.rangePosition);
+
+            session.sessionContext.setRangeIterator(it);
+
+            try {
+                while (true) {
+                    Object[][] chunk = execution.queue.take();
+
+                    if (chunk == endOfRows || execution.isCancelled) {
+                        break;
+                    }
+
+                    for (int i = 0; i < chunk.length; i++) {
+                        it.setCurrent(chunk[i]);
+
+                        if (condition != null
+                                && !condition.testCondition(session)) {
+                            continue;
+                        }
+
+                        rowCount++;
+
+                        for (int j = 0; j < aggregates.length; j++) {
+                            partials[j] = aggregates[j].updateAggregatingValue(
+                                session,
+                                partials[j]);
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                execution.failure = t;
+            } finally {
+                it.setCurrent(null);
+            }
+        }
+    }
+}
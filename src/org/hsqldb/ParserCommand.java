@@ -35,6 +35,7 @@ import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.error.HsqlException;
+import org.hsqldb.index.Index;
 import org.hsqldb.index.IndexStats;
 import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.List;
@@ -55,7 +56,7 @@ import org.hsqldb.types.Types;
  * Parser for session and management statements
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public class ParserCommand extends ParserDDL {
@@ -296,6 +297,10 @@ public class ParserCommand extends ParserDDL {
                 cs = compileCheckpoint();
                 break;
 
+            case Tokens.ANALYZE :
+                cs = compileAnalyze();
+                break;
+
             case Tokens.EXPLAIN : {
                 cs = compileExplain();
                 break;
@@ -321,6 +326,7 @@ public class ParserCommand extends ParserDDL {
             case StatementTypes.ROLLBACK_WORK :
             case StatementTypes.SET_USER_PASSWORD :
             case StatementTypes.EXPLAIN_PLAN :
+            case StatementTypes.SET_TABLE_BLOOM_FILTER :
                 break;
 
             default :
@@ -1048,6 +1054,54 @@ public class ParserCommand extends ParserDDL {
             args);
     }
 
+    /**
+     * The index is given by name, or by position in the logged statement, as
+     * the names of constraint indexes are generated again when the database
+     * is opened.
+     */
+    private StatementCommand compileSetTableBloomFilter(Table table) {
+
+        Index index;
+
+        if (isIntegral()) {
+            int position = readInteger();
+
+            if (position >= table.getIndexCount()) {
+                throw Error.error(ErrorCode.X_42501);
+            }
+
+            index = table.getIndex(position);
+        } else {
+            checkIsSimpleName();
+
+            index = table.getIndex(token.tokenString);
+
+            if (index == null) {
+                throw Error.error(ErrorCode.X_42501, token.tokenString);
+            }
+
+            read();
+        }
+
+        readThis(Tokens.T_BLOOM);
+        readThis(Tokens.FILTER);
+
+        Boolean  mode = processTrueOrFalseObject();
+        Object[] args = new Object[]{ table.getName(), index.getName(), mode };
+        StatementCommand cs = new StatementCommand(
+            StatementTypes.SET_TABLE_BLOOM_FILTER,
+            args,
+            null,
+            new HsqlName[]{ table.getName() });
+
+        cs.setSQL(
+            table.getSQLForBloomFilter(
+                index.getPosition(),
+                mode.booleanValue()));
+
+        return cs;
+    }
+
     StatementCommand compileSetTable() {
 
         read();
@@ -1107,6 +1161,29 @@ public class ParserCommand extends ParserDDL {
                 String value;
 
                 read();
+
+                if (token.tokenType == Tokens.TYPE) {
+                    read();
+
+                    boolean btree = readIfThis(Tokens.T_BTREE);
+
+                    if (!btree) {
+                        readThis(Tokens.T_AVL);
+                    }
+
+                    args[1] = Boolean.valueOf(btree);
+
+                    return new StatementCommand(
+                        StatementTypes.SET_TABLE_INDEX_TYPE,
+                        args,
+                        null,
+                        new HsqlName[]{ table.getName() });
+                }
+
+                if (token.tokenType != Tokens.X_VALUE || isIntegral()) {
+                    return compileSetTableBloomFilter(table);
+                }
+
                 checkIsValue();
 
                 value = token.tokenString;
@@ -1185,6 +1262,66 @@ public class ParserCommand extends ParserDDL {
                     new HsqlName[]{ table.getName() });
             }
 
+            case Tokens.STATISTICS : {
+                read();
+
+                ColumnSchema column = readSimpleColumnName(table, false);
+                Type         type   = column.getDataType();
+
+                readThis(Tokens.ROWS);
+
+                long rowCount = readBigint();
+
+                readThis(Tokens.NULLS);
+
+                long nullCount = readBigint();
+
+                readThis(Tokens.DISTINCT);
+
+                long     distinctCount = readBigint();
+                Object[] histogram     = null;
+
+                if (readIfThis(Tokens.VALUES)) {
+                    HsqlArrayList<Object> list = new HsqlArrayList<>();
+
+                    readThis(Tokens.OPENBRACKET);
+
+                    while (true) {
+                        checkIsQuotedString();
+                        list.add(
+                            type.convertToType(
+                                session,
+                                token.tokenValue,
+                                Type.SQL_VARCHAR));
+                        read();
+
+                        if (!readIfThis(Tokens.COMMA)) {
+                            break;
+                        }
+                    }
+
+                    readThis(Tokens.CLOSEBRACKET);
+
+                    histogram = list.toArray();
+                }
+
+                ColumnStatistics statistics = new ColumnStatistics(
+                    rowCount,
+                    nullCount,
+                    distinctCount,
+                    histogram);
+
+                args = new Object[] {
+                    table.getName(), column.getName(), statistics
+                };
+
+                return new StatementCommand(
+                    StatementTypes.SET_TABLE_STATISTICS,
+                    args,
+                    null,
+                    new HsqlName[]{ table.getName() });
+            }
+
             case Tokens.NEW : {
                 read();
                 readThis(Tokens.SPACE);
@@ -1844,6 +1981,15 @@ public class ParserCommand extends ParserDDL {
                 break;
             }
 
+            case Tokens.CHECKPOINT : {
+                read();
+                readThis(Tokens.T_FUZZY);
+
+                type = StatementTypes.SET_DATABASE_FILES_CHECKPOINT_FUZZY;
+                flag = processTrueOrFalseObject();
+                break;
+            }
+
             case Tokens.DEFRAG : {
                 read();
 
@@ -1941,6 +2087,12 @@ public class ParserCommand extends ParserDDL {
                     read();
 
                     value = Integer.valueOf(0);
+                } else if (token.tokenType == Tokens.BINARY) {
+                    read();
+
+                    value = readIfThis(Tokens.COMPRESSED)
+                            ? Integer.valueOf(2)
+                            : Integer.valueOf(1);
                 } else {
                     readThis(Tokens.COMPRESSED);
 
@@ -2487,6 +2639,8 @@ public class ParserCommand extends ParserDDL {
         Boolean scriptMode   = null;    // defaults to non-script
         Boolean compression  = null;    // defaults to compressed
         Boolean files        = null;    // defaults to false
+        Boolean incremental  = null;    // defaults to false
+        Integer throttle     = null;    // defaults to 0, no limit
 
         read();
         readThis(Tokens.DATABASE);
@@ -2570,6 +2724,23 @@ public class ParserCommand extends ParserDDL {
                     break;
 
                 default :
+                    if (incremental == null
+                            && readIfThis(Tokens.T_INCREMENTAL)) {
+                        incremental = Boolean.TRUE;
+                        break;
+                    }
+
+                    if (throttle == null
+                            && readIfThis(Tokens.T_THROTTLE)) {
+                        throttle = readIntegerObject();
+
+                        if (throttle.intValue() <= 0) {
+                            throw Error.error(ErrorCode.X_22003);
+                        }
+
+                        break;
+                    }
+
                     break outerLoop;
             }
         }
@@ -2590,17 +2761,36 @@ public class ParserCommand extends ParserDDL {
             files = Boolean.FALSE;
         }
 
+        if (incremental == null) {
+            incremental = Boolean.FALSE;
+        }
+
+        if (throttle == null) {
+            throttle = Integer.valueOf(0);
+        }
+
         if (scriptMode) {
             if (!blockingMode) {
                 throw unexpectedToken(Tokens.T_NOT);
             }
         }
 
+        // an incremental backup holds pages of the .data file in a tar entry
+        if (incremental && (scriptMode || files)) {
+            throw unexpectedToken(Tokens.T_INCREMENTAL);
+        }
+
+        // limiting the rate of a blocking backup extends the blocking time
+        if (throttle.intValue() > 0 && blockingMode) {
+            throw unexpectedToken(Tokens.T_THROTTLE);
+        }
+
         HsqlName[] names = blockingMode
                            ? database.schemaManager.getCatalogAndBaseTableNames()
                            : HsqlName.emptyArray;
         Object[] args = new Object[]{ path, blockingMode, scriptMode,
-                                      compression, files };
+                                      compression, files, incremental,
+                                      throttle };
         Statement cs = new StatementCommand(
             StatementTypes.DATABASE_BACKUP,
             args,
@@ -2840,6 +3030,28 @@ public class ParserCommand extends ParserDDL {
         return cs;
     }
 
+    /*
+     * ANALYZE [ TABLE <name> ]
+     */
+    private Statement compileAnalyze() {
+
+        HsqlName tableName = null;
+
+        read();
+
+        if (readIfThis(Tokens.TABLE)) {
+            tableName = readTableName().getName();
+        }
+
+        Object[]   args  = new Object[]{ tableName };
+        HsqlName[] names = tableName == null
+                           ? database.schemaManager.getCatalogAndBaseTableNames()
+                           : database.schemaManager.getCatalogAndBaseTableNames(
+                               tableName);
+
+        return new StatementCommand(StatementTypes.ANALYZE, args, null, names);
+    }
+
     public static Statement getAutoCheckpointStatement(Database database) {
 
         HsqlName[] names = database.schemaManager.getCatalogAndBaseTableNames();
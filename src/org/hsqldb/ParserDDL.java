@@ -38,6 +38,7 @@ import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.error.HsqlException;
 import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexAVLHash;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.List;
@@ -58,7 +59,7 @@ import org.hsqldb.types.UserTypeModifier;
  * Parser for DDL statements
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public class ParserDDL extends ParserRoutine {
@@ -1576,6 +1577,8 @@ public class ParserDDL extends ParserRoutine {
 
         Table    table;
         HsqlName indexHsqlName;
+        boolean  hash       = false;
+        boolean  normalized = false;
 
         read();
 
@@ -1585,7 +1588,9 @@ public class ParserDDL extends ParserRoutine {
 
         if (database.sqlSyntaxMys) {
             if (readIfThis(Tokens.USING)) {
-                if (!readIfThis("HASH")) {
+                if (readIfThis("HASH")) {
+                    hash = true;
+                } else {
                     readThis("BTREE");
                 }
             }
@@ -1607,11 +1612,44 @@ public class ParserDDL extends ParserRoutine {
 
         indexHsqlName.schema = table.getSchemaName();
 
-        int[] indexColumns = readColumnList(table, true);
+        Expression[] keys         = readIndexKeyList();
+        int[]        indexColumns = new int[keys.length];
+        boolean      hasKeys      = false;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].getType() == OpTypes.COLUMN) {
+                indexColumns[i] = table.getColumnIndex(keys[i].getColumnName());
+
+                if (ArrayUtil.find(indexColumns, indexColumns[i]) < i) {
+                    throw Error.error(
+                        ErrorCode.X_42577,
+                        keys[i].getColumnName());
+                }
+
+                keys[i] = null;
+            } else {
+                indexColumns[i] = table.getColumnCount() + i;
+                hasKeys         = true;
+            }
+        }
+
+        if (!hasKeys) {
+            keys = null;
+        }
+
+        int[] includeColumns = null;
+
+        if (readIfThis("INCLUDE")) {
+            includeColumns = readColumnList(table, false);
+        }
 
         if (database.sqlSyntaxMys) {
             if (readIfThis(Tokens.USING)) {
-                if (!readIfThis("HASH")) {
+                if (readIfThis("HASH")) {
+                    hash = true;
+                } else if (readIfThis("NORMALIZED")) {
+                    normalized = true;
+                } else {
                     readThis("BTREE");
                 }
             }
@@ -1619,12 +1657,50 @@ public class ParserDDL extends ParserRoutine {
             if (readIfThis(Tokens.COMMENT)) {
                 indexHsqlName.comment = readQuotedString();
             }
+        } else if (readIfThis(Tokens.USING)) {
+            if (readIfThis("NORMALIZED")) {
+                normalized = true;
+            } else {
+                readThis("HASH");
+
+                hash = true;
+            }
+        }
+
+        Expression condition = null;
+
+        if (readIfThis(Tokens.WHERE)) {
+            condition = XreadBooleanValueExpression();
+        }
+
+        if (compileContext.getParameters().length > 0) {
+            throw Error.error(ErrorCode.X_42512);
+        }
+
+        // expression keys are checked when the index is created
+        if (hash && !hasKeys) {
+            Type[] colTypes = new Type[indexColumns.length];
+
+            ArrayUtil.projectRow(
+                table.getColumnTypes(),
+                indexColumns,
+                colTypes);
+
+            // MySQL accepts USING HASH for any engine and ignores it
+            if (!IndexAVLHash.isHashable(table, colTypes)) {
+                if (!database.sqlSyntaxMys) {
+                    throw Error.error(ErrorCode.X_0A501, "HASH");
+                }
+
+                hash = false;
+            }
         }
 
         String   sql  = getLastPart();
         Object[] args = new Object[] {
             table, indexColumns, indexHsqlName, Boolean.valueOf(
-                unique), null, ifNotExists
+                unique), null, ifNotExists, Boolean.valueOf(hash), condition,
+            keys, includeColumns, Boolean.valueOf(normalized)
         };
 
         return new StatementSchema(
@@ -1635,6 +1711,67 @@ public class ParserDDL extends ParserRoutine {
             new HsqlName[]{ database.getCatalogName(), table.getName() });
     }
 
+    /**
+     * Reads the key list of CREATE INDEX. Each key is a column name or an
+     * expression on the columns of the table, optionally followed by ASC or
+     * DESC. A column name is returned as an unresolved column expression.
+     */
+    private Expression[] readIndexKeyList() {
+
+        HsqlArrayList<Expression> list = new HsqlArrayList<>();
+
+        readThis(Tokens.OPENBRACKET);
+
+        while (true) {
+            int        position = getPosition();
+            String     name     = token.tokenString;
+            boolean    isName   = isSimpleName()
+                                  || session.isProcessingScript();
+            Expression e        = null;
+
+            read();
+
+            if (isName) {
+                switch (token.tokenType) {
+
+                    case Tokens.COMMA :
+                    case Tokens.CLOSEBRACKET :
+                    case Tokens.ASC :
+                    case Tokens.DESC :
+                        e = new ExpressionColumn(null, null, name);
+                        break;
+                }
+            }
+
+            if (e == null) {
+                rewind(position);
+
+                e = XreadValueExpression();
+            }
+
+            list.add(e);
+
+            if (token.tokenType == Tokens.ASC
+                    || token.tokenType == Tokens.DESC) {
+                read();
+            }
+
+            if (readIfThis(Tokens.COMMA)) {
+                continue;
+            }
+
+            break;
+        }
+
+        readThis(Tokens.CLOSEBRACKET);
+
+        Expression[] keys = new Expression[list.size()];
+
+        list.toArray(keys);
+
+        return keys;
+    }
+
     StatementSchema compileCreateSchema() {
 
         HsqlName schemaName       = null;
@@ -51,7 +51,7 @@ import org.hsqldb.types.Type;
  * Parser for SQL stored procedures and functions - PSM
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public class ParserRoutine extends ParserTable {
@@ -1202,7 +1202,9 @@ public class ParserRoutine extends ParserTable {
         return sqlState;
     }
 
-    static String[] featureStrings = new String[]{ "H901_03" };
+    static String[] featureStrings = new String[]{ "H901_03", "H901_04",
+                                                    "H901_05", "H901_06",
+                                                    "H901_07" };
 
     String parseSQLFeatureValue() {
 
@@ -53,6 +53,7 @@ import org.hsqldb.lib.OrderedIntHashSet;
 import org.hsqldb.lib.Set;
 import org.hsqldb.map.ValuePool;
 import org.hsqldb.navigator.RangeIterator;
+import org.hsqldb.navigator.RowIterator;
 import org.hsqldb.navigator.RowSetNavigatorData;
 import org.hsqldb.navigator.RowSetNavigatorDataTable;
 import org.hsqldb.persist.PersistentStore;
@@ -100,6 +101,7 @@ public class QuerySpecification extends QueryExpression {
     private int                          indexLimitExpressions;
     public int                           indexLimitData;
     private boolean                      isSimpleCount;
+    private ParallelAggregate            parallelAggregate;
     private boolean                      isSingleMemoryTable;
 
     //
@@ -1356,6 +1358,43 @@ public class QuerySpecification extends QueryExpression {
                 default :
             }
         }
+
+        if (!isGrouped && !isSimpleCount) {
+            setParallelAggregate();
+        }
+    }
+
+    private void setParallelAggregate() {
+
+        if (isGroupingSets
+                || sortAndSlice.hasOrder()
+                || sortAndSlice.hasLimit()
+                || rangeVariables.length != 1
+                || indexStartAggregates != indexLimitVisible) {
+            return;
+        }
+
+        for (int i = 0; i < indexLimitVisible; i++) {
+            if (!aggregateCheck[i]) {
+                return;
+            }
+        }
+
+        Expression[] aggregates =
+            new Expression[indexLimitExpressions - indexStartAggregates];
+
+        System.arraycopy(
+            exprColumns,
+            indexStartAggregates,
+            aggregates,
+            0,
+            aggregates.length);
+
+        parallelAggregate = ParallelAggregate.newParallelAggregate(
+            rangeVariables[0],
+            aggregates,
+            indexStartAggregates,
+            indexLimitData);
     }
 
     private void setGroupedAggregateConditions(Session session) {
@@ -1752,6 +1791,17 @@ public class QuerySpecification extends QueryExpression {
                               && !isGroupingSets)
                              ? session.resultMaxMemoryRows
                              : 0;
+        int spillRowLimit = (isAggregated
+                             && isResultGrouped
+                             && !isGroupingSets
+                             && !sortAndSlice.isGenerated
+                             && AggregateSpillTable.canSpill(
+                                 exprColumns,
+                                 indexStartAggregates,
+                                 indexLimitExpressions))
+                            ? session.resultMaxMemoryRows
+                            : 0;
+        AggregateSpillTable spill = null;
         int fullJoinIndex = 0;
         RangeIterator[] rangeIterators =
             new RangeIterator[rangeVariables.length];
@@ -1762,7 +1812,15 @@ public class QuerySpecification extends QueryExpression {
 
         session.sessionContext.rownum = 1;
 
-        for (int currentIndex = 0; ; ) {
+        int startIndex = 0;
+
+        // the scan is skipped when the aggregates were computed in parallel
+        if (parallelAggregate != null
+                && parallelAggregate.addAggregatedData(session, navigator)) {
+            startIndex = -1;
+        }
+
+        for (int currentIndex = startIndex; ; ) {
             if (currentIndex < fullJoinIndex) {
 
                 // finished current span
@@ -1847,6 +1905,9 @@ public class QuerySpecification extends QueryExpression {
 
                 if (groupData != null) {
                     data = groupData;
+                } else if (spill != null) {
+                    spill.add(data);
+                    continue;
                 }
             }
 
@@ -1872,6 +1933,10 @@ public class QuerySpecification extends QueryExpression {
 
             int rowCount = navigator.getSize();
 
+            if (rowCount == spillRowLimit && spill == null) {
+                spill = getAggregateSpillTable(session);
+            }
+
             if (rowCount == memoryRowLimit) {
                 navigator = new RowSetNavigatorDataTable(
                     session,
@@ -1904,6 +1969,12 @@ public class QuerySpecification extends QueryExpression {
             return result;
         }
 
+        if (spill != null) {
+            navigator = getSpilledAggregateResult(session, navigator, spill);
+
+            result.setNavigator(navigator);
+        }
+
         session.sessionContext.setRangeIterator(navigator);
 
         if (isGroupingSets) {
@@ -2004,7 +2075,7 @@ public class QuerySpecification extends QueryExpression {
 
         navigator.reset();
 
-        if (isAggregated) {
+        if (isAggregated && spill == null) {
             if (!isResultGrouped && navigator.getSize() == 0) {
                 Object[] data = new Object[exprColumns.length];
 
@@ -2023,22 +2094,7 @@ public class QuerySpecification extends QueryExpression {
                 }
             }
 
-            while (navigator.next()) {
-                Object[] data = navigator.getCurrent();
-
-                for (int i = indexStartAggregates; i < indexLimitExpressions;
-                        i++) {
-                    data[i] = exprColumns[i].getAggregatedValue(
-                        session,
-                        (SetFunction) data[i]);
-                }
-
-                for (int i = 0; i < indexStartAggregates; i++) {
-                    if (aggregateCheck[i]) {
-                        data[i] = exprColumns[i].getValue(session);
-                    }
-                }
-            }
+            setAggregatedValues(session, navigator);
         }
 
         navigator.reset();
@@ -2062,6 +2118,171 @@ public class QuerySpecification extends QueryExpression {
         return result;
     }
 
+    /**
+     * Replaces the aggregates in the remaining rows of the navigator with
+     * their values.
+     */
+    private void setAggregatedValues(
+            Session session,
+            RowSetNavigatorData navigator) {
+
+        while (navigator.next()) {
+            Object[] data = navigator.getCurrent();
+
+            for (int i = indexStartAggregates; i < indexLimitExpressions;
+                    i++) {
+                data[i] = exprColumns[i].getAggregatedValue(
+                    session,
+                    (SetFunction) data[i]);
+            }
+
+            for (int i = 0; i < indexStartAggregates; i++) {
+                if (aggregateCheck[i]) {
+                    data[i] = exprColumns[i].getValue(session);
+                }
+            }
+        }
+    }
+
+    private AggregateSpillTable getAggregateSpillTable(Session session) {
+
+        Type[] dataTypes = new Type[indexStartAggregates];
+        int[]  groupCols = new int[groupByColumnCount];
+        ExpressionAggregate[] aggregates =
+            new ExpressionAggregate[indexLimitExpressions
+                                    - indexStartAggregates];
+
+        ArrayUtil.copyArray(resultColumnTypes, dataTypes, dataTypes.length);
+
+        for (int i = 0; i < groupByColumnCount; i++) {
+            groupCols[i] = indexLimitRowId + i;
+        }
+
+        for (int i = 0; i < aggregates.length; i++) {
+            aggregates[i] =
+                (ExpressionAggregate) exprColumns[indexStartAggregates + i];
+        }
+
+        return new AggregateSpillTable(
+            session,
+            dataTypes,
+            groupCols,
+            aggregates);
+    }
+
+    /**
+     * Aggregates the groups in memory, then the groups in each partition of
+     * the spill table, and returns a navigator with all the aggregated
+     * groups. The groups of a partition that exceed the in-memory limit are
+     * written to an overflow table that is aggregated later, or if the rows
+     * are in group order, aggregated in another batch.
+     */
+    private RowSetNavigatorData getSpilledAggregateResult(
+            Session session,
+            RowSetNavigatorData navigator,
+            AggregateSpillTable spill) {
+
+        RowSetNavigatorData result = new RowSetNavigatorDataTable(
+            session,
+            this,
+            true);
+        int batchSize = navigator.getSize();
+        HsqlArrayList<AggregateSpillTable> pending = new HsqlArrayList<>();
+
+        addAggregatedRows(session, navigator, result);
+        pending.add(spill);
+
+        while (!pending.isEmpty()) {
+            spill = pending.remove(pending.size() - 1);
+
+            for (int i = 0; i < AggregateSpillTable.partitionCount; i++) {
+                RowIterator it = spill.getRowIterator(i);
+
+                if (it == null) {
+                    continue;
+                }
+
+                RowSetNavigatorData batch = new RowSetNavigatorData(
+                    session,
+                    this);
+                AggregateSpillTable overflow = null;
+
+                try {
+                    while (it.next()) {
+                        Object[] spillData = it.getCurrent();
+                        Object[] groupData = batch.getGroupData(spillData);
+
+                        if (groupData == null) {
+                            if (batch.getSize() >= batchSize) {
+
+                                // rows of unhashable groups are in order
+                                if (!spill.isHashable) {
+                                    addAggregatedRows(session, batch, result);
+
+                                    batch = new RowSetNavigatorData(
+                                        session,
+                                        this);
+                                } else {
+                                    if (overflow == null) {
+                                        overflow = spill.getOverflowTable();
+                                    }
+
+                                    overflow.addStored(spillData);
+
+                                    continue;
+                                }
+                            }
+
+                            groupData = spill.getGroupData(
+                                spillData,
+                                indexLimitData);
+
+                            batch.add(groupData);
+                        }
+
+                        spill.updateAggregates(
+                            spillData,
+                            groupData,
+                            indexStartAggregates);
+                    }
+                } finally {
+                    it.release();
+                }
+
+                spill.release(i);
+                addAggregatedRows(session, batch, result);
+
+                if (overflow != null) {
+                    pending.add(overflow);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Replaces the aggregates in the groups of the batch with their values
+     * and adds the groups to the result.
+     */
+    private void addAggregatedRows(
+            Session session,
+            RowSetNavigatorData batch,
+            RowSetNavigatorData result) {
+
+        session.sessionContext.setRangeIterator(batch);
+        batch.reset();
+        setAggregatedValues(session, batch);
+        batch.reset();
+
+        while (batch.next()) {
+            result.add(batch.getCurrent());
+        }
+
+        session.sessionContext.unsetRangeIterator(batch);
+        batch.release();
+    }
+
     private void getSimpleCountResult(
             Session session,
             RowSetNavigatorData navigator) {
@@ -2498,6 +2719,25 @@ public class QuerySpecification extends QueryExpression {
 
         sb.append("\n").append(b).append("]\n");
 
+        if (rangeVariables.length > 1 && rangeVariables[0].estimatedRows >= 0) {
+            sb.append(b).append("join order=[");
+
+            for (int i = 0; i < rangeVariables.length; i++) {
+                RangeVariable range = rangeVariables[i];
+
+                if (i > 0) {
+                    sb.append(", ");
+                }
+
+                sb.append(
+                    range.tableAlias == null
+                    ? range.rangeTable.getName().name
+                    : range.tableAlias.name);
+            }
+
+            sb.append("]\n");
+        }
+
         for (int i = 0; i < rangeVariables.length; i++) {
             sb.append(b)
               .append("[")
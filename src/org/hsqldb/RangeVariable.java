@@ -38,6 +38,7 @@ import org.hsqldb.RangeGroup.RangeGroupSimple;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexAVL;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HashMap;
 import org.hsqldb.lib.HashSet;
@@ -121,6 +122,9 @@ public class RangeVariable {
     //
     int rangePosition;
 
+    // estimated row count of the join up to this range, or -1
+    double estimatedRows = -1;
+
     //
     boolean isViewSubquery;
 
@@ -278,6 +282,35 @@ public class RangeVariable {
         }
     }
 
+    /**
+     * Returns true if the nodes of a covering index hold all the columns of
+     * the table that are used in the statement. Only the nodes of MEMORY
+     * tables hold a copy of the covered columns.
+     */
+    boolean isCoveredBy(Index index) {
+
+        if (!index.isCovering()
+                || usedColumns == null
+                || rangeTable.isFileBased()
+                || rangeTable.isSystemVersioned()) {
+            return false;
+        }
+
+        boolean[] covered = index.getCoveredColumns();
+
+        if (covered.length != usedColumns.length) {
+            return false;
+        }
+
+        for (int i = 0; i < usedColumns.length; i++) {
+            if (usedColumns[i] && !covered[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     public void addNamedJoinColumnExpression(
             String name,
             Expression e,
@@ -1156,6 +1189,13 @@ public class RangeVariable {
           .append(rangeTable.getRowStore(session).elementCount())
           .append("\n");
 
+        if (estimatedRows >= 0) {
+            sb.append(b)
+              .append("estimated rows=")
+              .append((long) Math.ceil(estimatedRows))
+              .append("\n");
+        }
+
         boolean fullScan = !conditions[0].hasIndexCondition();
 
         sb.append(b);
@@ -1172,9 +1212,21 @@ public class RangeVariable {
             }
         }
 
-        sb.append("access=").append(fullScan
-                                    ? "FULL SCAN"
-                                    : "INDEX PRED").append("\n");
+        String access = fullScan
+                        ? "FULL SCAN"
+                        : "INDEX PRED";
+
+        if (conditions[0].isHashJoin()) {
+            access = "HASH JOIN";
+        } else if (conditions[0].isMergeJoin) {
+            access = "MERGE JOIN";
+        } else if (isCoveredBy(conditions[0].rangeIndex)) {
+            access = fullScan
+                     ? "INDEX ONLY SCAN"
+                     : "INDEX ONLY PRED";
+        }
+
+        sb.append("access=").append(access).append("\n");
 
         for (int i = 0; i < conditions.length; i++) {
             if (i > 0) {
@@ -1339,6 +1391,10 @@ public class RangeVariable {
         //
         Object[] currentJoinData = null;
 
+        //
+        HashJoinTable   hashTable;
+        MergeJoinCursor mergeCursor;
+
         RangeIteratorMain() {
             super();
         }
@@ -1437,6 +1493,12 @@ public class RangeVariable {
 
             rangeVar.rangeTable.materialiseCorrelated(session);
 
+            if (conditions[condIndex].isHashJoin()) {
+                getHashJoinRows();
+
+                return;
+            }
+
             if (conditions[condIndex].indexCond == null) {
                 if (conditions[condIndex].reversed) {
                     it = conditions[condIndex].rangeIndex.lastRow(
@@ -1453,12 +1515,21 @@ public class RangeVariable {
                         null);
                 }
             } else {
-                getFirstRow();
+                if (conditions[condIndex].isMergeJoin) {
+                    getMergeJoinRows();
+                } else {
+                    getFirstRow();
+                }
 
                 if (!conditions[condIndex].isJoin) {
                     hasLeftOuterRow = false;
                 }
             }
+
+            if (it instanceof IndexAVL.IndexRowIterator
+                    && rangeVar.isCoveredBy(conditions[condIndex].rangeIndex)) {
+                ((IndexAVL.IndexRowIterator) it).setIndexOnly();
+            }
         }
 
         private void getFirstRow() {
@@ -1568,6 +1639,92 @@ public class RangeVariable {
                 null);
         }
 
+        /**
+         * Probes the hash table, which is built on first use, with the
+         * values of the outer join expressions.
+         */
+        private void getHashJoinRows() {
+
+            RangeVariableConditions condition = conditions[condIndex];
+            Expression[]            exprs     = condition.hashJoinExpressions;
+
+            if (currentJoinData == null
+                    || currentJoinData.length < exprs.length) {
+                currentJoinData = new Object[exprs.length];
+            }
+
+            for (int i = 0; i < exprs.length; i++) {
+                Object value = exprs[i].getValue(session);
+
+                if (value == null) {
+                    it = RowIterator.emptyRowIterator;
+
+                    return;
+                }
+
+                currentJoinData[i] = value;
+            }
+
+            if (hashTable == null) {
+                hashTable = new HashJoinTable(
+                    session,
+                    rangeVar,
+                    store,
+                    condition);
+            }
+
+            it = hashTable.findRows(currentJoinData);
+        }
+
+        /**
+         * Moves the cursor on the inner index forward to the value of the
+         * outer join column.
+         */
+        private void getMergeJoinRows() {
+
+            Expression condition  = conditions[condIndex].indexCond[0];
+            Type       valueType  = condition.getRightNode().getDataType();
+            Type       targetType = condition.getLeftNode().getDataType();
+            Object     value      = condition.getRightNode().getValue(session);
+
+            if (value == null) {
+                it = RowIterator.emptyRowIterator;
+
+                return;
+            }
+
+            if (targetType != valueType) {
+                if (targetType.compareToTypeRange(value) != 0) {
+                    it = RowIterator.emptyRowIterator;
+
+                    return;
+                }
+
+                if (targetType.typeComparisonGroup
+                        != valueType.typeComparisonGroup) {
+                    value = targetType.convertToType(session, value, valueType);
+                }
+            }
+
+            if (mergeCursor == null) {
+                mergeCursor = new MergeJoinCursor(
+                    session,
+                    store,
+                    conditions[condIndex].rangeIndex);
+            }
+
+            it = mergeCursor.findRows(value);
+        }
+
+        public void release() {
+
+            super.release();
+
+            if (mergeCursor != null) {
+                mergeCursor.release();
+            }
+        }
+
         /**
          * Advances to the next available value. <p>
          *
@@ -1930,6 +2087,9 @@ public class RangeVariable {
         boolean             isFalse;
         boolean             reversed;
         boolean             hasIndex;
+        int[]               hashJoinColumns;
+        Expression[]        hashJoinExpressions;
+        boolean             isMergeJoin;
 
         RangeVariableConditions(RangeVariable rangeVar, boolean isJoin) {
             this.rangeVar = rangeVar;
@@ -1950,6 +2110,20 @@ public class RangeVariable {
             return hasIndex;
         }
 
+        boolean isHashJoin() {
+            return hashJoinColumns != null;
+        }
+
+        /**
+         * Sets the columns of this range and the expressions on the outer
+         * ranges that are used for a hash join. The equality conditions
+         * remain in the nonIndexCondition.
+         */
+        void setHashJoin(int[] columns, Expression[] expressions) {
+            hashJoinColumns     = columns;
+            hashJoinExpressions = expressions;
+        }
+
         void addCondition(Expression e) {
 
             if (e == null) {
@@ -2257,6 +2431,25 @@ public class RangeVariable {
 
             sb.append("index=").append(rangeIndex.getName().name).append("\n");
 
+            if (isHashJoin()) {
+                sb.append(b).append("hash keys=[");
+
+                for (int j = 0; j < hashJoinExpressions.length; j++) {
+                    if (j > 0) {
+                        sb.append(b);
+                    }
+
+                    sb.append(rangeVar.getColumn(hashJoinColumns[j])
+                                      .getName()
+                                      .statementName)
+                      .append(" = ")
+                      .append(hashJoinExpressions[j].describe(session,
+                              blanks));
+                }
+
+                sb.append("]\n");
+            }
+
             if (hasIndexCondition()) {
                 if (indexedColumnCount > 0) {
                     sb.append(b).append("start conditions=[");
@@ -2348,6 +2541,16 @@ public class RangeVariable {
                     range,
                     list);
             }
+
+            if (hashJoinExpressions != null) {
+                for (int i = 0; i < hashJoinExpressions.length; i++) {
+                    hashJoinExpressions[i] =
+                        hashJoinExpressions[i].replaceColumnReferences(
+                            session,
+                            range,
+                            list);
+                }
+            }
         }
 
         private void replaceExpressions(
@@ -2397,6 +2600,15 @@ public class RangeVariable {
                     expressions,
                     resultRangePosition);
             }
+
+            if (hashJoinExpressions != null) {
+                for (int i = 0; i < hashJoinExpressions.length; i++) {
+                    hashJoinExpressions[i] =
+                        hashJoinExpressions[i].replaceExpressions(
+                            expressions,
+                            resultRangePosition);
+                }
+            }
         }
     }
 }
@@ -47,13 +47,14 @@ import org.hsqldb.lib.MultiValueHashMap;
 import org.hsqldb.lib.OrderedHashSet;
 import org.hsqldb.lib.OrderedIntHashSet;
 import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.Type;
 
 /**
  * Determines how JOIN and WHERE expressions are used in query
  * processing and which indexes are used for table access.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public class RangeVariableResolver {
@@ -96,6 +97,9 @@ public class RangeVariableResolver {
     MultiValueHashMap<ColumnSchema, Expression> tempMultiMap =
         new MultiValueHashMap<>();
 
+    // partial indexes usable for the range variable being processed
+    Index[] partialIndexes = Index.emptyArray;
+
     RangeVariableResolver(Session session, QuerySpecification select) {
 
         this.session        = session;
@@ -157,7 +161,7 @@ public class RangeVariableResolver {
 
     void processConditions() {
 
-        if (session.sessionOptimization < 8) {
+        if ((session.sessionOptimization & Session.FEATURE_REORDER) == 0) {
             reorder = false;
         }
 
@@ -252,6 +256,8 @@ public class RangeVariableResolver {
         reorder();
         assignToLists();
         assignToRangeVariables();
+        setHashJoinConditions();
+        setMergeJoinConditions();
 
         // rangePositionInJoin and the two bounds are used only together, regardless of any IN ranges added
         if (select != null) {
@@ -625,6 +631,13 @@ public class RangeVariableResolver {
             return;
         }
 
+        if ((session.sessionOptimization & Session.FEATURE_JOIN_ORDER) != 0
+                && firstLeftJoinIndex <= JoinOrderEnumerator.MAX_RANGE_COUNT) {
+            reorderByCost();
+
+            return;
+        }
+
         HsqlArrayList<Expression> joins  = new HsqlArrayList<>();
         HsqlArrayList<Expression> starts = new HsqlArrayList<>();
 
@@ -642,7 +655,140 @@ public class RangeVariableResolver {
             }
         }
 
-        reorderRanges(starts, joins);
+        if (starts.isEmpty()) {
+            reorderForHashJoin(joins);
+        } else {
+            reorderRanges(starts, joins);
+        }
+    }
+
+    /**
+     * Orders the inner joined ranges by the estimated cost of the join and
+     * sets the estimated row counts of the ranges. The order in the FROM
+     * clause is kept unless another order has a lower cost.
+     */
+    void reorderByCost() {
+
+        HsqlArrayList<Expression> conditions = new HsqlArrayList<>();
+
+        for (int i = 0; i < firstLeftJoinIndex; i++) {
+            conditions.addAll(tempJoinExpressions[i]);
+        }
+
+        boolean useHashJoin = select != null
+                              && (session.sessionOptimization
+                                  & Session.FEATURE_HASH_JOIN) != 0;
+        JoinOrderEnumerator enumerator = new JoinOrderEnumerator(
+            session,
+            rangeVariables,
+            firstLeftJoinIndex,
+            conditions,
+            useHashJoin);
+        int[] order    = enumerator.getOrder();
+        int[] original = new int[firstLeftJoinIndex];
+
+        ArrayUtil.fillSequence(original);
+
+        if (enumerator.getCost(order) >= enumerator.getCost(original)) {
+            order = original;
+        }
+
+        double[]        rowCounts = enumerator.getRowCounts(order);
+        RangeVariable[] newRanges = new RangeVariable[firstLeftJoinIndex];
+
+        for (int i = 0; i < firstLeftJoinIndex; i++) {
+            newRanges[i]               = rangeVariables[order[i]];
+            newRanges[i].estimatedRows = rowCounts[i];
+        }
+
+        if (order == original) {
+            return;
+        }
+
+        ArrayUtil.copyArray(newRanges, rangeVariables, firstLeftJoinIndex);
+
+        for (int i = 0; i < firstLeftJoinIndex; i++) {
+            tempJoinExpressions[i].clear();
+        }
+
+        tempJoinExpressions[firstLeftJoinIndex - 1].addAll(conditions);
+        rangeVarSet.clear();
+
+        for (int i = 0; i < rangeVariables.length; i++) {
+            rangeVarSet.add(rangeVariables[i]);
+        }
+    }
+
+    /**
+     * When two tables are joined without any usable index, the hash table is
+     * built on the inner range. The larger table is moved to the outer
+     * position.
+     */
+    void reorderForHashJoin(HsqlArrayList<Expression> joins) {
+
+        if ((session.sessionOptimization & Session.FEATURE_HASH_JOIN) == 0) {
+            return;
+        }
+
+        if (select == null || joins.isEmpty()) {
+            return;
+        }
+
+        if (rangeVariables.length != 2 || firstLeftJoinIndex != 2) {
+            return;
+        }
+
+        for (int i = 0; i < rangeVariables.length; i++) {
+            RangeVariable range = rangeVariables[i];
+
+            if (!isHashJoinTable(range.rangeTable)) {
+                return;
+            }
+
+            OrderedIntHashSet set = new OrderedIntHashSet();
+
+            for (int j = 0; j < joins.size(); j++) {
+                Expression e = joins.get(j);
+
+                if (e.getLeftNode().getRangeVariable() == range) {
+                    set.add(e.getLeftNode().getColumnIndex());
+                } else if (e.getRightNode().getRangeVariable() == range) {
+                    set.add(e.getRightNode().getColumnIndex());
+                }
+            }
+
+            IndexUse[] indexes = range.rangeTable.getIndexForColumns(
+                session,
+                set,
+                OpTypes.EQUAL,
+                false);
+
+            if (indexes.length > 0) {
+                return;
+            }
+        }
+
+        long outerCount =
+            rangeVariables[0].rangeTable.getRowStore(session).elementCount();
+        long innerCount =
+            rangeVariables[1].rangeTable.getRowStore(session).elementCount();
+
+        if (innerCount <= outerCount) {
+            return;
+        }
+
+        RangeVariable range = rangeVariables[0];
+
+        rangeVariables[0] = rangeVariables[1];
+        rangeVariables[1] = range;
+
+        tempJoinExpressions[1].addAll(tempJoinExpressions[0]);
+        tempJoinExpressions[0].clear();
+        rangeVarSet.clear();
+
+        for (int i = 0; i < rangeVariables.length; i++) {
+            rangeVarSet.add(rangeVariables[i]);
+        }
     }
 
     void reorderRanges(
@@ -927,7 +1073,15 @@ public class RangeVariableResolver {
                 conditions = rangeVariables[i].joinConditions[0];
 
                 joinExpressions[i].addAll(whereExpressions[i]);
+
+                partialIndexes = getPartialIndexes(
+                    rangeVariables[i],
+                    joinExpressions[i]);
+
                 setIndexConditions(conditions, joinExpressions[i], i, true);
+
+                partialIndexes = Index.emptyArray;
+
                 assignToRangeVariable(conditions, joinExpressions[i]);
             } else {
                 conditions = rangeVariables[i].joinConditions[0];
@@ -976,6 +1130,328 @@ public class RangeVariableResolver {
         }
     }
 
+    /**
+     * Returns the partial indexes of the table of the range variable with a
+     * WHERE condition that is implied by the conditions in the list. Each
+     * AND term of the index condition must be one of the conditions, or an
+     * IS NOT NULL term on a column compared in one of the conditions.
+     */
+    private Index[] getPartialIndexes(
+            RangeVariable range,
+            List<Expression> exprList) {
+
+        Index[] indexes = range.rangeTable.getIndexList();
+        Index[] list    = Index.emptyArray;
+
+        for (int i = 0; i < indexes.length; i++) {
+            Expression condition = indexes[i].getCondition();
+
+            if (condition == null) {
+                continue;
+            }
+
+            HsqlArrayList<Expression> terms = new HsqlArrayList<>();
+            RangeVariable[] indexRanges = new RangeVariable[]{
+                indexes[i].getConditionRange() };
+            RangeVariable[] queryRanges = new RangeVariable[]{ range };
+            boolean         implied     = true;
+
+            decomposeAndConditions(session, condition.duplicate(), terms);
+
+            for (int j = 0; j < terms.size(); j++) {
+                Expression e = terms.get(j);
+
+                e.replaceRangeVariables(indexRanges, queryRanges);
+
+                if (!isImpliedCondition(e, exprList)) {
+                    implied = false;
+                    break;
+                }
+            }
+
+            if (implied) {
+                list = (Index[]) ArrayUtil.resizeArray(list, list.length + 1);
+                list[list.length - 1] = indexes[i];
+            }
+        }
+
+        return list;
+    }
+
+    private static boolean isImpliedCondition(
+            Expression e,
+            List<Expression> exprList) {
+
+        for (int i = 0, size = exprList.size(); i < size; i++) {
+            if (e.equals(exprList.get(i))) {
+                return true;
+            }
+        }
+
+        if (e.getType() != OpTypes.NOT
+                || e.getLeftNode().getType() != OpTypes.IS_NULL) {
+            return false;
+        }
+
+        Expression column = e.getLeftNode().getLeftNode();
+
+        if (column.getType() != OpTypes.COLUMN) {
+            return false;
+        }
+
+        // a comparison that is true implies the column is not null
+        for (int i = 0, size = exprList.size(); i < size; i++) {
+            Expression condition = exprList.get(i);
+
+            if (condition == null
+                    || condition.getSubType() == OpTypes.ANY_QUANTIFIED
+                    || condition.getSubType() == OpTypes.ALL_QUANTIFIED) {
+                continue;
+            }
+
+            switch (condition.getType()) {
+
+                case OpTypes.EQUAL :
+                case OpTypes.SMALLER :
+                case OpTypes.SMALLER_EQUAL :
+                case OpTypes.GREATER :
+                case OpTypes.GREATER_EQUAL :
+                    if (column.equals(condition.getLeftNode())
+                            || column.equals(condition.getRightNode())) {
+                        return true;
+                    }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns a partial index or the best table index with the column as the
+     * first column.
+     */
+    private Index getIndexForColumn(
+            RangeVariableConditions conditions,
+            int colIndex) {
+
+        for (int i = 0; i < partialIndexes.length; i++) {
+            if (partialIndexes[i].getKeyExpressions() == null
+                    && partialIndexes[i].getColumns()[0] == colIndex) {
+                return partialIndexes[i];
+            }
+        }
+
+        return conditions.rangeVar.rangeTable.getIndexForColumn(
+            session,
+            colIndex);
+    }
+
+    /**
+     * Uses an index on expressions when the conditions compare its keys with
+     * values that do not depend on the range variable. The index with the
+     * most leading keys compared for equality is used. Otherwise, an index
+     * with a range condition on its first key is used.
+     */
+    private void setExpressionIndexConditions(
+            RangeVariableConditions conditions,
+            List<Expression> exprList) {
+
+        Index[]      indexes   = conditions.rangeVar.rangeTable.getIndexList();
+        Index        bestIndex = null;
+        Expression[] bestKeys  = null;
+        Expression[] bestList  = null;
+        int          bestCount = 0;
+        int          bestScore = 0;
+
+        for (int i = 0; i < partialIndexes.length + indexes.length; i++) {
+            Index index;
+
+            if (i < partialIndexes.length) {
+                index = partialIndexes[i];
+            } else {
+                index = indexes[i - partialIndexes.length];
+
+                if (index.getCondition() != null) {
+                    continue;
+                }
+            }
+
+            if (index.getKeyExpressions() == null) {
+                continue;
+            }
+
+            Expression[] keys  = getKeyExpressions(index, conditions.rangeVar);
+            Expression[] list  = new Expression[keys.length];
+            int          count = 0;
+            int          score;
+
+            for (; count < keys.length; count++) {
+                list[count] = getKeyCondition(
+                    conditions.rangeVar,
+                    exprList,
+                    keys[count],
+                    index.getColumns()[count],
+                    true);
+
+                if (list[count] == null) {
+                    break;
+                }
+            }
+
+            score = count * 2;
+
+            if (count == 0) {
+                list[0] = getKeyCondition(
+                    conditions.rangeVar,
+                    exprList,
+                    keys[0],
+                    index.getColumns()[0],
+                    false);
+
+                if (list[0] == null) {
+                    continue;
+                }
+
+                count = 1;
+                score = 1;
+            }
+
+            if (score > bestScore) {
+                bestIndex = index;
+                bestKeys  = keys;
+                bestList  = list;
+                bestCount = count;
+                bestScore = score;
+            }
+        }
+
+        if (bestIndex == null) {
+            return;
+        }
+
+        for (int i = 0; i < bestCount; i++) {
+            Expression e = bestList[i];
+
+            if (!isKeyNode(
+                    conditions.rangeVar,
+                    e.getLeftNode(),
+                    bestKeys[i],
+                    bestIndex.getColumns()[i])) {
+                ((ExpressionLogical) e).swapCondition();
+            }
+
+            for (int j = 0; j < exprList.size(); j++) {
+                if (exprList.get(j) == e) {
+                    exprList.set(j, null);
+                    break;
+                }
+            }
+        }
+
+        conditions.addIndexCondition(bestList, bestIndex, bestCount);
+    }
+
+    /**
+     * Returns the key expressions of the index resolved against the range
+     * variable of the query, with a null element for each column key.
+     */
+    private static Expression[] getKeyExpressions(
+            Index index,
+            RangeVariable range) {
+
+        Expression[]    keys        = index.getKeyExpressions();
+        Expression[]    list        = new Expression[keys.length];
+        RangeVariable[] indexRanges = new RangeVariable[]{
+            index.getConditionRange() };
+        RangeVariable[] queryRanges = new RangeVariable[]{ range };
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                list[i] = keys[i].duplicate();
+
+                list[i].replaceRangeVariables(indexRanges, queryRanges);
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Returns a comparison in the list between the key and a value that does
+     * not reference the range variable. The key is a column when the key
+     * expression is null.
+     */
+    private static Expression getKeyCondition(
+            RangeVariable range,
+            List<Expression> exprList,
+            Expression key,
+            int colIndex,
+            boolean isEqual) {
+
+        for (int i = 0, size = exprList.size(); i < size; i++) {
+            Expression e = exprList.get(i);
+
+            if (e == null
+                    || e.getSubType() == OpTypes.ANY_QUANTIFIED
+                    || e.getSubType() == OpTypes.ALL_QUANTIFIED) {
+                continue;
+            }
+
+            switch (e.getType()) {
+
+                case OpTypes.EQUAL :
+                    if (!isEqual) {
+                        continue;
+                    }
+                    break;
+
+                case OpTypes.SMALLER :
+                case OpTypes.SMALLER_EQUAL :
+                case OpTypes.GREATER :
+                case OpTypes.GREATER_EQUAL :
+                    if (isEqual) {
+                        continue;
+                    }
+                    break;
+
+                default :
+                    continue;
+            }
+
+            Expression left  = e.getLeftNode();
+            Expression right = e.getRightNode();
+
+            if (isKeyNode(range, left, key, colIndex)
+                    && !right.hasReference(range)
+                    && !right.isCorrelated()) {
+                return e;
+            }
+
+            if (isKeyNode(range, right, key, colIndex)
+                    && !left.hasReference(range)
+                    && !left.isCorrelated()) {
+                return e;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean isKeyNode(
+            RangeVariable range,
+            Expression node,
+            Expression key,
+            int colIndex) {
+
+        if (key == null) {
+            return node.getType() == OpTypes.COLUMN
+                   && node.getRangeVariable() == range
+                   && node.getColumnIndex() == colIndex;
+        }
+
+        return key.equals(node);
+    }
+
     private void collectIndexableColumns(
             RangeVariable range,
             List<Expression> exprList) {
@@ -1132,7 +1608,18 @@ public class RangeVariableResolver {
 
         hasIndex = conditions.hasIndex();
 
-        if (!hasIndex) {
+        if (!hasIndex && !(rangeVarIndex == 0 && sortAndSlice.usingIndex)) {
+            setExpressionIndexConditions(conditions, exprList);
+
+            hasIndex = conditions.hasIndex();
+        }
+
+        if (!hasIndex
+                && !isInConditionPreferred(
+                    conditions,
+                    exprList,
+                    rangeVarIndex,
+                    includeOr)) {
             setNonEqualityConditions(conditions, exprList, rangeVarIndex);
 
             hasIndex = conditions.hasIndex();
@@ -1186,7 +1673,8 @@ public class RangeVariableResolver {
                             session,
                             set,
                             OpTypes.EQUAL,
-                            false);
+                            false,
+                            partialIndexes);
 
                     // code to disable IN optimisation
                     // index = null;
@@ -1337,7 +1825,8 @@ public class RangeVariableResolver {
                     session,
                     colIndexSetEqual,
                     OpTypes.EQUAL,
-                    false);
+                    false,
+                    partialIndexes);
 
             if (indexes.length == 0) {
                 return;
@@ -1349,14 +1838,21 @@ public class RangeVariableResolver {
 
             if (indexes.length > 1) {
                 for (int i = 0; i < indexes.length; i++) {
-                    PersistentStore store =
-                        conditions.rangeVar.rangeTable.getRowStore(
-                            session);
-                    double currentCost = store.searchCost(
-                        session,
+                    Table table = conditions.rangeVar.rangeTable;
+                    PersistentStore store = table.getRowStore(session);
+                    double currentCost = getEqualityRowCount(
+                        table,
+                        store,
                         indexes[i].index,
-                        indexes[i].columnCount,
-                        OpTypes.EQUAL);
+                        indexes[i].columnCount);
+
+                    if (currentCost < 0) {
+                        currentCost = store.searchCost(
+                            session,
+                            indexes[i].index,
+                            indexes[i].columnCount,
+                            OpTypes.EQUAL);
+                    }
 
                     if (currentCost < cost) {
                         cost  = currentCost;
@@ -1435,8 +1931,8 @@ public class RangeVariableResolver {
             return;
         }
 
-        int               currentCount = 0;
-        Index             index        = null;
+        double            currentFraction = Double.MAX_VALUE;
+        Index             index           = null;
         Iterator<Integer> it;
 
         if (rangeVarIndex == 0 && sortAndSlice.usingIndex) {
@@ -1448,17 +1944,19 @@ public class RangeVariableResolver {
 
             while (it.hasNext()) {
                 int colIndex = it.nextInt();
-                int colCount = colIndexSetOther.get(colIndex, 0);
+                double fraction = getRangeFraction(
+                    conditions,
+                    exprList,
+                    colIndex);
 
-                if (colCount > currentCount) {
-                    Index currentIndex =
-                        conditions.rangeVar.rangeTable.getIndexForColumn(
-                            session,
-                            colIndex);
+                if (fraction < currentFraction) {
+                    Index currentIndex = getIndexForColumn(
+                        conditions,
+                        colIndex);
 
                     if (currentIndex != null) {
-                        index        = currentIndex;
-                        currentCount = colCount;
+                        index           = currentIndex;
+                        currentFraction = fraction;
                     }
                 }
             }
@@ -1520,6 +2018,441 @@ public class RangeVariableResolver {
         }
     }
 
+    /**
+     * Returns the estimated fraction of rows selected by the range conditions
+     * on a column. When the column has statistics collected by ANALYZE, the
+     * histogram is used for conditions with constant bounds. Otherwise each
+     * condition is assumed to select one third of the rows.
+     */
+    private double getRangeFraction(
+            RangeVariableConditions conditions,
+            List<Expression> exprList,
+            int colIndex) {
+
+        ColumnSchema column =
+            conditions.rangeVar.rangeTable.getColumn(colIndex);
+        ColumnStatistics statistics = column.getStatistics();
+
+        if (statistics == null) {
+            return Math.pow(1.0 / 3, colIndexSetOther.get(colIndex, 0));
+        }
+
+        Type   type     = column.getDataType();
+        double low      = 0;
+        double high     = 1 - statistics.getNullFraction();
+        double fraction = 1;
+
+        for (int j = 0; j < exprList.size(); j++) {
+            Expression e = exprList.get(j);
+
+            if (e == null || !e.isIndexable(conditions.rangeVar)) {
+                continue;
+            }
+
+            switch (e.getType()) {
+
+                case OpTypes.SMALLER :
+                case OpTypes.SMALLER_EQUAL :
+                case OpTypes.GREATER :
+                case OpTypes.GREATER_EQUAL :
+                case OpTypes.GREATER_EQUAL_PRE :
+                    break;
+
+                default :
+                    continue;
+            }
+
+            Expression left = e.getLeftNode();
+
+            if (left.getRangeVariable() != conditions.rangeVar
+                    || left.getColumnIndex() != colIndex) {
+                continue;
+            }
+
+            Expression right = e.getRightNode();
+            double     value = -1;
+
+            if (right != null && right.getType() == OpTypes.VALUE) {
+                value = statistics.getSmallerFraction(
+                    session,
+                    type,
+                    right.getValue(session),
+                    right.getDataType());
+            }
+
+            if (value < 0) {
+                fraction /= 3;
+                continue;
+            }
+
+            if (e.getType() == OpTypes.SMALLER
+                    || e.getType() == OpTypes.SMALLER_EQUAL) {
+                high = Math.min(high, value);
+            } else {
+                low = Math.max(low, value);
+            }
+        }
+
+        return Math.max(0, high - low) * fraction;
+    }
+
+    /**
+     * Returns true if the statistics collected by ANALYZE show that an IN
+     * list condition on an indexed column selects fewer rows than the range
+     * conditions that would otherwise be used with an index.
+     */
+    private boolean isInConditionPreferred(
+            RangeVariableConditions conditions,
+            List<Expression> exprList,
+            int rangeVarIndex,
+            boolean includeOr) {
+
+        if (!includeOr || colIndexSetOther.isEmpty()) {
+            return false;
+        }
+
+        if (rangeVarIndex == 0 && sortAndSlice.usingIndex) {
+            return false;
+        }
+
+        if (rangeVarIndex >= firstLeftJoinIndex
+                || firstRightJoinIndex != rangeVariables.length
+                || inExpressions[rangeVarIndex] != null) {
+            return false;
+        }
+
+        Table  table      = conditions.rangeVar.rangeTable;
+        double inFraction = Double.MAX_VALUE;
+
+        for (int j = 0, size = exprList.size(); j < size; j++) {
+            Expression e = exprList.get(j);
+
+            if (e == null || e.getType() != OpTypes.EQUAL
+                    || e.exprSubType != OpTypes.ANY_QUANTIFIED) {
+                continue;
+            }
+
+            Expression left  = e.getLeftNode();
+            Expression right = e.getRightNode();
+
+            if (right.getType() != OpTypes.VALUELIST || right.isCorrelated()) {
+                continue;
+            }
+
+            if (left.getType() == OpTypes.ROW && left.nodes.length == 1) {
+                left = left.nodes[0];
+            }
+
+            if (left.getType() != OpTypes.COLUMN
+                    || left.getRangeVariable() != conditions.rangeVar) {
+                continue;
+            }
+
+            int colIndex = left.getColumnIndex();
+            ColumnStatistics statistics =
+                table.getColumn(colIndex).getStatistics();
+
+            if (statistics == null
+                    || table.getIndexForColumn(session, colIndex) == null) {
+                continue;
+            }
+
+            double fraction = right.nodes.length
+                              * statistics.getEqualFraction();
+
+            inFraction = Math.min(inFraction, fraction);
+        }
+
+        if (inFraction == Double.MAX_VALUE) {
+            return false;
+        }
+
+        Iterator<Integer> it = colIndexSetOther.keySet().iterator();
+
+        while (it.hasNext()) {
+            int colIndex = it.nextInt();
+
+            if (table.getIndexForColumn(session, colIndex) == null) {
+                continue;
+            }
+
+            if (getRangeFraction(conditions, exprList, colIndex)
+                    <= inFraction) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the estimated count of rows for equality conditions on the
+     * first columns of an index, based on the statistics collected by
+     * ANALYZE, or -1 if a column has no statistics.
+     */
+    static double getEqualityRowCount(
+            Table table,
+            PersistentStore store,
+            Index index,
+            int count) {
+
+        int[]  cols     = index.getColumns();
+        double fraction = 1;
+
+        for (int i = 0; i < count; i++) {
+            ColumnStatistics statistics =
+                table.getColumn(cols[i]).getStatistics();
+
+            if (statistics == null) {
+                return -1;
+            }
+
+            fraction *= statistics.getEqualFraction();
+        }
+
+        if (index.isUnique() && count == index.getColumnCount()) {
+            return 1;
+        }
+
+        return Math.max(1, store.elementCount() * fraction);
+    }
+
+    /**
+     * Uses a hash join for inner and left outer joined tables that have an
+     * equality join condition with a previous range but no index condition.
+     * Only base tables are considered, as derived tables have indexes created
+     * for their join columns.
+     */
+    void setHashJoinConditions() {
+
+        if ((session.sessionOptimization & Session.FEATURE_HASH_JOIN) == 0) {
+            return;
+        }
+
+        if (select == null) {
+            return;
+        }
+
+        if (firstRightJoinIndex != rangeVariables.length
+                || firstLateralJoinIndex != rangeVariables.length) {
+            return;
+        }
+
+        HsqlArrayList<Expression> exprList = new HsqlArrayList<>();
+        OrderedIntHashSet         columns  = new OrderedIntHashSet();
+        HsqlArrayList<Expression> probes   = new HsqlArrayList<>();
+
+        for (int i = 1; i < rangeVariables.length; i++) {
+            RangeVariable range = rangeVariables[i];
+
+            if (!isHashJoinTable(range.rangeTable)) {
+                continue;
+            }
+
+            if (inExpressions[i] != null) {
+                continue;
+            }
+
+            if (range.joinConditions.length != 1
+                    || range.whereConditions.length != 1) {
+                continue;
+            }
+
+            RangeVariableConditions conditions = range.joinConditions[0];
+
+            if (conditions.hasIndexCondition()
+                    || range.whereConditions[0].hasIndexCondition()) {
+                continue;
+            }
+
+            exprList.clear();
+            columns.clear();
+            probes.clear();
+            collectAndConditions(conditions.nonIndexCondition, exprList);
+
+            for (int j = 0; j < exprList.size(); j++) {
+                Expression e = exprList.get(j);
+
+                if (e.getType() != OpTypes.EQUAL || !e.isColumnEqual
+                        || e.exprSubType != 0) {
+                    continue;
+                }
+
+                Expression column = e.getLeftNode();
+                Expression probe  = e.getRightNode();
+
+                if (column.getRangeVariable() != range) {
+                    column = e.getRightNode();
+                    probe  = e.getLeftNode();
+                }
+
+                if (column.getRangeVariable() != range) {
+                    continue;
+                }
+
+                int probeIndex = rangeVarSet.getIndex(probe.getRangeVariable());
+
+                if (probeIndex < 0 || probeIndex >= i) {
+                    continue;
+                }
+
+                if (!HashJoinTable.isHashable(
+                        column.getDataType(),
+                        probe.getDataType())) {
+                    continue;
+                }
+
+                if (columns.add(column.getColumnIndex())) {
+                    probes.add(probe);
+                }
+            }
+
+            if (columns.isEmpty()) {
+                continue;
+            }
+
+            Expression[] probeArray = new Expression[probes.size()];
+
+            probes.toArray(probeArray);
+            conditions.setHashJoin(columns.toArray(), probeArray);
+        }
+    }
+
+    /**
+     * Uses a merge join for a range that is joined with an equality index
+     * condition on a column of the previous range, when the previous range
+     * returns its rows in the order of that column.
+     */
+    void setMergeJoinConditions() {
+
+        if ((session.sessionOptimization & Session.FEATURE_MERGE_JOIN) == 0) {
+            return;
+        }
+
+        if (select == null) {
+            return;
+        }
+
+        if (firstRightJoinIndex != rangeVariables.length
+                || firstLateralJoinIndex != rangeVariables.length) {
+            return;
+        }
+
+        for (int i = 1; i < rangeVariables.length; i++) {
+            RangeVariable range = rangeVariables[i];
+            RangeVariable outer = rangeVariables[i - 1];
+
+            if (inExpressions[i] != null || inExpressions[i - 1] != null) {
+                continue;
+            }
+
+            if (range.joinConditions.length != 1
+                    || range.whereConditions.length != 1
+                    || range.indexDistinctCount != 0) {
+                continue;
+            }
+
+            RangeVariableConditions conditions = range.joinConditions[0];
+
+            if (conditions.indexedColumnCount != 1
+                    || conditions.opType != OpTypes.EQUAL
+                    || conditions.reversed
+                    || conditions.rangeIndex.getColumnDesc()[0]
+                    || range.whereConditions[0].hasIndexCondition()) {
+                continue;
+            }
+
+            Expression probe = conditions.indexCond[0].getRightNode();
+
+            if (probe.getType() != OpTypes.COLUMN
+                    || probe.getRangeVariable() != outer) {
+                continue;
+            }
+
+            RangeVariableConditions[] outerConditions = outer.joinConditions;
+
+            if (outer.whereConditions[0].hasIndexCondition()) {
+                outerConditions = outer.whereConditions;
+            }
+
+            if (outerConditions.length != 1) {
+                continue;
+            }
+
+            if (isOrderedOn(outerConditions[0], probe.getColumnIndex())) {
+                conditions.isMergeJoin = true;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the rows of the range are returned in ascending order
+     * of the column, or all have the same value for the column.
+     */
+    private static boolean isOrderedOn(
+            RangeVariableConditions conditions,
+            int colIndex) {
+
+        Index index = conditions.rangeIndex;
+
+        if (index == null || conditions.reversed || conditions.isHashJoin()) {
+            return false;
+        }
+
+        int[] cols     = index.getColumns();
+        int   position = 0;
+
+        if (conditions.hasIndexCondition()
+                && (conditions.opType == OpTypes.EQUAL
+                    || conditions.opType == OpTypes.IS_NULL)) {
+            for (; position < conditions.indexedColumnCount; position++) {
+                if (cols[position] == colIndex) {
+                    return true;
+                }
+            }
+        }
+
+        if (position >= cols.length) {
+            return false;
+        }
+
+        return cols[position] == colIndex && !index.getColumnDesc()[position];
+    }
+
+    static boolean isHashJoinTable(Table table) {
+
+        switch (table.getTableType()) {
+
+            case TableBase.MEMORY_TABLE :
+            case TableBase.CACHED_TABLE :
+            case TableBase.TEXT_TABLE :
+                return true;
+
+            default :
+                return false;
+        }
+    }
+
+    /**
+     * Adds the operands of AND conditions to the list without modifying the
+     * expression
+     */
+    private static void collectAndConditions(
+            Expression e,
+            List<Expression> conditions) {
+
+        if (e == null) {
+            return;
+        }
+
+        if (e.getType() == OpTypes.AND) {
+            collectAndConditions(e.getLeftNode(), conditions);
+            collectAndConditions(e.getRightNode(), conditions);
+        } else {
+            conditions.add(e);
+        }
+    }
+
     /**
      * Converts an IN conditions into a JOIN
      */
@@ -1622,9 +2555,18 @@ public class RangeVariableResolver {
 
         if (table instanceof TableDerived) {
             return 1000;
-        } else {
-            return table.getRowStore(session)
-                        .searchCost(session, index, count, opType);
         }
+
+        PersistentStore store = table.getRowStore(session);
+
+        if (opType == OpTypes.EQUAL) {
+            double cost = getEqualityRowCount(table, store, index, count);
+
+            if (cost >= 0) {
+                return cost;
+            }
+        }
+
+        return store.searchCost(session, index, count, opType);
     }
 }
@@ -70,7 +70,10 @@
 
 package org.hsqldb;
 
+import org.hsqldb.index.Index;
 import org.hsqldb.index.NodeAVL;
+import org.hsqldb.index.NodeAVLCovering;
+import org.hsqldb.index.NodeAVLNormalized;
 import org.hsqldb.persist.PersistentStore;
 
 // fredt@users 20020221 - patch 513005 by sqlbob@users (RMP)
@@ -86,7 +89,7 @@ import org.hsqldb.persist.PersistentStore;
  *
  * @author Fred Toussi (fredt@users dot sourceforge dot net)
  * @author Thomas Mueller (Hypersonic SQL Group)
- * @version 2.5.0
+ * @version 2.7.4
  * @since Hypersonic SQL
  */
 public class RowAVL extends Row {
@@ -119,18 +122,36 @@ public class RowAVL extends Row {
 
     public void setNewNodes(PersistentStore store) {
 
-        int indexCount = store.getAccessorKeys().length;
+        Index[] keys = store.getAccessorKeys();
 
         nPrimaryNode = new NodeAVL(this);
 
         NodeAVL n = nPrimaryNode;
 
-        for (int i = 1; i < indexCount; i++) {
-            n.nNext = new NodeAVL(this);
+        for (int i = 1; i < keys.length; i++) {
+            n.nNext = getNewNode(keys[i]);
             n       = n.nNext;
         }
     }
 
+    /**
+     * Returns a new Node for the Index. The Node for a covering index holds
+     * a copy of the covered columns and the Node for an index with normalized
+     * keys holds the key.
+     */
+    protected NodeAVL getNewNode(Index index) {
+
+        if (index.isNormalized()) {
+            return new NodeAVLNormalized(this, index.getCoveredColumns());
+        }
+
+        if (index.isCovering()) {
+            return new NodeAVLCovering(this, index.getCoveredColumns());
+        }
+
+        return new NodeAVL(this);
+    }
+
     /**
      * Returns the Node for a given Index, using the ordinal position of the
      * Index within the Table Object.
@@ -161,10 +182,10 @@ public class RowAVL extends Row {
         return n;
     }
 
-    public NodeAVL insertNode(int index) {
+    public NodeAVL insertNode(Index index) {
 
-        NodeAVL backnode = getNode(index - 1);
-        NodeAVL newnode  = new NodeAVL(this);
+        NodeAVL backnode = getNode(index.getPosition() - 1);
+        NodeAVL newnode  = getNewNode(index);
 
         newnode.nNext  = backnode.nNext;
         backnode.nNext = newnode;
@@ -172,6 +193,26 @@ public class RowAVL extends Row {
         return newnode;
     }
 
+    /**
+     * Replaces the Node for the Index with a new Node that is not linked
+     * with other Nodes in the index.
+     */
+    public void resetNode(Index index) {
+
+        int     position = index.getPosition();
+        NodeAVL newnode  = getNewNode(index);
+
+        if (position == 0) {
+            newnode.nNext = nPrimaryNode.nNext;
+            nPrimaryNode  = newnode;
+        } else {
+            NodeAVL backnode = getNode(position - 1);
+
+            newnode.nNext  = backnode.nNext.nNext;
+            backnode.nNext = newnode;
+        }
+    }
+
     public void clearNonPrimaryNodes() {
 
         NodeAVL n = nPrimaryNode.nNext;
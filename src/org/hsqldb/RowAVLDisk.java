@@ -72,6 +72,7 @@ package org.hsqldb;
 
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.Index;
 import org.hsqldb.index.NodeAVL;
 import org.hsqldb.index.NodeAVLDisk;
 import org.hsqldb.lib.LongLookup;
@@ -93,7 +94,7 @@ import org.hsqldb.rowio.RowOutputInterface;
  *
  * @author Fred Toussi (fredt@users dot sourceforge dot net)
  * @author Thomas Mueller (Hypersonic SQL Group)
- * @version 2.5.1
+ * @version 2.7.4
  * @since Hypersonic SQL
  */
 public class RowAVLDisk extends RowAVL {
@@ -165,7 +166,7 @@ public class RowAVLDisk extends RowAVL {
         super(t, null);
     }
 
-    public NodeAVL insertNode(int index) {
+    public NodeAVL insertNode(Index index) {
         return null;
     }
 
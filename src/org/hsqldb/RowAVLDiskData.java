@@ -31,6 +31,7 @@
 
 package org.hsqldb;
 
+import org.hsqldb.index.Index;
 import org.hsqldb.index.NodeAVL;
 import org.hsqldb.persist.PersistentStore;
 import org.hsqldb.persist.RowStoreAVLDiskData;
@@ -46,7 +47,7 @@ import org.hsqldb.rowio.RowOutputInterface;
  *
  * @author Bob Preston (sqlbob@users dot sourceforge.net)
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.4
+ * @version 2.7.4
  * @version 1.7.0
  */
 public class RowAVLDiskData extends RowAVL {
@@ -124,15 +125,11 @@ public class RowAVLDiskData extends RowAVL {
         }
     }
 
-    public NodeAVL insertNode(int index) {
-
-        NodeAVL backnode = getNode(index - 1);
-        NodeAVL newnode  = new NodeAVL(this);
-
-        newnode.nNext  = backnode.nNext;
-        backnode.nNext = newnode;
-
-        return newnode;
+    /**
+     *  Nodes of TEXT tables do not hold a copy of covered columns.
+     */
+    protected NodeAVL getNewNode(Index index) {
+        return new NodeAVL(this);
     }
 
     public int getRealSize(RowOutputInterface out) {
@@ -0,0 +1,81 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import org.hsqldb.index.NodeAVL;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.rowio.RowInputInterface;
+
+/**
+ * Row of a CACHED table with B+tree indexes. The row is stored without index
+ * nodes, as the indexes are stored in separate pages.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class RowBTreeDisk extends RowAVLDisk {
+
+    /**
+     *  Constructor for new Rows.
+     *
+     * @param t table
+     * @param o row data
+     * @param store store
+     */
+    public RowBTreeDisk(TableBase t, Object[] o, PersistentStore store) {
+        super(t, o, store);
+    }
+
+    /**
+     *  Constructor when read from the disk into the Cache.
+     *
+     * @param store store
+     * @param in data source
+     */
+    public RowBTreeDisk(PersistentStore store, RowInputInterface in) {
+
+        super(store.getTable());
+
+        position    = in.getFilePosition();
+        storageSize = in.getSize();
+        rowData     = in.readData(table.getColumnTypes());
+        isFromFile  = true;
+    }
+
+    public void setNewNodes(PersistentStore store) {}
+
+    public NodeAVL getNode(int index) {
+        return null;
+    }
+
+    public void clearNonPrimaryNodes() {}
+}
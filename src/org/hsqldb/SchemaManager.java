@@ -57,7 +57,7 @@ import org.hsqldb.types.Type;
  * Manages all SCHEMA related database objects
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.8.0
  */
 public class SchemaManager {
@@ -2554,6 +2554,9 @@ public class SchemaManager {
                         list.add(ddl);
                     }
                 }
+
+                list.addAll(t.getSQLForStatistics());
+                list.addAll(t.getSQLForBloomFilters());
             }
 
             return list;
@@ -2574,7 +2577,13 @@ public class SchemaManager {
                 Table t = tableList.get(i);
 
                 if (t.isCached()) {
-                    String ddl = t.getSQLForTableSpace();
+                    String ddl = t.getSQLForIndexType();
+
+                    if (ddl != null) {
+                        list.add(ddl);
+                    }
+
+                    ddl = t.getSQLForTableSpace();
 
                     if (ddl != null) {
                         list.add(ddl);
@@ -2588,6 +2597,19 @@ public class SchemaManager {
         }
     }
 
+    /**
+     * Rebuilds the Bloom filters of indexes after changes to the rows, or all
+     * the filters after a defrag.
+     */
+    public void rebuildBloomFilters(Session session, boolean all) {
+
+        HsqlArrayList<Table> tableList = getAllTables(false);
+
+        for (int i = 0; i < tableList.size(); i++) {
+            tableList.get(i).rebuildBloomFilters(session, all);
+        }
+    }
+
     public List<String> getIndexRootsSQLArray() {
 
         readLock.lock();
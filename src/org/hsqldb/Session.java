@@ -37,6 +37,7 @@ import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Random;
 import java.util.TimeZone;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.error.Error;
@@ -77,11 +78,18 @@ import org.hsqldb.types.TypedComparator;
  * Implementation of SQL sessions.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.7.0
  */
 public class Session implements SessionInterface {
 
+    // optimisation features, in the order of ParserRoutine.featureStrings
+    static final int FEATURE_REORDER    = 8;
+    static final int FEATURE_HASH_JOIN  = 16;
+    static final int FEATURE_MERGE_JOIN = 32;
+    static final int FEATURE_PARALLEL   = 64;
+    static final int FEATURE_JOIN_ORDER = 128;
+
     //
     private volatile boolean isClosed;
 
@@ -106,6 +114,7 @@ public class Session implements SessionInterface {
     final boolean                  txInterruptRollback;
     volatile boolean               isPreTransaction;
     volatile boolean               isTransaction;
+    boolean                        isCommitSyncPending;
     boolean                        isBatch;
     volatile boolean               abortAction;
     volatile boolean               abortTransaction;
@@ -117,7 +126,12 @@ public class Session implements SessionInterface {
     OrderedHashSet<Session>        tempSet;
     OrderedHashSet<RowActionBase>  actionSet;
     public CountUpDownLatch        latch = new CountUpDownLatch();
+
+    // used instead of synchronized methods, so that a virtual thread that
+    // waits on the latch is not pinned to its carrier thread
+    final ReentrantLock            sessionLock = new ReentrantLock();
     TimeoutManager                 timeoutManager;
+    private Session[]              workerSessions;
 
     // current settings
     final TimeZone              timeZone;
@@ -125,7 +139,11 @@ public class Session implements SessionInterface {
     final String                zoneString;
     boolean                     isNetwork;
     private int                 sessionMaxRows;
-    int                         sessionOptimization = 8;
+    int                         sessionOptimization = FEATURE_REORDER
+                                                      | FEATURE_HASH_JOIN
+                                                      | FEATURE_MERGE_JOIN
+                                                      | FEATURE_PARALLEL
+                                                      | FEATURE_JOIN_ORDER;
     private final long          sessionId;
     private boolean             ignoreCase;
     private final TimestampData connectTimestamp;
@@ -229,35 +247,42 @@ public class Session implements SessionInterface {
     /**
      * Closes this Session.
      */
-    public synchronized void close() {
-
-        if (isClosed) {
-            return;
-        }
+    public void close() {
 
-        rollback(false);
+        sessionLock.lock();
 
         try {
-            database.logger.writeOtherStatement(this, Tokens.T_DISCONNECT);
-        } catch (HsqlException e) {}
+            if (isClosed) {
+                return;
+            }
 
-        sessionData.closeAllNavigators();
-        sessionData.persistentStoreCollection.release();
-        statementManager.reset();
+            rollback(false);
 
-        // keep sessionContext and sessionData
-        rowActionList.clear();
+            try {
+                database.logger.writeOtherStatement(this, Tokens.T_DISCONNECT);
+            } catch (HsqlException e) {}
 
-        isClosed                    = true;
-        user                        = null;
-        sessionContext.savepoints   = null;
-        sessionContext.lastIdentity = null;
-        intConnection               = null;
+            sessionData.closeAllNavigators();
+            sessionData.persistentStoreCollection.release();
+            statementManager.reset();
 
-        database.sessionManager.removeSession(this);
-        database.closeIfLast();
+            // keep sessionContext and sessionData
+            rowActionList.clear();
 
-        database = null;
+            workerSessions              = null;
+            isClosed                    = true;
+            user                        = null;
+            sessionContext.savepoints   = null;
+            sessionContext.lastIdentity = null;
+            intConnection               = null;
+
+            database.sessionManager.removeSession(this);
+            database.closeIfLast();
+
+            database = null;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     /**
@@ -269,21 +294,28 @@ public class Session implements SessionInterface {
         return isClosed;
     }
 
-    public synchronized void setIsolationDefault(int level) {
+    public void setIsolationDefault(int level) {
 
-        if (level == SessionInterface.TX_READ_UNCOMMITTED) {
-            level = SessionInterface.TX_READ_COMMITTED;
-        }
+        sessionLock.lock();
 
-        if (level == isolationLevelDefault) {
-            return;
-        }
+        try {
+            if (level == SessionInterface.TX_READ_UNCOMMITTED) {
+                level = SessionInterface.TX_READ_COMMITTED;
+            }
 
-        isolationLevelDefault = level;
+            if (level == isolationLevelDefault) {
+                return;
+            }
+
+            isolationLevelDefault = level;
 
-        if (!isInMidTransaction()) {
-            isolationLevel      = isolationLevelDefault;
-            isReadOnlyIsolation = level == SessionInterface.TX_READ_UNCOMMITTED;
+            if (!isInMidTransaction()) {
+                isolationLevel      = isolationLevelDefault;
+                isReadOnlyIsolation = level
+                                      == SessionInterface.TX_READ_UNCOMMITTED;
+            }
+        } finally {
+            sessionLock.unlock();
         }
     }
 
@@ -304,8 +336,15 @@ public class Session implements SessionInterface {
         isolationLevel = level;
     }
 
-    public synchronized int getIsolation() {
-        return isolationLevel;
+    public int getIsolation() {
+
+        sessionLock.lock();
+
+        try {
+            return isolationLevel;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     /**
@@ -393,9 +432,44 @@ public class Session implements SessionInterface {
         sessionMaxRows = rows;
     }
 
+    /**
+     * Returns a session that evaluates expressions for this session on a
+     * thread of the parallel query pool. These sessions are not registered
+     * with the SessionManager and never start a transaction.
+     */
+    Session getWorkerSession(int index) {
+
+        if (workerSessions == null) {
+            workerSessions = new Session[database.getParallelThreads()];
+        }
+
+        Session worker = workerSessions[index];
+
+        if (worker == null) {
+            worker = database.sessionManager.newSysSession(
+                currentSchema,
+                user);
+            workerSessions[index] = worker;
+        }
+
+        worker.setTimeZone(currentTimeZone);
+
+        worker.currentSchema = currentSchema;
+        worker.sessionContext.dynamicArguments =
+            sessionContext.dynamicArguments;
+
+        return worker;
+    }
+
     void setFeature(String feature, boolean value) {
 
-        int number = 8;
+        int index = ArrayUtil.find(ParserRoutine.featureStrings, feature);
+
+        if (index < 0) {
+            throw Error.error(ErrorCode.X_42555, feature);
+        }
+
+        int number = FEATURE_REORDER << index;
 
         if (value) {
             sessionOptimization |= number;
@@ -499,20 +573,26 @@ public class Session implements SessionInterface {
      *
      * @param  autocommit the new value
      */
-    public synchronized void setAutoCommit(boolean autocommit) {
+    public void setAutoCommit(boolean autocommit) {
 
-        if (isClosed) {
-            return;
-        }
+        sessionLock.lock();
 
-        if (sessionContext.depth > 0) {
-            return;
-        }
+        try {
+            if (isClosed) {
+                return;
+            }
+
+            if (sessionContext.depth > 0) {
+                return;
+            }
 
-        if (sessionContext.isAutoCommit != autocommit) {
-            commit(false);
+            if (sessionContext.isAutoCommit != autocommit) {
+                commit(false);
 
-            sessionContext.isAutoCommit = autocommit;
+                sessionContext.isAutoCommit = autocommit;
+            }
+        } finally {
+            sessionLock.unlock();
         }
     }
 
@@ -572,86 +652,117 @@ public class Session implements SessionInterface {
         database.txManager.beginTransaction(this);
     }
 
-    public synchronized void startPhasedTransaction() {}
+    public void startPhasedTransaction() {}
 
     /*
      * @todo - fredt - for two phased pre-commit - after this call, further
      * state changing calls should fail
      */
-    public synchronized void prepareCommit() {
+    public void prepareCommit() {
 
-        if (isClosed) {
-            throw Error.error(ErrorCode.X_08003);
-        }
+        sessionLock.lock();
 
-        if (!database.txManager.prepareCommitActions(this)) {
+        try {
+            if (isClosed) {
+                throw Error.error(ErrorCode.X_08003);
+            }
 
-//            tempActionHistory.add("commit aborts " + actionTimestamp);
-            rollbackNoCheck(false);
+            if (!database.txManager.prepareCommitActions(this)) {
 
-            throw Error.error(ErrorCode.X_40001);
+    //            tempActionHistory.add("commit aborts " + actionTimestamp);
+                rollbackNoCheck(false);
+
+                throw Error.error(ErrorCode.X_40001);
+            }
+        } finally {
+            sessionLock.unlock();
         }
     }
 
     /**
      * Commits any uncommitted transaction this Session may have open
      */
-    public synchronized void commit(boolean chain) {
+    public void commit(boolean chain) {
 
-//        tempActionHistory.add("commit " + actionTimestamp);
-        if (isClosed) {
-            return;
-        }
+        sessionLock.lock();
 
-        if (sessionContext.depth > 0) {
-            return;
-        }
+        try {
+    //        tempActionHistory.add("commit " + actionTimestamp);
+            if (isClosed) {
+                return;
+            }
 
-        if (isTransaction) {
-            if (!database.txManager.commitTransaction(this)) {
+            if (sessionContext.depth > 0) {
+                return;
+            }
 
-                // tempActionHistory.add("commit aborts " + actionTimestamp);
-                rollbackNoCheck(chain);
+            if (isTransaction) {
+                if (!database.txManager.commitTransaction(this)) {
 
-                throw Error.error(ErrorCode.X_40001);
+                    // tempActionHistory.add("commit aborts " + actionTimestamp);
+                    rollbackNoCheck(chain);
+
+                    throw Error.error(ErrorCode.X_40001);
+                }
+            } else {
+                logSequences();
             }
-        } else {
-            logSequences();
-        }
 
-        endTransaction(true, chain);
+            endTransaction(true, chain);
+
+            // the log is synched after the transaction locks are released
+            if (isCommitSyncPending) {
+                isCommitSyncPending = false;
 
-        if (database != null
-                && !sessionUser.isSystem()
-                && database.logger.needsCheckpointReset()) {
-            database.checkpointRunner.start();
+                database.logger.syncCommit();
+            }
+
+            if (database != null
+                    && !sessionUser.isSystem()
+                    && database.logger.needsCheckpointReset()) {
+                database.checkpointRunner.start();
+            }
+        } finally {
+            sessionLock.unlock();
         }
     }
 
     /**
      * Rolls back any uncommitted transaction this Session may have open.
      */
-    public synchronized void rollback(boolean chain) {
+    public void rollback(boolean chain) {
 
-        //        tempActionHistory.add("rollback " + actionTimestamp);
-        if (sessionContext.depth > 0) {
-            return;
-        }
+        sessionLock.lock();
+
+        try {
+            //        tempActionHistory.add("rollback " + actionTimestamp);
+            if (sessionContext.depth > 0) {
+                return;
+            }
 
-        rollbackNoCheck(chain);
+            rollbackNoCheck(chain);
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
-    synchronized void rollbackNoCheck(boolean chain) {
+    void rollbackNoCheck(boolean chain) {
 
-        if (isClosed) {
-            return;
-        }
+        sessionLock.lock();
 
-        if (isTransaction || isPreTransaction) {
-            database.txManager.rollback(this);
-        }
+        try {
+            if (isClosed) {
+                return;
+            }
+
+            if (isTransaction || isPreTransaction) {
+                database.txManager.rollback(this);
+            }
 
-        endTransaction(false, chain);
+            endTransaction(false, chain);
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     private void endTransaction(boolean commit, boolean chain) {
@@ -696,31 +807,37 @@ public class Session implements SessionInterface {
      * Clear structures and reset variables to original. For JDBC use only.
      * Note: sets autocommit true
      */
-    public synchronized void resetSession() {
+    public void resetSession() {
 
-        if (isClosed) {
-            return;
-        }
+        sessionLock.lock();
 
-        rollbackNoCheck(false);
-        sessionData.closeAllNavigators();
-        sessionData.persistentStoreCollection.clearAllTables();
-        statementManager.reset();
+        try {
+            if (isClosed) {
+                return;
+            }
 
-        sessionContext.lastIdentity = ValuePool.INTEGER_0;
-        sessionContext.isAutoCommit = true;
+            rollbackNoCheck(false);
+            sessionData.closeAllNavigators();
+            sessionData.persistentStoreCollection.clearAllTables();
+            statementManager.reset();
 
-        setResultMemoryRowCount(database.getResultMaxMemoryRows());
+            sessionContext.lastIdentity = ValuePool.INTEGER_0;
+            sessionContext.isAutoCommit = true;
 
-        user = sessionUser;
+            setResultMemoryRowCount(database.getResultMaxMemoryRows());
 
-        resetSchema();
-        resetTimeZone();
+            user = sessionUser;
 
-        sessionMaxRows = 0;
-        ignoreCase     = database.sqlIgnoreCase;
+            resetSchema();
+            resetTimeZone();
 
-        setIsolation(isolationLevelDefault);
+            sessionMaxRows = 0;
+            ignoreCase     = database.sqlIgnoreCase;
+
+            setIsolation(isolationLevelDefault);
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     /**
@@ -729,21 +846,27 @@ public class Session implements SessionInterface {
      *
      * @param  name name of the savepoint
      */
-    public synchronized void savepoint(String name) {
+    public void savepoint(String name) {
 
-        int index = sessionContext.savepoints.getIndex(name);
+        sessionLock.lock();
 
-        if (index != -1) {
-            sessionContext.savepoints.remove(name);
-            sessionContext.savepointTimestamps.remove(index);
-        }
+        try {
+            int index = sessionContext.savepoints.getIndex(name);
 
-        actionSCN = database.txManager.getNextSystemChangeNumber();
+            if (index != -1) {
+                sessionContext.savepoints.remove(name);
+                sessionContext.savepointTimestamps.remove(index);
+            }
+
+            actionSCN = database.txManager.getNextSystemChangeNumber();
 
-        sessionContext.savepoints.add(
-            name,
-            ValuePool.getInt(rowActionList.size()));
-        sessionContext.savepointTimestamps.addLast(actionSCN);
+            sessionContext.savepoints.add(
+                name,
+                ValuePool.getInt(rowActionList.size()));
+            sessionContext.savepointTimestamps.addLast(actionSCN);
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     /**
@@ -751,40 +874,58 @@ public class Session implements SessionInterface {
      *
      * @param  name name of savepoint
      */
-    public synchronized void rollbackToSavepoint(String name) {
+    public void rollbackToSavepoint(String name) {
 
-        if (isClosed) {
-            return;
-        }
+        sessionLock.lock();
 
-        int index = sessionContext.savepoints.getIndex(name);
+        try {
+            if (isClosed) {
+                return;
+            }
 
-        if (index < 0) {
-            throw Error.error(ErrorCode.X_3B001, name);
-        }
+            int index = sessionContext.savepoints.getIndex(name);
 
-        database.txManager.rollbackSavepoint(this, index);
+            if (index < 0) {
+                throw Error.error(ErrorCode.X_3B001, name);
+            }
+
+            database.txManager.rollbackSavepoint(this, index);
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     /**
      * Performs a partial transaction ROLLBACK of current savepoint level.
      */
-    public synchronized void rollbackToSavepoint() {
+    public void rollbackToSavepoint() {
 
-        if (isClosed) {
-            return;
-        }
+        sessionLock.lock();
+
+        try {
+            if (isClosed) {
+                return;
+            }
 
-        database.txManager.rollbackSavepoint(this, 0);
+            database.txManager.rollbackSavepoint(this, 0);
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
-    public synchronized void rollbackAction(int start, long timestamp) {
+    public void rollbackAction(int start, long timestamp) {
 
-        if (isClosed) {
-            return;
-        }
+        sessionLock.lock();
 
-        database.txManager.rollbackPartial(this, start, timestamp);
+        try {
+            if (isClosed) {
+                return;
+            }
+
+            database.txManager.rollbackPartial(this, start, timestamp);
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     /**
@@ -792,19 +933,25 @@ public class Session implements SessionInterface {
      *
      * @param  name name of savepoint
      */
-    public synchronized void releaseSavepoint(String name) {
+    public void releaseSavepoint(String name) {
 
-        // remove this and all later savepoints
-        int index = sessionContext.savepoints.getIndex(name);
+        sessionLock.lock();
 
-        if (index < 0) {
-            throw Error.error(ErrorCode.X_3B001, name);
-        }
+        try {
+            // remove this and all later savepoints
+            int index = sessionContext.savepoints.getIndex(name);
+
+            if (index < 0) {
+                throw Error.error(ErrorCode.X_3B001, name);
+            }
 
-        while (sessionContext.savepoints.size() > index) {
-            sessionContext.savepoints.removeEntry(
-                sessionContext.savepoints.size() - 1);
-            sessionContext.savepointTimestamps.removeLast();
+            while (sessionContext.savepoints.size() > index) {
+                sessionContext.savepoints.removeEntry(
+                    sessionContext.savepoints.size() - 1);
+                sessionContext.savepointTimestamps.removeLast();
+            }
+        } finally {
+            sessionLock.unlock();
         }
     }
 
@@ -842,16 +989,22 @@ public class Session implements SessionInterface {
         sessionContext.isReadOnly = readonly;
     }
 
-    public synchronized void setReadOnlyDefault(boolean readonly) {
+    public void setReadOnlyDefault(boolean readonly) {
 
-        if (!readonly && database.databaseReadOnly) {
-            throw Error.error(ErrorCode.DATABASE_IS_READONLY);
-        }
+        sessionLock.lock();
 
-        isReadOnlyDefault = readonly;
+        try {
+            if (!readonly && database.databaseReadOnly) {
+                throw Error.error(ErrorCode.DATABASE_IS_READONLY);
+            }
 
-        if (!isInMidTransaction()) {
-            sessionContext.isReadOnly = isReadOnlyDefault;
+            isReadOnlyDefault = readonly;
+
+            if (!isInMidTransaction()) {
+                sessionContext.isReadOnly = isReadOnlyDefault;
+            }
+        } finally {
+            sessionLock.unlock();
         }
     }
 
@@ -864,8 +1017,15 @@ public class Session implements SessionInterface {
         return sessionContext.isReadOnly || isReadOnlyIsolation;
     }
 
-    public synchronized boolean isReadOnlyDefault() {
-        return isReadOnlyDefault;
+    public boolean isReadOnlyDefault() {
+
+        sessionLock.lock();
+
+        try {
+            return isReadOnlyDefault;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     /**
@@ -873,12 +1033,26 @@ public class Session implements SessionInterface {
      *
      * @return the current value
      */
-    public synchronized boolean isAutoCommit() {
-        return sessionContext.isAutoCommit;
+    public boolean isAutoCommit() {
+
+        sessionLock.lock();
+
+        try {
+            return sessionContext.isAutoCommit;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
-    public synchronized int getStreamBlockSize() {
-        return lobStreamBlockSize;
+    public int getStreamBlockSize() {
+
+        sessionLock.lock();
+
+        try {
+            return lobStreamBlockSize;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     /**
@@ -981,238 +1155,244 @@ public class Session implements SessionInterface {
      * @param cmd the command to execute
      * @return the result of executing the command
      */
-    public synchronized Result execute(Result cmd) {
-
-        if (isClosed) {
-            return Result.newErrorResult(Error.error(ErrorCode.X_08503));
-        }
-
-        sessionContext.currentMaxRows = 0;
-        isBatch                       = false;
+    public Result execute(Result cmd) {
 
-        switch (cmd.mode) {
+        sessionLock.lock();
 
-            case ResultConstants.LARGE_OBJECT_OP : {
-                return performLOBOperation((ResultLob) cmd);
+        try {
+            if (isClosed) {
+                return Result.newErrorResult(Error.error(ErrorCode.X_08503));
             }
 
-            case ResultConstants.EXECUTE : {
-                int maxRows = cmd.getUpdateCount();
+            sessionContext.currentMaxRows = 0;
+            isBatch                       = false;
 
-                if (maxRows == -1) {
-                    sessionContext.currentMaxRows = 0;
-                } else {
-                    sessionContext.currentMaxRows = maxRows;
+            switch (cmd.mode) {
+
+                case ResultConstants.LARGE_OBJECT_OP : {
+                    return performLOBOperation((ResultLob) cmd);
                 }
 
-                Statement cs = cmd.statement;
+                case ResultConstants.EXECUTE : {
+                    int maxRows = cmd.getUpdateCount();
+
+                    if (maxRows == -1) {
+                        sessionContext.currentMaxRows = 0;
+                    } else {
+                        sessionContext.currentMaxRows = maxRows;
+                    }
 
-                if (cs == null
-                        || cs.compileTimestamp
-                           < database.schemaManager.schemaChangeTimestamp) {
-                    long csid = cmd.getStatementID();
+                    Statement cs = cmd.statement;
 
-                    cs = statementManager.getStatement(csid);
+                    if (cs == null
+                            || cs.compileTimestamp < database.schemaManager
+                                .schemaChangeTimestamp) {
+                        long csid = cmd.getStatementID();
 
-                    cmd.setStatement(cs);
+                        cs = statementManager.getStatement(csid);
 
-                    if (cs == null) {
+                        cmd.setStatement(cs);
 
-                        // invalid sql has been removed already
-                        return Result.newErrorResult(
-                            Error.error(ErrorCode.X_07502));
+                        if (cs == null) {
+
+                            // invalid sql has been removed already
+                            return Result.newErrorResult(
+                                Error.error(ErrorCode.X_07502));
+                        }
                     }
-                }
 
-                Object[] pvals = (Object[]) cmd.valueData;
-                Result result = executeCompiledStatement(
-                    cs,
-                    pvals,
-                    cmd.queryTimeout);
+                    Object[] pvals = (Object[]) cmd.valueData;
+                    Result result = executeCompiledStatement(
+                        cs,
+                        pvals,
+                        cmd.queryTimeout);
 
-                result = performPostExecute(cmd, result);
+                    result = performPostExecute(cmd, result);
 
-                return result;
-            }
+                    return result;
+                }
 
-            case ResultConstants.BATCHEXECUTE : {
-                isBatch = true;
+                case ResultConstants.BATCHEXECUTE : {
+                    isBatch = true;
 
-                Result result = executeCompiledBatchStatement(cmd);
+                    Result result = executeCompiledBatchStatement(cmd);
 
-                result = performPostExecute(cmd, result);
+                    result = performPostExecute(cmd, result);
 
-                return result;
-            }
+                    return result;
+                }
 
-            case ResultConstants.EXECDIRECT : {
-                Result result = executeDirectStatement(cmd);
+                case ResultConstants.EXECDIRECT : {
+                    Result result = executeDirectStatement(cmd);
 
-                result = performPostExecute(cmd, result);
+                    result = performPostExecute(cmd, result);
 
-                return result;
-            }
+                    return result;
+                }
 
-            case ResultConstants.BATCHEXECDIRECT : {
-                isBatch = true;
+                case ResultConstants.BATCHEXECDIRECT : {
+                    isBatch = true;
 
-                Result result = executeDirectBatchStatement(cmd);
+                    Result result = executeDirectBatchStatement(cmd);
 
-                result = performPostExecute(cmd, result);
+                    result = performPostExecute(cmd, result);
 
-                return result;
-            }
+                    return result;
+                }
 
-            case ResultConstants.PREPARE : {
-                Statement cs;
+                case ResultConstants.PREPARE : {
+                    Statement cs;
 
-                try {
-                    cs = statementManager.compile(cmd);
-                } catch (Throwable t) {
-                    String errorString = cmd.getMainString();
+                    try {
+                        cs = statementManager.compile(cmd);
+                    } catch (Throwable t) {
+                        String errorString = cmd.getMainString();
 
-                    return Result.newErrorResult(t, errorString);
-                }
+                        return Result.newErrorResult(t, errorString);
+                    }
 
-                Result result = Result.newPrepareResponse(cs);
+                    Result result = Result.newPrepareResponse(cs);
 
-                if (cs.getType() == StatementTypes.SELECT_CURSOR
-                        || cs.getType() == StatementTypes.CALL) {
-                    sessionData.setResultSetProperties(cmd, result);
-                }
+                    if (cs.getType() == StatementTypes.SELECT_CURSOR
+                            || cs.getType() == StatementTypes.CALL) {
+                        sessionData.setResultSetProperties(cmd, result);
+                    }
 
-                result = performPostExecute(cmd, result);
+                    result = performPostExecute(cmd, result);
 
-                return result;
-            }
+                    return result;
+                }
 
-            case ResultConstants.CLOSE_RESULT : {
-                closeNavigator(cmd.getResultId());
+                case ResultConstants.CLOSE_RESULT : {
+                    closeNavigator(cmd.getResultId());
 
-                return Result.updateZeroResult;
-            }
+                    return Result.updateZeroResult;
+                }
 
-            case ResultConstants.UPDATE_RESULT : {
-                Result result = this.executeResultUpdate(cmd);
+                case ResultConstants.UPDATE_RESULT : {
+                    Result result = this.executeResultUpdate(cmd);
 
-                result = performPostExecute(cmd, result);
+                    result = performPostExecute(cmd, result);
 
-                return result;
-            }
+                    return result;
+                }
 
-            case ResultConstants.FREESTMT : {
-                statementManager.freeStatement(cmd.getStatementID());
+                case ResultConstants.FREESTMT : {
+                    statementManager.freeStatement(cmd.getStatementID());
 
-                return Result.updateZeroResult;
-            }
+                    return Result.updateZeroResult;
+                }
 
-            case ResultConstants.GETSESSIONATTR : {
-                int id = cmd.getStatementType();
+                case ResultConstants.GETSESSIONATTR : {
+                    int id = cmd.getStatementType();
 
-                return getAttributesResult(id);
-            }
+                    return getAttributesResult(id);
+                }
 
-            case ResultConstants.SETSESSIONATTR : {
-                return setAttributes(cmd);
-            }
+                case ResultConstants.SETSESSIONATTR : {
+                    return setAttributes(cmd);
+                }
 
-            case ResultConstants.ENDTRAN : {
-                switch (cmd.getActionType()) {
+                case ResultConstants.ENDTRAN : {
+                    switch (cmd.getActionType()) {
 
-                    case ResultConstants.TX_COMMIT :
-                        try {
-                            commit(false);
-                        } catch (Throwable t) {
-                            return Result.newErrorResult(t);
-                        }
+                        case ResultConstants.TX_COMMIT :
+                            try {
+                                commit(false);
+                            } catch (Throwable t) {
+                                return Result.newErrorResult(t);
+                            }
 
-                        break;
+                            break;
 
-                    case ResultConstants.TX_COMMIT_AND_CHAIN :
-                        try {
-                            commit(true);
-                        } catch (Throwable t) {
-                            return Result.newErrorResult(t);
-                        }
+                        case ResultConstants.TX_COMMIT_AND_CHAIN :
+                            try {
+                                commit(true);
+                            } catch (Throwable t) {
+                                return Result.newErrorResult(t);
+                            }
 
-                        break;
+                            break;
 
-                    case ResultConstants.TX_ROLLBACK :
-                        rollback(false);
-                        break;
+                        case ResultConstants.TX_ROLLBACK :
+                            rollback(false);
+                            break;
 
-                    case ResultConstants.TX_ROLLBACK_AND_CHAIN :
-                        rollback(true);
-                        break;
+                        case ResultConstants.TX_ROLLBACK_AND_CHAIN :
+                            rollback(true);
+                            break;
 
-                    case ResultConstants.TX_SAVEPOINT_NAME_RELEASE :
-                        try {
-                            String name = cmd.getMainString();
+                        case ResultConstants.TX_SAVEPOINT_NAME_RELEASE :
+                            try {
+                                String name = cmd.getMainString();
 
-                            releaseSavepoint(name);
-                        } catch (Throwable t) {
-                            return Result.newErrorResult(t);
-                        }
+                                releaseSavepoint(name);
+                            } catch (Throwable t) {
+                                return Result.newErrorResult(t);
+                            }
 
-                        break;
+                            break;
 
-                    case ResultConstants.TX_SAVEPOINT_NAME_ROLLBACK :
-                        try {
-                            rollbackToSavepoint(cmd.getMainString());
-                        } catch (Throwable t) {
-                            return Result.newErrorResult(t);
-                        }
+                        case ResultConstants.TX_SAVEPOINT_NAME_ROLLBACK :
+                            try {
+                                rollbackToSavepoint(cmd.getMainString());
+                            } catch (Throwable t) {
+                                return Result.newErrorResult(t);
+                            }
 
-                        break;
+                            break;
 
-                    case ResultConstants.PREPARECOMMIT :
-                        try {
-                            prepareCommit();
-                        } catch (Throwable t) {
-                            return Result.newErrorResult(t);
-                        }
+                        case ResultConstants.PREPARECOMMIT :
+                            try {
+                                prepareCommit();
+                            } catch (Throwable t) {
+                                return Result.newErrorResult(t);
+                            }
 
-                        break;
+                            break;
+                    }
+
+                    return Result.updateZeroResult;
                 }
 
-                return Result.updateZeroResult;
-            }
+                case ResultConstants.SETCONNECTATTR : {
+                    switch (cmd.getConnectionAttrType()) {
 
-            case ResultConstants.SETCONNECTATTR : {
-                switch (cmd.getConnectionAttrType()) {
+                        case ResultConstants.SQL_ATTR_SAVEPOINT_NAME :
+                            try {
+                                savepoint(cmd.getMainString());
+                            } catch (Throwable t) {
+                                return Result.newErrorResult(t);
+                            }
 
-                    case ResultConstants.SQL_ATTR_SAVEPOINT_NAME :
-                        try {
-                            savepoint(cmd.getMainString());
-                        } catch (Throwable t) {
-                            return Result.newErrorResult(t);
-                        }
+                        // case ResultConstants.SQL_ATTR_AUTO_IPD
+                        //   - always true
+                        // default: throw - case never happens
+                    }
 
-                    // case ResultConstants.SQL_ATTR_AUTO_IPD
-                    //   - always true
-                    // default: throw - case never happens
+                    return Result.updateZeroResult;
                 }
 
-                return Result.updateZeroResult;
-            }
-
-            case ResultConstants.REQUESTDATA : {
-                return sessionData.getDataResultSlice(
-                    cmd.getResultId(),
-                    cmd.getUpdateCount(),
-                    cmd.getFetchSize());
-            }
+                case ResultConstants.REQUESTDATA : {
+                    return sessionData.getDataResultSlice(
+                        cmd.getResultId(),
+                        cmd.getUpdateCount(),
+                        cmd.getFetchSize());
+                }
 
-            case ResultConstants.DISCONNECT : {
-                close();
+                case ResultConstants.DISCONNECT : {
+                    close();
 
-                return Result.updateZeroResult;
-            }
+                    return Result.updateZeroResult;
+                }
 
-            default : {
-                return Result.newErrorResult(
-                    Error.runtimeError(ErrorCode.U_S0500, "Session"));
+                default : {
+                    return Result.newErrorResult(
+                        Error.runtimeError(ErrorCode.U_S0500, "Session"));
+                }
             }
+        } finally {
+            sessionLock.unlock();
         }
     }
 
@@ -1251,8 +1431,15 @@ public class Session implements SessionInterface {
         return sessionData.getRowSetSlice(navigatorId, offset, blockSize);
     }
 
-    public synchronized void closeNavigator(long id) {
-        sessionData.closeNavigator(id);
+    public void closeNavigator(long id) {
+
+        sessionLock.lock();
+
+        try {
+            sessionData.closeNavigator(id);
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     public Result executeDirectStatement(Result cmd) {
@@ -1763,60 +1950,92 @@ public class Session implements SessionInterface {
      *
      * (fredt@users)
      */
-    synchronized TimestampData getCurrentTimestamp() {
-        resetCurrentTimestamp();
+    TimestampData getCurrentTimestamp() {
+
+        sessionLock.lock();
 
-        return currentTimestamp;
+        try {
+            resetCurrentTimestamp();
+
+            return currentTimestamp;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
-    synchronized TimestampData getLocalTimestamp() {
+    TimestampData getLocalTimestamp() {
 
-        resetCurrentTimestamp();
+        sessionLock.lock();
 
-        if (localTimestamp == null) {
-            localTimestamp = DateTimeType.toLocalTimestampValue(
-                currentTimestamp);
-        }
+        try {
+            resetCurrentTimestamp();
+
+            if (localTimestamp == null) {
+                localTimestamp = DateTimeType.toLocalTimestampValue(
+                    currentTimestamp);
+            }
 
-        return localTimestamp;
+            return localTimestamp;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
-    public synchronized TimestampData getCurrentDate() {
+    public TimestampData getCurrentDate() {
 
-        resetCurrentTimestamp();
+        sessionLock.lock();
 
-        if (currentDate == null) {
-            currentDate = DateTimeType.toCurrentDateValue(currentTimestamp);
-        }
+        try {
+            resetCurrentTimestamp();
+
+            if (currentDate == null) {
+                currentDate = DateTimeType.toCurrentDateValue(
+                    currentTimestamp);
+            }
 
-        return currentDate;
+            return currentDate;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     /**
      * Returns the current time, unchanged for the duration of the current
      * execution unit (statement)
      */
-    synchronized TimeData getCurrentTime() {
+    TimeData getCurrentTime() {
 
-        resetCurrentTimestamp();
+        sessionLock.lock();
 
-        if (currentTime == null) {
-            currentTime = DateTimeType.toCurrentTimeWithZoneValue(
-                currentTimestamp);
-        }
+        try {
+            resetCurrentTimestamp();
 
-        return currentTime;
+            if (currentTime == null) {
+                currentTime = DateTimeType.toCurrentTimeWithZoneValue(
+                    currentTimestamp);
+            }
+
+            return currentTime;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
-    synchronized TimeData getLocalTime() {
+    TimeData getLocalTime() {
 
-        resetCurrentTimestamp();
+        sessionLock.lock();
 
-        if (localTime == null) {
-            localTime = DateTimeType.toCurrentTimeValue(currentTimestamp);
-        }
+        try {
+            resetCurrentTimestamp();
+
+            if (localTime == null) {
+                localTime = DateTimeType.toCurrentTimeValue(currentTimestamp);
+            }
 
-        return localTime;
+            return localTime;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     private void resetCurrentTimestamp() {
@@ -1997,24 +2216,30 @@ public class Session implements SessionInterface {
         return Result.updateZeroResult;
     }
 
-    public synchronized Object getAttribute(int id) {
+    public Object getAttribute(int id) {
 
-        switch (id) {
+        sessionLock.lock();
 
-            case Attributes.INFO_ISOLATION :
-                return ValuePool.getInt(isolationLevel);
+        try {
+            switch (id) {
 
-            case Attributes.INFO_AUTOCOMMIT :
-                return sessionContext.isAutoCommit;
+                case Attributes.INFO_ISOLATION :
+                    return ValuePool.getInt(isolationLevel);
 
-            case Attributes.INFO_CONNECTION_READONLY :
-                return isReadOnlyDefault;
+                case Attributes.INFO_AUTOCOMMIT :
+                    return sessionContext.isAutoCommit;
 
-            case Attributes.INFO_CATALOG :
-                return database.getCatalogName().name;
-        }
+                case Attributes.INFO_CONNECTION_READONLY :
+                    return isReadOnlyDefault;
+
+                case Attributes.INFO_CATALOG :
+                    return database.getCatalogName().name;
+            }
 
-        return null;
+            return null;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
     /**
@@ -2022,36 +2247,42 @@ public class Session implements SessionInterface {
      */
     public void setAttributeFromResult(Result result) {}
 
-    public synchronized void setAttribute(int id, Object object) {
+    public void setAttribute(int id, Object object) {
 
-        switch (id) {
+        sessionLock.lock();
 
-            case Attributes.INFO_AUTOCOMMIT : {
-                boolean value = ((Boolean) object).booleanValue();
+        try {
+            switch (id) {
 
-                this.setAutoCommit(value);
-                break;
-            }
+                case Attributes.INFO_AUTOCOMMIT : {
+                    boolean value = ((Boolean) object).booleanValue();
 
-            case Attributes.INFO_CONNECTION_READONLY : {
-                boolean value = ((Boolean) object).booleanValue();
+                    this.setAutoCommit(value);
+                    break;
+                }
 
-                this.setReadOnlyDefault(value);
-                break;
-            }
+                case Attributes.INFO_CONNECTION_READONLY : {
+                    boolean value = ((Boolean) object).booleanValue();
+
+                    this.setReadOnlyDefault(value);
+                    break;
+                }
 
-            case Attributes.INFO_ISOLATION : {
-                int value = ((Integer) object).intValue();
+                case Attributes.INFO_ISOLATION : {
+                    int value = ((Integer) object).intValue();
 
-                this.setIsolationDefault(value);
-                break;
-            }
+                    this.setIsolationDefault(value);
+                    break;
+                }
 
-            case Attributes.INFO_CATALOG : {
-                String value = ((String) object);
+                case Attributes.INFO_CATALOG : {
+                    String value = ((String) object);
 
-                this.setCatalog(value);
+                    this.setCatalog(value);
+                }
             }
+        } finally {
+            sessionLock.unlock();
         }
     }
 
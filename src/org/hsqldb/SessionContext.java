@@ -50,7 +50,7 @@ import org.hsqldb.result.Result;
  * Session execution context and temporary data structures
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public class SessionContext {
@@ -296,6 +296,42 @@ public class SessionContext {
         return checkIterator;
     }
 
+    RangeIterator indexIterator = new RangeVariable.RangeIteratorCheck();
+
+    /**
+     * Evaluates an expression of an index for the given row data. The
+     * expression is resolved against the range variable of the index. As
+     * indexes are searched while statements are executed, the iterator of the
+     * statement at the same range position is restored after evaluation.
+     */
+    public Object getIndexValue(
+            RangeVariable rangeVariable,
+            Object[] data,
+            Expression expression) {
+
+        int position = rangeVariable.rangePosition;
+
+        if (position >= rangeIterators.length) {
+            int size = (int) ArrayUtil.getBinaryNormalisedCeiling(position + 1);
+
+            rangeIterators = (RangeIterator[]) ArrayUtil.resizeArray(
+                rangeIterators,
+                size);
+        }
+
+        RangeIterator current = rangeIterators[position];
+
+        rangeIterators[position] = indexIterator;
+
+        indexIterator.setCurrent(data);
+
+        try {
+            return expression.getValue(session);
+        } finally {
+            rangeIterators[position] = current;
+        }
+    }
+
     public void setRangeIterator(RangeIterator iterator) {
 
         int position = iterator.getRangePosition();
@@ -56,11 +56,12 @@ import org.hsqldb.types.Types;
 /**
  * Implementation of SQL set function values (only for aggregate functions).
  * This reduces temporary Object creation by SUM and AVG functions for
- * INTEGER and narrower types.
+ * INTEGER and narrower types. MIN and MAX of integral and floating point
+ * types compare primitive values.
  *
  * @author Campbell Burnet (campbell-burnet@users dot sourceforge.net)
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.7.2
  *
  */
@@ -76,6 +77,10 @@ public class SetFunctionValueAggregate implements SetFunction {
     private final Type    type;
     private final Type    returnType;
 
+    // MIN and MAX compare loLong for integral, currentDouble for float types
+    private final boolean isLongValue;
+    private final boolean isDoubleValue;
+
     //
     private final TypedComparator comparator;
 
@@ -143,6 +148,30 @@ public class SetFunctionValueAggregate implements SetFunction {
                 typeCode = type.typeCode;
             }
         }
+
+        switch (typeCode) {
+
+            case Types.TINYINT :
+            case Types.SQL_SMALLINT :
+            case Types.SQL_INTEGER :
+            case Types.SQL_BIGINT :
+                isLongValue   = setType == OpTypes.MIN
+                                || setType == OpTypes.MAX;
+                isDoubleValue = false;
+                break;
+
+            case Types.SQL_REAL :
+            case Types.SQL_FLOAT :
+            case Types.SQL_DOUBLE :
+                isLongValue   = false;
+                isDoubleValue = setType == OpTypes.MIN
+                                || setType == OpTypes.MAX;
+                break;
+
+            default :
+                isLongValue   = false;
+                isDoubleValue = false;
+        }
     }
 
     public void reset() {}
@@ -277,6 +306,30 @@ public class SetFunctionValueAggregate implements SetFunction {
             }
 
             case OpTypes.MIN : {
+                if (isLongValue) {
+                    long value = ((Number) item).longValue();
+
+                    if (currentValue == null || value < loLong) {
+                        loLong       = value;
+                        currentValue = item;
+                    }
+
+                    return;
+                }
+
+                if (isDoubleValue) {
+                    double value = ((Number) item).doubleValue();
+
+                    if (currentValue == null
+                            || NumberType.compareDouble(value, currentDouble)
+                               < 0) {
+                        currentDouble = value;
+                        currentValue  = item;
+                    }
+
+                    return;
+                }
+
                 if (currentValue == null) {
                     currentValue = item;
 
@@ -291,6 +344,30 @@ public class SetFunctionValueAggregate implements SetFunction {
             }
 
             case OpTypes.MAX : {
+                if (isLongValue) {
+                    long value = ((Number) item).longValue();
+
+                    if (currentValue == null || value > loLong) {
+                        loLong       = value;
+                        currentValue = item;
+                    }
+
+                    return;
+                }
+
+                if (isDoubleValue) {
+                    double value = ((Number) item).doubleValue();
+
+                    if (currentValue == null
+                            || NumberType.compareDouble(value, currentDouble)
+                               > 0) {
+                        currentDouble = value;
+                        currentValue  = item;
+                    }
+
+                    return;
+                }
+
                 if (currentValue == null) {
                     currentValue = item;
 
@@ -719,6 +796,8 @@ public class SetFunctionValueAggregate implements SetFunction {
 
         SetFunctionValueAggregate item = (SetFunctionValueAggregate) group;
 
+        hasNull |= item.hasNull;
+
         if (isDistinct) {
             HashSet<Object>  otherSet = item.distinctValues;
             Iterator<Object> it       = otherSet.iterator();
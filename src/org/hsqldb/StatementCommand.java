@@ -37,7 +37,9 @@ import org.hsqldb.error.ErrorCode;
 import org.hsqldb.error.HsqlException;
 import org.hsqldb.index.Index;
 import org.hsqldb.index.IndexAVLCheck;
+import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.Iterator;
+import org.hsqldb.lib.List;
 import org.hsqldb.lib.OrderedHashMap;
 import org.hsqldb.lib.OrderedHashSet;
 import org.hsqldb.persist.DataFileCache;
@@ -61,7 +63,7 @@ import org.hsqldb.types.Type;
  * Implementation of Statement for SQL commands.<p>
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public class StatementCommand extends Statement {
@@ -130,6 +132,11 @@ public class StatementCommand extends Statement {
                 break;
             }
 
+            case StatementTypes.ANALYZE :
+                group    = StatementTypes.X_HSQLDB_DATABASE_OPERATION;
+                isLogged = false;
+                break;
+
             case StatementTypes.CHECK_INDEX : {
                 statementReturnType = StatementTypes.RETURN_RESULT;
                 group               =
@@ -166,6 +173,7 @@ public class StatementCommand extends Statement {
             case StatementTypes.SET_DATABASE_FILES_CACHE_SIZE :
             case StatementTypes.SET_DATABASE_FILES_SCALE :
             case StatementTypes.SET_DATABASE_FILES_SPACE :
+            case StatementTypes.SET_DATABASE_FILES_CHECKPOINT_FUZZY :
             case StatementTypes.SET_DATABASE_FILES_DEFRAG :
             case StatementTypes.SET_DATABASE_FILES_LOBS_SCALE :
             case StatementTypes.SET_DATABASE_FILES_LOBS_COMPRESSED :
@@ -218,6 +226,7 @@ public class StatementCommand extends Statement {
                 break;
 
             case StatementTypes.SET_TABLE_TYPE :
+            case StatementTypes.SET_TABLE_INDEX_TYPE :
                 group = StatementTypes.X_HSQLDB_SCHEMA_MANIPULATION;
                 break;
 
@@ -227,6 +236,12 @@ public class StatementCommand extends Statement {
                 isLogged               = false;
                 break;
 
+            case StatementTypes.SET_TABLE_STATISTICS :
+            case StatementTypes.SET_TABLE_BLOOM_FILTER :
+                group                  = StatementTypes.X_HSQLDB_SETTING;
+                isTransactionStatement = false;
+                break;
+
             case StatementTypes.SET_USER_LOCAL :
             case StatementTypes.SET_USER_INITIAL_SCHEMA :
             case StatementTypes.SET_USER_PASSWORD :
@@ -334,11 +349,13 @@ public class StatementCommand extends Statement {
             }
 
             case StatementTypes.DATABASE_BACKUP : {
-                String  path       = (String) arguments[0];
-                boolean blocking   = ((Boolean) arguments[1]).booleanValue();
-                boolean script     = ((Boolean) arguments[2]).booleanValue();
-                boolean compressed = ((Boolean) arguments[3]).booleanValue();
-                boolean files      = ((Boolean) arguments[4]).booleanValue();
+                String  path        = (String) arguments[0];
+                boolean blocking    = ((Boolean) arguments[1]).booleanValue();
+                boolean script      = ((Boolean) arguments[2]).booleanValue();
+                boolean compressed  = ((Boolean) arguments[3]).booleanValue();
+                boolean files       = ((Boolean) arguments[4]).booleanValue();
+                boolean incremental = ((Boolean) arguments[5]).booleanValue();
+                int     throttle    = ((Integer) arguments[6]).intValue();
 
                 try {
                     session.checkAdmin();
@@ -356,7 +373,9 @@ public class StatementCommand extends Statement {
                         script,
                         blocking,
                         compressed,
-                        files);
+                        files,
+                        incremental,
+                        throttle);
 
                     return Result.updateZeroResult;
                 } catch (HsqlException e) {
@@ -371,6 +390,9 @@ public class StatementCommand extends Statement {
                     session.checkAdmin();
                     session.checkDDLWrite();
                     session.database.logger.checkpoint(session, defrag, true);
+                    session.database.schemaManager.rebuildBloomFilters(
+                        session,
+                        defrag);
 
                     return Result.updateZeroResult;
                 } catch (HsqlException e) {
@@ -539,6 +561,20 @@ public class StatementCommand extends Statement {
                 }
             }
 
+            case StatementTypes.SET_DATABASE_FILES_CHECKPOINT_FUZZY : {
+                try {
+                    boolean mode = ((Boolean) arguments[0]).booleanValue();
+
+                    session.checkAdmin();
+                    session.checkDDLWrite();
+                    session.database.logger.setCheckpointFuzzy(mode);
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
+
             case StatementTypes.SET_DATABASE_FILES_DEFRAG : {
                 try {
                     int value = ((Integer) arguments[0]).intValue();
@@ -1227,6 +1263,64 @@ public class StatementCommand extends Statement {
                 }
             }
 
+            case StatementTypes.ANALYZE : {
+                try {
+                    HsqlName tableName = (HsqlName) arguments[0];
+                    HsqlArrayList<Table> tables;
+
+                    if (tableName == null) {
+                        session.checkAdmin();
+
+                        tables = session.database.schemaManager.getAllTables(
+                            false);
+                    } else {
+                        Table table =
+                            session.database.schemaManager.getUserTable(
+                                tableName);
+
+                        StatementSchema.checkSchemaUpdateAuthorisation(
+                            session,
+                            table.getSchemaName());
+
+                        tables = new HsqlArrayList<>();
+
+                        tables.add(table);
+                    }
+
+                    for (int i = 0; i < tables.size(); i++) {
+                        Table table = tables.get(i);
+
+                        switch (table.getTableType()) {
+
+                            case TableBase.MEMORY_TABLE :
+                            case TableBase.CACHED_TABLE :
+                            case TableBase.TEXT_TABLE :
+                                break;
+
+                            default :
+                                continue;
+                        }
+
+                        ColumnStatistics.analyze(session, table);
+
+                        // statistics are persisted by the log statements
+                        List<String> list = table.getSQLForStatistics();
+
+                        for (int j = 0; j < list.size(); j++) {
+                            session.database.logger.writeOtherStatement(
+                                session,
+                                list.get(j));
+                        }
+                    }
+
+                    session.database.schemaManager.setSchemaChangeTimestamp();
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
+
             case StatementTypes.CHECK_INDEX : {
                 try {
                     HsqlName tableName = (HsqlName) arguments[0];
@@ -1393,6 +1487,60 @@ public class StatementCommand extends Statement {
                 }
             }
 
+            case StatementTypes.SET_TABLE_STATISTICS : {
+                try {
+                    HsqlName name       = (HsqlName) arguments[0];
+                    HsqlName columnName = (HsqlName) arguments[1];
+                    ColumnStatistics statistics =
+                        (ColumnStatistics) arguments[2];
+                    Table table = session.database.schemaManager.getUserTable(
+                        name);
+
+                    StatementSchema.checkSchemaUpdateAuthorisation(
+                        session,
+                        table.getSchemaName());
+
+                    int colIndex = table.getColumnIndex(columnName.name);
+
+                    table.getColumn(colIndex).setStatistics(statistics);
+                    session.database.schemaManager.setSchemaChangeTimestamp();
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
+
+            case StatementTypes.SET_TABLE_BLOOM_FILTER : {
+                try {
+                    HsqlName name      = (HsqlName) arguments[0];
+                    HsqlName indexName = (HsqlName) arguments[1];
+                    boolean  mode = ((Boolean) arguments[2]).booleanValue();
+                    Table table = session.database.schemaManager.getUserTable(
+                        name);
+
+                    StatementSchema.checkSchemaUpdateAuthorisation(
+                        session,
+                        table.getSchemaName());
+
+                    Index index = table.getIndex(indexName.name);
+
+                    index.setBloomFilter(mode);
+
+                    if (mode && index.getBloomFilter() == null) {
+                        throw Error.error(
+                            ErrorCode.X_0A501,
+                            Tokens.T_BLOOM + ' ' + Tokens.T_FILTER);
+                    }
+
+                    session.database.schemaManager.setSchemaChangeTimestamp();
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
+
             case StatementTypes.SET_TABLE_READONLY : {
                 try {
                     HsqlName name = (HsqlName) arguments[0];
@@ -1520,6 +1668,32 @@ public class StatementCommand extends Statement {
                 }
             }
 
+            case StatementTypes.SET_TABLE_INDEX_TYPE : {
+                try {
+                    HsqlName name  = (HsqlName) arguments[0];
+                    boolean  btree = ((Boolean) arguments[1]).booleanValue();
+                    Table table = session.database.schemaManager.getUserTable(
+                        name);
+
+                    if (table.isBTreeIndexed() == btree) {
+                        return Result.updateZeroResult;
+                    }
+
+                    StatementSchema.checkSchemaUpdateAuthorisation(
+                        session,
+                        table.getSchemaName());
+
+                    TableWorks tw = new TableWorks(session, table);
+
+                    tw.setIndexType(btree);
+                    session.database.schemaManager.setSchemaChangeTimestamp();
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
+
             case StatementTypes.SET_USER_LOCAL : {
                 User    user = (User) arguments[0];
                 boolean mode = ((Boolean) arguments[1]).booleanValue();
@@ -52,7 +52,7 @@ import org.hsqldb.types.Type;
  * Implementation of Statement for DDL statements.<p>
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public class StatementSchema extends Statement {
@@ -1491,7 +1491,12 @@ public class StatementSchema extends Statement {
                             tableWorks.addIndex(
                                 c.getMainColumns(),
                                 c.getName(),
-                                false);
+                                false,
+                                false,
+                                false,
+                                null,
+                                null,
+                                null);
                         }
 
                         table = tableWorks.getTable();
@@ -1618,6 +1623,11 @@ public class StatementSchema extends Statement {
                 boolean       unique;
                 RoutineSchema routineSchema;
                 Boolean       ifNotExists;
+                boolean       hash;
+                Expression    condition;
+                Expression[]  keys;
+                int[]         include;
+                boolean       normalized;
 
                 table         = (Table) arguments[0];
                 indexColumns  = (int[]) arguments[1];
@@ -1625,6 +1635,19 @@ public class StatementSchema extends Statement {
                 unique        = ((Boolean) arguments[3]).booleanValue();
                 routineSchema = (RoutineSchema) arguments[4];
                 ifNotExists   = (Boolean) arguments[5];
+                hash          = arguments.length > 6
+                                && ((Boolean) arguments[6]).booleanValue();
+                condition     = arguments.length > 7
+                                ? (Expression) arguments[7]
+                                : null;
+                keys          = arguments.length > 8
+                                ? (Expression[]) arguments[8]
+                                : null;
+                include       = arguments.length > 9
+                                ? (int[]) arguments[9]
+                                : null;
+                normalized    = arguments.length > 10
+                                && ((Boolean) arguments[10]).booleanValue();
 
                 /*
                         Index index        = table.getIndexForColumns(indexColumns);
@@ -1650,7 +1673,15 @@ public class StatementSchema extends Statement {
                 try {
                     TableWorks tableWorks = new TableWorks(session, table);
 
-                    tableWorks.addIndex(indexColumns, name, unique);
+                    tableWorks.addIndex(
+                        indexColumns,
+                        name,
+                        unique,
+                        hash,
+                        normalized,
+                        include,
+                        keys,
+                        condition);
                     break;
                 } catch (HsqlException e) {
                     return Result.newErrorResult(e, sql);
@@ -816,9 +816,13 @@ public class StatementSession extends Statement {
                 String  feature = (String) arguments[0];
                 Boolean value   = (Boolean) arguments[1];
 
-                session.setFeature(feature, value.booleanValue());
+                try {
+                    session.setFeature(feature, value.booleanValue());
 
-                return Result.updateZeroResult;
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
             }
 
             case StatementTypes.SET_SESSION_RESULT_MAX_ROWS : {
@@ -35,7 +35,7 @@ package org.hsqldb;
  * Codes based on SQL Standards for different types of statement.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.0
+ * @version 2.7.4
  * @since 1.9.0
  */
 public interface StatementTypes {
@@ -185,6 +185,7 @@ public interface StatementTypes {
     int DATABASE_SCRIPT     = 1004;
     int LOAD_SCRIPT         = 1005;
     int CHECK_INDEX         = 1006;
+    int ANALYZE             = 1007;
 
     // hsqldb database settings
     int SET_DATABASE_FILES_BACKUP_INCREMENT    = 1011;
@@ -203,6 +204,7 @@ public interface StatementTypes {
     int SET_DATABASE_FILES_READ_ONLY_FILES     = 1024;
     int SET_DATABASE_FILES_SCALE               = 1025;
     int SET_DATABASE_FILES_SCRIPT_FORMAT       = 1026;
+    int SET_DATABASE_FILES_CHECKPOINT_FUZZY    = 1027;
     int SET_DATABASE_FILES_SPACE               = 1031;
     int SET_DATABASE_FILES_TEMP_PATH           = 1032;
     int SET_DATABASE_FILES_WRITE_DELAY         = 1033;
@@ -289,6 +291,9 @@ public interface StatementTypes {
     int SET_TABLE_NEW_TABLESPACE = 1160;
     int SET_TABLE_SET_TABLESPACE = 1161;
     int LOG_SCHEMA_STATEMENT     = 1162;
+    int SET_TABLE_STATISTICS     = 1163;
+    int SET_TABLE_INDEX_TYPE     = 1164;
+    int SET_TABLE_BLOOM_FILTER   = 1165;
 
     // hsqldb sql implementation
     int CONDITION = 1211;    // element of IF
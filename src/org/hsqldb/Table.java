@@ -32,13 +32,17 @@
 package org.hsqldb;
 
 import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.ParserDQL.CompileContext;
+import org.hsqldb.RangeGroup.RangeGroupSimple;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.error.HsqlException;
+import org.hsqldb.index.BloomFilter;
 import org.hsqldb.index.Index;
 import org.hsqldb.index.Index.IndexUse;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.List;
 import org.hsqldb.lib.OrderedHashMap;
 import org.hsqldb.lib.OrderedHashSet;
 import org.hsqldb.lib.OrderedIntHashSet;
@@ -705,6 +709,90 @@ public class Table extends TableBase implements SchemaObject {
         return sb.toString();
     }
 
+    /**
+     * Returns the statements for the column statistics collected by ANALYZE.
+     */
+    public List<String> getSQLForStatistics() {
+
+        HsqlArrayList<String> list = new HsqlArrayList<>();
+
+        for (int i = 0; i < columnCount; i++) {
+            ColumnSchema     column     = getColumn(i);
+            ColumnStatistics statistics = column.getStatistics();
+
+            if (statistics != null) {
+                list.add(statistics.getSQL(this, column));
+            }
+        }
+
+        return list;
+    }
+
+    public List<String> getSQLForBloomFilters() {
+
+        HsqlArrayList<String> list = new HsqlArrayList<>();
+
+        for (int i = 0; i < indexList.length; i++) {
+            if (indexList[i].getBloomFilter() != null) {
+                list.add(getSQLForBloomFilter(i, true));
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * The index is identified by its position in the table, as the names of
+     * the indexes of constraints are not persisted.
+     */
+    public String getSQLForBloomFilter(int position, boolean mode) {
+
+        StringBuilder sb = new StringBuilder(64);
+
+        sb.append(Tokens.T_SET)
+          .append(' ')
+          .append(Tokens.T_TABLE)
+          .append(' ')
+          .append(getName().getSchemaQualifiedStatementName())
+          .append(' ')
+          .append(Tokens.T_INDEX)
+          .append(' ')
+          .append(position)
+          .append(' ')
+          .append(Tokens.T_BLOOM)
+          .append(' ')
+          .append(Tokens.T_FILTER)
+          .append(' ')
+          .append(mode
+                  ? Tokens.T_TRUE
+                  : Tokens.T_FALSE);
+
+        return sb.toString();
+    }
+
+    /**
+     * Rebuilds the Bloom filters of the indexes that have become less
+     * selective after changes to the rows, or all the filters.
+     */
+    public void rebuildBloomFilters(Session session, boolean all) {
+
+        PersistentStore store = null;
+
+        for (int i = 0; i < indexList.length; i++) {
+            BloomFilter filter = indexList[i].getBloomFilter();
+
+            if (filter == null || !(all || filter.isStale())) {
+                continue;
+            }
+
+            if (store == null) {
+                store = getRowStore(session);
+            }
+
+            indexList[i].buildBloomFilter(session, store);
+        }
+    }
+
     public String getSQLForTableSpace() {
 
         if (!isCached() || tableSpace == DataSpaceManager.tableIdDefault) {
@@ -726,6 +814,29 @@ public class Table extends TableBase implements SchemaObject {
         return sb.toString();
     }
 
+    public String getSQLForIndexType() {
+
+        if (!isCached() || !isBTreeIndexed) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder(64);
+
+        sb.append(Tokens.T_SET)
+          .append(' ')
+          .append(Tokens.T_TABLE)
+          .append(' ')
+          .append(getName().getSchemaQualifiedStatementName())
+          .append(' ')
+          .append(Tokens.T_INDEX)
+          .append(' ')
+          .append(Tokens.T_TYPE)
+          .append(' ')
+          .append(Tokens.T_BTREE);
+
+        return sb.toString();
+    }
+
     public HsqlArrayList<String> getTriggerSQLArray() {
 
         HsqlArrayList<String> list = new HsqlArrayList<>();
@@ -1418,7 +1529,8 @@ public class Table extends TableBase implements SchemaObject {
             tn.persistenceScope = persistenceScope;
         }
 
-        tn.tableSpace = tableSpace;
+        tn.tableSpace     = tableSpace;
+        tn.isBTreeIndexed = isBTreeIndexed && newType == TableBase.CACHED_TABLE;
 
         for (int i = 0; i < columnCount; i++) {
             int pos = ArrayUtil.find(colIndex, i);
@@ -1443,6 +1555,7 @@ public class Table extends TableBase implements SchemaObject {
             col = col.duplicate();
 
             col.setPrimaryKey(false);
+            col.setStatistics(columnList.get(i).getStatistics());
             tn.addColumn(col);
         }
 
@@ -1470,6 +1583,8 @@ public class Table extends TableBase implements SchemaObject {
         }
 
         tn.createPrimaryKey(indexName, pkCols, false);
+        tn.getPrimaryIndex().setBloomFilter(
+            getPrimaryIndex().getBloomFilter() != null);
 
         for (int i = 1; i < indexList.length; i++) {
             Index idx = indexList[i];
@@ -1490,9 +1605,18 @@ public class Table extends TableBase implements SchemaObject {
                 false,
                 idx.isUnique(),
                 idx.isConstraint(),
-                idx.isForward());
+                idx.isForward(),
+                idx.isHash());
 
             newIdx.setClustered(idx.isClustered());
+            newIdx.setIncludeColumns(
+                ArrayUtil.toAdjustedColumnArray(
+                    idx.getIncludeColumns(),
+                    colIndex,
+                    adjust));
+            newIdx.setNormalized(idx.isNormalized());
+            newIdx.setBloomFilter(idx.getBloomFilter() != null);
+            tn.copyIndexExpressions(session, idx, newIdx);
             tn.addIndexStructure(newIdx);
         }
 
@@ -1634,7 +1758,9 @@ public class Table extends TableBase implements SchemaObject {
         for (int i = 0, size = indexList.length; i < size; i++) {
             Index index = indexList[i];
 
-            if (ArrayUtil.find(index.getColumns(), colIndex) != -1) {
+            if (ArrayUtil.find(index.getColumns(), colIndex) != -1
+                    || isIndexExpressionColumn(index, colIndex)
+                    || isIndexIncludeColumn(index, colIndex)) {
                 set.add(index.getName());
             }
         }
@@ -1642,6 +1768,209 @@ public class Table extends TableBase implements SchemaObject {
         return set;
     }
 
+    /**
+     * Returns true if the WHERE condition or a key expression of the index
+     * references the column.
+     */
+    private boolean isIndexExpressionColumn(Index index, int colIndex) {
+
+        if (isExpressionColumn(index.getCondition(), colIndex)) {
+            return true;
+        }
+
+        Expression[] keys = index.getKeyExpressions();
+
+        if (keys != null) {
+            for (int i = 0; i < keys.length; i++) {
+                if (isExpressionColumn(keys[i], colIndex)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isIndexIncludeColumn(Index index, int colIndex) {
+
+        int[] include = index.getIncludeColumns();
+
+        return include != null && ArrayUtil.find(include, colIndex) != -1;
+    }
+
+    private static boolean isExpressionColumn(Expression e, int colIndex) {
+
+        if (e == null) {
+            return false;
+        }
+
+        OrderedHashSet<Expression> set = e.collectAllExpressions(
+            null,
+            OpTypes.columnExpressionSet,
+            OpTypes.emptyExpressionSet);
+
+        if (set == null) {
+            return false;
+        }
+
+        for (int i = 0; i < set.size(); i++) {
+            if (set.get(i).getColumnIndex() == colIndex) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Sets the key expressions and the WHERE condition of an index. Either
+     * can be null. The expressions are resolved against this table and must
+     * be deterministic, with no subqueries, aggregates or routine calls. The
+     * condition must be a boolean expression.
+     */
+    void setIndexExpressions(
+            Session session,
+            Index index,
+            Expression[] keys,
+            Expression condition) {
+
+        CompileContext compileContext = new CompileContext(session);
+
+        compileContext.setNextRangeVarIndex(0);
+
+        RangeVariable range = new RangeVariable(
+            this,
+            null,
+            null,
+            null,
+            compileContext);
+        RangeGroup rangeGroup = new RangeGroupSimple(
+            new RangeVariable[]{ range },
+            false);
+
+        if (keys != null) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == null) {
+                    continue;
+                }
+
+                resolveIndexExpression(session, rangeGroup, keys[i]);
+
+                Type type = keys[i].getDataType();
+
+                if (type == null || type.isLobType() || type.isArrayType()) {
+                    throw Error.error(ErrorCode.X_42534);
+                }
+            }
+        }
+
+        if (condition != null) {
+            resolveIndexExpression(session, rangeGroup, condition);
+
+            if (Type.SQL_BOOLEAN != condition.getDataType()) {
+                throw Error.error(ErrorCode.X_42568);
+            }
+        }
+
+        range.setForCheckConstraint();
+
+        if (keys != null) {
+            index.setKeyExpressions(keys, range);
+        }
+
+        if (condition != null) {
+            index.setCondition(condition, range);
+        }
+    }
+
+    private static void resolveIndexExpression(
+            Session session,
+            RangeGroup rangeGroup,
+            Expression e) {
+
+        e.setNoOptimisation();
+        e.resolveCheckOrGenExpression(session, rangeGroup, false);
+
+        OrderedHashSet<Expression> set = e.collectAllExpressions(
+            null,
+            OpTypes.functionExpressionSet,
+            OpTypes.emptyExpressionSet);
+
+        if (set != null) {
+            for (int i = 0; i < set.size(); i++) {
+                if (set.get(i).getType() == OpTypes.FUNCTION) {
+                    throw Error.error(ErrorCode.X_42512);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the key expressions and the WHERE condition of an index to a
+     * new index of this table. The expressions are compiled again from their
+     * SQL, as the columns of the table may have changed.
+     */
+    void copyIndexExpressions(Session session, Index index, Index newIndex) {
+
+        Expression[] keys = index.getKeyExpressions();
+
+        if (keys != null) {
+            keys = (Expression[]) ArrayUtil.duplicateArray(keys);
+
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    keys[i] = compileIndexExpression(
+                        session,
+                        keys[i],
+                        false);
+                }
+            }
+        }
+
+        Expression condition = index.getCondition();
+
+        if (condition != null) {
+            condition = compileIndexExpression(session, condition, true);
+        }
+
+        if (keys != null || condition != null) {
+            setIndexExpressions(session, newIndex, keys, condition);
+        }
+    }
+
+    /**
+     * Copies only the WHERE condition of an index to a new index of this
+     * table with a different column list.
+     */
+    void copyIndexCondition(Session session, Index index, Index newIndex) {
+
+        Expression condition = index.getCondition();
+
+        if (condition == null) {
+            return;
+        }
+
+        condition = compileIndexExpression(session, condition, true);
+
+        setIndexExpressions(session, newIndex, null, condition);
+    }
+
+    private static Expression compileIndexExpression(
+            Session session,
+            Expression e,
+            boolean isCondition) {
+
+        Scanner   scanner = new Scanner(session, e.getSQL());
+        ParserDQL parser  = new ParserDQL(session, scanner, null);
+
+        parser.compileContext.setNextRangeVarIndex(0);
+        parser.read();
+
+        return isCondition
+               ? parser.XreadBooleanValueExpression()
+               : parser.XreadValueExpression();
+    }
+
     /**
      * Returns list of MAIN constraints dependent on this PK or UNIQUE constraint
      */
@@ -2722,6 +3051,10 @@ public class Table extends TableBase implements SchemaObject {
     Index getFullIndexForColumns(int[] cols) {
 
         for (int i = 0; i < indexList.length; i++) {
+            if (hasIndexExpressions(indexList[i])) {
+                continue;
+            }
+
             if (ArrayUtil.haveEqualArrays(indexList[i].getColumns(),
                                           cols,
                                           cols.length)) {
@@ -2732,12 +3065,38 @@ public class Table extends TableBase implements SchemaObject {
         return null;
     }
 
+    /**
+     *  Returns a hash index on the same ordered columns as the given index,
+     *  or the given index if there is none
+     */
+    Index getHashIndexOrSelf(Index index) {
+
+        int[] cols = index.getColumns();
+
+        for (int i = 0; i < indexList.length; i++) {
+            if (indexList[i].isHash()
+                    && !hasIndexExpressions(indexList[i])
+                    && indexList[i].getColumnCount() == cols.length
+                    && ArrayUtil.haveEqualArrays(indexList[i].getColumns(),
+                                                 cols,
+                                                 cols.length)) {
+                return indexList[i];
+            }
+        }
+
+        return index;
+    }
+
     /**
      *  Finds an existing index for an unordered full column group
      */
     Index getIndexForAllColumns(int[] cols) {
 
         for (int i = 0; i < indexList.length; i++) {
+            if (hasIndexExpressions(indexList[i])) {
+                continue;
+            }
+
             if (ArrayUtil.haveEqualSets(indexList[i].getColumns(),
                                         cols,
                                         cols.length)) {
@@ -2759,6 +3118,25 @@ public class Table extends TableBase implements SchemaObject {
             OrderedIntHashSet set,
             int opType,
             boolean ordered) {
+        return getIndexForColumns(
+            session,
+            set,
+            opType,
+            ordered,
+            Index.emptyArray);
+    }
+
+    /**
+     * As above, but also considers the given partial indexes, whose
+     * conditions are implied by the query conditions. Partial indexes are
+     * considered before the other indexes.
+     */
+    synchronized IndexUse[] getIndexForColumns(
+            Session session,
+            OrderedIntHashSet set,
+            int opType,
+            boolean ordered,
+            Index[] partialIndexes) {
 
         if (set.isEmpty()) {
             return Index.emptyUseArray;
@@ -2768,7 +3146,8 @@ public class Table extends TableBase implements SchemaObject {
             session,
             set,
             opType,
-            ordered);
+            ordered,
+            partialIndexes);
 
         if (indexUse.length == 0) {
             Index selected = null;
@@ -2799,16 +3178,42 @@ public class Table extends TableBase implements SchemaObject {
             Session session,
             OrderedIntHashSet set,
             int opType,
-            boolean ordered) {
+            boolean ordered,
+            Index[] partialIndexes) {
 
-        IndexUse[] indexUse = Index.emptyUseArray;
+        IndexUse[] indexUse     = Index.emptyUseArray;
+        int        partialCount = partialIndexes.length;
+        int        count        = partialCount + indexList.length;
 
         if (set.isEmpty()) {
             return Index.emptyUseArray;
         }
 
-        for (int i = 0, count = indexList.length; i < count; i++) {
-            Index currentIndex = getIndex(i);
+        // a hash index on exactly the columns is the cheapest equality lookup
+        if (opType == OpTypes.EQUAL && !ordered) {
+            for (int i = 0; i < count; i++) {
+                Index currentIndex = getCandidateIndex(partialIndexes, i);
+
+                if (currentIndex == null) {
+                    continue;
+                }
+
+                if (currentIndex.isHash()
+                        && currentIndex.getColumnCount() == set.size()
+                        && set.getStartMatchCount(currentIndex.getColumns())
+                           == set.size()) {
+                    return currentIndex.asArray();
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            Index currentIndex = getCandidateIndex(partialIndexes, i);
+
+            if (currentIndex == null) {
+                continue;
+            }
+
             int[] indexcols    = currentIndex.getColumns();
             int   matchCount   = ordered
                                  ? set.getOrderedStartMatchCount(indexcols)
@@ -2846,6 +3251,30 @@ public class Table extends TableBase implements SchemaObject {
         return indexUse;
     }
 
+    /**
+     * Returns the candidate index at the given position in the list of the
+     * partial indexes followed by the table indexes, or null for an index
+     * on expressions or a partial index of the table.
+     */
+    private Index getCandidateIndex(Index[] partialIndexes, int i) {
+
+        Index index;
+
+        if (i < partialIndexes.length) {
+            index = partialIndexes[i];
+
+            return index.getKeyExpressions() == null
+                   ? index
+                   : null;
+        }
+
+        index = indexList[i - partialIndexes.length];
+
+        return hasIndexExpressions(index)
+               ? null
+               : index;
+    }
+
     /**
      * Returns an index on all the columns
      */
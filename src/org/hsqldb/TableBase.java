@@ -105,6 +105,7 @@ public class TableBase implements Cloneable {
     protected boolean isSchemaBased;
     protected boolean isLogged;
     public boolean    isSystemVersioned;
+    boolean           isBTreeIndexed;
     boolean           hasLobColumn;
 
     //
@@ -248,6 +249,22 @@ public class TableBase implements Cloneable {
         return isSystemVersioned;
     }
 
+    /**
+     * Returns true if the indexes of the CACHED table are stored as B+tree
+     * pages instead of nodes in each row.
+     */
+    public boolean isBTreeIndexed() {
+        return isBTreeIndexed;
+    }
+
+    /**
+     * Returns true if the index has a WHERE condition or key expressions.
+     */
+    static boolean hasIndexExpressions(Index index) {
+        return index.getCondition() != null
+               || index.getKeyExpressions() != null;
+    }
+
     /**
      * This method is called whenever there is a change to table structure and
      * serves two purposes: (a) to reset the best set of columns that identify
@@ -288,7 +305,9 @@ public class TableBase implements Cloneable {
             int[] cols      = index.getColumns();
             int   colsCount = index.getColumnCount();
 
-            if (colsCount == 0) {
+            // partial and expression indexes are used only when a query
+            // matches the condition and the key expressions
+            if (colsCount == 0 || hasIndexExpressions(index)) {
                 continue;
             }
 
@@ -438,13 +457,40 @@ public class TableBase implements Cloneable {
             boolean constraint,
             boolean forward) {
 
+        return createIndexStructure(
+            name,
+            columns,
+            descending,
+            nullsLast,
+            primaryKey,
+            unique,
+            constraint,
+            forward,
+            false);
+    }
+
+    public final Index createIndexStructure(
+            HsqlName name,
+            int[] columns,
+            boolean[] descending,
+            boolean[] nullsLast,
+            boolean primaryKey,
+            boolean unique,
+            boolean constraint,
+            boolean forward,
+            boolean hash) {
+
         int    s     = columns.length;
         int[]  cols  = new int[s];
         Type[] types = new Type[s];
 
+        // the types of expression keys are set with the expressions
         for (int j = 0; j < s; j++) {
-            cols[j]  = columns[j];
-            types[j] = colTypes[cols[j]];
+            cols[j] = columns[j];
+
+            if (cols[j] < colTypes.length) {
+                types[j] = colTypes[cols[j]];
+            }
         }
 
         long id = database.persistentStoreCollection.getNextId();
@@ -459,7 +505,8 @@ public class TableBase implements Cloneable {
             primaryKey,
             unique,
             constraint,
-            forward);
+            forward,
+            hash);
 
         return newIndex;
     }
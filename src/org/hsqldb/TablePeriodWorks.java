@@ -42,7 +42,7 @@ import org.hsqldb.types.TimestampData;
  * existing table which may result in a new Table object.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 2.5.0
  */
 class TablePeriodWorks {
@@ -80,6 +80,10 @@ class TablePeriodWorks {
             throw Error.error(ErrorCode.X_42518);
         }
 
+        if (table.isBTreeIndexed) {
+            throw Error.error(ErrorCode.X_0A501, Tokens.T_BTREE);
+        }
+
         table.isSystemVersioned = true;
     }
 
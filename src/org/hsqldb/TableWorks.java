@@ -36,6 +36,7 @@ import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.error.HsqlException;
 import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexAVLHash;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.OrderedHashSet;
@@ -51,7 +52,7 @@ import org.hsqldb.types.Types;
  * existing table which may result in a new Table object
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.7.0
  */
 public class TableWorks {
@@ -641,9 +642,14 @@ public class TableWorks {
             false,
             false,
             index.isConstraint(),
-            index.isForward());
+            index.isForward(),
+            index.isHash());
 
         newIndex.setPosition(position);
+        newIndex.setIncludeColumns(index.getIncludeColumns());
+        newIndex.setNormalized(index.isNormalized());
+        newIndex.setBloomFilter(index.getBloomFilter() != null);
+        table.copyIndexCondition(session, index, newIndex);
 
         table.getIndexList()[position] = newIndex;
 
@@ -670,9 +676,22 @@ public class TableWorks {
      * @param col int[]
      * @param name HsqlName
      * @param unique boolean
+     * @param hash boolean
+     * @param normalized use normalized binary keys
+     * @param include INCLUDE columns of a covering index, or null
+     * @param keys key expressions of an index on expressions, or null
+     * @param condition WHERE condition of a partial index, or null
      * @return new index
      */
-    Index addIndex(int[] col, HsqlName name, boolean unique) {
+    Index addIndex(
+            int[] col,
+            HsqlName name,
+            boolean unique,
+            boolean hash,
+            boolean normalized,
+            int[] include,
+            Expression[] keys,
+            Expression condition) {
 
         Index newIndex;
 
@@ -681,15 +700,22 @@ public class TableWorks {
         if (session.isProcessingScript()
                 || table.isEmpty(session)
                 || table.isIndexingMutable()) {
-            newIndex = table.createIndex(
-                session,
+            newIndex = table.createIndexStructure(
                 name,
                 col,
                 null,
                 null,
+                false,
                 unique,
                 false,
-                false);
+                false,
+                hash);
+
+            newIndex.setIncludeColumns(include);
+            newIndex.setNormalized(normalized);
+            setIndexExpressions(newIndex, keys, condition);
+            checkNormalized(newIndex, normalized);
+            table.addIndex(session, newIndex);
         } else {
             newIndex = table.createIndexStructure(
                 name,
@@ -699,7 +725,13 @@ public class TableWorks {
                 false,
                 unique,
                 false,
-                false);
+                false,
+                hash);
+
+            newIndex.setIncludeColumns(include);
+            newIndex.setNormalized(normalized);
+            setIndexExpressions(newIndex, keys, condition);
+            checkNormalized(newIndex, normalized);
 
             Table tn = table.moveDefinition(
                 session,
@@ -712,6 +744,7 @@ public class TableWorks {
                 emptySet,
                 emptySet);
 
+            tn.copyIndexExpressions(session, newIndex, newIndex);
             moveData(table, tn, new int[]{}, 0);
 
             table = tn;
@@ -726,6 +759,30 @@ public class TableWorks {
         return newIndex;
     }
 
+    private void setIndexExpressions(
+            Index index,
+            Expression[] keys,
+            Expression condition) {
+
+        if (keys == null && condition == null) {
+            return;
+        }
+
+        table.setIndexExpressions(session, index, keys, condition);
+
+        if (index.isHash()
+                && !IndexAVLHash.isHashable(table, index.getColumnTypes())) {
+            throw Error.error(ErrorCode.X_0A501, "HASH");
+        }
+    }
+
+    private void checkNormalized(Index index, boolean normalized) {
+
+        if (normalized && !index.isNormalized()) {
+            throw Error.error(ErrorCode.X_0A501, "NORMALIZED");
+        }
+    }
+
     void addPrimaryKey(Constraint constraint) {
 
         checkModifyTable(true);
@@ -1564,6 +1621,59 @@ public class TableWorks {
         return true;
     }
 
+    /**
+     * Recreates the CACHED table with B+tree or AVL indexes.
+     */
+    public void setIndexType(boolean btree) {
+
+        if (table.isBTreeIndexed() == btree) {
+            return;
+        }
+
+        if (!table.isCached()) {
+            throw Error.error(ErrorCode.ACCESS_IS_DENIED);
+        }
+
+        if (btree) {
+            if (database.logger.getCrypto() != null
+                    || table.isSystemVersioned()) {
+                throw Error.error(ErrorCode.X_0A501, Tokens.T_BTREE);
+            }
+        }
+
+        Table tn;
+
+        table.getRowStore(session);
+
+        table.isBTreeIndexed = btree;
+
+        try {
+            tn = table.moveDefinition(
+                session,
+                table.getTableType(),
+                ColumnSchema.emptyArray,
+                null,
+                null,
+                new int[0],
+                0,
+                emptySet,
+                emptySet);
+
+            moveData(table, tn, new int[]{}, 0);
+        } catch (HsqlException e) {
+            table.isBTreeIndexed = !btree;
+
+            throw e;
+        }
+
+        setNewTableInSchema(tn);
+        updateConstraints(tn, emptySet);
+
+        table = tn;
+
+        database.schemaManager.recompileDependentObjects(table);
+    }
+
     void addSystemPeriod(PeriodDefinition period) {
 
         if (table.systemPeriod != null) {
@@ -699,19 +699,23 @@ public final class Tokens {
     // other tokens
     static final String        T_ALIAS                      = "ALIAS";
     static final String        T_AGGREGATE                  = "AGGREGATE";
+    static final String        T_ANALYZE                    = "ANALYZE";
     public static final String T_AUTHENTICATION             = "AUTHENTICATION";
     static final String        T_AUTO_INCREMENT             = "AUTO_INCREMENT";
     static final String        T_AUTOCOMMIT                 = "AUTOCOMMIT";
+    static final String        T_AVL                        = "AVL";
     public static final String T_BACKUP                     = "BACKUP";
     static final String        T_BIGSERIAL                  = "BIGSERIAL";
     static final String        T_BINARY_DOUBLE              = "BINARY_DOUBLE";
     static final String        T_BINARY_FLOAT               = "BINARY_FLOAT";
+    static final String        T_BLOOM                      = "BLOOM";
     static final String        T_BODY                       = "BODY";
+    static final String        T_BTREE                      = "BTREE";
     static final String        T_BYTE                       = "BYTE";
     public static final String T_CACHE                      = "CACHE";
     public static final String T_CACHED                     = "CACHED";
     static final String        T_CASEWHEN                   = "CASEWHEN";
-    static final String        T_CHECKPOINT                 = "CHECKPOINT";
+    public static final String T_CHECKPOINT                 = "CHECKPOINT";
     static final String        T_CITEXT                     = "CITEXT";
     static final String        T_CLASS                      = "CLASS";
     static final String        T_CLUSTERED                  = "CLUSTERED";
@@ -741,11 +745,13 @@ public final class Tokens {
     static final String        T_FILE                       = "FILE";
     public static final String T_FILES                      = "FILES";
     static final String        T_FOLD                       = "FOLD";
+    public static final String T_FUZZY                      = "FUZZY";
     static final String        T_GROUP_CONCAT               = "GROUP_CONCAT";
     static final String        T_HEADER                     = "HEADER";
     public static final String T_IDENTIFIER                 = "IDENTIFIER";
     static final String        T_IFNULL                     = "IFNULL";
     public static final String T_IGNORECASE                 = "IGNORECASE";
+    public static final String T_INCREMENTAL                = "INCREMENTAL";
     public static final String T_INDEX                      = "INDEX";
     public static final String T_INDEXER                    = "INDEXER";
     public static final String T_INFINITY                   = "INFINITY";
@@ -810,6 +816,7 @@ public final class Tokens {
     static final String        T_BLOCKING                   = "BLOCKING";
     static final String        T_SHARE                      = "SHARE";
     static final String        T_SHUTDOWN                   = "SHUTDOWN";
+    static final String        T_STATISTICS                 = "STATISTICS";
     static final String        T_SQL_TSI_DAY                = "SQL_TSI_DAY";
     static final String        T_SQL_TSI_FRAC_SECOND        = "SQL_TSI_FRAC_SECOND";
     static final String        T_SQL_TSI_MILLI_SECOND       = "SQL_TSI_MILLI_SECOND";
@@ -857,6 +864,7 @@ public final class Tokens {
     public static final String T_TDC                        = "TDC";
     public static final String T_TEMP                       = "TEMP";
     public static final String T_TEXT                       = "TEXT";
+    public static final String T_THROTTLE                   = "THROTTLE";
     static final String        T_TIMESTAMP_WITH_ZONE        = "TIMESTAMP_WITH_ZONE";
     static final String        T_TIMESTAMPADD               = "TIMESTAMPADD";
     static final String        T_TIMESTAMPDIFF              = "TIMESTAMPDIFF";
@@ -1938,6 +1946,8 @@ public final class Tokens {
     public static final int WEEK                       = 849;
     public static final int WEEK_OF_YEAR               = 850;
     public static final int WRITE_DELAY                = 851;
+    public static final int ANALYZE                    = 852;
+    public static final int STATISTICS                 = 853;
 
     //
     public static final int SQL_BIGINT         = 860;
@@ -2425,6 +2435,7 @@ public final class Tokens {
         commandSet.put(T_AFTER, AFTER);
         commandSet.put(T_AGGREGATE, AGGREGATE);
         commandSet.put(T_ALIAS, ALIAS);
+        commandSet.put(T_ANALYZE, ANALYZE);
         commandSet.put(T_ALWAYS, ALWAYS);
         commandSet.put(T_ARRAY_SORT, ARRAY_SORT);
         commandSet.put(T_ASC, ASC);
@@ -2719,6 +2730,7 @@ public final class Tokens {
         commandSet.put(T_SOURCE, SOURCE);
         commandSet.put(T_SPACE, SPACE);
         commandSet.put(T_STATEMENT, STATEMENT);
+        commandSet.put(T_STATISTICS, STATISTICS);
         commandSet.put(T_STDDEV, STDDEV);
         commandSet.put(T_STOP, STOP);
         commandSet.put(T_STRING_AGG, STRING_AGG);
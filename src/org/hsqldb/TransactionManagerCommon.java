@@ -51,7 +51,7 @@ import org.hsqldb.lib.OrderedHashSet;
  * Shared code for TransactionManager classes
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 2.0.0
  */
 class TransactionManagerCommon {
@@ -306,7 +306,8 @@ class TransactionManagerCommon {
             session.logSequences();
 
             if (limit > 0 && writeCommit) {
-                database.logger.writeCommitStatement(session);
+                session.isCommitSyncPending =
+                    database.logger.writeCommitStatement(session);
             }
         } catch (HsqlException e) {
             database.logger.logWarningEvent("data commit logging failed", e);
@@ -54,7 +54,7 @@ import org.hsqldb.persist.PersistentStore;
  * DatabaseInformation implementations. <p>
  *
  * @author Campbell Burnet (campbell-burnet@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.7.2
  */
 public class DatabaseInformation {
@@ -90,85 +90,86 @@ public class DatabaseInformation {
     static final int SYSTEM_TABLESTATS            = 25;
     static final int SYSTEM_TEXTTABLES            = 26;
     static final int SYSTEM_SYNONYMS              = 27;
+    static final int SYSTEM_COLUMNSTATS           = 28;
 
     // SQL 200n tables
-    static final int ADMINISTRABLE_ROLE_AUTHORIZATIONS = 28;
-    static final int APPLICABLE_ROLES                  = 29;
-    static final int ASSERTIONS                        = 30;
-    static final int AUTHORIZATIONS                    = 31;
-    static final int CHARACTER_SETS                    = 32;
-    static final int CHECK_CONSTRAINT_ROUTINE_USAGE    = 33;
-    static final int CHECK_CONSTRAINTS                 = 34;
-    static final int COLLATIONS                        = 35;
-    static final int COLUMN_COLUMN_USAGE               = 36;
-    static final int COLUMN_DOMAIN_USAGE               = 37;
-    static final int COLUMN_PRIVILEGES                 = 38;
-    static final int COLUMN_UDT_USAGE                  = 39;
-    static final int COLUMNS                           = 40;
-    static final int CONSTRAINT_COLUMN_USAGE           = 41;
-    static final int CONSTRAINT_PERIOD_USAGE           = 42;
-    static final int CONSTRAINT_TABLE_USAGE            = 43;
-    static final int DATA_TYPE_PRIVILEGES              = 44;
-    static final int DOMAIN_CONSTRAINTS                = 45;
-    static final int DOMAINS                           = 46;
-    static final int ELEMENT_TYPES                     = 47;
-    static final int ENABLED_ROLES                     = 48;
-    static final int INFORMATION_SCHEMA_CATALOG_NAME   = 49;
-    static final int JAR_JAR_USAGE                     = 50;
-    static final int JARS                              = 51;
-    static final int KEY_COLUMN_USAGE                  = 52;
-    static final int KEY_PERIOD_USAGE                  = 53;
-    static final int METHOD_SPECIFICATIONS             = 54;
-    static final int MODULE_COLUMN_USAGE               = 55;
-    static final int MODULE_PRIVILEGES                 = 56;
-    static final int MODULE_TABLE_USAGE                = 57;
-    static final int MODULES                           = 58;
-    static final int PARAMETERS                        = 59;
-    static final int PERIODS                           = 60;
-    static final int REFERENTIAL_CONSTRAINTS           = 61;
-    static final int ROLE_AUTHORIZATION_DESCRIPTORS    = 62;
-    static final int ROLE_COLUMN_GRANTS                = 63;
-    static final int ROLE_MODULE_GRANTS                = 64;
-    static final int ROLE_ROUTINE_GRANTS               = 65;
-    static final int ROLE_TABLE_GRANTS                 = 66;
-    static final int ROLE_UDT_GRANTS                   = 67;
-    static final int ROLE_USAGE_GRANTS                 = 68;
-    static final int ROUTINE_COLUMN_USAGE              = 69;
-    static final int ROUTINE_JAR_USAGE                 = 70;
-    static final int ROUTINE_PERIOD_USAGE              = 71;
-    static final int ROUTINE_PRIVILEGES                = 72;
-    static final int ROUTINE_ROUTINE_USAGE             = 73;
-    static final int ROUTINE_SEQUENCE_USAGE            = 74;
-    static final int ROUTINE_TABLE_USAGE               = 75;
-    static final int ROUTINES                          = 76;
-    static final int SCHEMATA                          = 77;
-    static final int SEQUENCES                         = 78;
-    static final int SQL_FEATURES                      = 79;
-    static final int SQL_IMPLEMENTATION_INFO           = 80;
-    static final int SQL_PACKAGES                      = 81;
-    static final int SQL_PARTS                         = 82;
-    static final int SQL_SIZING                        = 83;
-    static final int SQL_SIZING_PROFILES               = 84;
-    static final int TABLE_CONSTRAINTS                 = 85;
-    static final int TABLE_PRIVILEGES                  = 86;
-    static final int TABLES                            = 87;
-    static final int TRANSLATIONS                      = 88;
-    static final int TRIGGER_COLUMN_USAGE              = 89;
-    static final int TRIGGER_PERIOD_USAGE              = 90;
-    static final int TRIGGER_ROUTINE_USAGE             = 91;
-    static final int TRIGGER_SEQUENCE_USAGE            = 92;
-    static final int TRIGGER_TABLE_USAGE               = 93;
-    static final int TRIGGERED_UPDATE_COLUMNS          = 94;
-    static final int TRIGGERS                          = 95;
-    static final int TYPE_JAR_USAGE                    = 96;
-    static final int UDT_PRIVILEGES                    = 97;
-    static final int USAGE_PRIVILEGES                  = 98;
-    static final int USER_DEFINED_TYPES                = 99;
-    static final int VIEW_COLUMN_USAGE                 = 100;
-    static final int VIEW_PERIOD_USAGE                 = 101;
-    static final int VIEW_ROUTINE_USAGE                = 102;
-    static final int VIEW_TABLE_USAGE                  = 103;
-    static final int VIEWS                             = 104;
+    static final int ADMINISTRABLE_ROLE_AUTHORIZATIONS = 29;
+    static final int APPLICABLE_ROLES                  = 30;
+    static final int ASSERTIONS                        = 31;
+    static final int AUTHORIZATIONS                    = 32;
+    static final int CHARACTER_SETS                    = 33;
+    static final int CHECK_CONSTRAINT_ROUTINE_USAGE    = 34;
+    static final int CHECK_CONSTRAINTS                 = 35;
+    static final int COLLATIONS                        = 36;
+    static final int COLUMN_COLUMN_USAGE               = 37;
+    static final int COLUMN_DOMAIN_USAGE               = 38;
+    static final int COLUMN_PRIVILEGES                 = 39;
+    static final int COLUMN_UDT_USAGE                  = 40;
+    static final int COLUMNS                           = 41;
+    static final int CONSTRAINT_COLUMN_USAGE           = 42;
+    static final int CONSTRAINT_PERIOD_USAGE           = 43;
+    static final int CONSTRAINT_TABLE_USAGE            = 44;
+    static final int DATA_TYPE_PRIVILEGES              = 45;
+    static final int DOMAIN_CONSTRAINTS                = 46;
+    static final int DOMAINS                           = 47;
+    static final int ELEMENT_TYPES                     = 48;
+    static final int ENABLED_ROLES                     = 49;
+    static final int INFORMATION_SCHEMA_CATALOG_NAME   = 50;
+    static final int JAR_JAR_USAGE                     = 51;
+    static final int JARS                              = 52;
+    static final int KEY_COLUMN_USAGE                  = 53;
+    static final int KEY_PERIOD_USAGE                  = 54;
+    static final int METHOD_SPECIFICATIONS             = 55;
+    static final int MODULE_COLUMN_USAGE               = 56;
+    static final int MODULE_PRIVILEGES                 = 57;
+    static final int MODULE_TABLE_USAGE                = 58;
+    static final int MODULES                           = 59;
+    static final int PARAMETERS                        = 60;
+    static final int PERIODS                           = 61;
+    static final int REFERENTIAL_CONSTRAINTS           = 62;
+    static final int ROLE_AUTHORIZATION_DESCRIPTORS    = 63;
+    static final int ROLE_COLUMN_GRANTS                = 64;
+    static final int ROLE_MODULE_GRANTS                = 65;
+    static final int ROLE_ROUTINE_GRANTS               = 66;
+    static final int ROLE_TABLE_GRANTS                 = 67;
+    static final int ROLE_UDT_GRANTS                   = 68;
+    static final int ROLE_USAGE_GRANTS                 = 69;
+    static final int ROUTINE_COLUMN_USAGE              = 70;
+    static final int ROUTINE_JAR_USAGE                 = 71;
+    static final int ROUTINE_PERIOD_USAGE              = 72;
+    static final int ROUTINE_PRIVILEGES                = 73;
+    static final int ROUTINE_ROUTINE_USAGE             = 74;
+    static final int ROUTINE_SEQUENCE_USAGE            = 75;
+    static final int ROUTINE_TABLE_USAGE               = 76;
+    static final int ROUTINES                          = 77;
+    static final int SCHEMATA                          = 78;
+    static final int SEQUENCES                         = 79;
+    static final int SQL_FEATURES                      = 80;
+    static final int SQL_IMPLEMENTATION_INFO           = 81;
+    static final int SQL_PACKAGES                      = 82;
+    static final int SQL_PARTS                         = 83;
+    static final int SQL_SIZING                        = 84;
+    static final int SQL_SIZING_PROFILES               = 85;
+    static final int TABLE_CONSTRAINTS                 = 86;
+    static final int TABLE_PRIVILEGES                  = 87;
+    static final int TABLES                            = 88;
+    static final int TRANSLATIONS                      = 89;
+    static final int TRIGGER_COLUMN_USAGE              = 90;
+    static final int TRIGGER_PERIOD_USAGE              = 91;
+    static final int TRIGGER_ROUTINE_USAGE             = 92;
+    static final int TRIGGER_SEQUENCE_USAGE            = 93;
+    static final int TRIGGER_TABLE_USAGE               = 94;
+    static final int TRIGGERED_UPDATE_COLUMNS          = 95;
+    static final int TRIGGERS                          = 96;
+    static final int TYPE_JAR_USAGE                    = 97;
+    static final int UDT_PRIVILEGES                    = 98;
+    static final int USAGE_PRIVILEGES                  = 99;
+    static final int USER_DEFINED_TYPES                = 100;
+    static final int VIEW_COLUMN_USAGE                 = 101;
+    static final int VIEW_PERIOD_USAGE                 = 102;
+    static final int VIEW_ROUTINE_USAGE                = 103;
+    static final int VIEW_TABLE_USAGE                  = 104;
+    static final int VIEWS                             = 105;
 
     /** system table names strictly in order of their ids */
     static final String[] sysTableNames = {
@@ -202,6 +203,7 @@ public class DatabaseInformation {
         "SYSTEM_TABLESTATS",               //
         "SYSTEM_TEXTTABLES",               //
         "SYSTEM_SYNONYMS",                 //
+        "SYSTEM_COLUMNSTATS",              //
 
         // SQL 200n
         "ADMINISTRABLE_ROLE_AUTHORIZATIONS",    //
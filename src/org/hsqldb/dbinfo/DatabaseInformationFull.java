@@ -32,6 +32,7 @@
 package org.hsqldb.dbinfo;
 
 import org.hsqldb.ColumnSchema;
+import org.hsqldb.ColumnStatistics;
 import org.hsqldb.Constraint;
 import org.hsqldb.Database;
 import org.hsqldb.Expression;
@@ -56,6 +57,7 @@ import org.hsqldb.Tokens;
 import org.hsqldb.TriggerDef;
 import org.hsqldb.View;
 import org.hsqldb.error.HsqlException;
+import org.hsqldb.index.BloomFilter;
 import org.hsqldb.index.Index;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.FileUtil;
@@ -66,6 +68,7 @@ import org.hsqldb.lib.LineGroupReader;
 import org.hsqldb.lib.OrderedHashMap;
 import org.hsqldb.lib.OrderedHashSet;
 import org.hsqldb.lib.Set;
+import org.hsqldb.lib.StringConverter;
 import org.hsqldb.lib.WrapperIterator;
 import org.hsqldb.persist.DataFileCache;
 import org.hsqldb.persist.DataSpaceManager;
@@ -112,7 +115,7 @@ import org.hsqldb.types.Type;
  *
  * @author Campbell Burnet (campbell-burnet@users dot sourceforge.net)
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.7.2
  */
 final class DatabaseInformationFull
@@ -177,6 +180,9 @@ final class DatabaseInformationFull
             case SYSTEM_TABLESTATS :
                 return SYSTEM_TABLESTATS(session, store);
 
+            case SYSTEM_COLUMNSTATS :
+                return SYSTEM_COLUMNSTATS(session, store);
+
             case SYSTEM_TEXTTABLES :
                 return SYSTEM_TEXTTABLES(session, store);
 
@@ -428,6 +434,8 @@ final class DatabaseInformationFull
      * FREE_BYTES          BIGINT   total bytes in available file allocation units
      * FREE_COUNT          BIGINT   total # of allocation units available
      * FREE_POS            BIGINT   largest file position allocated + 1
+     * CACHE_HITS          BIGINT   number of rows found in the cache
+     * CACHE_MISSES        BIGINT   number of rows read from the file
      * </pre> <p>
      *
      * <b>Notes:</b> <p>
@@ -462,6 +470,8 @@ final class DatabaseInformationFull
             addColumn(t, "CACHE_BYTES", CARDINAL_NUMBER);        // not null
             addColumn(t, "FILE_LOST_BYTES", CARDINAL_NUMBER);    // not null
             addColumn(t, "FILE_FREE_POS", CARDINAL_NUMBER);      // not null
+            addColumn(t, "CACHE_HITS", CARDINAL_NUMBER);         // not null
+            addColumn(t, "CACHE_MISSES", CARDINAL_NUMBER);       // not null
 
             HsqlName name = HsqlNameManager.newInfoSchemaObjectName(
                 sysTableHsqlNames[SYSTEM_CACHEINFO].name,
@@ -481,6 +491,8 @@ final class DatabaseInformationFull
         final int icache_length    = 4;
         final int ilost_bytes      = 5;
         final int ifree_pos        = 6;
+        final int icache_hits      = 7;
+        final int icache_misses    = 8;
 
         //
         DataFileCache           cache = null;
@@ -541,6 +553,8 @@ final class DatabaseInformationFull
             row[icache_length]    = cardinal(cache.getTotalCachedBlockSize());
             row[ilost_bytes]      = cardinal(cache.getLostBlockSize());
             row[ifree_pos]        = cardinal(cache.getFileFreePos());
+            row[icache_hits]      = cardinal(cache.getCacheHitCount());
+            row[icache_misses]    = cardinal(cache.getCacheMissCount());
 
             t.insertSys(session, store, row);
         }
@@ -1700,6 +1714,125 @@ final class DatabaseInformationFull
         return t;
     }
 
+    /**
+     * Retrieves a {@code Table} object describing the column statistics
+     * collected by ANALYZE for the accessible tables.<p>
+     *
+     * HISTOGRAM lists the boundary values of the equi-depth histogram as
+     * quoted strings, from the lowest to the highest value. Each bucket
+     * between two adjacent values holds about the same number of rows.
+     *
+     * @return a {@code Table} object describing the column statistics
+     */
+    Table SYSTEM_COLUMNSTATS(Session session, PersistentStore store) {
+
+        Table t = sysTables[SYSTEM_COLUMNSTATS];
+
+        if (t == null) {
+            t = createBlankTable(sysTableHsqlNames[SYSTEM_COLUMNSTATS]);
+
+            addColumn(t, "TABLE_CATALOG", SQL_IDENTIFIER);
+            addColumn(t, "TABLE_SCHEMA", SQL_IDENTIFIER);
+            addColumn(t, "TABLE_NAME", SQL_IDENTIFIER);
+            addColumn(t, "COLUMN_NAME", SQL_IDENTIFIER);
+            addColumn(t, "ROW_COUNT", CARDINAL_NUMBER);
+            addColumn(t, "NULL_COUNT", CARDINAL_NUMBER);
+            addColumn(t, "NULL_FRACTION", Type.SQL_DOUBLE);
+            addColumn(t, "DISTINCT_COUNT", CARDINAL_NUMBER);
+            addColumn(t, "HISTOGRAM_BUCKETS", CARDINAL_NUMBER);
+            addColumn(t, "HISTOGRAM", CHARACTER_DATA);
+
+            //
+            HsqlName name = HsqlNameManager.newInfoSchemaObjectName(
+                sysTableHsqlNames[SYSTEM_COLUMNSTATS].name,
+                false,
+                SchemaObject.INDEX);
+
+            t.createPrimaryKeyConstraint(
+                name,
+                new int[]{ 0, 1, 2, 3 },
+                false);
+
+            return t;
+        }
+
+        // intermediate holders
+        Iterator<Table> tables;
+        Table           table;
+        Object[]        row;
+        final int       table_catalog     = 0;
+        final int       table_schema      = 1;
+        final int       table_name        = 2;
+        final int       column_name       = 3;
+        final int       row_count         = 4;
+        final int       null_count        = 5;
+        final int       null_fraction     = 6;
+        final int       distinct_count    = 7;
+        final int       histogram_buckets = 8;
+        final int       histogram         = 9;
+
+        // Initialization
+        tables = allTables();
+
+        while (tables.hasNext()) {
+            table = tables.next();
+
+            if (table.isView()
+                    || !session.getGrantee().isFullyAccessibleByRole(
+                        table.getName())) {
+                continue;
+            }
+
+            int columnCount = table.getColumnCount();
+
+            for (int i = 0; i < columnCount; i++) {
+                ColumnSchema     column     = table.getColumn(i);
+                ColumnStatistics statistics = column.getStatistics();
+
+                if (statistics == null) {
+                    continue;
+                }
+
+                row                 = t.getEmptyRowData();
+                row[table_catalog]  = database.getCatalogName().name;
+                row[table_schema]   = table.getSchemaName().name;
+                row[table_name]     = table.getName().name;
+                row[column_name]    = column.getName().name;
+                row[row_count]      = cardinal(statistics.getRowCount());
+                row[null_count]     = cardinal(statistics.getNullCount());
+                row[null_fraction]  = Double.valueOf(
+                    statistics.getNullFraction());
+                row[distinct_count] = cardinal(statistics.getDistinctCount());
+
+                Object[] values = statistics.getHistogram();
+
+                if (values != null) {
+                    Type          type = column.getDataType();
+                    StringBuilder sb   = new StringBuilder();
+
+                    for (int j = 0; j < values.length; j++) {
+                        if (j > 0) {
+                            sb.append(',');
+                        }
+
+                        sb.append(
+                            StringConverter.toQuotedString(
+                                type.convertToString(values[j]),
+                                '\'',
+                                true));
+                    }
+
+                    row[histogram_buckets] = cardinal(values.length - 1);
+                    row[histogram]         = sb.toString();
+                }
+
+                t.insertSys(session, store, row);
+            }
+        }
+
+        return t;
+    }
+
     /**
      * Retrieves a {@code Table} object describing the visible
      * {@code Index} objects for each accessible table defined
@@ -1717,6 +1850,12 @@ final class DatabaseInformationFull
      * ALLOCATED_ROWS   BIGINT    allocated row count
      * ALLOCATED_SPACE  BIGINT    allocated bytes
      * USED_SPACE       BIGINT    used bytes
+     * BLOOM_FILTER_BITS              BIGINT  size of the Bloom filter
+     * BLOOM_FILTER_KEYS              BIGINT  keys added to the filter
+     * BLOOM_FILTER_PROBES            BIGINT  lookups that used the filter
+     * BLOOM_FILTER_NEGATIVES         BIGINT  lookups rejected by the filter
+     * BLOOM_FILTER_FALSE_POSITIVES   BIGINT  lookups passed with no row found
+     * BLOOM_FILTER_FPP               DOUBLE  expected false positive rate
      * </pre> <p>
      *
      * @return a {@code Table} object describing the visible
@@ -1743,6 +1882,12 @@ final class DatabaseInformationFull
             addColumn(t, "SPACE_ID", CARDINAL_NUMBER);
             addColumn(t, "BASE_SPACE", CARDINAL_NUMBER);
             addColumn(t, "VERSION", CARDINAL_NUMBER);
+            addColumn(t, "BLOOM_FILTER_BITS", CARDINAL_NUMBER);
+            addColumn(t, "BLOOM_FILTER_KEYS", CARDINAL_NUMBER);
+            addColumn(t, "BLOOM_FILTER_PROBES", CARDINAL_NUMBER);
+            addColumn(t, "BLOOM_FILTER_NEGATIVES", CARDINAL_NUMBER);
+            addColumn(t, "BLOOM_FILTER_FALSE_POSITIVES", CARDINAL_NUMBER);
+            addColumn(t, "BLOOM_FILTER_FPP", Type.SQL_DOUBLE);
 
             // order: NON_UNIQUE, TYPE, INDEX_NAME, and ORDINAL_POSITION.
             // added for unique: INDEX_QUALIFIER, TABLE_NAME
@@ -1777,6 +1922,12 @@ final class DatabaseInformationFull
         final int itable_type  = 3;
         final int iindex_name  = 4;
         final int iordinal_pos = 5;
+        final int ibloom_bits  = 12;
+        final int ibloom_keys  = 13;
+        final int ibloom_probe = 14;
+        final int ibloom_neg   = 15;
+        final int ibloom_fp    = 16;
+        final int ibloom_fpp   = 17;
 
         // Initialization
         tables = allUserTables();
@@ -1808,6 +1959,17 @@ final class DatabaseInformationFull
                 row[iindex_name]  = indexName;
                 row[iordinal_pos] = cardinal(index.getPosition() + 1);
 
+                BloomFilter filter = index.getBloomFilter();
+
+                if (filter != null) {
+                    row[ibloom_bits]  = cardinal(filter.getBitCount());
+                    row[ibloom_keys]  = cardinal(filter.getKeyCount());
+                    row[ibloom_probe] = cardinal(filter.getProbeCount());
+                    row[ibloom_neg]   = cardinal(filter.getNegativeCount());
+                    row[ibloom_fp] = cardinal(filter.getFalsePositiveCount());
+                    row[ibloom_fpp]   = filter.getFalsePositiveRate();
+                }
+
                 t.insertSys(session, store, row);
             }
         }
@@ -34,6 +34,7 @@ package org.hsqldb.dbinfo;
 import org.hsqldb.ColumnSchema;
 import org.hsqldb.Constraint;
 import org.hsqldb.Database;
+import org.hsqldb.Expression;
 import org.hsqldb.HsqlNameManager;
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.NumberSequence;
@@ -142,7 +143,7 @@ import org.hsqldb.types.Types;
  * (fredt@users) <p>
  * @author Campbell Burnet (campbell-burnet@users dot sourceforge.net)
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.7.2
  */
 class DatabaseInformationMain extends DatabaseInformation {
@@ -190,6 +191,7 @@ class DatabaseInformationMain extends DatabaseInformation {
             nonCachedTablesSet.add("SYSTEM_SEQUENCES");
             nonCachedTablesSet.add("SYSTEM_INDEXSTATS");
             nonCachedTablesSet.add("SYSTEM_TABLESTATS");
+            nonCachedTablesSet.add("SYSTEM_COLUMNSTATS");
         }
     }
 
@@ -1258,11 +1260,11 @@ class DatabaseInformationMain extends DatabaseInformation {
      * INDEX_NAME       VARCHAR   simple name of the index
      * TYPE             SMALLINT  index type: { Clustered | Hashed | Other }
      * ORDINAL_POSITION SMALLINT  column sequence number within index
-     * COLUMN_NAME      VARCHAR   simple column name
+     * COLUMN_NAME      VARCHAR   simple column name, or SQL of a key expression
      * ASC_OR_DESC      VARCHAR   col. sort sequence: {"A" (Asc) | "D" (Desc)}
      * CARDINALITY      BIGINT    # of unique values in index (not implemented)
      * PAGES            BIGINT    index page use (not implemented)
-     * FILTER_CONDITION VARCHAR   filter condition, if any (not implemented)
+     * FILTER_CONDITION VARCHAR   filter condition of a partial index, if any
      * // HSQLDB-extension
      * ROW_CARDINALITY  INTEGER   total # of rows in index (not implemented)
      * </pre> <p>
@@ -1338,6 +1340,7 @@ class DatabaseInformationMain extends DatabaseInformation {
         Table           table;
         int             indexCount;
         int[]           cols;
+        Expression[]    keys;
         int             col;
         int             colCount;
         Object[]        row;
@@ -1373,9 +1376,6 @@ class DatabaseInformationMain extends DatabaseInformation {
             tableSchema  = table.getSchemaName().name;
             tableName    = table.getName().name;
 
-            // not supported yet
-            filterCondition = null;
-
             // different cat for index not supported yet
             indexQualifier = tableCatalog;
             indexCount     = table.getIndexCount();
@@ -1390,15 +1390,21 @@ class DatabaseInformationMain extends DatabaseInformation {
                     continue;
                 }
 
-                indexName      = index.getName().name;
-                nonUnique      = index.isUnique()
-                                 ? Boolean.FALSE
-                                 : Boolean.TRUE;
-                cardinality    = null;
-                pages          = cardinal(0);
-                rowCardinality = null;
-                cols           = index.getColumns();
-                indexType      = integer32(3);
+                indexName       = index.getName().name;
+                filterCondition = index.getCondition() == null
+                                  ? null
+                                  : index.getCondition().getSQL();
+                nonUnique       = index.isUnique()
+                                  ? Boolean.FALSE
+                                  : Boolean.TRUE;
+                cardinality     = null;
+                pages           = cardinal(0);
+                rowCardinality  = null;
+                cols            = index.getColumns();
+                keys            = index.getKeyExpressions();
+                indexType       = index.isHash()
+                                  ? integer32(2)
+                                  : integer32(3);
 
                 for (int k = 0; k < colCount; k++) {
                     col                    = cols[k];
@@ -1411,7 +1417,9 @@ class DatabaseInformationMain extends DatabaseInformation {
                     row[iindex_name]       = indexName;
                     row[itype]             = indexType;
                     row[iordinal_position] = integer32(k + 1);
-                    row[icolumn_name] = table.getColumn(cols[k]).getName().name;
+                    row[icolumn_name] = keys == null || keys[k] == null
+                                        ? table.getColumn(col).getName().name
+                                        : keys[k].getSQL();
                     row[iasc_or_desc]      = "A";
                     row[icardinality]      = cardinality;
                     row[ipages]            = pages;
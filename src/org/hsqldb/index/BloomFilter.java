@@ -0,0 +1,225 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.index;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filter for the keys of an index. Lookups on all the columns of the
+ * index check the filter first and skip the search of the index when the
+ * filter shows that the key is not in the index.<p>
+ *
+ * Keys are added when rows are inserted. Deleted keys cannot be removed, so
+ * the filter is rebuilt from the rows of the index at CHECKPOINT when the
+ * count of deleted keys or added keys makes it less selective. An empty
+ * filter is built on first use. All changes are made with the write lock of
+ * the store held, or with the read lock while the filter is being built.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class BloomFilter {
+
+    static final int BITS_PER_KEY = 10;
+    static final int HASH_COUNT   = 7;
+    static final int MIN_BITS     = 1024;
+    static final int MAX_BITS     = 1 << 30;
+
+    //
+    private volatile long[] bits;
+    private long            capacity;
+    private long            keyCount;
+    private long            deleteCount;
+
+    //
+    private final AtomicLong probeCount         = new AtomicLong();
+    private final AtomicLong negativeCount      = new AtomicLong();
+    private final AtomicLong falsePositiveCount = new AtomicLong();
+
+    /**
+     * Returns true if the filter has been built and can be used for lookups.
+     */
+    public boolean isBuilt() {
+        return bits != null;
+    }
+
+    /**
+     * Returns true if the filter should be rebuilt from the rows.
+     */
+    public boolean isStale() {
+
+        if (bits == null) {
+            return false;
+        }
+
+        return keyCount > capacity || deleteCount * 4 > keyCount;
+    }
+
+    /**
+     * Discards the bits. The filter is built again on first use.
+     */
+    public void clear() {
+        bits = null;
+    }
+
+    /**
+     * Returns new bits for the given number of keys, to be filled with
+     * add(long[], int) and set with setBits().
+     */
+    static long[] newBits(long keys) {
+
+        long size = Math.max(keys, 1) * BITS_PER_KEY;
+
+        size = Math.min(Math.max(size, MIN_BITS), MAX_BITS);
+        size = Long.highestOneBit(size - 1) << 1;
+
+        return new long[(int) (size >>> 6)];
+    }
+
+    void setBits(long[] newBits, long keys) {
+
+        capacity    = ((long) newBits.length << 6) / BITS_PER_KEY;
+        keyCount    = keys;
+        deleteCount = 0;
+        bits        = newBits;
+    }
+
+    static void add(long[] bits, int hash) {
+
+        long h    = hash * 0x9E3779B97F4A7C15L;
+        int  h1   = (int) h;
+        int  h2   = (int) (h >>> 32) | 1;
+        int  mask = (bits.length << 6) - 1;
+
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mask;
+
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    void add(int hash) {
+
+        long[] b = bits;
+
+        if (b != null) {
+            add(b, hash);
+
+            keyCount++;
+        }
+    }
+
+    void delete() {
+
+        if (bits != null) {
+            deleteCount++;
+        }
+    }
+
+    /**
+     * Returns false if the key with the given hash is not in the index.
+     * Counts the probe and the negative result.
+     */
+    boolean mightContain(int hash) {
+
+        long[] b    = bits;
+        long   h    = hash * 0x9E3779B97F4A7C15L;
+        int    h1   = (int) h;
+        int    h2   = (int) (h >>> 32) | 1;
+        int    mask = (b.length << 6) - 1;
+
+        probeCount.incrementAndGet();
+
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mask;
+
+            if ((b[bit >>> 6] & (1L << bit)) == 0) {
+                negativeCount.incrementAndGet();
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Counts a probe that passed the filter but found no row.
+     */
+    void addFalsePositive() {
+        falsePositiveCount.incrementAndGet();
+    }
+
+    public long getBitCount() {
+
+        long[] b = bits;
+
+        return b == null
+               ? 0
+               : (long) b.length << 6;
+    }
+
+    public long getKeyCount() {
+        return bits == null
+               ? 0
+               : keyCount;
+    }
+
+    public long getProbeCount() {
+        return probeCount.get();
+    }
+
+    public long getNegativeCount() {
+        return negativeCount.get();
+    }
+
+    public long getFalsePositiveCount() {
+        return falsePositiveCount.get();
+    }
+
+    /**
+     * Returns the expected false positive rate for the count of keys added
+     * to the filter, or null if the filter has not been built.
+     */
+    public Double getFalsePositiveRate() {
+
+        long bitCount = getBitCount();
+
+        if (bitCount == 0) {
+            return null;
+        }
+
+        double fill = 1 - Math.exp(-(double) HASH_COUNT * keyCount / bitCount);
+
+        return Double.valueOf(Math.pow(fill, HASH_COUNT));
+    }
+}
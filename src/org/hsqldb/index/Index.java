@@ -31,6 +31,8 @@
 
 package org.hsqldb.index;
 
+import org.hsqldb.Expression;
+import org.hsqldb.RangeVariable;
 import org.hsqldb.RangeVariable.RangeVariableConditions;
 import org.hsqldb.Row;
 import org.hsqldb.SchemaObject;
@@ -43,7 +45,7 @@ import org.hsqldb.types.Type;
 /**
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.5.1
+ * @version 2.7.4
  * @since 1.9.0
  */
 public interface Index extends SchemaObject {
@@ -89,6 +91,11 @@ public interface Index extends SchemaObject {
      */
     boolean isConstraint();
 
+    /**
+     * Does this index use a hash table for equality lookups?
+     */
+    boolean isHash();
+
     /**
      * Returns the array containing column indexes for index
      *
@@ -147,6 +154,97 @@ public interface Index extends SchemaObject {
 
     boolean isClustered();
 
+    /**
+     * Returns the WHERE condition of a partial index, or null.
+     */
+    Expression getCondition();
+
+    /**
+     * Sets the WHERE condition of a partial index, resolved against the
+     * given range variable.
+     */
+    void setCondition(Expression condition, RangeVariable rangeVariable);
+
+    /**
+     * Returns the range variable the condition of a partial index is
+     * resolved against.
+     */
+    RangeVariable getConditionRange();
+
+    /**
+     * Returns true if the row qualifies for inclusion in the index.
+     */
+    boolean isIndexed(Session session, Object[] rowData);
+
+    /**
+     * Returns the key expressions of an index on expressions, with a null
+     * element for each key that is a column, or null if all keys are columns.
+     */
+    Expression[] getKeyExpressions();
+
+    /**
+     * Sets the key expressions, resolved against the given range variable.
+     * The column positions of the expression keys follow the columns of the
+     * table.
+     */
+    void setKeyExpressions(
+            Expression[] expressions,
+            RangeVariable rangeVariable);
+
+    /**
+     * Returns the row data extended with the values of the key expressions,
+     * or the row data if the index has no key expressions.
+     */
+    Object[] getKeyData(Session session, Object[] rowData);
+
+    /**
+     * Returns the INCLUDE columns of a covering index, or null.
+     */
+    int[] getIncludeColumns();
+
+    /**
+     * Sets the INCLUDE columns of a covering index.
+     */
+    void setIncludeColumns(int[] columns);
+
+    /**
+     * Is this a covering index with INCLUDE columns?
+     */
+    boolean isCovering();
+
+    /**
+     * Returns the flags for the columns of the table that are held in the
+     * nodes of a covering index, or null if the index is not covering.
+     */
+    boolean[] getCoveredColumns();
+
+    /**
+     * Does this index keep normalized binary keys?
+     */
+    boolean isNormalized();
+
+    /**
+     * Sets the use of normalized binary keys. The setting has no effect if
+     * the table or the key types do not allow normalized keys.
+     */
+    void setNormalized(boolean normalized);
+
+    /**
+     * Returns the Bloom filter for lookups on all the columns, or null.
+     */
+    BloomFilter getBloomFilter();
+
+    /**
+     * Sets the use of a Bloom filter. The setting has no effect if the table
+     * or the key types do not allow a filter.
+     */
+    void setBloomFilter(boolean bloomFilter);
+
+    /**
+     * Builds the Bloom filter again from the rows of the index.
+     */
+    void buildBloomFilter(Session session, PersistentStore store);
+
     /**
      * Returns the node count.
      */
@@ -70,9 +70,14 @@
 
 package org.hsqldb.index;
 
+import java.util.Comparator;
+
+import org.hsqldb.ColumnSchema;
 import org.hsqldb.Constraint;
+import org.hsqldb.Expression;
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.OpTypes;
+import org.hsqldb.RangeVariable;
 import org.hsqldb.RangeVariable.RangeVariableConditions;
 import org.hsqldb.Row;
 import org.hsqldb.RowAVL;
@@ -84,7 +89,10 @@ import org.hsqldb.Tokens;
 import org.hsqldb.TransactionManager;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.error.HsqlException;
+import org.hsqldb.lib.ArraySort;
 import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.Iterator;
 import org.hsqldb.lib.OrderedHashSet;
 import org.hsqldb.navigator.RangeIterator;
 import org.hsqldb.navigator.RowIterator;
@@ -93,6 +101,7 @@ import org.hsqldb.rights.Grantee;
 import org.hsqldb.types.DateTimeType;
 import org.hsqldb.types.TimestampData;
 import org.hsqldb.types.Type;
+import org.hsqldb.types.TypedComparator;
 
 // fredt@users 20020221 - patch 513005 by sqlbob@users - corrections
 // fredt@users - patch 1.8.0 - reworked the interface and comparison methods
@@ -112,7 +121,7 @@ import org.hsqldb.types.Type;
  *
  * @author Thomas Mueller (Hypersonic SQL Group)
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since Hypersonic SQL
  */
 public class IndexAVL implements Index {
@@ -124,8 +133,8 @@ public class IndexAVL implements Index {
     final int[]              colIndex;
     private final int[]      defaultColMap;
     final Type[]             colTypes;
-    private final boolean[]  colDesc;
-    private final boolean[]  nullsLast;
+    final boolean[]          colDesc;
+    final boolean[]          nullsLast;
     final boolean            isSimpleOrder;
     final boolean            isSimple;
     protected final boolean  isPK;        // PK with or without columns
@@ -133,6 +142,13 @@ public class IndexAVL implements Index {
     protected final boolean  isConstraint;
     private final boolean    isForward;
     private boolean          isClustered;
+    private Expression       condition;
+    private Expression[]     keyExpressions;
+    private RangeVariable    conditionRange;
+    private int[]            includeColumns;
+    private boolean[]        coveredColumns;
+    private boolean          normalized;
+    private BloomFilter      bloomFilter;
     protected TableBase      table;
     int                      position;
     private IndexUse[]       asArray;
@@ -245,7 +261,61 @@ public class IndexAVL implements Index {
           .append(Tokens.T_ON)
           .append(' ')
           .append(((Table) table).getName().getSchemaQualifiedStatementName())
-          .append(((Table) table).getColumnListSQL(colIndex, colIndex.length));
+          .append(getKeyListSQL());
+
+        if (includeColumns != null) {
+            sb.append(' ')
+              .append("INCLUDE")
+              .append(
+                  ((Table) table).getColumnListSQL(
+                      includeColumns,
+                      includeColumns.length));
+        }
+
+        if (isHash()) {
+            sb.append(' ').append(Tokens.T_USING).append(' ').append("HASH");
+        } else if (normalized) {
+            sb.append(' ')
+              .append(Tokens.T_USING)
+              .append(' ')
+              .append("NORMALIZED");
+        }
+
+        if (condition != null) {
+            sb.append(' ')
+              .append(Tokens.T_WHERE)
+              .append(' ')
+              .append(condition.getSQL());
+        }
+
+        return sb.toString();
+    }
+
+    private String getKeyListSQL() {
+
+        if (keyExpressions == null) {
+            return ((Table) table).getColumnListSQL(colIndex, colIndex.length);
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append('(');
+
+        for (int i = 0; i < colIndex.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+
+            if (keyExpressions[i] == null) {
+                ColumnSchema column = ((Table) table).getColumn(colIndex[i]);
+
+                sb.append(column.getName().statementName);
+            } else {
+                sb.append(keyExpressions[i].getSQL());
+            }
+        }
+
+        sb.append(')');
 
         return sb.toString();
     }
@@ -254,6 +324,10 @@ public class IndexAVL implements Index {
         return 0;
     }
 
+    public boolean isHash() {
+        return false;
+    }
+
     // IndexInterface
     public IndexUse[] asArray() {
         return asArray;
@@ -376,6 +450,400 @@ public class IndexAVL implements Index {
         return isClustered;
     }
 
+    public Expression getCondition() {
+        return condition;
+    }
+
+    public void setCondition(
+            Expression condition,
+            RangeVariable rangeVariable) {
+        this.condition      = condition;
+        this.conditionRange = rangeVariable;
+    }
+
+    public RangeVariable getConditionRange() {
+        return conditionRange;
+    }
+
+    /**
+     * Returns true if the index is not partial, or the row satisfies the
+     * WHERE condition of the index.
+     */
+    public boolean isIndexed(Session session, Object[] rowData) {
+
+        if (condition == null) {
+            return true;
+        }
+
+        Object value = session.sessionContext.getIndexValue(
+            conditionRange,
+            rowData,
+            condition);
+
+        return Boolean.TRUE.equals(value);
+    }
+
+    public Expression[] getKeyExpressions() {
+        return keyExpressions;
+    }
+
+    public void setKeyExpressions(
+            Expression[] expressions,
+            RangeVariable rangeVariable) {
+
+        this.keyExpressions = expressions;
+        this.conditionRange = rangeVariable;
+
+        for (int i = 0; i < expressions.length; i++) {
+            if (expressions[i] != null) {
+                colTypes[i] = expressions[i].getDataType();
+            }
+        }
+
+        setCoveredColumns();
+
+        if (normalized) {
+            normalized = NormalizedKey.isNormalizable(table, colTypes);
+        }
+
+        if (bloomFilter != null && !isBloomFilterSupported()) {
+            bloomFilter = null;
+        }
+    }
+
+    /**
+     * Returns the row data extended with the values of the key expressions.
+     * The value of each expression key is at the position given in colIndex,
+     * after the columns of the table. Extended data is returned unchanged.
+     */
+    public Object[] getKeyData(Session session, Object[] rowData) {
+
+        int count = table.getColumnCount();
+
+        if (keyExpressions == null || rowData.length != count) {
+            return rowData;
+        }
+
+        Object[] data = new Object[count + colIndex.length];
+
+        System.arraycopy(rowData, 0, data, 0, count);
+
+        if (session == null) {
+            session = table.database.sessionManager.getSysSession();
+        }
+
+        for (int i = 0; i < keyExpressions.length; i++) {
+            if (keyExpressions[i] != null) {
+                data[colIndex[i]] = session.sessionContext.getIndexValue(
+                    conditionRange,
+                    rowData,
+                    keyExpressions[i]);
+            }
+        }
+
+        return data;
+    }
+
+    public int[] getIncludeColumns() {
+        return includeColumns;
+    }
+
+    public void setIncludeColumns(int[] columns) {
+        includeColumns = columns;
+
+        setCoveredColumns();
+    }
+
+    public boolean isCovering() {
+        return includeColumns != null;
+    }
+
+    public boolean[] getCoveredColumns() {
+        return coveredColumns;
+    }
+
+    public boolean isNormalized() {
+        return normalized;
+    }
+
+    public void setNormalized(boolean normalized) {
+        this.normalized = normalized
+                          && isSimpleOrder
+                          && NormalizedKey.isNormalizable(table, colTypes);
+    }
+
+    /**
+     * Returns the normalized key of the row and sets it in the node of the
+     * row if it is not set. Returns null if the index has no normalized
+     * keys or a value has no normalized form. Rows of system versioned
+     * tables are also ordered by version, so the keys are not used.
+     */
+    byte[] getNormalizedKey(Session session, Row row) {
+
+        if (!normalized || table.isSystemVersioned) {
+            return null;
+        }
+
+        NodeAVL node = ((RowAVL) row).getNode(position);
+
+        if (!(node instanceof NodeAVLNormalized)) {
+            return null;
+        }
+
+        NodeAVLNormalized n = (NodeAVLNormalized) node;
+
+        if (n.key == null) {
+            n.key = NormalizedKey.getKey(
+                colTypes,
+                getKeyData(session, row.getData()),
+                colIndex,
+                colIndex.length);
+        }
+
+        return n.key;
+    }
+
+    /**
+     * Returns the key of the node, or null if it is not set.
+     */
+    static byte[] getNodeKey(NodeAVL node) {
+
+        if (node instanceof NodeAVLNormalized) {
+            return ((NodeAVLNormalized) node).key;
+        }
+
+        return null;
+    }
+
+    public BloomFilter getBloomFilter() {
+        return bloomFilter;
+    }
+
+    public void setBloomFilter(boolean bloomFilter) {
+
+        if (!bloomFilter || !isBloomFilterSupported()) {
+            this.bloomFilter = null;
+        } else if (this.bloomFilter == null) {
+            this.bloomFilter = new BloomFilter();
+        }
+    }
+
+    /**
+     * A Bloom filter is used only for tables that have a single store for
+     * all sessions and for key types that have equal hashes for all values
+     * that compare as equal. A null type is the type of a key expression,
+     * which is checked after the expression is resolved.
+     */
+    private boolean isBloomFilterSupported() {
+
+        switch (table.getTableType()) {
+
+            case TableBase.MEMORY_TABLE :
+            case TableBase.CACHED_TABLE :
+            case TableBase.TEXT_TABLE :
+                break;
+
+            default :
+                return false;
+        }
+
+        if (isHash() || colTypes.length == 0) {
+            return false;
+        }
+
+        for (int i = 0; i < colTypes.length; i++) {
+            if (colTypes[i] != null
+                    && !TypedComparator.isKeyHashable(colTypes[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public void buildBloomFilter(Session session, PersistentStore store) {
+
+        BloomFilter filter = bloomFilter;
+
+        if (filter == null) {
+            return;
+        }
+
+        store.readLock();
+
+        try {
+            synchronized (filter) {
+                fillBloomFilter(session, store, filter);
+            }
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Sets the bits of the filter from the keys of all the rows in the
+     * index, including rows that are not yet committed.
+     */
+    private void fillBloomFilter(
+            Session session,
+            PersistentStore store,
+            BloomFilter filter) {
+
+        long[]      bits  = BloomFilter.newBits(store.elementCount());
+        long        count = 0;
+        RowIterator it    = firstRow(store);
+
+        while (it.next()) {
+            Object[] data = getKeyData(session, it.getCurrentRow().getData());
+
+            BloomFilter.add(bits, getRowHash(data));
+
+            count++;
+        }
+
+        filter.setBits(bits, count);
+    }
+
+    /**
+     * Returns the Bloom filter if the lookup is on all the columns of an
+     * index with a filter, otherwise null.
+     */
+    BloomFilter getBloomFilter(int compareType, int fieldCount) {
+
+        if (compareType == OpTypes.EQUAL && fieldCount == colIndex.length) {
+            return bloomFilter;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns false if the Bloom filter shows that no row of the index
+     * matches the data. The filter is built if it is empty. Called with the
+     * read lock of the store held, which excludes changes to the filter.
+     */
+    boolean mightContain(
+            Session session,
+            PersistentStore store,
+            BloomFilter filter,
+            Object[] rowdata,
+            int[] rowColMap) {
+
+        if (!filter.isBuilt()) {
+            synchronized (filter) {
+                if (!filter.isBuilt()) {
+                    fillBloomFilter(session, store, filter);
+                }
+            }
+        }
+
+        return filter.mightContain(getKeyHash(rowdata, rowColMap));
+    }
+
+    /**
+     * Adds the key of the row to the Bloom filter.
+     */
+    void addBloomFilterKey(Session session, Object[] rowData) {
+
+        BloomFilter filter = bloomFilter;
+
+        if (filter != null) {
+            filter.add(getRowHash(getKeyData(session, rowData)));
+        }
+    }
+
+    /**
+     * Counts a key deleted from the index, which remains in the Bloom filter.
+     */
+    void deleteBloomFilterKey() {
+
+        BloomFilter filter = bloomFilter;
+
+        if (filter != null) {
+            filter.delete();
+        }
+    }
+
+    /**
+     * Returns the hash of the key of a row of the table, which is equal for
+     * all keys that compare as equal.
+     */
+    int getRowHash(Object[] data) {
+
+        int hash = 0;
+
+        for (int i = 0; i < colIndex.length; i++) {
+            hash = 31 * hash
+                   + TypedComparator.getKeyHash(colTypes[i], data[colIndex[i]]);
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * Returns the hash of the key given as row data with a column map, as
+     * getRowHash().
+     */
+    int getKeyHash(Object[] rowdata, int[] rowColMap) {
+
+        int hash = 0;
+
+        for (int i = 0; i < colIndex.length; i++) {
+            hash = 31 * hash
+                   + TypedComparator.getKeyHash(
+                       colTypes[i],
+                       rowdata[rowColMap[i]]);
+        }
+
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+
+        hash *= 0x9E3779B9;
+
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Sets the flags for the key columns, the columns referenced by the key
+     * expressions and the INCLUDE columns of a covering index.
+     */
+    private void setCoveredColumns() {
+
+        if (includeColumns == null) {
+            coveredColumns = null;
+
+            return;
+        }
+
+        boolean[] covered = table.getNewColumnCheckList();
+
+        // expression keys are at positions after the columns and are skipped
+        ArrayUtil.intIndexesToBooleanArray(colIndex, covered);
+        ArrayUtil.intIndexesToBooleanArray(includeColumns, covered);
+
+        if (keyExpressions != null) {
+            for (int i = 0; i < keyExpressions.length; i++) {
+                if (keyExpressions[i] == null) {
+                    continue;
+                }
+
+                OrderedHashSet<Expression> set =
+                    keyExpressions[i].collectAllExpressions(
+                        null,
+                        OpTypes.columnExpressionSet,
+                        OpTypes.emptyExpressionSet);
+
+                for (int j = 0; set != null && j < set.size(); j++) {
+                    covered[set.get(j).getColumnIndex()] = true;
+                }
+            }
+        }
+
+        coveredColumns = covered;
+    }
+
     /**
      * Returns the node count.
      */
@@ -617,6 +1085,8 @@ public class IndexAVL implements Index {
 
         int fieldcount = rowColMap.length;
 
+        a = getKeyData(session, a);
+
         for (int j = 0; j < fieldcount; j++) {
             int i = colTypes[j].compare(
                 session,
@@ -638,6 +1108,8 @@ public class IndexAVL implements Index {
             int[] rowColMap,
             int fieldCount) {
 
+        a = getKeyData(session, a);
+
         for (int j = 0; j < fieldCount; j++) {
             int i = colTypes[j].compare(
                 session,
@@ -661,6 +1133,9 @@ public class IndexAVL implements Index {
             Object[] b,
             int fieldCount) {
 
+        a = getKeyData(session, a);
+        b = getKeyData(session, b);
+
         for (int j = 0; j < fieldCount; j++) {
             int i = colTypes[j].compare(
                 session,
@@ -683,6 +1158,9 @@ public class IndexAVL implements Index {
 
         int c = 0;
 
+        a = getKeyData(session, a);
+        b = getKeyData(session, b);
+
         for (int j = 0; j < colIndex.length; j++) {
             if (c == 0) {
                 c = colTypes[j].compare(
@@ -699,6 +1177,9 @@ public class IndexAVL implements Index {
 
     public int compareRow(Session session, Object[] a, Object[] b) {
 
+        a = getKeyData(session, a);
+        b = getKeyData(session, b);
+
         for (int j = 0; j < colIndex.length; j++) {
             int i = colTypes[j].compare(
                 session,
@@ -746,8 +1227,8 @@ public class IndexAVL implements Index {
             boolean useRowId,
             int start) {
 
-        Object[] a = newRow.getData();
-        Object[] b = existingRow.getData();
+        Object[] a = getKeyData(session, newRow.getData());
+        Object[] b = getKeyData(session, existingRow.getData());
 
         for (int j = start; j < colIndex.length; j++) {
             int i = colTypes[j].compare(
@@ -806,6 +1287,47 @@ public class IndexAVL implements Index {
         return 0;
     }
 
+    /**
+     * As compareRowForInsertOrDelete() but compares the normalized keys of
+     * the rows instead of the column values when both keys are set.
+     */
+    int compareRowForInsert(
+            Session session,
+            Row newRow,
+            Row existingRow,
+            boolean useRowId) {
+
+        byte[] newKey = getNormalizedKey(session, newRow);
+        byte[] key    = newKey == null
+                        ? null
+                        : getNormalizedKey(session, existingRow);
+
+        if (key == null) {
+            return compareRowForInsertOrDelete(
+                session,
+                newRow,
+                existingRow,
+                useRowId,
+                0);
+        }
+
+        int i = NormalizedKey.compare(
+            newKey,
+            key,
+            NormalizedKey.mismatch(newKey, key, 0));
+
+        if (i != 0) {
+            return i;
+        }
+
+        return compareRowForInsertOrDelete(
+            session,
+            newRow,
+            existingRow,
+            useRowId,
+            colIndex.length);
+    }
+
     int compareObject(
             Session session,
             Object[] a,
@@ -814,6 +1336,8 @@ public class IndexAVL implements Index {
             int position,
             int opType) {
 
+        a = getKeyData(session, a);
+
         return colTypes[position].compare(
             session,
             a[colIndex[position]],
@@ -827,6 +1351,8 @@ public class IndexAVL implements Index {
                               || session.database.sqlUniqueNulls;
         boolean compareId   = false;
 
+        rowData = getKeyData(session, rowData);
+
         for (int j = 0; j < colIndex.length; j++) {
             if (rowData[colIndex[j]] == null) {
                 compareId = true;
@@ -848,11 +1374,20 @@ public class IndexAVL implements Index {
      */
     public void insert(Session session, PersistentStore store, Row row) {
 
+        if (!isIndexed(session, row.getData())) {
+            return;
+        }
+
+        addBloomFilterKey(session, row.getData());
+
         NodeAVL n;
         NodeAVL x;
         boolean isleft       = true;
         int     compare      = -1;
         boolean compareRowId = !isUnique || hasNulls(session, row.getData());
+        byte[]  key          = getNormalizedKey(session, row);
+        int     lowMatch     = 0;
+        int     highMatch    = 0;
 
         n = getAccessor(store);
         x = n;
@@ -864,14 +1399,38 @@ public class IndexAVL implements Index {
         }
 
         while (true) {
-            Row currentRow = n.getRow(store);
+            Row    currentRow = n.getRow(store);
+            byte[] nodeKey    = key == null
+                                ? null
+                                : getNodeKey(n);
+            int    match      = 0;
+
+            if (nodeKey == null) {
+                compare = compareRowForInsertOrDelete(
+                    session,
+                    row,
+                    currentRow,
+                    compareRowId,
+                    0);
+            } else {
 
-            compare = compareRowForInsertOrDelete(
-                session,
-                row,
-                currentRow,
-                compareRowId,
-                0);
+                // the keys of all nodes below share the prefix that the
+                // nearest smaller and greater ancestors share with the key
+                match = NormalizedKey.mismatch(
+                    key,
+                    nodeKey,
+                    Math.min(lowMatch, highMatch));
+                compare = NormalizedKey.compare(key, nodeKey, match);
+
+                if (compare == 0) {
+                    compare = compareRowForInsertOrDelete(
+                        session,
+                        row,
+                        currentRow,
+                        compareRowId,
+                        colIndex.length);
+                }
+            }
 
             // after the first match and check, all compares are with row id
             if (compare == 0
@@ -890,17 +1449,7 @@ public class IndexAVL implements Index {
             }
 
             if (compare == 0) {
-                Constraint c = null;
-
-                if (isConstraint) {
-                    c = ((Table) table).getUniqueConstraintForIndex(this);
-                }
-
-                if (c == null) {
-                    throw Error.error(ErrorCode.X_23505, name.statementName);
-                } else {
-                    throw c.getException(row.getData());
-                }
+                throw getUniqueException(row.getData());
             }
 
             isleft = compare < 0;
@@ -910,6 +1459,12 @@ public class IndexAVL implements Index {
             if (n == null) {
                 break;
             }
+
+            if (isleft) {
+                highMatch = match;
+            } else {
+                lowMatch = match;
+            }
         }
 
         x = x.set(store, isleft, ((RowAVL) row).getNode(position));
@@ -917,16 +1472,321 @@ public class IndexAVL implements Index {
         balance(store, x, isleft);
     }
 
+    /**
+     * Returns the exception for a duplicate key in a unique index.
+     */
+    HsqlException getUniqueException(Object[] rowData) {
+
+        Constraint c = null;
+
+        if (isConstraint) {
+            c = ((Table) table).getUniqueConstraintForIndex(this);
+        }
+
+        if (c == null) {
+            return Error.error(ErrorCode.X_23505, name.statementName);
+        }
+
+        return c.getException(rowData);
+    }
+
+    /**
+     * Builds the tree from rows supplied in index order. The tree is built
+     * bottom-up, with the middle row of each range as the root of the
+     * subtree, so no comparisons or rotations are needed. All the links of
+     * the nodes are set, so existing nodes can be reused.
+     *
+     * @param session the session
+     * @param store the store
+     * @param rows iterator over the rows in index order
+     * @param count the number of rows
+     */
+    public void build(
+            Session session,
+            PersistentStore store,
+            Iterator<? extends Row> rows,
+            long count) {
+
+        NodeAVL root = buildSubtree(store, rows, count);
+
+        if (root != null) {
+            root.setParent(store, null);
+        }
+
+        store.setAccessor(this, root);
+
+        if (bloomFilter != null) {
+            bloomFilter.clear();
+        }
+    }
+
+    private NodeAVL buildSubtree(
+            PersistentStore store,
+            Iterator<? extends Row> rows,
+            long count) {
+
+        if (count == 0) {
+            return null;
+        }
+
+        long    leftCount  = (count - 1) / 2;
+        long    rightCount = count - 1 - leftCount;
+        NodeAVL left       = buildSubtree(store, rows, leftCount);
+
+        if (!rows.hasNext()) {
+            throw Error.runtimeError(ErrorCode.U_S0500, "IndexAVL");
+        }
+
+        NodeAVL node  = ((RowAVL) rows.next()).getNode(position);
+        NodeAVL right = buildSubtree(store, rows, rightCount);
+
+        // the right subtree is never lower than the left one
+        node = node.setLeft(store, left);
+        node = node.setRight(store, right);
+        node = node.setBalance(
+            store,
+            getHeight(rightCount) - getHeight(leftCount));
+
+        if (left != null) {
+            left.setParent(store, node);
+        }
+
+        if (right != null) {
+            right.setParent(store, node);
+        }
+
+        return node;
+    }
+
+    private static int getHeight(long count) {
+        return 64 - Long.numberOfLeadingZeros(count);
+    }
+
+    /**
+     * Sorts the rows in the order of the index.
+     */
+    public void sortRows(final Session session, Object[] rows, int count) {
+
+        Comparator<Object> comparator = new Comparator<Object>() {
+
+            public int compare(Object a, Object b) {
+                return compareRowForInsert(session, (Row) a, (Row) b, true);
+            }
+        };
+
+        ArraySort.sort(rows, count, comparator);
+    }
+
+    /**
+     * Checks the rows sorted in index order for duplicate keys in a unique
+     * index. As in insert(), with multiversion rows a duplicate is reported
+     * only when the rows with equal keys are visible for the check.
+     */
+    public void checkDuplicateRows(
+            Session session,
+            PersistentStore store,
+            Object[] rows,
+            int count) {
+
+        if (!isUnique) {
+            return;
+        }
+
+        boolean isMVRows = session != null
+                           && session.database.txManager.isMVRows();
+        boolean readable = false;
+
+        for (int i = 0; i < count; i++) {
+            Row     row        = (Row) rows[i];
+            boolean isReadable = true;
+
+            if (isMVRows) {
+                isReadable = store.canRead(
+                    session,
+                    row,
+                    TransactionManager.ACTION_DUP,
+                    null) && row.isCurrentSystemVersion();
+            }
+
+            if (i > 0
+                    && compareRowForInsert(
+                        session,
+                        row,
+                        (Row) rows[i - 1],
+                        hasNulls(session, row.getData())) == 0) {
+                if (readable && isReadable) {
+                    throw getUniqueException(row.getData());
+                }
+
+                readable |= isReadable;
+            } else {
+                readable = isReadable;
+            }
+        }
+    }
+
+    /**
+     * Returns an entry for building the index in bulk, consisting of the
+     * index column values followed by the row position.
+     */
+    public Object[] getEntry(Session session, Object[] rowData, long pos) {
+
+        Object[] entry = new Object[colIndex.length + 1];
+
+        rowData = getKeyData(session, rowData);
+
+        for (int i = 0; i < colIndex.length; i++) {
+            entry[i] = rowData[colIndex[i]];
+        }
+
+        entry[colIndex.length] = Long.valueOf(pos);
+
+        return entry;
+    }
+
+    /**
+     * Returns the types of the values in the entries.
+     */
+    public Type[] getEntryTypes() {
+
+        Type[] types = new Type[colTypes.length + 1];
+
+        System.arraycopy(colTypes, 0, types, 0, colTypes.length);
+
+        types[colTypes.length] = Type.SQL_BIGINT;
+
+        return types;
+    }
+
+    /**
+     * Returns a comparator for the entries in the order of the index.
+     */
+    public Comparator<Object> getEntryComparator(final Session session) {
+
+        final int position = colIndex.length;
+
+        return new Comparator<Object>() {
+
+            public int compare(Object a, Object b) {
+
+                Object[] entryA = (Object[]) a;
+                Object[] entryB = (Object[]) b;
+
+                return compareEntry(
+                    session,
+                    entryA,
+                    ((Long) entryA[position]).longValue(),
+                    entryB,
+                    ((Long) entryB[position]).longValue());
+            }
+        };
+    }
+
+    /**
+     * Checks two adjacent entries in index order for a duplicate key in a
+     * unique index. The rows of the entries must not be versions.
+     */
+    public void checkDuplicateEntry(
+            Session session,
+            Object[] entry,
+            Object[] nextEntry) {
+
+        if (!isUnique || compareKey(session, entry, nextEntry) != 0) {
+            return;
+        }
+
+        int count = table.getColumnCount();
+
+        if (keyExpressions != null) {
+            count += colIndex.length;
+        }
+
+        Object[] rowData = new Object[count];
+
+        for (int i = 0; i < colIndex.length; i++) {
+            rowData[colIndex[i]] = entry[i];
+        }
+
+        if (!hasNulls(session, rowData)) {
+            throw getUniqueException(rowData);
+        }
+    }
+
+    Object[] getKey(Session session, Object[] rowData) {
+
+        Object[] key = new Object[colIndex.length];
+
+        rowData = getKeyData(session, rowData);
+
+        for (int i = 0; i < colIndex.length; i++) {
+            key[i] = rowData[colIndex[i]];
+        }
+
+        return key;
+    }
+
+    /**
+     * Compares two keys in index order. Supports descending columns.
+     */
+    int compareKey(Session session, Object[] a, Object[] b) {
+
+        for (int j = 0; j < colIndex.length; j++) {
+            int i = colTypes[j].compare(session, a[j], b[j]);
+
+            if (i != 0) {
+                if (isSimpleOrder) {
+                    return i;
+                }
+
+                boolean nulls = a[j] == null || b[j] == null;
+
+                if (colDesc[j] && !nulls) {
+                    i = -i;
+                }
+
+                if (nullsLast[j] && nulls) {
+                    i = -i;
+                }
+
+                return i;
+            }
+        }
+
+        return 0;
+    }
+
+    int compareEntry(
+            Session session,
+            Object[] a,
+            long posA,
+            Object[] b,
+            long posB) {
+
+        int i = compareKey(session, a, b);
+
+        if (i == 0) {
+            i = posA == posB
+                ? 0
+                : posA > posB
+                  ? 1
+                  : -1;
+        }
+
+        return i;
+    }
+
     public void delete(Session session, PersistentStore store, Row row) {
 
         row = (Row) store.get(row, false);
 
         NodeAVL x = ((RowAVL) row).getNode(position);
 
-        if (x == null) {
+        if (x == null || !isIndexed(session, row.getData())) {
             return;
         }
 
+        deleteBloomFilterKey();
+
         NodeAVL n;
 
         if (x.getLeft(store) == null) {
@@ -1706,10 +2566,13 @@ public class IndexAVL implements Index {
         store.readLock();
 
         try {
-            NodeAVL x          = getAccessor(store);
-            NodeAVL n          = null;
-            NodeAVL result     = null;
-            Row     currentRow = null;
+            NodeAVL  x           = getAccessor(store);
+            NodeAVL  n           = null;
+            NodeAVL  result      = null;
+            Object[] currentData = null;
+            byte[]   key         = null;
+            int      lowMatch    = 0;
+            int      highMatch   = 0;
 
             if (compareType != OpTypes.EQUAL
                     && compareType != OpTypes.IS_NULL) {
@@ -1722,15 +2585,45 @@ public class IndexAVL implements Index {
                 }
             }
 
-            while (x != null) {
-                currentRow = x.getRow(store);
+            BloomFilter filter = getBloomFilter(compareType, fieldCount);
 
-                int i = 0;
+            if (filter != null
+                    && !mightContain(
+                        session,
+                        store,
+                        filter,
+                        rowdata,
+                        rowColMap)) {
+                return null;
+            }
+
+            if (normalized && fieldCount > 0) {
+                key = NormalizedKey.getKey(
+                    colTypes,
+                    rowdata,
+                    rowColMap,
+                    fieldCount);
+            }
 
-                if (fieldCount > 0) {
+            while (x != null) {
+                currentData = x.getData(store);
+
+                int    i       = 0;
+                int    match   = 0;
+                byte[] nodeKey = key == null
+                                 ? null
+                                 : getNodeKey(x);
+
+                if (nodeKey != null) {
+                    match = NormalizedKey.mismatch(
+                        nodeKey,
+                        key,
+                        Math.min(lowMatch, highMatch));
+                    i = NormalizedKey.compare(nodeKey, key, match);
+                } else if (fieldCount > 0) {
                     i = compareRowNonUnique(
                         session,
-                        currentRow.getData(),
+                        currentData,
                         rowdata,
                         rowColMap,
                         fieldCount);
@@ -1757,7 +2650,7 @@ public class IndexAVL implements Index {
                         case OpTypes.GREATER : {
                             i = compareObject(
                                 session,
-                                currentRow.getData(),
+                                currentData,
                                 rowdata,
                                 rowColMap,
                                 fieldCount,
@@ -1777,7 +2670,7 @@ public class IndexAVL implements Index {
                         case OpTypes.GREATER_EQUAL : {
                             i = compareObject(
                                 session,
-                                currentRow.getData(),
+                                currentData,
                                 rowdata,
                                 rowColMap,
                                 fieldCount,
@@ -1796,7 +2689,7 @@ public class IndexAVL implements Index {
                         case OpTypes.SMALLER : {
                             i = compareObject(
                                 session,
-                                currentRow.getData(),
+                                currentData,
                                 rowdata,
                                 rowColMap,
                                 fieldCount,
@@ -1815,7 +2708,7 @@ public class IndexAVL implements Index {
                         case OpTypes.SMALLER_EQUAL : {
                             i = compareObject(
                                 session,
-                                currentRow.getData(),
+                                currentData,
                                 rowdata,
                                 rowColMap,
                                 fieldCount,
@@ -1846,46 +2739,83 @@ public class IndexAVL implements Index {
                     break;
                 }
 
+                if (key != null) {
+                    if (n == x.getLeft(store)) {
+                        highMatch = match;
+                    } else {
+                        lowMatch = match;
+                    }
+                }
+
                 x = n;
             }
 
-            // MVCC 190
-            if (session == null) {
-                return result;
+            result = findReadableNode(
+                session,
+                store,
+                result,
+                rowdata,
+                rowColMap,
+                fieldCount,
+                readMode,
+                reversed);
+
+            if (filter != null && result == null) {
+                filter.addFalsePositive();
             }
 
-            while (result != null) {
-                currentRow = result.getRow(store);
+            return result;
+        } finally {
+            store.readUnlock();
+        }
+    }
 
-                if (store.canRead(session, currentRow, readMode, colIndex)) {
-                    break;
-                }
+    /**
+     * Returns the first node from the given node onwards that can be read by
+     * the session and matches the rowdata, or null.
+     */
+    NodeAVL findReadableNode(
+            Session session,
+            PersistentStore store,
+            NodeAVL result,
+            Object[] rowdata,
+            int[] rowColMap,
+            int fieldCount,
+            int readMode,
+            boolean reversed) {
 
-                result = reversed
-                         ? last(store, result)
-                         : next(store, result);
+        // MVCC 190
+        if (session == null) {
+            return result;
+        }
 
-                if (result == null) {
-                    break;
-                }
+        while (result != null) {
+            Row currentRow = result.getRow(store);
+
+            if (store.canRead(session, currentRow, readMode, colIndex)) {
+                break;
+            }
 
-                currentRow = result.getRow(store);
+            result = reversed
+                     ? last(store, result)
+                     : next(store, result);
 
-                if (fieldCount > 0
-                        && compareRowNonUnique(session,
-                                               currentRow.getData(),
-                                               rowdata,
-                                               rowColMap,
-                                               fieldCount) != 0) {
-                    result = null;
-                    break;
-                }
+            if (result == null) {
+                break;
             }
 
-            return result;
-        } finally {
-            store.readUnlock();
+            if (fieldCount > 0
+                    && compareRowNonUnique(session,
+                                           result.getData(store),
+                                           rowdata,
+                                           rowColMap,
+                                           fieldCount) != 0) {
+                result = null;
+                break;
+            }
         }
+
+        return result;
     }
 
     NodeAVL findDistinctNode(
@@ -1898,20 +2828,20 @@ public class IndexAVL implements Index {
         store.readLock();
 
         try {
-            NodeAVL  x          = getAccessor(store);
-            NodeAVL  n          = null;
-            NodeAVL  result     = null;
-            Row      currentRow = null;
-            Object[] rowData    = node.getData(store);
+            NodeAVL  x           = getAccessor(store);
+            NodeAVL  n           = null;
+            NodeAVL  result      = null;
+            Object[] currentData = null;
+            Object[] rowData     = node.getData(store);
 
             while (x != null) {
-                currentRow = x.getRow(store);
+                currentData = x.getData(store);
 
                 int i = 0;
 
                 i = compareRowNonUnique(
                     session,
-                    currentRow.getData(),
+                    currentData,
                     rowData,
                     colIndex,
                     fieldCount);
@@ -1945,7 +2875,7 @@ public class IndexAVL implements Index {
             }
 
             while (result != null) {
-                currentRow = result.getRow(store);
+                Row currentRow = result.getRow(store);
 
                 if (store.canRead(session,
                                   currentRow,
@@ -2068,10 +2998,12 @@ public class IndexAVL implements Index {
         final PersistentStore store;
         final IndexAVL        index;
         NodeAVL               nextnode;
+        NodeAVL               lastnode;
         Row                   lastrow;
         int                   distinctCount;
         boolean               single;
         boolean               reversed;
+        boolean               indexOnly;
 
         /**
          * When session == null, rows from all sessions are returned
@@ -2099,12 +3031,24 @@ public class IndexAVL implements Index {
             nextnode = node;
         }
 
+        /**
+         * Sets the iterator to return the data held in the nodes of a
+         * covering index instead of the row data.
+         */
+        public void setIndexOnly() {
+            indexOnly = true;
+        }
+
         public Object getField(int col) {
 
             if (lastrow == null) {
                 return null;
             }
 
+            if (indexOnly) {
+                return lastnode.getData(store)[col];
+            }
+
             return lastrow.getData()[col];
         }
 
@@ -2124,6 +3068,10 @@ public class IndexAVL implements Index {
                 return null;
             }
 
+            if (indexOnly) {
+                return lastnode.getData(store);
+            }
+
             return lastrow.getData();
         }
 
@@ -2137,7 +3085,7 @@ public class IndexAVL implements Index {
                 return null;
             }
 
-            NodeAVL lastnode = nextnode;
+            lastnode = nextnode;
 
             if (single) {
                 nextnode = null;
@@ -50,7 +50,7 @@ import org.hsqldb.rowio.RowInputBinary;
  * Checks indexes for inconsistencies
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 2.5.1
  */
 public class IndexAVLCheck {
@@ -138,7 +138,8 @@ public class IndexAVLCheck {
         boolean reindex   = false;
 
         for (int i = 0; i < indexStats.length; i++) {
-            if (!indexStats[i].hasErrors) {
+            if (!indexStats[i].hasErrors
+                    && table.getIndex(i).getCondition() == null) {
                 readIndex = table.getIndex(i);
                 break;
             }
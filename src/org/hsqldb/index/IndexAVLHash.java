@@ -0,0 +1,391 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.index;
+
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.OpTypes;
+import org.hsqldb.Row;
+import org.hsqldb.RowAVL;
+import org.hsqldb.Session;
+import org.hsqldb.TableBase;
+import org.hsqldb.lib.Iterator;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.TypedComparator;
+
+/**
+ * Hash index for memory tables, created with CREATE INDEX ... USING HASH.<p>
+ *
+ * The AVL tree of the index is maintained as in IndexAVLMemory and is used
+ * for range conditions, ordering and MVCC navigation. In addition, an open
+ * addressing hash table holds one node for each distinct key. An equality
+ * lookup on all the columns of the index finds this node with a single hash
+ * probe, then steps to the first node with the same key in the tree, instead
+ * of descending the tree with a row comparison at each level.<p>
+ *
+ * The hash table is modified only when the store is write locked. It is
+ * cleared whenever the tree is rebuilt from an empty root.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class IndexAVLHash extends IndexAVLMemory {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private NodeAVL[] nodes    = new NodeAVL[MIN_CAPACITY];
+    private int[]     hashes   = new int[MIN_CAPACITY];
+    private int       keyCount = 0;
+
+    public IndexAVLHash(
+            HsqlName name,
+            long id,
+            TableBase table,
+            int[] columns,
+            boolean[] descending,
+            boolean[] nullsLast,
+            Type[] colTypes,
+            boolean pk,
+            boolean unique,
+            boolean constraint,
+            boolean forward) {
+
+        super(
+            name,
+            id,
+            table,
+            columns,
+            descending,
+            nullsLast,
+            colTypes,
+            pk,
+            unique,
+            constraint,
+            forward);
+    }
+
+    /**
+     * Returns true if a hash index can be used for the table and the column
+     * types. Values of the types that compare as equal must have the same
+     * hash. A null type is the type of a key expression, which is checked
+     * after the expression is resolved.
+     */
+    public static boolean isHashable(TableBase table, Type[] colTypes) {
+
+        if (table.getTableType() != TableBase.MEMORY_TABLE) {
+            return false;
+        }
+
+        for (int i = 0; i < colTypes.length; i++) {
+            if (colTypes[i] != null
+                    && !TypedComparator.isKeyHashable(colTypes[i])) {
+                return false;
+            }
+        }
+
+        return colTypes.length > 0;
+    }
+
+    public boolean isHash() {
+        return true;
+    }
+
+    public void insert(Session session, PersistentStore store, Row row) {
+
+        if (!isIndexed(session, row.getData())) {
+            return;
+        }
+
+        if (getAccessor(store) == null) {
+            clearHash();
+        }
+
+        super.insert(session, store, row);
+        addHashNode(session, ((RowAVL) row).getNode(position));
+    }
+
+    public void delete(Session session, PersistentStore store, Row row) {
+
+        row = (Row) store.get(row, false);
+
+        NodeAVL x = ((RowAVL) row).getNode(position);
+
+        if (x == null || !isIndexed(session, row.getData())) {
+            return;
+        }
+
+        if (getAccessor(store) != null) {
+            removeHashNode(session, store, x);
+        }
+
+        super.delete(session, store, row);
+    }
+
+    /**
+     * Adds the nodes to the hash table in the sorted order of the rows while
+     * the tree is built. The store is not read again, as the write lock may
+     * be held by another thread when indexes are built in parallel.
+     */
+    public void build(
+            final Session session,
+            PersistentStore store,
+            final Iterator<? extends Row> rows,
+            long count) {
+
+        Iterator<Row> hashRows = new Iterator<Row>() {
+
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            public Row next() {
+
+                RowAVL row = (RowAVL) rows.next();
+
+                addHashNode(session, row.getNode(position));
+
+                return row;
+            }
+        };
+
+        clearHash();
+        super.build(session, store, hashRows, count);
+    }
+
+    /**
+     * Uses the hash table for equality lookups on all the columns of the
+     * index and the AVL tree for other lookups.
+     */
+    NodeAVL findNode(
+            Session session,
+            PersistentStore store,
+            Object[] rowdata,
+            int[] rowColMap,
+            int fieldCount,
+            int compareType,
+            int readMode,
+            boolean reversed) {
+
+        if (compareType != OpTypes.EQUAL || fieldCount != colIndex.length) {
+            return super.findNode(
+                session,
+                store,
+                rowdata,
+                rowColMap,
+                fieldCount,
+                compareType,
+                readMode,
+                reversed);
+        }
+
+        store.readLock();
+
+        try {
+            if (getAccessor(store) == null) {
+                return null;
+            }
+
+            int hash = getKeyHash(rowdata, rowColMap);
+            int mask = nodes.length - 1;
+            int slot = hash & mask;
+
+            NodeAVL x = null;
+
+            for (; nodes[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash
+                        && compareRowNonUnique(
+                            session,
+                            nodes[slot].getData(store),
+                            rowdata,
+                            rowColMap,
+                            fieldCount) == 0) {
+                    x = nodes[slot];
+                    break;
+                }
+            }
+
+            if (x == null) {
+                return null;
+            }
+
+            // the first node with the key in the direction of the search
+            while (true) {
+                NodeAVL n = reversed
+                            ? next(store, x)
+                            : last(store, x);
+
+                if (n == null
+                        || compareRowNonUnique(
+                            session,
+                            n.getData(store),
+                            rowdata,
+                            rowColMap,
+                            fieldCount) != 0) {
+                    break;
+                }
+
+                x = n;
+            }
+
+            return findReadableNode(
+                session,
+                store,
+                x,
+                rowdata,
+                rowColMap,
+                fieldCount,
+                readMode,
+                reversed);
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    private void addHashNode(Session session, NodeAVL node) {
+
+        Object[] data = getKeyData(session, node.getData(null));
+        int      hash = getRowHash(data);
+        int      mask = nodes.length - 1;
+        int      slot = hash & mask;
+
+        for (; nodes[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash
+                    && compareRow(session, nodes[slot].getData(null), data)
+                       == 0) {
+                return;
+            }
+        }
+
+        nodes[slot]  = node;
+        hashes[slot] = hash;
+
+        keyCount++;
+
+        if (keyCount * 2 > nodes.length) {
+            resize(nodes.length * 2);
+        }
+    }
+
+    /**
+     * Removes the node from the hash table, or replaces it with another node
+     * with the same key. Called before the node is removed from the tree.
+     */
+    private void removeHashNode(
+            Session session,
+            PersistentStore store,
+            NodeAVL node) {
+
+        Object[] data = getKeyData(session, node.getData(store));
+        int      hash = getRowHash(data);
+        int      mask = nodes.length - 1;
+        int      slot = hash & mask;
+
+        for (; nodes[slot] != null; slot = (slot + 1) & mask) {
+            if (nodes[slot] == node) {
+                break;
+            }
+        }
+
+        if (nodes[slot] == null) {
+            return;
+        }
+
+        NodeAVL other = last(store, node);
+
+        if (other == null
+                || compareRow(session, other.getData(store), data) != 0) {
+            other = next(store, node);
+
+            if (other != null
+                    && compareRow(session, other.getData(store), data) != 0) {
+                other = null;
+            }
+        }
+
+        if (other != null) {
+            nodes[slot] = other;
+
+            return;
+        }
+
+        // backward shift deletion keeps the probe sequences unbroken
+        int next = (slot + 1) & mask;
+
+        for (; nodes[next] != null; next = (next + 1) & mask) {
+            int home = hashes[next] & mask;
+
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                nodes[slot]  = nodes[next];
+                hashes[slot] = hashes[next];
+                slot         = next;
+            }
+        }
+
+        nodes[slot] = null;
+
+        keyCount--;
+    }
+
+    private void resize(int capacity) {
+
+        NodeAVL[] oldNodes  = nodes;
+        int[]     oldHashes = hashes;
+        int       mask      = capacity - 1;
+
+        nodes  = new NodeAVL[capacity];
+        hashes = new int[capacity];
+
+        for (int i = 0; i < oldNodes.length; i++) {
+            if (oldNodes[i] == null) {
+                continue;
+            }
+
+            int slot = oldHashes[i] & mask;
+
+            while (nodes[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+
+            nodes[slot]  = oldNodes[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+
+    private void clearHash() {
+
+        if (keyCount > 0 || nodes.length > MIN_CAPACITY) {
+            nodes    = new NodeAVL[MIN_CAPACITY];
+            hashes   = new int[MIN_CAPACITY];
+            keyCount = 0;
+        }
+    }
+}
@@ -0,0 +1,1781 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.index;
+
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.OpTypes;
+import org.hsqldb.RangeVariable.RangeVariableConditions;
+import org.hsqldb.Row;
+import org.hsqldb.Session;
+import org.hsqldb.TableBase;
+import org.hsqldb.TransactionManager;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.Iterator;
+import org.hsqldb.lib.LongLookup;
+import org.hsqldb.navigator.RangeIterator;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.ExternalSort;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.Type;
+
+/**
+ * Implementation of a B+tree index for CACHED tables.<p>
+ *
+ * The index is held in NodeBTree pages stored in the .data file instead of
+ * nodes stored with each row. The pages are accessed via the PersistentStore
+ * returned by getAccessorStore() of the row store and the root page is the
+ * accessor of the index. Each leaf entry holds the index column values and
+ * the file position of the row. Entries are ordered by the column values and
+ * then by the row position, so that each entry can be found for deletion.<p>
+ *
+ * Empty pages are removed but pages that are not full are not merged.<p>
+ *
+ * The row store must hold the write lock for insert and delete operations.
+ * Iterators do not hold the read lock between calls. When the index has been
+ * modified after the last call, the iterator finds the next entry again.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class IndexBTree extends IndexAVL {
+
+    static final int MAX_DEPTH   = 64;
+    static final int SAMPLE_SIZE = 8;
+
+    // modes for finding the first entry in the index that is not before
+    static final int SEEK_ENTRY        = 0;
+    static final int SEEK_ENTRY_EQUAL  = 1;
+    static final int SEEK_KEY          = 2;
+    static final int SEEK_PREFIX       = 3;
+    static final int SEEK_PREFIX_EQUAL = 4;
+    static final int SEEK_VALUE        = 5;
+    static final int SEEK_VALUE_EQUAL  = 6;
+
+    //
+    volatile int modCount;
+
+    /**
+     * Constructor declaration
+     *
+     * @param name HsqlName of the index
+     * @param id persistnece id
+     * @param table table of the index
+     * @param columns array of column indexes
+     * @param descending boolean[]
+     * @param nullsLast boolean[]
+     * @param colTypes array of column types
+     * @param pk if index is for a primary key
+     * @param unique is this a unique index
+     * @param constraint does this index belonging to a constraint
+     * @param forward is this an auto-index for an FK that refers to a table
+     *   defined after this table
+     */
+    public IndexBTree(
+            HsqlName name,
+            long id,
+            TableBase table,
+            int[] columns,
+            boolean[] descending,
+            boolean[] nullsLast,
+            Type[] colTypes,
+            boolean pk,
+            boolean unique,
+            boolean constraint,
+            boolean forward) {
+
+        super(
+            name,
+            id,
+            table,
+            columns,
+            descending,
+            nullsLast,
+            colTypes,
+            pk,
+            unique,
+            constraint,
+            forward);
+    }
+
+    /**
+     * Returns the entry count, or the readable row count if session is not
+     * null.
+     */
+    public long size(Session session, PersistentStore store) {
+
+        if (session != null) {
+            return super.size(session, store);
+        }
+
+        store.readLock();
+
+        try {
+            NodeBTree root = getRoot(store);
+
+            if (root == null) {
+                return 0;
+            }
+
+            PersistentStore pageStore = store.getAccessorStore(this);
+            Position        position  = first(pageStore, root);
+            NodeBTree       page      = position.page;
+            long            count     = 0;
+
+            while (page != null) {
+                count += page.count;
+                page  = page.nextPage == -1
+                        ? null
+                        : getPage(pageStore, page.nextPage, false);
+            }
+
+            return count;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Estimates the average row count for each distinct value of the leading
+     * columns from the entries of a few leaf pages spread over the index.
+     */
+    public double[] searchCost(Session session, PersistentStore store) {
+
+        double[] changes = new double[colIndex.length];
+
+        store.readLock();
+
+        try {
+            NodeBTree root = getRoot(store);
+
+            if (root == null) {
+                return changes;
+            }
+
+            PersistentStore pageStore = store.getAccessorStore(this);
+            long            pairs     = 0;
+
+            for (int i = 0; i < SAMPLE_SIZE; i++) {
+                NodeBTree page = root;
+
+                while (!page.isLeaf) {
+                    int slot = (int) ((long) i * page.count / SAMPLE_SIZE);
+
+                    page = getPage(pageStore, page.childPos[slot], false);
+                }
+
+                for (int j = 1; j < page.count; j++) {
+                    compareKeyForChange(
+                        session,
+                        page.keys[j - 1],
+                        page.keys[j],
+                        changes);
+
+                    pairs++;
+                }
+
+                if (root.isLeaf) {
+                    break;
+                }
+            }
+
+            long rowCount = store.elementCount();
+
+            for (int i = 0; i < colIndex.length; i++) {
+                if (changes[i] == 0) {
+                    changes[i] = rowCount;
+                } else {
+                    changes[i] = pairs / changes[i];
+                }
+
+                if (changes[i] < 2) {
+                    changes[i] = 2;
+                }
+            }
+
+            return changes;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    public boolean isEmpty(PersistentStore store) {
+
+        store.readLock();
+
+        try {
+            return getRoot(store) == null;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Insert an entry into the index
+     */
+    public void insert(Session session, PersistentStore store, Row row) {
+
+        if (!isIndexed(session, row.getData())) {
+            return;
+        }
+
+        addBloomFilterKey(session, row.getData());
+
+        Object[]        key       = getKey(session, row.getData());
+        long            pos       = row.getPos();
+        PersistentStore pageStore = store.getAccessorStore(this);
+        NodeBTree       root      = getRoot(store);
+
+        if (NodeBTree.getMaxEntrySize(this, key) > NodeBTree.MAX_ENTRY_SIZE) {
+            throw Error.error(ErrorCode.X_22001, name.statementName);
+        }
+
+        if (root == null) {
+            NodeBTree leaf = new NodeBTree(this, true);
+
+            leaf.appendEntry(key, pos, -1);
+            pageStore.add(leaf, false);
+            store.setAccessor(this, leaf);
+
+            modCount++;
+
+            return;
+        }
+
+        if (isUnique && !hasNulls(session, row.getData())) {
+            checkUnique(session, store, root, row, key);
+        }
+
+        NodeBTree[] path  = new NodeBTree[MAX_DEPTH];
+        int[]       slots = new int[MAX_DEPTH];
+        int         depth = 0;
+
+        try {
+            NodeBTree page = getPage(pageStore, root.getPos(), true);
+
+            path[0] = page;
+
+            while (!page.isLeaf) {
+                int slot = findSlot(
+                    session,
+                    page,
+                    SEEK_ENTRY_EQUAL,
+                    key,
+                    pos,
+                    null,
+                    0,
+                    0) - 1;
+
+                if (slot < 0) {
+                    slot = 0;
+                }
+
+                slots[depth] = slot;
+                page         = getPage(pageStore, page.childPos[slot], true);
+
+                depth++;
+
+                path[depth] = page;
+            }
+
+            int slot = findSlot(session, page, SEEK_ENTRY, key, pos, null, 0, 0);
+
+            page.insertEntry(slot, key, pos, -1);
+
+            for (int level = depth; level >= 0; level--) {
+                NodeBTree left = path[level];
+
+                if (!left.isOverflow()) {
+                    break;
+                }
+
+                NodeBTree right = new NodeBTree(this, left.isLeaf);
+
+                left.moveEntries(right, left.getSplitSlot());
+
+                if (left.isLeaf) {
+                    right.prevPage = left.getPos();
+                    right.nextPage = left.nextPage;
+                }
+
+                pageStore.add(right, false);
+
+                if (left.isLeaf) {
+                    if (left.nextPage != -1) {
+                        NodeBTree next = getPage(
+                            pageStore,
+                            left.nextPage,
+                            true);
+
+                        next.prevPage = right.getPos();
+
+                        next.setChanged(true);
+                        next.keepInMemory(false);
+                    }
+
+                    left.nextPage = right.getPos();
+                }
+
+                if (level == 0) {
+                    NodeBTree newRoot = new NodeBTree(this, false);
+
+                    newRoot.appendEntry(
+                        left.keys[0],
+                        left.rowPos[0],
+                        left.getPos());
+                    newRoot.appendEntry(
+                        right.keys[0],
+                        right.rowPos[0],
+                        right.getPos());
+                    pageStore.add(newRoot, false);
+                    store.setAccessor(this, newRoot);
+                } else {
+                    path[level - 1].insertEntry(
+                        slots[level - 1] + 1,
+                        right.keys[0],
+                        right.rowPos[0],
+                        right.getPos());
+                }
+            }
+
+            modCount++;
+        } finally {
+            release(path, depth);
+        }
+    }
+
+    public void delete(Session session, PersistentStore store, Row row) {
+
+        NodeBTree root = getRoot(store);
+
+        if (root == null || !isIndexed(session, row.getData())) {
+            return;
+        }
+
+        deleteBloomFilterKey();
+
+        Object[]        key       = getKey(session, row.getData());
+        long            pos       = row.getPos();
+        PersistentStore pageStore = store.getAccessorStore(this);
+        NodeBTree[]     path      = new NodeBTree[MAX_DEPTH];
+        int[]           slots     = new int[MAX_DEPTH];
+        int             depth     = 0;
+
+        try {
+            NodeBTree page = getPage(pageStore, root.getPos(), true);
+
+            path[0] = page;
+
+            while (!page.isLeaf) {
+                int slot = findSlot(
+                    session,
+                    page,
+                    SEEK_ENTRY_EQUAL,
+                    key,
+                    pos,
+                    null,
+                    0,
+                    0) - 1;
+
+                if (slot < 0) {
+                    slot = 0;
+                }
+
+                slots[depth] = slot;
+                page         = getPage(pageStore, page.childPos[slot], true);
+
+                depth++;
+
+                path[depth] = page;
+            }
+
+            int slot = findSlot(session, page, SEEK_ENTRY, key, pos, null, 0, 0);
+
+            if (slot == page.count || page.rowPos[slot] != pos) {
+                return;
+            }
+
+            page.removeEntry(slot);
+
+            int level = depth;
+
+            for (; level > 0; level--) {
+                page = path[level];
+
+                if (page.count > 0) {
+                    break;
+                }
+
+                if (page.isLeaf) {
+                    unlinkLeaf(pageStore, page);
+                }
+
+                path[level - 1].removeEntry(slots[level - 1]);
+                pageStore.remove(page);
+            }
+
+            if (level == 0) {
+                page = path[0];
+
+                if (page.count == 0) {
+                    pageStore.remove(page);
+                    store.setAccessor(this, null);
+                } else {
+                    while (!page.isLeaf && page.count == 1) {
+                        NodeBTree child = getPage(
+                            pageStore,
+                            page.childPos[0],
+                            false);
+
+                        pageStore.remove(page);
+
+                        page = child;
+                    }
+
+                    store.setAccessor(this, page);
+                }
+            }
+
+            modCount++;
+        } finally {
+            release(path, depth);
+        }
+    }
+
+    public boolean existsParent(
+            Session session,
+            PersistentStore store,
+            Object[] rowdata,
+            int[] rowColMap) {
+
+        Position position = findPosition(
+            session,
+            store,
+            rowdata,
+            rowColMap,
+            rowColMap.length,
+            OpTypes.EQUAL,
+            TransactionManager.ACTION_REF,
+            false);
+
+        return position != null;
+    }
+
+    public RowIterator findFirstRow(
+            Session session,
+            PersistentStore store,
+            Object[] rowdata,
+            int matchCount,
+            int distinctCount,
+            int compareType,
+            boolean reversed,
+            boolean[] map) {
+
+        Position position = findPosition(
+            session,
+            store,
+            rowdata,
+            getDefaultColumnMap(),
+            matchCount,
+            compareType,
+            TransactionManager.ACTION_READ,
+            reversed);
+
+        return getIterator(session, store, position, distinctCount, reversed);
+    }
+
+    public RowIterator findFirstRow(
+            Session session,
+            PersistentStore store,
+            Object[] rowdata) {
+
+        Position position = findPosition(
+            session,
+            store,
+            rowdata,
+            colIndex,
+            colIndex.length,
+            OpTypes.EQUAL,
+            TransactionManager.ACTION_READ,
+            false);
+
+        return getIterator(session, store, position, 0, false);
+    }
+
+    public RowIterator findFirstRow(
+            Session session,
+            PersistentStore store,
+            Object[] rowdata,
+            int[] rowColMap) {
+
+        Position position = findPosition(
+            session,
+            store,
+            rowdata,
+            rowColMap,
+            rowColMap.length,
+            OpTypes.EQUAL,
+            TransactionManager.ACTION_READ,
+            false);
+
+        return getIterator(session, store, position, 0, false);
+    }
+
+    public RowIterator findFirstRowNotNull(
+            Session session,
+            PersistentStore store) {
+
+        Position position = findPosition(
+            session,
+            store,
+            nullData,
+            getDefaultColumnMap(),
+            1,
+            OpTypes.NOT,
+            TransactionManager.ACTION_READ,
+            false);
+
+        return getIterator(session, store, position, 0, false);
+    }
+
+    public RowIterator firstRow(
+            Session session,
+            PersistentStore store,
+            RangeVariableConditions[] conditions,
+            int distinctCount,
+            boolean[] map) {
+
+        store.readLock();
+
+        try {
+            NodeBTree root = getRoot(store);
+
+            if (root == null) {
+                return RangeIterator.emptyRowIterator;
+            }
+
+            Position position = first(store.getAccessorStore(this), root);
+
+            if (!findReadable(
+                    session,
+                    store,
+                    position,
+                    null,
+                    null,
+                    0,
+                    TransactionManager.ACTION_READ,
+                    null,
+                    false)) {
+                return RangeIterator.emptyRowIterator;
+            }
+
+            return new BTreeRowIterator(
+                session,
+                store,
+                this,
+                position,
+                distinctCount,
+                false);
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    public RowIterator firstRow(PersistentStore store) {
+        return firstRow(null, store, null, 0, null);
+    }
+
+    public RowIterator lastRow(
+            Session session,
+            PersistentStore store,
+            int distinctCount,
+            boolean[] map) {
+
+        store.readLock();
+
+        try {
+            NodeBTree root = getRoot(store);
+
+            if (root == null) {
+                return RangeIterator.emptyRowIterator;
+            }
+
+            Position position = last(store.getAccessorStore(this), root);
+
+            if (!findReadable(
+                    session,
+                    store,
+                    position,
+                    null,
+                    null,
+                    0,
+                    TransactionManager.ACTION_READ,
+                    null,
+                    true)) {
+                return RangeIterator.emptyRowIterator;
+            }
+
+            return new BTreeRowIterator(
+                session,
+                store,
+                this,
+                position,
+                distinctCount,
+                true);
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Checks the order of the entries and the rows they refer to.
+     */
+    public IndexStats checkIndex(Session session, PersistentStore store) {
+
+        IndexStats stats = new IndexStats();
+
+        stats.index = this;
+        stats.store = store;
+
+        store.readLock();
+
+        try {
+            NodeBTree root = getRoot(store);
+
+            if (root == null) {
+                return stats;
+            }
+
+            PersistentStore pageStore = store.getAccessorStore(this);
+            Position        position  = first(pageStore, root);
+            Object[]        lastKey   = null;
+            long            lastPos   = -1;
+
+            while (position.page != null) {
+                Object[] key = position.page.keys[position.slot];
+                long     pos = position.page.rowPos[position.slot];
+
+                if (lastKey != null
+                        && compareEntry(session, lastKey, lastPos, key, pos)
+                           >= 0) {
+                    stats.errorCount++;
+
+                    stats.unorderedList.add("unordered row " + pos);
+                }
+
+                Row row = (Row) store.get(pos, false);
+
+                if (row == null
+                        || compareKey(
+                            session,
+                            getKey(session, row.getData()),
+                            key) != 0) {
+                    stats.errorCount++;
+                } else {
+                    stats.goodRowCount++;
+                }
+
+                lastKey = key;
+                lastPos = pos;
+
+                next(pageStore, position);
+            }
+
+            stats.hasErrors = stats.errorCount != 0;
+
+            return stats;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Adds the position and size of all pages of the index to the lookup.
+     */
+    public void addPagePositions(PersistentStore store, LongLookup lookup) {
+
+        NodeBTree root = getRoot(store);
+
+        if (root != null) {
+            addPagePositions(store.getAccessorStore(this), root, lookup);
+        }
+    }
+
+    private void addPagePositions(
+            PersistentStore pageStore,
+            NodeBTree page,
+            LongLookup lookup) {
+
+        lookup.addUnsorted(page.getPos(), NodeBTree.PAGE_SIZE);
+
+        if (page.isLeaf) {
+            return;
+        }
+
+        long[] children = page.childPos;
+        int    count    = page.count;
+
+        for (int i = 0; i < count; i++) {
+            addPagePositions(
+                pageStore,
+                getPage(pageStore, children[i], false),
+                lookup);
+        }
+    }
+
+    /**
+     * Adds the entries of the index to the sort for building it again in
+     * bulk. When the lookup is not null, the row positions are mapped to new
+     * positions.
+     */
+    public void addEntries(
+            PersistentStore store,
+            ExternalSort sort,
+            LongLookup pointerLookup) {
+
+        store.readLock();
+
+        try {
+            NodeBTree root = getRoot(store);
+
+            if (root == null) {
+                return;
+            }
+
+            PersistentStore pageStore = store.getAccessorStore(this);
+            NodeBTree       page      = first(pageStore, root).page;
+
+            while (page != null) {
+                for (int i = 0; i < page.count; i++) {
+                    Object[] entry = new Object[colIndex.length + 1];
+                    long     pos   = page.rowPos[i];
+
+                    System.arraycopy(
+                        page.keys[i],
+                        0,
+                        entry,
+                        0,
+                        colIndex.length);
+
+                    if (pointerLookup != null) {
+                        pos = pointerLookup.lookup(pos, -1);
+
+                        if (pos == -1) {
+                            throw Error.error(ErrorCode.DATA_FILE_ERROR);
+                        }
+                    }
+
+                    entry[colIndex.length] = Long.valueOf(pos);
+
+                    sort.add(entry);
+                }
+
+                page = page.nextPage == -1
+                       ? null
+                       : getPage(pageStore, page.nextPage, false);
+            }
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Builds the index from the sorted entries. The pages of each level are
+     * filled in turn and written when full. Returns the root page, or null if
+     * there are no entries.
+     */
+    public NodeBTree build(Iterator<Object[]> entries, PageWriter writer) {
+
+        NodeBTree[] levels   = new NodeBTree[MAX_DEPTH];
+        int         position = colIndex.length;
+        int         top      = 0;
+
+        setModified();
+
+        if (!entries.hasNext()) {
+            return null;
+        }
+
+        while (entries.hasNext()) {
+            Object[] entry = entries.next();
+            long     pos   = ((Long) entry[position]).longValue();
+
+            entry[position] = null;
+            top = addEntry(levels, top, 0, entry, pos, -1, writer);
+        }
+
+        for (int level = 0; level <= top; level++) {
+            writer.write(levels[level]);
+        }
+
+        return levels[top];
+    }
+
+    private int addEntry(
+            NodeBTree[] levels,
+            int top,
+            int level,
+            Object[] key,
+            long pos,
+            long child,
+            PageWriter writer) {
+
+        NodeBTree page = levels[level];
+
+        if (page == null) {
+            page = new NodeBTree(this, level == 0);
+
+            page.setPos(writer.getFilePosition());
+
+            levels[level] = page;
+        } else if (!page.canAppend(key)) {
+            NodeBTree newPage = new NodeBTree(this, level == 0);
+
+            newPage.setPos(writer.getFilePosition());
+
+            if (page.isLeaf) {
+                page.nextPage    = newPage.getPos();
+                newPage.prevPage = page.getPos();
+            }
+
+            if (level == top) {
+                top = addEntry(
+                    levels,
+                    level + 1,
+                    level + 1,
+                    page.keys[0],
+                    page.rowPos[0],
+                    page.getPos(),
+                    writer);
+            }
+
+            writer.write(page);
+
+            page          = newPage;
+            levels[level] = page;
+            top = addEntry(
+                levels,
+                top,
+                level + 1,
+                key,
+                pos,
+                page.getPos(),
+                writer);
+        }
+
+        page.appendEntry(key, pos, child);
+
+        return top;
+    }
+
+    /**
+     * Called when the pages of the index are replaced or removed, so that
+     * open iterators find their position again.
+     */
+    public void setModified() {
+        modCount++;
+    }
+
+    /**
+     * Writes the pages built in bulk
+     */
+    public interface PageWriter {
+
+        long getFilePosition();
+
+        void write(NodeBTree page);
+    }
+
+    //
+    NodeBTree getRoot(PersistentStore store) {
+        return (NodeBTree) store.getAccessor(this);
+    }
+
+    static NodeBTree getPage(
+            PersistentStore pageStore,
+            long pos,
+            boolean keep) {
+        return (NodeBTree) pageStore.get(pos, keep);
+    }
+
+    private static void release(NodeBTree[] path, int depth) {
+
+        for (int i = 0; i <= depth; i++) {
+            if (path[i] != null) {
+                path[i].keepInMemory(false);
+            }
+        }
+    }
+
+    private void unlinkLeaf(PersistentStore pageStore, NodeBTree page) {
+
+        if (page.prevPage != -1) {
+            NodeBTree prev = getPage(pageStore, page.prevPage, true);
+
+            prev.nextPage = page.nextPage;
+
+            prev.setChanged(true);
+            prev.keepInMemory(false);
+        }
+
+        if (page.nextPage != -1) {
+            NodeBTree next = getPage(pageStore, page.nextPage, true);
+
+            next.prevPage = page.prevPage;
+
+            next.setChanged(true);
+            next.keepInMemory(false);
+        }
+    }
+
+    /**
+     * Compares the leading columns of a key with the mapped columns of a
+     * row, as in compareRowNonUnique.
+     */
+    int comparePrefix(
+            Session session,
+            Object[] key,
+            Object[] rowdata,
+            int[] rowColMap,
+            int fieldCount) {
+
+        for (int j = 0; j < fieldCount; j++) {
+            int i = colTypes[j].compare(session, key[j], rowdata[rowColMap[j]]);
+
+            if (i != 0) {
+                return i;
+            }
+        }
+
+        return 0;
+    }
+
+    private void compareKeyForChange(
+            Session session,
+            Object[] a,
+            Object[] b,
+            double[] changes) {
+
+        int c = 0;
+
+        for (int j = 0; j < colIndex.length; j++) {
+            if (c == 0) {
+                c = colTypes[j].compare(session, a[j], b[j]);
+            }
+
+            if (c != 0) {
+                changes[j]++;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the entry is before the first entry that satisfies the
+     * search condition given by the mode.
+     */
+    private boolean isBefore(
+            Session session,
+            Object[] key,
+            long pos,
+            int mode,
+            Object[] data,
+            long dataPos,
+            int[] rowColMap,
+            int fieldCount,
+            int opType) {
+
+        int i;
+
+        switch (mode) {
+
+            case SEEK_ENTRY :
+                return compareEntry(session, key, pos, data, dataPos) < 0;
+
+            case SEEK_ENTRY_EQUAL :
+                return compareEntry(session, key, pos, data, dataPos) <= 0;
+
+            case SEEK_KEY :
+                return compareKey(session, key, data) < 0;
+
+            case SEEK_PREFIX :
+                return comparePrefix(
+                    session,
+                    key,
+                    data,
+                    rowColMap,
+                    fieldCount) < 0;
+
+            case SEEK_PREFIX_EQUAL :
+                return comparePrefix(
+                    session,
+                    key,
+                    data,
+                    rowColMap,
+                    fieldCount) <= 0;
+
+            case SEEK_VALUE :
+            case SEEK_VALUE_EQUAL :
+                i = comparePrefix(session, key, data, rowColMap, fieldCount);
+
+                if (i == 0) {
+                    i = colTypes[fieldCount].compare(
+                        session,
+                        key[fieldCount],
+                        data[rowColMap[fieldCount]],
+                        opType);
+                }
+
+                return mode == SEEK_VALUE
+                       ? i < 0
+                       : i <= 0;
+
+            default :
+                throw Error.runtimeError(ErrorCode.U_S0500, "IndexBTree");
+        }
+    }
+
+    /**
+     * Returns the first slot in the page that is not before the search
+     * condition, or the count of entries if all are before.
+     */
+    private int findSlot(
+            Session session,
+            NodeBTree page,
+            int mode,
+            Object[] data,
+            long dataPos,
+            int[] rowColMap,
+            int fieldCount,
+            int opType) {
+
+        int low  = 0;
+        int high = page.count;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (isBefore(
+                    session,
+                    page.keys[mid],
+                    page.rowPos[mid],
+                    mode,
+                    data,
+                    dataPos,
+                    rowColMap,
+                    fieldCount,
+                    opType)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Positions on the first entry that is not before the search condition.
+     * The position may be after the last entry of the leaf page.
+     */
+    private Position seek(
+            Session session,
+            PersistentStore pageStore,
+            NodeBTree root,
+            int mode,
+            Object[] data,
+            long dataPos,
+            int[] rowColMap,
+            int fieldCount,
+            int opType) {
+
+        NodeBTree page = root;
+
+        while (!page.isLeaf) {
+            int slot = findSlot(
+                session,
+                page,
+                mode,
+                data,
+                dataPos,
+                rowColMap,
+                fieldCount,
+                opType) - 1;
+
+            if (slot < 0) {
+                slot = 0;
+            }
+
+            page = getPage(pageStore, page.childPos[slot], false);
+        }
+
+        Position position = new Position();
+
+        position.page = page;
+        position.slot = findSlot(
+            session,
+            page,
+            mode,
+            data,
+            dataPos,
+            rowColMap,
+            fieldCount,
+            opType);
+
+        return position;
+    }
+
+    private void checkUnique(
+            Session session,
+            PersistentStore store,
+            NodeBTree root,
+            Row row,
+            Object[] key) {
+
+        PersistentStore pageStore = store.getAccessorStore(this);
+        Position position = seek(
+            session,
+            pageStore,
+            root,
+            SEEK_KEY,
+            key,
+            0,
+            null,
+            0,
+            0);
+        boolean isMVRows = session != null
+                           && session.database.txManager.isMVRows();
+
+        for (boolean found = forward(pageStore, position); found;
+                found = next(pageStore, position)) {
+            if (compareKey(session, position.getKey(), key) != 0) {
+                return;
+            }
+
+            if (isMVRows) {
+                Row current = getRow(store, position);
+
+                if (!store.canRead(session,
+                                   current,
+                                   TransactionManager.ACTION_DUP,
+                                   null) || !current.isCurrentSystemVersion()) {
+                    continue;
+                }
+            }
+
+            throw getUniqueException(row.getData());
+        }
+    }
+
+    /**
+     * Finds the first entry that matches the row data from a different table
+     * and can be read by the session. As in IndexAVL.findNode().
+     */
+    Position findPosition(
+            Session session,
+            PersistentStore store,
+            Object[] rowdata,
+            int[] rowColMap,
+            int fieldCount,
+            int compareType,
+            int readMode,
+            boolean reversed) {
+
+        store.readLock();
+
+        try {
+            NodeBTree root = getRoot(store);
+
+            if (root == null) {
+                return null;
+            }
+
+            if (compareType != OpTypes.EQUAL
+                    && compareType != OpTypes.IS_NULL) {
+                fieldCount--;
+
+                if (compareType == OpTypes.SMALLER
+                        || compareType == OpTypes.SMALLER_EQUAL
+                        || compareType == OpTypes.MAX) {
+                    reversed = true;
+                }
+            }
+
+            BloomFilter filter = getBloomFilter(compareType, fieldCount);
+
+            if (filter != null
+                    && !mightContain(
+                        session,
+                        store,
+                        filter,
+                        rowdata,
+                        rowColMap)) {
+                return null;
+            }
+
+            int     mode;
+            boolean isLast;
+
+            switch (compareType) {
+
+                case OpTypes.MAX :
+                case OpTypes.IS_NULL :
+                case OpTypes.EQUAL :
+                    mode   = reversed
+                             ? SEEK_PREFIX_EQUAL
+                             : SEEK_PREFIX;
+                    isLast = reversed;
+                    break;
+
+                case OpTypes.NOT :
+                case OpTypes.GREATER :
+                    mode   = SEEK_VALUE_EQUAL;
+                    isLast = false;
+                    break;
+
+                case OpTypes.GREATER_EQUAL_PRE :
+                case OpTypes.GREATER_EQUAL :
+                    mode   = SEEK_VALUE;
+                    isLast = false;
+                    break;
+
+                case OpTypes.SMALLER :
+                    mode   = SEEK_VALUE;
+                    isLast = true;
+                    break;
+
+                case OpTypes.SMALLER_EQUAL :
+                    mode   = SEEK_VALUE_EQUAL;
+                    isLast = true;
+                    break;
+
+                default :
+                    throw Error.runtimeError(ErrorCode.U_S0500, "Index");
+            }
+
+            PersistentStore pageStore = store.getAccessorStore(this);
+            Position position = seek(
+                session,
+                pageStore,
+                root,
+                mode,
+                rowdata,
+                0,
+                rowColMap,
+                fieldCount,
+                compareType);
+            boolean found;
+
+            if (isLast) {
+                position.slot--;
+
+                found = backward(pageStore, position);
+            } else {
+                found = forward(pageStore, position);
+            }
+
+            if (found && fieldCount > 0) {
+                found = comparePrefix(
+                    session,
+                    position.getKey(),
+                    rowdata,
+                    rowColMap,
+                    fieldCount) == 0;
+            }
+
+            if (found) {
+                found = findReadable(
+                    session,
+                    store,
+                    position,
+                    rowdata,
+                    rowColMap,
+                    fieldCount,
+                    readMode,
+                    colIndex,
+                    reversed);
+            }
+
+            if (!found) {
+                if (filter != null) {
+                    filter.addFalsePositive();
+                }
+
+                return null;
+            }
+
+            return position;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Moves the position to the first entry from the current one onwards that
+     * can be read by the session and matches the rowdata. Returns false if
+     * there is no such entry.
+     */
+    boolean findReadable(
+            Session session,
+            PersistentStore store,
+            Position position,
+            Object[] rowdata,
+            int[] rowColMap,
+            int fieldCount,
+            int readMode,
+            int[] colMap,
+            boolean reversed) {
+
+        // MVCC 190
+        if (session == null) {
+            return true;
+        }
+
+        PersistentStore pageStore = store.getAccessorStore(this);
+
+        while (true) {
+            Row currentRow = getRow(store, position);
+
+            if (store.canRead(session, currentRow, readMode, colMap)) {
+                return true;
+            }
+
+            boolean found = reversed
+                            ? previous(pageStore, position)
+                            : next(pageStore, position);
+
+            if (!found) {
+                return false;
+            }
+
+            if (fieldCount > 0
+                    && comparePrefix(
+                        session,
+                        position.getKey(),
+                        rowdata,
+                        rowColMap,
+                        fieldCount) != 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Moves the position to the next entry that is returned by an iterator.
+     */
+    boolean advance(
+            Session session,
+            PersistentStore store,
+            Position position,
+            int distinctCount,
+            boolean reversed) {
+
+        PersistentStore pageStore = store.getAccessorStore(this);
+        boolean         found;
+
+        if (distinctCount == 0) {
+            found = reversed
+                    ? previous(pageStore, position)
+                    : next(pageStore, position);
+
+            return found
+                   && findReadable(
+                       session,
+                       store,
+                       position,
+                       null,
+                       null,
+                       0,
+                       TransactionManager.ACTION_READ,
+                       null,
+                       reversed);
+        }
+
+        NodeBTree root = getRoot(store);
+        Position next = seek(
+            session,
+            pageStore,
+            root,
+            reversed
+            ? SEEK_PREFIX
+            : SEEK_PREFIX_EQUAL,
+            position.getKey(),
+            0,
+            getDefaultColumnMap(),
+            distinctCount,
+            0);
+
+        position.page = next.page;
+        position.slot = next.slot;
+
+        if (reversed) {
+            position.slot--;
+
+            found = backward(pageStore, position);
+        } else {
+            found = forward(pageStore, position);
+        }
+
+        return found
+               && findReadable(
+                   session,
+                   store,
+                   position,
+                   null,
+                   null,
+                   0,
+                   TransactionManager.ACTION_READ,
+                   colIndex,
+                   reversed);
+    }
+
+    /**
+     * Finds the saved entry of an iterator after the index was modified, or
+     * the entry that follows it if it has been removed.
+     */
+    Position reposition(
+            Session session,
+            PersistentStore store,
+            Object[] key,
+            long pos,
+            boolean reversed) {
+
+        NodeBTree root = getRoot(store);
+
+        if (root == null) {
+            return null;
+        }
+
+        PersistentStore pageStore = store.getAccessorStore(this);
+        Position position = seek(
+            session,
+            pageStore,
+            root,
+            reversed
+            ? SEEK_ENTRY_EQUAL
+            : SEEK_ENTRY,
+            key,
+            pos,
+            null,
+            0,
+            0);
+        boolean found;
+
+        if (reversed) {
+            position.slot--;
+
+            found = backward(pageStore, position);
+        } else {
+            found = forward(pageStore, position);
+        }
+
+        if (!found) {
+            return null;
+        }
+
+        if (position.getRowPos() != pos
+                && !findReadable(
+                    session,
+                    store,
+                    position,
+                    null,
+                    null,
+                    0,
+                    TransactionManager.ACTION_READ,
+                    null,
+                    reversed)) {
+            return null;
+        }
+
+        return position;
+    }
+
+    Row getRow(PersistentStore store, Position position) {
+        return (Row) store.get(position.getRowPos(), false);
+    }
+
+    private RowIterator getIterator(
+            Session session,
+            PersistentStore store,
+            Position position,
+            int distinctCount,
+            boolean reversed) {
+
+        if (position == null) {
+            return RangeIterator.emptyRowIterator;
+        }
+
+        return new BTreeRowIterator(
+            session,
+            store,
+            this,
+            position,
+            distinctCount,
+            reversed);
+    }
+
+    private static Position first(PersistentStore pageStore, NodeBTree root) {
+
+        NodeBTree page = root;
+
+        while (!page.isLeaf) {
+            page = getPage(pageStore, page.childPos[0], false);
+        }
+
+        Position position = new Position();
+
+        position.page = page;
+        position.slot = 0;
+
+        forward(pageStore, position);
+
+        return position;
+    }
+
+    private static Position last(PersistentStore pageStore, NodeBTree root) {
+
+        NodeBTree page = root;
+
+        while (!page.isLeaf) {
+            page = getPage(pageStore, page.childPos[page.count - 1], false);
+        }
+
+        Position position = new Position();
+
+        position.page = page;
+        position.slot = page.count - 1;
+
+        backward(pageStore, position);
+
+        return position;
+    }
+
+    private static boolean next(PersistentStore pageStore, Position position) {
+
+        position.slot++;
+
+        return forward(pageStore, position);
+    }
+
+    private static boolean previous(
+            PersistentStore pageStore,
+            Position position) {
+
+        position.slot--;
+
+        return backward(pageStore, position);
+    }
+
+    /**
+     * Moves a position that is after the last entry of its page to the
+     * following leaf pages.
+     */
+    private static boolean forward(
+            PersistentStore pageStore,
+            Position position) {
+
+        while (position.slot >= position.page.count) {
+            long nextPage = position.page.nextPage;
+
+            if (nextPage == -1) {
+                position.page = null;
+
+                return false;
+            }
+
+            position.page = getPage(pageStore, nextPage, false);
+            position.slot = 0;
+        }
+
+        return true;
+    }
+
+    private static boolean backward(
+            PersistentStore pageStore,
+            Position position) {
+
+        while (position.slot < 0) {
+            long prevPage = position.page.prevPage;
+
+            if (prevPage == -1) {
+                position.page = null;
+
+                return false;
+            }
+
+            position.page = getPage(pageStore, prevPage, false);
+            position.slot = position.page.count - 1;
+        }
+
+        return true;
+    }
+
+    /**
+     * Leaf page and slot of an entry
+     */
+    static final class Position {
+
+        NodeBTree page;
+        int       slot;
+
+        Object[] getKey() {
+            return page.keys[slot];
+        }
+
+        long getRowPos() {
+            return page.rowPos[slot];
+        }
+    }
+
+    public static final class BTreeRowIterator implements RowIterator {
+
+        final Session         session;
+        final PersistentStore store;
+        final IndexBTree      index;
+        final int             distinctCount;
+        final boolean         reversed;
+        Position              position;
+        Object[]              nextKey;
+        long                  nextPos;
+        int                   modCount;
+        Row                   lastrow;
+
+        /**
+         * When session == null, rows from all sessions are returned
+         */
+        BTreeRowIterator(
+                Session session,
+                PersistentStore store,
+                IndexBTree index,
+                Position position,
+                int distinctCount,
+                boolean reversed) {
+
+            this.session       = session;
+            this.store         = store;
+            this.index         = index;
+            this.distinctCount = distinctCount;
+            this.reversed      = reversed;
+
+            setNext(position);
+        }
+
+        public Object getField(int col) {
+
+            if (lastrow == null) {
+                return null;
+            }
+
+            return lastrow.getData()[col];
+        }
+
+        public boolean next() {
+
+            if (position == null) {
+                lastrow = null;
+
+                return false;
+            }
+
+            store.readLock();
+
+            try {
+                if (modCount != index.modCount) {
+                    position = index.reposition(
+                        session,
+                        store,
+                        nextKey,
+                        nextPos,
+                        reversed);
+
+                    if (position == null) {
+                        lastrow = null;
+
+                        return false;
+                    }
+                }
+
+                lastrow = index.getRow(store, position);
+
+                if (index.advance(session,
+                                  store,
+                                  position,
+                                  distinctCount,
+                                  reversed)) {
+                    setNext(position);
+                } else {
+                    setNext(null);
+                }
+            } finally {
+                store.readUnlock();
+            }
+
+            return true;
+        }
+
+        private void setNext(Position position) {
+
+            this.position = position;
+
+            if (position == null) {
+                nextKey = null;
+            } else {
+                nextKey  = position.getKey();
+                nextPos  = position.getRowPos();
+                modCount = index.modCount;
+            }
+        }
+
+        public Row getCurrentRow() {
+            return lastrow;
+        }
+
+        public Object[] getCurrent() {
+
+            if (lastrow == null) {
+                return null;
+            }
+
+            return lastrow.getData();
+        }
+
+        public void removeCurrent() {
+            store.delete(session, lastrow);
+            store.remove(lastrow);
+        }
+
+        public void release() {}
+
+        public long getRowId() {
+            return lastrow.getPos();
+        }
+    }
+}
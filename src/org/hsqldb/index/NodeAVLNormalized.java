@@ -0,0 +1,79 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.index;
+
+import org.hsqldb.Row;
+import org.hsqldb.persist.PersistentStore;
+
+/**
+ *  Subclass of NodeAVL for indexes of MEMORY tables with normalized keys. The
+ *  key is set by the index when the node is inserted. For a covering index,
+ *  the node also holds a copy of the covered columns, as in NodeAVLCovering.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class NodeAVLNormalized extends NodeAVL {
+
+    byte[]                 key;
+    private final Object[] data;
+
+    public NodeAVLNormalized(Row r, boolean[] columns) {
+
+        super(r);
+
+        if (columns == null) {
+            data = null;
+
+            return;
+        }
+
+        Object[] rowData = r.getData();
+
+        data = new Object[rowData.length];
+
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i]) {
+                data[i] = rowData[i];
+            }
+        }
+    }
+
+    protected Object[] getData(PersistentStore store) {
+
+        if (data == null) {
+            return row.getData();
+        }
+
+        return data;
+    }
+}
@@ -0,0 +1,529 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.index;
+
+import org.hsqldb.lib.LongLookup;
+import org.hsqldb.lib.StringConverter;
+import org.hsqldb.persist.CachedObjectBase;
+import org.hsqldb.rowio.RowInputInterface;
+import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.rowio.RowOutputInterface;
+import org.hsqldb.types.Type;
+
+/**
+ * Page of a B+tree index, stored as a fixed size block in the .data file.<p>
+ *
+ * A leaf page holds one entry for each row, consisting of the values of the
+ * index columns and the file position of the row. A branch page holds one
+ * entry for each child page, consisting of a lower bound for the entries of
+ * the child and the file position of the child. Leaf pages are linked to the
+ * previous and next leaf pages.<p>
+ *
+ * Entries are written with prefix compression. The leading columns that are
+ * equal to those of the previous entry are not written. If the first
+ * different column is a character column, only the characters after the
+ * common prefix with the previous value are written.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class NodeBTree extends CachedObjectBase {
+
+    public static final int PAGE_SIZE      = 8192;
+    static final int        HEADER_SIZE    = 1 + 4 + 8 + 8;
+    static final int        MAX_ENTRY_SIZE = (PAGE_SIZE - HEADER_SIZE) / 4;
+    static final int        FILL_SIZE      = (PAGE_SIZE - HEADER_SIZE) * 9 / 10;
+    static final int        LEAF           = 0;
+    static final int        BRANCH         = 1;
+    static final int        PREFIX_FLAG    = 0x80;
+    static final int        MAX_PREFIX     = Short.MAX_VALUE;
+
+    //
+    final IndexBTree index;
+    boolean          isLeaf;
+    int              count;
+    long             prevPage = -1;
+    long             nextPage = -1;
+    Object[][]       keys;
+    long[]           rowPos;
+    long[]           childPos;
+    int              dataSize;
+
+    NodeBTree(IndexBTree index, boolean isLeaf) {
+
+        this.index  = index;
+        this.isLeaf = isLeaf;
+
+        setCapacity(16);
+        setStorageSize(PAGE_SIZE);
+        setChanged(true);
+    }
+
+    public NodeBTree(IndexBTree index, RowInputInterface in) {
+
+        this.index = index;
+
+        setStorageSize(PAGE_SIZE);
+        read(in);
+    }
+
+    public int getDefaultCapacity() {
+        return PAGE_SIZE;
+    }
+
+    public int getRealSize(RowOutputInterface out) {
+        return PAGE_SIZE;
+    }
+
+    public void read(RowInputInterface in) {
+
+        setPos(in.getFilePosition());
+
+        isLeaf   = in.readByte() == LEAF;
+        count    = in.readInt();
+        prevPage = in.readLong();
+        nextPage = in.readLong();
+
+        setCapacity(count + 1);
+
+        Object[] previous = null;
+
+        for (int i = 0; i < count; i++) {
+            Object[] key = readKey(in, previous);
+
+            keys[i]   = key;
+            rowPos[i] = in.readLong();
+
+            if (!isLeaf) {
+                childPos[i] = in.readLong();
+            }
+
+            previous = key;
+        }
+
+        dataSize = getDataSize();
+
+        setChanged(false);
+    }
+
+    public void write(RowOutputInterface out) {
+        write(out, null);
+    }
+
+    public void write(RowOutputInterface out, LongLookup lookup) {
+
+        Object[][] keys     = this.keys;
+        long[]     rowPos   = this.rowPos;
+        long[]     childPos = this.childPos;
+        int        count    = this.count;
+        Object[]   previous = null;
+
+        out.setStorageSize(PAGE_SIZE);
+        out.writeByte(isLeaf
+                      ? LEAF
+                      : BRANCH);
+        out.writeInt(count);
+        out.writeLong(prevPage);
+        out.writeLong(nextPage);
+
+        for (int i = 0; i < count; i++) {
+            writeKey(out, previous, keys[i]);
+            out.writeLong(rowPos[i]);
+
+            if (!isLeaf) {
+                out.writeLong(childPos[i]);
+            }
+
+            previous = keys[i];
+        }
+
+        out.writeEnd();
+    }
+
+    public boolean isLeaf() {
+        return isLeaf;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns true when the entries no longer fit in the page.
+     */
+    boolean isOverflow() {
+        return HEADER_SIZE + dataSize > PAGE_SIZE;
+    }
+
+    /**
+     * Returns true if the entry can be appended without exceeding the fill
+     * size used for pages built in bulk.
+     */
+    boolean canAppend(Object[] key) {
+
+        if (count == 0) {
+            return true;
+        }
+
+        return dataSize + getEntrySize(keys[count - 1], key) <= FILL_SIZE;
+    }
+
+    void insertEntry(int slot, Object[] key, long pos, long child) {
+
+        if (count == keys.length) {
+            setCapacity(count * 2);
+        }
+
+        Object[] previous = slot == 0
+                            ? null
+                            : keys[slot - 1];
+
+        if (slot < count) {
+            Object[] next = keys[slot];
+
+            dataSize -= getEntrySize(previous, next);
+            dataSize += getEntrySize(key, next);
+
+            System.arraycopy(keys, slot, keys, slot + 1, count - slot);
+            System.arraycopy(rowPos, slot, rowPos, slot + 1, count - slot);
+
+            if (!isLeaf) {
+                System.arraycopy(
+                    childPos,
+                    slot,
+                    childPos,
+                    slot + 1,
+                    count - slot);
+            }
+        }
+
+        dataSize     += getEntrySize(previous, key);
+        keys[slot]   = key;
+        rowPos[slot] = pos;
+
+        if (!isLeaf) {
+            childPos[slot] = child;
+        }
+
+        count++;
+
+        setChanged(true);
+    }
+
+    void appendEntry(Object[] key, long pos, long child) {
+        insertEntry(count, key, pos, child);
+    }
+
+    void removeEntry(int slot) {
+
+        Object[] previous = slot == 0
+                            ? null
+                            : keys[slot - 1];
+        Object[] key      = keys[slot];
+
+        dataSize -= getEntrySize(previous, key);
+
+        if (slot + 1 < count) {
+            Object[] next = keys[slot + 1];
+
+            dataSize -= getEntrySize(key, next);
+            dataSize += getEntrySize(previous, next);
+
+            System.arraycopy(keys, slot + 1, keys, slot, count - slot - 1);
+            System.arraycopy(rowPos, slot + 1, rowPos, slot, count - slot - 1);
+
+            if (!isLeaf) {
+                System.arraycopy(
+                    childPos,
+                    slot + 1,
+                    childPos,
+                    slot,
+                    count - slot - 1);
+            }
+        }
+
+        count--;
+
+        keys[count] = null;
+
+        setChanged(true);
+    }
+
+    /**
+     * Returns the first slot of the right page when the page is split. Each
+     * half holds at least one entry.
+     */
+    int getSplitSlot() {
+
+        int half = dataSize / 2;
+        int size = 0;
+
+        for (int i = 0; i < count - 1; i++) {
+            size += getEntrySize(
+                i == 0
+                ? null
+                : keys[i - 1],
+                keys[i]);
+
+            if (size >= half) {
+                return i + 1;
+            }
+        }
+
+        return count - 1;
+    }
+
+    /**
+     * Moves the entries from the slot onwards to an empty page.
+     */
+    void moveEntries(NodeBTree other, int slot) {
+
+        for (int i = slot; i < count; i++) {
+            other.appendEntry(
+                keys[i],
+                rowPos[i],
+                isLeaf
+                ? -1
+                : childPos[i]);
+
+            keys[i] = null;
+        }
+
+        count    = slot;
+        dataSize = getDataSize();
+
+        setChanged(true);
+    }
+
+    private void setCapacity(int capacity) {
+
+        Object[][] newKeys   = new Object[capacity][];
+        long[]     newRowPos = new long[capacity];
+
+        if (keys != null) {
+            System.arraycopy(keys, 0, newKeys, 0, count);
+            System.arraycopy(rowPos, 0, newRowPos, 0, count);
+        }
+
+        if (!isLeaf) {
+            long[] newChildPos = new long[capacity];
+
+            if (childPos != null) {
+                System.arraycopy(childPos, 0, newChildPos, 0, count);
+            }
+
+            childPos = newChildPos;
+        }
+
+        keys   = newKeys;
+        rowPos = newRowPos;
+    }
+
+    private int getDataSize() {
+
+        int size = 0;
+
+        for (int i = 0; i < count; i++) {
+            size += getEntrySize(
+                i == 0
+                ? null
+                : keys[i - 1],
+                keys[i]);
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the size of an uncompressed branch entry, which is the largest
+     * size the key can take in any page.
+     */
+    static int getMaxEntrySize(IndexBTree index, Object[] key) {
+
+        Type[] types = index.colTypes;
+        int    size  = 1 + 8 + 8;
+
+        for (int i = 0; i < types.length; i++) {
+            size += RowOutputBinary.getSize(key[i], types[i]);
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the size of the entry when written after the previous entry.
+     */
+    int getEntrySize(Object[] previous, Object[] key) {
+
+        Type[] types  = index.colTypes;
+        int    size   = 1 + 8;
+        int    shared = getSharedCount(previous, key);
+        int    i      = shared;
+
+        if (!isLeaf) {
+            size += 8;
+        }
+
+        if (i < types.length) {
+            int prefix = getPrefixLength(previous, key, i);
+
+            if (prefix > 0) {
+                String value = (String) key[i];
+
+                size += 2 + 4
+                        + StringConverter.getUTFSize(value.substring(prefix));
+
+                i++;
+            }
+        }
+
+        for (; i < types.length; i++) {
+            size += RowOutputBinary.getSize(key[i], types[i]);
+        }
+
+        return size;
+    }
+
+    private void writeKey(
+            RowOutputInterface out,
+            Object[] previous,
+            Object[] key) {
+
+        Type[] types  = index.colTypes;
+        int    shared = getSharedCount(previous, key);
+        int    i      = shared;
+        int    prefix = 0;
+
+        if (i < types.length) {
+            prefix = getPrefixLength(previous, key, i);
+        }
+
+        if (prefix > 0) {
+            out.writeByte(shared | PREFIX_FLAG);
+            out.writeShort(prefix);
+            out.writeString(((String) key[i]).substring(prefix));
+
+            i++;
+        } else {
+            out.writeByte(shared);
+        }
+
+        for (; i < types.length; i++) {
+            out.writeData(key[i], types[i]);
+        }
+    }
+
+    private Object[] readKey(RowInputInterface in, Object[] previous) {
+
+        Type[]   types  = index.colTypes;
+        Object[] key    = new Object[types.length];
+        int      shared = in.readByte() & 0xff;
+        int      i      = 0;
+
+        for (; i < (shared & ~PREFIX_FLAG); i++) {
+            key[i] = previous[i];
+        }
+
+        if ((shared & PREFIX_FLAG) != 0) {
+            int    prefix = in.readShort();
+            String suffix = in.readString();
+
+            key[i] = ((String) previous[i]).substring(0, prefix).concat(suffix);
+
+            i++;
+        }
+
+        for (; i < types.length; i++) {
+            key[i] = in.readData(types[i]);
+        }
+
+        return key;
+    }
+
+    /**
+     * Returns the count of leading columns that are equal to the previous
+     * entry. Compression is not used for indexes with very many columns.
+     */
+    private int getSharedCount(Object[] previous, Object[] key) {
+
+        int columnCount = index.colTypes.length;
+
+        if (previous == null || columnCount >= PREFIX_FLAG) {
+            return 0;
+        }
+
+        int i = 0;
+
+        for (; i < columnCount; i++) {
+            Object a = previous[i];
+            Object b = key[i];
+
+            if (a == b) {
+                continue;
+            }
+
+            if (a == null || !a.equals(b)) {
+                break;
+            }
+        }
+
+        return i;
+    }
+
+    /**
+     * Returns the length of the common prefix of the character values of the
+     * column in the previous entry and the key.
+     */
+    private int getPrefixLength(Object[] previous, Object[] key, int column) {
+
+        if (previous == null || index.colTypes.length >= PREFIX_FLAG
+                || !index.colTypes[column].isCharacterType()) {
+            return 0;
+        }
+
+        if (!(previous[column] instanceof String)
+                || !(key[column] instanceof String)) {
+            return 0;
+        }
+
+        String a     = (String) previous[column];
+        String b     = (String) key[column];
+        int    limit = Math.min(Math.min(a.length(), b.length()), MAX_PREFIX);
+        int    i     = 0;
+
+        while (i < limit && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+
+        return i;
+    }
+}
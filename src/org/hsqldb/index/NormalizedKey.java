@@ -0,0 +1,392 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.index;
+
+import org.hsqldb.TableBase;
+import org.hsqldb.lib.HsqlByteArrayOutputStream;
+import org.hsqldb.types.Collation;
+import org.hsqldb.types.TimeData;
+import org.hsqldb.types.TimestampData;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.Types;
+
+/**
+ * Normalized binary keys for indexes of MEMORY tables, created with
+ * CREATE INDEX ... USING NORMALIZED.<p>
+ *
+ * The key of a row is the concatenation of the encoded values of the index
+ * columns. Two keys compare as unsigned bytes in the same order as the values
+ * compared with the types of the columns, so the comparisons in the index
+ * descent are byte comparisons that can skip the prefix already known to be
+ * equal to the searched key. Each encoded value is self delimiting, so the
+ * key for the leading columns of the index is a prefix of the full key.<p>
+ *
+ * Each value starts with a byte that is 0 for null and 1 for other values.
+ * Integral numbers and the fields of datetime values are written big endian
+ * with the sign bit flipped. Strings with a collation that compares UTF-16
+ * code units are written as one to three bytes per character followed by an
+ * end token. With PAD SPACE, trailing spaces are not written and each run of
+ * spaces is written as a token that orders the string as if the shorter one
+ * were padded with spaces.<p>
+ *
+ * Other types, and strings with a locale collation or a case insensitive
+ * collation, have no normalized form. The collation keys of the JDK do not
+ * always compare in the same order as the collator for strings with
+ * ignorable characters.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class NormalizedKey {
+
+    static final int NULL_VALUE     = 0;
+    static final int NOT_NULL_VALUE = 1;
+
+    // character tokens
+    static final int CHAR_BASE       = 0x10;
+    static final int NO_PAD_END      = 0x01;
+    static final int SPACE_RUN       = CHAR_BASE + ' ';
+    static final int RUN_BEFORE_LOW  = 1;
+    static final int PAD_SPACE_END   = 2;
+    static final int RUN_BEFORE_HIGH = 3;
+    static final int SHORT_RUN_LIMIT = 0xfe;
+
+    private NormalizedKey() {}
+
+    /**
+     * Returns true if normalized keys can be used for the table and the
+     * column types. A null type is the type of a key expression, which is
+     * checked after the expression is resolved.
+     */
+    public static boolean isNormalizable(TableBase table, Type[] colTypes) {
+
+        if (table.getTableType() != TableBase.MEMORY_TABLE) {
+            return false;
+        }
+
+        for (int i = 0; i < colTypes.length; i++) {
+            if (colTypes[i] != null && !isNormalizable(colTypes[i])) {
+                return false;
+            }
+        }
+
+        return colTypes.length > 0;
+    }
+
+    static boolean isNormalizable(Type type) {
+
+        switch (type.typeCode) {
+
+            case Types.TINYINT :
+            case Types.SQL_SMALLINT :
+            case Types.SQL_INTEGER :
+            case Types.SQL_BIGINT :
+            case Types.SQL_BOOLEAN :
+            case Types.SQL_DATE :
+            case Types.SQL_TIME :
+            case Types.SQL_TIME_WITH_TIME_ZONE :
+            case Types.SQL_TIMESTAMP :
+            case Types.SQL_TIMESTAMP_WITH_TIME_ZONE :
+                return true;
+
+            case Types.SQL_CHAR :
+            case Types.SQL_VARCHAR : {
+                return type.getCollation().isUnicodeSimple();
+            }
+            default :
+                return false;
+        }
+    }
+
+    /**
+     * Returns the key for the given count of leading index columns, or null
+     * if a value has no normalized form.
+     *
+     * @param colTypes types of the index columns
+     * @param data row data
+     * @param columns positions of the index columns in the row data
+     * @param count count of leading columns
+     * @return key or null
+     */
+    static byte[] getKey(
+            Type[] colTypes,
+            Object[] data,
+            int[] columns,
+            int count) {
+
+        HsqlByteArrayOutputStream out = new HsqlByteArrayOutputStream();
+
+        for (int i = 0; i < count; i++) {
+            if (!writeValue(out, colTypes[i], data[columns[i]])) {
+                return null;
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the position of the first byte from the offset onwards that is
+     * different in the two keys, or the length of the shorter key.
+     */
+    static int mismatch(byte[] a, byte[] b, int offset) {
+
+        int limit = Math.min(a.length, b.length);
+        int i     = offset;
+
+        while (i < limit && a[i] == b[i]) {
+            i++;
+        }
+
+        return i;
+    }
+
+    /**
+     * Compares the key with the searched key, which may be the key for fewer
+     * columns, given the position returned by mismatch().
+     *
+     * @return comparison result, -1,0,+1
+     */
+    static int compare(byte[] key, byte[] search, int position) {
+
+        if (position == search.length) {
+            return 0;
+        }
+
+        if (position == key.length) {
+            return -1;
+        }
+
+        return (key[position] & 0xff) < (search[position] & 0xff)
+               ? -1
+               : 1;
+    }
+
+    private static boolean writeValue(
+            HsqlByteArrayOutputStream out,
+            Type type,
+            Object value) {
+
+        if (value == null) {
+            out.writeByte(NULL_VALUE);
+
+            return true;
+        }
+
+        switch (type.typeCode) {
+
+            case Types.TINYINT :
+            case Types.SQL_SMALLINT :
+            case Types.SQL_INTEGER :
+                if (!(value instanceof Integer)) {
+                    return false;
+                }
+
+                out.writeByte(NOT_NULL_VALUE);
+                out.writeInt(((Integer) value).intValue() ^ Integer.MIN_VALUE);
+
+                return true;
+
+            case Types.SQL_BIGINT :
+                if (!(value instanceof Long)) {
+                    return false;
+                }
+
+                out.writeByte(NOT_NULL_VALUE);
+                out.writeLong(((Long) value).longValue() ^ Long.MIN_VALUE);
+
+                return true;
+
+            case Types.SQL_BOOLEAN :
+                if (!(value instanceof Boolean)) {
+                    return false;
+                }
+
+                out.writeByte(NOT_NULL_VALUE);
+                out.writeByte(((Boolean) value).booleanValue()
+                              ? 1
+                              : 0);
+
+                return true;
+
+            case Types.SQL_TIME :
+            case Types.SQL_TIME_WITH_TIME_ZONE : {
+                if (!(value instanceof TimeData)) {
+                    return false;
+                }
+
+                TimeData time = (TimeData) value;
+
+                out.writeByte(NOT_NULL_VALUE);
+                out.writeInt(time.getSeconds() ^ Integer.MIN_VALUE);
+                out.writeInt(time.getNanos() ^ Integer.MIN_VALUE);
+
+                return true;
+            }
+            case Types.SQL_DATE :
+            case Types.SQL_TIMESTAMP :
+            case Types.SQL_TIMESTAMP_WITH_TIME_ZONE : {
+                if (!(value instanceof TimestampData)) {
+                    return false;
+                }
+
+                TimestampData timestamp = (TimestampData) value;
+
+                out.writeByte(NOT_NULL_VALUE);
+                out.writeLong(timestamp.getSeconds() ^ Long.MIN_VALUE);
+                out.writeInt(timestamp.getNanos() ^ Integer.MIN_VALUE);
+
+                return true;
+            }
+            case Types.SQL_CHAR :
+            case Types.SQL_VARCHAR : {
+                if (!(value instanceof String)) {
+                    return false;
+                }
+
+                Collation collation = type.getCollation();
+
+                if (!collation.isUnicodeSimple()) {
+                    return false;
+                }
+
+                out.writeByte(NOT_NULL_VALUE);
+
+                if (collation.isPadSpace()) {
+                    writePadSpace(out, (String) value);
+                } else {
+                    writeNoPad(out, (String) value);
+                }
+
+                return true;
+            }
+            default :
+                return false;
+        }
+    }
+
+    /**
+     * Characters are written in the order of code units, with the smallest
+     * token at CHAR_BASE. ASCII takes one byte and all characters from
+     * 0x3000 take three bytes.
+     */
+    private static void writeChar(HsqlByteArrayOutputStream out, int c) {
+
+        if (c < 0x80) {
+            out.writeByte(CHAR_BASE + c);
+        } else if (c < 0x3000) {
+            out.writeByte(0x90 + (c >> 8));
+            out.writeByte(c);
+        } else {
+            out.writeByte(0xc0);
+            out.writeByte(c >> 8);
+            out.writeByte(c);
+        }
+    }
+
+    /**
+     * The end token sorts before all characters, so a string sorts before
+     * the longer strings it is a prefix of.
+     */
+    private static void writeNoPad(HsqlByteArrayOutputStream out, String s) {
+
+        for (int i = 0; i < s.length(); i++) {
+            writeChar(out, s.charAt(i));
+        }
+
+        out.writeByte(NO_PAD_END);
+    }
+
+    /**
+     * A string compares as if followed by an unlimited run of spaces. A run
+     * of spaces followed by a character smaller than space sorts before the
+     * end token, and before longer runs. A run followed by a greater
+     * character sorts after the end token, and after longer runs. All the
+     * space tokens sort between the characters smaller and greater than
+     * space.
+     */
+    private static void writePadSpace(
+            HsqlByteArrayOutputStream out,
+            String s) {
+
+        int end = s.length();
+
+        while (end > 0 && s.charAt(end - 1) == ' ') {
+            end--;
+        }
+
+        for (int i = 0; i < end; ) {
+            char c = s.charAt(i);
+
+            if (c != ' ') {
+                writeChar(out, c);
+
+                i++;
+
+                continue;
+            }
+
+            int start = i;
+
+            while (s.charAt(i) == ' ') {
+                i++;
+            }
+
+            int run = i - start;
+
+            out.writeByte(SPACE_RUN);
+
+            if (s.charAt(i) < ' ') {
+                out.writeByte(RUN_BEFORE_LOW);
+
+                if (run <= SHORT_RUN_LIMIT) {
+                    out.writeByte(run);
+                } else {
+                    out.writeByte(0xff);
+                    out.writeInt(run);
+                }
+            } else {
+                out.writeByte(RUN_BEFORE_HIGH);
+
+                if (run <= SHORT_RUN_LIMIT) {
+                    out.writeByte(0xff - run);
+                } else {
+                    out.writeByte(0);
+                    out.writeInt(Integer.MAX_VALUE - run);
+                }
+            }
+        }
+
+        out.writeByte(SPACE_RUN);
+        out.writeByte(PAD_SPACE_END);
+    }
+}
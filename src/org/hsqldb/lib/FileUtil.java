@@ -511,7 +511,9 @@ public class FileUtil implements FileAccess {
         String[]        suffixes = new String[] {
             ".backup", ".properties", ".script", ".data", ".log", ".lobs"
         };
-        String[] extraSuffixes = new String[]{ ".lck", ".sql.log", ".app.log" };
+        String[] extraSuffixes = new String[] {
+            ".lck", ".sql.log", ".app.log", ".changes", ".manifest"
+        };
         private String  dbName;
         private File    parent;
         private File    canonicalFile;
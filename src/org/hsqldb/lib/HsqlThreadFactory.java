@@ -31,17 +31,22 @@
 
 package org.hsqldb.lib;
 
+import java.lang.reflect.Method;
+
 /**
  * The default HSQLDB thread factory implementation.  This factory can be
  * used to wrap other thread factories using the setImpl method, but, by
  * default simply produces new, vanilla thread objects constructed with
- * the supplied runnable object.
+ * the supplied runnable object.<p>
+ *
+ * The newVirtualThreadFactory method returns a factory for virtual threads
+ * when the JVM supports them.
  *
  * @author Campbell Burnet (campbell-burnet@users dot sourceforge.net)
- * @version 1.7.2
+ * @version 2.7.4
  * @since 1.7.2
  */
-class HsqlThreadFactory implements ThreadFactory {
+public class HsqlThreadFactory implements ThreadFactory {
 
     /**
      * The factory implementation.  Typically, this will be the
@@ -110,4 +115,69 @@ class HsqlThreadFactory implements ThreadFactory {
     public synchronized ThreadFactory getImpl() {
         return factory;
     }
+
+    /**
+     * Retrieves whether the JVM supports virtual threads (Java 21 and
+     * later).
+     *
+     * @return true if newVirtualThreadFactory returns a factory
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreadFactory.newThreadFactory("") != null;
+    }
+
+    /**
+     * Retrieves a factory that produces unstarted virtual threads. The
+     * names of the threads consist of the prefix and a counter. The code is
+     * compiled for older JVMs and the factory is obtained by reflection.
+     *
+     * @param prefix the prefix for the thread names
+     * @return the factory, or null if the JVM does not support virtual
+     *      threads
+     */
+    public static HsqlThreadFactory newVirtualThreadFactory(String prefix) {
+
+        ThreadFactory f = VirtualThreadFactory.newThreadFactory(prefix);
+
+        return f == null
+               ? null
+               : new HsqlThreadFactory(f);
+    }
+
+    private static final class VirtualThreadFactory implements ThreadFactory {
+
+        private final java.util.concurrent.ThreadFactory factory;
+
+        private VirtualThreadFactory(
+                java.util.concurrent.ThreadFactory factory) {
+            this.factory = factory;
+        }
+
+        static ThreadFactory newThreadFactory(String prefix) {
+
+            try {
+                Method ofVirtual = Thread.class.getMethod("ofVirtual");
+                Object builder   = ofVirtual.invoke(null);
+                Class<?> builderClass = Class.forName(
+                    "java.lang.Thread$Builder");
+                Method name = builderClass.getMethod(
+                    "name",
+                    String.class,
+                    long.class);
+                Method factory = builderClass.getMethod("factory");
+
+                builder = name.invoke(builder, prefix, Long.valueOf(0));
+
+                return new VirtualThreadFactory(
+                    (java.util.concurrent.ThreadFactory) factory.invoke(
+                        builder));
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        public Thread newThread(Runnable r) {
+            return factory.newThread(r);
+        }
+    }
 }
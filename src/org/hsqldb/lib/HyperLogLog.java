@@ -0,0 +1,125 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.lib;
+
+/**
+ * HyperLogLog sketch for estimating the number of distinct values in a
+ * stream of hash values.<p>
+ *
+ * The sketch uses 2^precision one-byte registers. The standard error of the
+ * estimate is about 1.04 / sqrt(2^precision), which is 1.6% for the default
+ * precision of 12. The callers supply 32-bit hash codes that are consistent
+ * with the equality of the values; these are mixed to 64 bits here.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public final class HyperLogLog {
+
+    public static final int defaultPrecision = 12;
+
+    private final int    precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(defaultPrecision);
+    }
+
+    public HyperLogLog(int precision) {
+
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException();
+        }
+
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void add(int hash) {
+
+        long h     = mix(hash);
+        int  index = (int) (h >>> (64 - precision));
+        long w     = h << precision;
+        int  rank  = w == 0
+                     ? 64 - precision + 1
+                     : Long.numberOfLeadingZeros(w) + 1;
+
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public long estimate() {
+
+        int    m     = registers.length;
+        double sum   = 0;
+        int    zeros = 0;
+
+        for (int i = 0; i < m; i++) {
+            sum += 1.0 / (1L << registers[i]);
+
+            if (registers[i] == 0) {
+                zeros++;
+            }
+        }
+
+        double alpha    = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+
+        // small range correction by linear counting
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+
+        return Math.round(estimate);
+    }
+
+    public void clear() {
+        ArrayUtil.fillArray(registers, 0, (byte) 0);
+    }
+
+    /**
+     * Finalizer step of MurmurHash3, applied to the hash extended to 64 bits.
+     */
+    private static long mix(int hash) {
+
+        long h = hash * 0x9E3779B97F4A7C15L;
+
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE53B3F5BL;
+        h ^= h >>> 33;
+
+        return h;
+    }
+}
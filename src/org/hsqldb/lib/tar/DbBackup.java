@@ -31,14 +31,22 @@
 
 package org.hsqldb.lib.tar;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 
+import java.nio.file.Files;
+
+import java.util.Arrays;
 import java.util.Properties;
 
+import org.hsqldb.lib.HsqlByteArrayOutputStream;
 import org.hsqldb.lib.InputStreamInterface;
 import org.hsqldb.lib.InputStreamWrapper;
 
@@ -65,16 +73,32 @@ import org.hsqldb.lib.InputStreamWrapper;
  * @see #setAbortUponModify(boolean)
  * @author Blaine Simpson (blaine dot simpson at admc dot com)
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.0
+ * @version 2.7.4
  * @since 2.0.0
  */
 public class DbBackup {
 
+    /**
+     * Entry of an incremental backup that holds the changed pages of the
+     * .data file, and entry of all backups that can be followed by an
+     * incremental backup.
+     */
+    public static final String blocksFileExtension   = ".blocks";
+    public static final String manifestFileExtension = ".manifest";
+
+    //
+    static final String manifestBackupId       = "backup.id";
+    static final String manifestBaseBackupId   = "backup.base";
+    static final String manifestDataLength     = "data.length";
+    static final String manifestDataPageSize   = "data.page_size";
+    static final String manifestDataPageCount  = "data.pages";
+
     protected File         dbDir;
     protected File         archiveFile;
     protected String       instanceName;
     protected boolean      overWrite       = false;    // Defaults no NO OVERWRITE
     protected boolean      abortUponModify = true;     // Defaults to ABORT-UPON-MODIFY
+    protected long         rateLimit       = 0;        // Defaults to no limit
     File[]                 componentFiles;
     InputStreamInterface[] componentStreams;
     boolean[]              existList;
@@ -150,6 +174,82 @@ public class DbBackup {
         }
     }
 
+    /**
+     * Overrides file with stream and stores the entry with a different
+     * extension.
+     *
+     * @param fileExtension String
+     * @param entryExtension String
+     * @param is InputStreamInterface
+     */
+    public void setStream(
+            String fileExtension,
+            String entryExtension,
+            InputStreamInterface is) {
+
+        for (int i = 0; i < componentFiles.length; i++) {
+            if (componentFiles[i].getName().endsWith(fileExtension)) {
+                componentFiles[i] = new File(
+                    dbDir,
+                    instanceName + entryExtension);
+                componentStreams[i] = is;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds the manifest entry. An incremental backup has a base backup id
+     * and the changed pages of the .data file.
+     *
+     * @param backupId String
+     * @param baseBackupId String, null for a full backup
+     * @param dataLength length of the .data file
+     * @param pageSize size of the changed pages
+     * @param pageCount number of changed pages
+     */
+    public void setManifest(
+            String backupId,
+            String baseBackupId,
+            long dataLength,
+            int pageSize,
+            int pageCount) {
+
+        Properties p = new Properties();
+
+        p.setProperty(manifestBackupId, backupId);
+
+        if (baseBackupId != null) {
+            p.setProperty(manifestBaseBackupId, baseBackupId);
+        }
+
+        p.setProperty(manifestDataLength, String.valueOf(dataLength));
+        p.setProperty(manifestDataPageSize, String.valueOf(pageSize));
+        p.setProperty(manifestDataPageCount, String.valueOf(pageCount));
+
+        HsqlByteArrayOutputStream out = new HsqlByteArrayOutputStream(256);
+
+        try {
+            p.store(out, "HSQL Database Engine backup manifest");
+        } catch (IOException e) {}
+
+        InputStreamWrapper is = new InputStreamWrapper(
+            new ByteArrayInputStream(out.toByteArray()));
+
+        is.setSizeLimit(out.size());
+
+        int count = componentFiles.length;
+
+        componentFiles   = Arrays.copyOf(componentFiles, count + 1);
+        componentStreams = Arrays.copyOf(componentStreams, count + 1);
+        existList        = new boolean[count + 1];
+        ignoreList       = Arrays.copyOf(ignoreList, count + 1);
+        componentFiles[count] = new File(
+            dbDir,
+            instanceName + manifestFileExtension);
+        componentStreams[count] = is;
+    }
+
     public void setFileIgnore(String fileExtension) {
 
         for (int i = 0; i < componentFiles.length; i++) {
@@ -185,6 +285,18 @@ public class DbBackup {
         this.abortUponModify = abortUponModify;
     }
 
+    /**
+     * Defaults to 0.<p>
+     *
+     * If greater than 0, limits the average rate of writing the backup, so
+     * that a hot backup has less effect on the I/O of the database.
+     *
+     * @param bytesPerSecond long
+     */
+    public void setRateLimit(long bytesPerSecond) {
+        this.rateLimit = bytesPerSecond;
+    }
+
     public boolean getOverWrite() {
         return overWrite;
     }
@@ -215,6 +327,8 @@ public class DbBackup {
             overWrite,
             Integer.valueOf(DbBackup.generateBufferBlockValue(componentFiles)));
 
+        generator.setRateLimit(rateLimit);
+
         for (int i = 0; i < componentFiles.length; i++) {
             boolean exists = componentStreams[i] != null
                              || componentFiles[i].exists();
@@ -255,7 +369,10 @@ public class DbBackup {
 
         checkEssentialFiles();
 
-        FileOutputStream fileOut = null;
+        FileOutputStream fileOut     = null;
+        RateLimiter      rateLimiter = rateLimit > 0
+                                       ? new RateLimiter(rateLimit)
+                                       : null;
 
         for (int i = 0; i < componentFiles.length; i++) {
             try {
@@ -263,7 +380,8 @@ public class DbBackup {
                     continue;
                 }
 
-                if (!componentFiles[i].exists()) {
+                if (componentStreams[i] == null
+                        && !componentFiles[i].exists()) {
                     continue;
                 }
 
@@ -291,6 +409,10 @@ public class DbBackup {
                     }
 
                     fileOut.write(writeBuffer, 0, count);
+
+                    if (rateLimiter != null) {
+                        rateLimiter.written(count);
+                    }
                 }
 
                 instream.close();
@@ -306,6 +428,182 @@ public class DbBackup {
         }
     }
 
+    /**
+     * Applies an incremental backup to the database files in the directory,
+     * which have been extracted from the base backup and from each earlier
+     * incremental backup in order.<p>
+     *
+     * The changed pages are written to the .data file and the other files
+     * are replaced with those of the incremental backup. The manifest is
+     * replaced last, so an incremental backup can be applied again after a
+     * failure. The database must not be opened before the last incremental
+     * backup is applied, as opening the database removes the manifest.
+     *
+     * @param archiveFile File
+     * @param dbDir File
+     * @throws IOException for any of many possible I/O problems
+     * @throws TarMalformatException if there is a problem reading the tar file
+     */
+    public static void applyIncrement(
+            File archiveFile,
+            File dbDir)
+            throws IOException,
+                   TarMalformatException {
+
+        File tempDir = Files.createTempDirectory(
+            dbDir.getAbsoluteFile().toPath(),
+            "increment").toFile();
+
+        try {
+            new TarReader(
+                archiveFile,
+                TarReader.EXTRACT_MODE,
+                null,
+                Integer.valueOf(generateBufferBlockValue(archiveFile)),
+                tempDir).read();
+
+            File   manifestFile = null;
+            File[] files        = tempDir.listFiles();
+
+            for (int i = 0; i < files.length; i++) {
+                if (files[i].getName().endsWith(manifestFileExtension)) {
+                    manifestFile = files[i];
+                }
+            }
+
+            if (manifestFile == null) {
+                throw new FileNotFoundException(
+                    RB.manifest_missing.getString(
+                        archiveFile.getAbsolutePath()));
+            }
+
+            String manifestName = manifestFile.getName();
+            String instanceName = manifestName.substring(
+                0,
+                manifestName.length() - manifestFileExtension.length());
+            File baseManifestFile = new File(dbDir, manifestName);
+
+            if (!baseManifestFile.exists()) {
+                throw new FileNotFoundException(
+                    RB.manifest_missing.getString(
+                        baseManifestFile.getAbsolutePath()));
+            }
+
+            Properties manifest     = readManifest(manifestFile);
+            Properties baseManifest = readManifest(baseManifestFile);
+            String     baseId = manifest.getProperty(manifestBaseBackupId);
+            String     dbId = baseManifest.getProperty(manifestBackupId);
+
+            if (baseId == null || !baseId.equals(dbId)) {
+                throw new IllegalStateException(
+                    RB.increment_base_mismatch.getString(
+                        String.valueOf(baseId),
+                        String.valueOf(dbId)));
+            }
+
+            File blocksFile = new File(
+                tempDir,
+                instanceName + blocksFileExtension);
+
+            if (blocksFile.exists()) {
+                applyBlocks(
+                    blocksFile,
+                    new File(dbDir, instanceName + ".data"),
+                    Long.parseLong(manifest.getProperty(manifestDataLength)));
+            }
+
+            String[] extensions = new String[] {
+                ".properties", ".script", ".backup", ".log", ".lobs",
+                manifestFileExtension
+            };
+
+            for (int i = 0; i < extensions.length; i++) {
+                File source = new File(tempDir, instanceName + extensions[i]);
+                File dest   = new File(dbDir, instanceName + extensions[i]);
+
+                if (dest.exists() && !dest.delete()) {
+                    throw new IOException(
+                        RB.cant_overwrite.getString(dest.getAbsolutePath()));
+                }
+
+                if (source.exists() && !source.renameTo(dest)) {
+                    throw new IOException(
+                        RB.cant_overwrite.getString(dest.getAbsolutePath()));
+                }
+            }
+        } finally {
+            File[] files = tempDir.listFiles();
+
+            if (files != null) {
+                for (int i = 0; i < files.length; i++) {
+                    files[i].delete();
+                }
+            }
+
+            tempDir.delete();
+        }
+    }
+
+    /**
+     * Writes each page to its position in the .data file, then sets the
+     * length of the file.
+     */
+    static void applyBlocks(
+            File blocksFile,
+            File dataFile,
+            long dataLength)
+            throws IOException {
+
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(blocksFile)));
+        RandomAccessFile out = null;
+
+        try {
+            out = new RandomAccessFile(dataFile, "rw");
+
+            long   remaining = blocksFile.length();
+            byte[] buffer    = new byte[0];
+
+            while (remaining > 0) {
+                int  size     = in.readInt();
+                long position = in.readLong();
+
+                if (buffer.length != size) {
+                    buffer = new byte[size];
+                }
+
+                in.readFully(buffer);
+                out.seek(position);
+                out.write(buffer);
+
+                remaining -= 12 + size;
+            }
+
+            out.setLength(dataLength);
+            out.getFD().sync();
+        } finally {
+            in.close();
+
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    static Properties readManifest(File file) throws IOException {
+
+        Properties      p   = new Properties();
+        FileInputStream fis = new FileInputStream(file);
+
+        try {
+            p.load(fis);
+        } finally {
+            fis.close();
+        }
+
+        return p;
+    }
+
     void checkEssentialFiles()
             throws FileNotFoundException,
                    IllegalStateException {
@@ -46,7 +46,8 @@ public class DbBackupMain {
 
     /**
      * Command line invocation to create, examine, or extract HSQLDB database
-     * backup tar archives.
+     * backup tar archives, or to apply incremental backups to extracted
+     * database files.
      * <P>
      * This class stores tar entries as relative files without specifying
      * parent directories, in what is commonly referred to as <I>tar bomb</I>
@@ -155,6 +156,16 @@ public class DbBackupMain {
                     patternStrings,
                     Integer.valueOf(DbBackup.generateBufferBlockValue(tarFile)),
                     new File(sa[firstPatInd - 1])).read();
+            } else if (sa[0].equals("--apply")) {
+                if (sa.length < 3) {
+                    throw new IllegalArgumentException();
+                }
+
+                File dbDir = new File(sa[1]);
+
+                for (int i = 2; i < sa.length; i++) {
+                    DbBackup.applyIncrement(new File(sa[i]), dbDir);
+                }
             } else {
                 throw new IllegalArgumentException();
             }
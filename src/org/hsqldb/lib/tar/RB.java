@@ -114,6 +114,8 @@ public enum RB implements RefCapableRBInterface {
     create_only_normal,
     bad_header_value,
     bad_numeric_header_value,
+    manifest_missing,
+    increment_base_mismatch,
     listing_format,
     ;
 
@@ -89,6 +89,7 @@ public class TarFileOutputStream {
     private OutputStream        writeStream;
     private final File          targetFile;
     private final File          writeFile;
+    private RateLimiter         rateLimiter;
 
     /* This is not a "Writer", but the byte "Stream" that we write() to. */
     public byte[] writeBuffer;
@@ -211,6 +212,22 @@ public class TarFileOutputStream {
         writeStream.write(byteArray, 0, byteCount);
 
         bytesWritten += byteCount;
+
+        if (rateLimiter != null) {
+            rateLimiter.written(byteCount);
+        }
+    }
+
+    /**
+     * Limits the average rate of writes. The limit applies to the bytes
+     * before compression.
+     *
+     * @param bytesPerSecond long, 0 for no limit
+     */
+    public void setRateLimit(long bytesPerSecond) {
+        rateLimiter = bytesPerSecond > 0
+                      ? new RateLimiter(bytesPerSecond)
+                      : null;
     }
 
     /**
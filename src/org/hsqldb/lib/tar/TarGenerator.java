@@ -51,7 +51,7 @@ import org.hsqldb.lib.StringUtil;
 /**
  * Generates a tar archive from specified Files and InputStreams.
  * Modified by fredt for hot backup
- * @version 2.5.0
+ * @version 2.7.4
  * @since 2.0.0
  *
  * @author Blaine Simpson (blaine dot simpson at admc dot com)
@@ -89,6 +89,16 @@ public class TarGenerator {
         return paxThreshold;
     }
 
+    /**
+     * Limits the average rate of writing the archive, so that the I/O of
+     * other processes using the same disks is less affected.
+     *
+     * @param bytesPerSecond long, 0 for no limit
+     */
+    public void setRateLimit(long bytesPerSecond) {
+        archive.setRateLimit(bytesPerSecond);
+    }
+
     /**
      * Compression is determined directly by the suffix of the file name in
      * the specified path.
@@ -44,11 +44,15 @@ import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.lib.ArraySort;
 import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.HashMap;
 import org.hsqldb.lib.List;
 import org.hsqldb.lib.LongKeyHashMap;
+import org.hsqldb.lib.ObjectComparator;
 import org.hsqldb.result.ResultMetaData;
 import org.hsqldb.rowio.RowInputInterface;
 import org.hsqldb.rowio.RowOutputInterface;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.TypedComparator;
 
 /**
  * Implementation of RowSetNavigator for result sets.
@@ -87,6 +91,7 @@ public class RowSetNavigatorData extends RowSetNavigator
 
     //
     TreeMap<Object[], Integer> groupMap;
+    HashMap<Object[], Integer> groupHashMap;
     LongKeyHashMap<Object[]>   idMap;
 
     RowSetNavigatorData(Session session, SortAndSlice sortAndSlice) {
@@ -108,7 +113,8 @@ public class RowSetNavigatorData extends RowSetNavigator
 
         if (select.isGrouped) {
             mainIndex = select.groupIndex;
-            groupMap  = new TreeMap<>(this);
+
+            resetRowMap();
         }
 
         if (idIndex != null) {
@@ -187,7 +193,9 @@ public class RowSetNavigatorData extends RowSetNavigator
 
         dataTable[size] = data;
 
-        if (groupMap != null) {
+        if (groupHashMap != null) {
+            groupHashMap.put(data, size);
+        } else if (groupMap != null) {
             groupMap.put(data, size);
         }
 
@@ -203,7 +211,7 @@ public class RowSetNavigatorData extends RowSetNavigator
 
     public void setPosition(Object[] data) {
 
-        Integer mapPos = groupMap.get(data);
+        Integer mapPos = getGroupPosition(data);
 
         if (mapPos == null) {
             return;
@@ -305,8 +313,39 @@ public class RowSetNavigatorData extends RowSetNavigator
         reset();
     }
 
+    /**
+     * Groups are looked up by hash when the hash of each group column type is
+     * consistent with the comparison of its values.
+     */
     public void resetRowMap() {
-        groupMap = new TreeMap<>(this);
+
+        if (isHashable(mainIndex)) {
+            groupHashMap = new HashMap<>(64, new GroupComparator(mainIndex));
+        } else {
+            groupMap = new TreeMap<>(this);
+        }
+    }
+
+    private static boolean isHashable(Index index) {
+
+        Type[] types = index.getColumnTypes();
+
+        for (int i = 0; i < types.length; i++) {
+            if (!TypedComparator.isKeyHashable(types[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private Integer getGroupPosition(Object[] data) {
+
+        if (groupHashMap != null) {
+            return groupHashMap.get(data);
+        }
+
+        return groupMap.get(data);
     }
 
     public boolean absolute(int position) {
@@ -697,7 +736,7 @@ public class RowSetNavigatorData extends RowSetNavigator
             return simpleAggregateData;
         }
 
-        Integer position = groupMap.get(data);
+        Integer position = getGroupPosition(data);
 
         if (position == null) {
             return null;
@@ -713,7 +752,7 @@ public class RowSetNavigatorData extends RowSetNavigator
      */
     public Object[] getGroupDataAndPosition(Object[] data) {
 
-        Integer mapPos = groupMap.get(data);
+        Integer mapPos = getGroupPosition(data);
 
         if (mapPos == null) {
             return null;
@@ -826,4 +865,40 @@ public class RowSetNavigatorData extends RowSetNavigator
     public int compare(Object[] a, Object[] b) {
         return mainIndex.compareRow((Session) session, a, b);
     }
+
+    /**
+     * Equality and hash on the columns of the group index.
+     */
+    private class GroupComparator implements ObjectComparator<Object[]> {
+
+        final Index  index;
+        final int[]  columns;
+        final Type[] types;
+
+        GroupComparator(Index index) {
+            this.index   = index;
+            this.columns = index.getColumns();
+            this.types   = index.getColumnTypes();
+        }
+
+        public boolean equals(Object[] a, Object[] b) {
+            return index.compareRow((Session) session, a, b) == 0;
+        }
+
+        public int hashCode(Object[] a) {
+
+            int hash = 0;
+
+            for (int i = 0; i < columns.length; i++) {
+                hash = 31 * hash
+                       + TypedComparator.getKeyHash(types[i], a[columns[i]]);
+            }
+
+            return hash ^ (hash >>> 16);
+        }
+
+        public long longKey(Object[] a) {
+            return 0L;
+        }
+    }
 }
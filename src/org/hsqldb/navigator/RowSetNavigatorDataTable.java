@@ -63,15 +63,24 @@ public class RowSetNavigatorDataTable extends RowSetNavigatorData {
     public RowSetNavigatorDataTable(
             Session session,
             QuerySpecification select) {
+        this(session, select, !select.isAggregated);
+    }
+
+    /**
+     * With isCached true, the rows of an aggregated result must have their
+     * final values when they are added.
+     */
+    public RowSetNavigatorDataTable(
+            Session session,
+            QuerySpecification select,
+            boolean isCached) {
 
         super(session, select.sortAndSlice);
 
         rangePosition      = select.resultRangePosition;
         visibleColumnCount = select.indexLimitVisible;
         table              = select.resultTable.duplicate();
-        store = session.sessionData.getNewResultRowStore(
-            table,
-            !select.isAggregated);
+        store = session.sessionData.getNewResultRowStore(table, isCached);
         table.store        = store;
         isAggregate        = select.isAggregated;
         isSimpleAggregate  = select.isAggregated && !select.isGrouped;
@@ -31,14 +31,21 @@
 
 package org.hsqldb.persist;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.ArrayCounter;
 import org.hsqldb.lib.ArraySort;
 import org.hsqldb.lib.IntIndex;
 import org.hsqldb.lib.Iterator;
+import org.hsqldb.lib.LongKeyIntValueHashMap;
 import org.hsqldb.lib.ObjectComparator;
 import org.hsqldb.lib.StopWatch;
 import org.hsqldb.map.BaseHashMap;
@@ -51,12 +58,28 @@ import org.hsqldb.map.BaseHashMap;
  * Also provides services for selecting rows to be saved and passing them
  * to DataFileCache.<p>
  *
+ * A DataFileCache may use several Cache objects as segments, each holding
+ * the rows for a subset of file positions. Each segment has its own lock
+ * and capacity and is cleaned up independently of the others. The lock is
+ * used by DataFileCache and is not acquired in this class.<p>
+ *
+ * With the 2Q policy, rows read from the file are first held on probation.
+ * A probation row is stamped with its insertion access count, negated, and
+ * is not moved up when it is accessed again shortly after it was read, so
+ * rows that are read once by a table scan are the first to be removed. When
+ * a probation row is accessed again after the correlation window, or a row
+ * is read again soon after it was removed from probation, it joins the main
+ * part of the cache, which is cleaned up by least recently used order.<p>
+ *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.0
+ * @version 2.7.4
  * @since 1.8.0
  */
 public class Cache extends BaseHashMap {
 
+    static final int POLICY_LRU = 0;
+    static final int POLICY_2Q  = 1;
+
     private int                                reserveCount;
     final DataFileCache                        dataFileCache;
     private int                                capacity;         // number of Rows
@@ -69,39 +92,74 @@ public class Cache extends BaseHashMap {
     private CachedObject[] rowTable;
     private long           cacheBytesLength;
 
+    // incremented whenever objects are removed
+    private volatile long removeCount;
+
+    // 2Q policy
+    private final boolean          probation;
+    private final int              probationWindow;
+    private int[]                  rankTable;
+    private LongKeyIntValueHashMap ghostMap;
+    private long[]                 ghostRing;
+    private int                    ghostIndex;
+
+    // counts of DataFileCache lookups
+    final AtomicLong hitCount  = new AtomicLong();
+    final AtomicLong missCount = new AtomicLong();
+
+    //
+    final ReadWriteLock lock      = new ReentrantReadWriteLock();
+    final Lock          readLock  = lock.readLock();
+    final Lock          writeLock = lock.writeLock();
+
     // for testing
     StopWatch saveAllTimer = new StopWatch(false);
     StopWatch shadowTimer  = new StopWatch(false);
     int       saveRowCount = 0;
 
-    Cache(DataFileCache dfc) {
+    Cache(DataFileCache dfc, int capacity, long bytesCapacity, int policy) {
 
         super(
-            dfc.capacity(),
+            capacity,
             BaseHashMap.objectKeyOrValue,
             BaseHashMap.noKeyOrValue,
             true);
 
-        maxCapacity      = dfc.capacity();
-        dataFileCache    = dfc;
-        capacity         = dfc.capacity();
-        bytesCapacity    = dfc.bytesCapacity();
-        rowComparator    = new CachedObjectComparator();
-        rowTable         = new CachedObject[capacity];
-        cacheBytesLength = 0;
-        objectIterator   = new BaseHashIterator(true);
-        updateAccess     = dfc instanceof TextCache;
-        comparator       = rowComparator;
+        maxCapacity        = capacity;
+        dataFileCache      = dfc;
+        this.capacity      = capacity;
+        this.bytesCapacity = bytesCapacity;
+        rowComparator      = new CachedObjectComparator();
+        rowTable           = new CachedObject[capacity];
+        cacheBytesLength   = 0;
+        objectIterator     = new BaseHashIterator(true);
+        updateAccess       = dfc instanceof TextCache;
+        comparator         = rowComparator;
         reserveCount = dfc instanceof TextCache
                        || dfc instanceof DataFileCacheSession
                        ? 0
                        : 8;
+        probation       = policy == POLICY_2Q && !updateAccess;
+        probationWindow = capacity / 32;
+
+        if (probation) {
+            rankTable = new int[capacity];
+            ghostMap  = new LongKeyIntValueHashMap();
+            ghostRing = new long[capacity / 2];
+        }
     }
 
     long getTotalCachedBlockSize() {
         return cacheBytesLength;
     }
 
+    /**
+     * Returns a value that changes when objects are removed.
+     */
+    long getRemoveCount() {
+        return removeCount;
+    }
+
     /**
      * Returns a row if in memory cache.
      */
@@ -113,7 +171,12 @@ public class Cache extends BaseHashMap {
             return null;
         }
 
-        accessTable[lookup] = accessCount.incrementAndGet();
+        int access = accessTable[lookup];
+
+        // correlated access to a probation row
+        if (access >= 0 || accessCount.get() + access > probationWindow) {
+            accessTable[lookup] = accessCount.incrementAndGet();
+        }
 
         CachedObject object = (CachedObject) objectKeyTable[lookup];
 
@@ -219,6 +282,42 @@ public class Cache extends BaseHashMap {
         row.setInMemory(true);
 
         cacheBytesLength += row.getStorageSize();
+
+        if (probation && !removeGhost(row.getPos())) {
+            int lookup = getObjectLookup(row.getPos());
+
+            accessTable[lookup] = -accessCount.get();
+        }
+    }
+
+    /**
+     * Records the position of a row removed from probation.
+     */
+    private void addGhost(long pos) {
+
+        if (ghostRing.length == 0) {
+            return;
+        }
+
+        long oldPos = ghostRing[ghostIndex];
+
+        if (oldPos > 0 && ghostMap.get(oldPos, -1) == ghostIndex) {
+            ghostMap.remove(oldPos);
+        }
+
+        ghostRing[ghostIndex] = pos;
+
+        ghostMap.put(pos, ghostIndex);
+
+        ghostIndex = (ghostIndex + 1) % ghostRing.length;
+    }
+
+    /**
+     * Returns true if a row at the position was recently removed from
+     * probation.
+     */
+    private boolean removeGhost(long pos) {
+        return ghostMap.remove(pos);
     }
 
     /**
@@ -236,11 +335,15 @@ public class Cache extends BaseHashMap {
 
         r.setInMemory(false);
 
+        removeCount++;
+
         return r;
     }
 
     public void releaseRange(IntIndex list, int fileBlockItemCount) {
 
+        removeCount++;
+
         objectIterator.reset();
 
         while (objectIterator.hasNext()) {
@@ -260,6 +363,8 @@ public class Cache extends BaseHashMap {
 
     public void releaseRange(long startPos, long limitPos) {
 
+        removeCount++;
+
         objectIterator.reset();
 
         while (objectIterator.hasNext()) {
@@ -328,17 +433,62 @@ public class Cache extends BaseHashMap {
         updateAccessCounts();
 
         if (accessCount.get() > ACCESS_MAX || accessCount.get() < 0) {
-            resetAccessCount();
+            if (probation) {
+                resetProbationAccessCount();
+            } else {
+                resetAccessCount();
+            }
+
             updateObjectAccessCounts();
         }
 
-        int savecount    = 0;
-        int removeCount  = size() / 2;
-        int accessTarget = all
-                           ? accessCount.get() + 1
-                           : getAccessCountCeiling(
-                               removeCount,
-                               removeCount / 8);
+        int savecount       = 0;
+        int targetCount     = size() / 2;
+        int accessTarget;
+        int probationTarget = accessCount.get() + 1;
+
+        if (all) {
+            accessTarget = accessCount.get() + 1;
+        } else if (probation) {
+            int probationCount = 0;
+            int probationMin   = Integer.MAX_VALUE;
+
+            objectIterator.reset();
+
+            while (objectIterator.hasNext()) {
+                objectIterator.next();
+
+                int access = objectIterator.getAccessCount();
+
+                if (access < 0) {
+                    rankTable[probationCount++] = -access;
+
+                    if (-access < probationMin) {
+                        probationMin = -access;
+                    }
+                }
+            }
+
+            if (probationCount >= targetCount) {
+                accessTarget = 0;
+                probationTarget = ArrayCounter.rank(
+                    rankTable,
+                    probationCount,
+                    targetCount,
+                    probationMin,
+                    accessCount.get() + 1,
+                    targetCount / 8);
+            } else {
+                targetCount  -= probationCount;
+                accessTarget = getAccessCountCeiling(
+                    targetCount,
+                    targetCount / 8);
+            }
+        } else {
+            accessTarget = getAccessCountCeiling(targetCount, targetCount / 8);
+        }
+
+        removeCount++;
 
         objectIterator.reset();
 
@@ -347,7 +497,12 @@ public class Cache extends BaseHashMap {
 
             synchronized (row) {
                 int     currentAccessCount = objectIterator.getAccessCount();
-                boolean oldRow             = currentAccessCount < accessTarget;
+                boolean onProbation        = currentAccessCount < 0;
+                boolean oldRow             = onProbation
+                                             ? -currentAccessCount
+                                               < probationTarget
+                                             : currentAccessCount
+                                               < accessTarget;
                 boolean newRow = row.isNew()
                                  && row.getStorageSize()
                                     >= DataFileCache.initIOBufferSize;
@@ -359,12 +514,19 @@ public class Cache extends BaseHashMap {
 
                 if (oldRow) {
                     if (row.isKeepInMemory()) {
-                        objectIterator.setAccessCount(accessTarget);
+                        objectIterator.setAccessCount(
+                            onProbation
+                            ? -accessCount.get()
+                            : accessTarget);
                     } else {
                         row.setInMemory(false);
                         objectIterator.remove();
 
                         cacheBytesLength -= row.getStorageSize();
+
+                        if (onProbation && !all) {
+                            addGhost(row.getPos());
+                        }
                     }
                 }
             }
@@ -377,12 +539,47 @@ public class Cache extends BaseHashMap {
         }
 
         saveRows(savecount);
-        setAccessCountFloor(accessTarget);
+
+        if (accessTarget > accessMin) {
+            setAccessCountFloor(accessTarget);
+        }
+
         accessCount.incrementAndGet();
     }
 
+    /**
+     * Rescales the access counts while keeping the rows that are on
+     * probation.
+     */
+    private void resetProbationAccessCount() {
+
+        int count = 0;
+
+        objectIterator.reset();
+
+        while (objectIterator.hasNext()) {
+            objectIterator.next();
+
+            int access = objectIterator.getAccessCount();
+
+            if (access < 0) {
+                rankTable[count++] = objectIterator.getLookup();
+
+                objectIterator.setAccessCount(-access);
+            }
+        }
+
+        resetAccessCount();
+
+        for (int i = 0; i < count; i++) {
+            accessTable[rankTable[i]] = -accessTable[rankTable[i]];
+        }
+    }
+
     void clearUnchanged() {
 
+        removeCount++;
+
         objectIterator.reset();
 
         while (objectIterator.hasNext()) {
@@ -407,7 +604,13 @@ public class Cache extends BaseHashMap {
 
         rowComparator.setType(CachedObjectComparator.COMPARE_POSITION);
         ArraySort.sort(rowTable, count, rowComparator);
-        dataFileCache.saveRows(rowTable, 0, count);
+        dataFileCache.fileLock.lock();
+
+        try {
+            dataFileCache.saveRows(rowTable, 0, count);
+        } finally {
+            dataFileCache.fileLock.unlock();
+        }
 
         saveRowCount += count;
     }
@@ -469,6 +672,13 @@ public class Cache extends BaseHashMap {
         super.clear();
 
         cacheBytesLength = 0;
+
+        if (probation) {
+            ghostMap.clear();
+            Arrays.fill(ghostRing, 0);
+        }
+
+        removeCount++;
     }
 
     public Iterator<CachedObject> getIterator() {
@@ -0,0 +1,451 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import java.util.Arrays;
+
+import org.hsqldb.lib.EventLogInterface;
+import org.hsqldb.lib.FileAccess;
+import org.hsqldb.lib.InputStreamInterface;
+import org.hsqldb.map.BitMap;
+
+/**
+ * Records the pages of the .data file that have been written since the
+ * last backup, for BACKUP DATABASE ... INCREMENTAL.<p>
+ *
+ * The pages have the same size as those of the RAShadowFile. The map is
+ * created by a full backup and saved in the .changes file at each
+ * checkpoint and after each backup. A page is marked after it has been
+ * written, so a write that is concurrent with the start of a backup is
+ * included in the next backup.<p>
+ *
+ * All pages are treated as changed when the .data file is recreated or
+ * restored from the .backup file after an abnormal shutdown, as the pages
+ * written after the last checkpoint are not recorded in the saved map.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+final class ChangedBlockMap {
+
+    private static final int  fileVersion = 1;
+    private static final int  headerSize  = 12;
+    final EventLogInterface   logger;
+    final FileAccess          fa;
+    final String              fileName;
+    final int                 pageSize;
+    private BitMap            bitMap;
+    private boolean           allChanged;
+    private String            backupId;
+
+    ChangedBlockMap(
+            EventLogInterface logger,
+            FileAccess fa,
+            String fileName,
+            int pageSize) {
+
+        this.logger   = logger;
+        this.fa       = fa;
+        this.fileName = fileName;
+        this.pageSize = pageSize;
+        this.bitMap   = new BitMap(0, true);
+    }
+
+    /**
+     * Returns the map saved in the file, or null if the file does not exist
+     * or cannot be read.
+     */
+    static ChangedBlockMap read(
+            EventLogInterface logger,
+            FileAccess fa,
+            String fileName) {
+
+        if (!fa.isStreamElement(fileName)) {
+            return null;
+        }
+
+        InputStream is = null;
+
+        try {
+            is = fa.openInputStreamElement(fileName);
+
+            DataInputStream in = new DataInputStream(is);
+
+            if (in.readInt() != fileVersion) {
+                throw new IOException("wrong version");
+            }
+
+            ChangedBlockMap map = new ChangedBlockMap(
+                logger,
+                fa,
+                fileName,
+                in.readInt());
+
+            map.allChanged = in.readBoolean();
+            map.backupId   = in.readUTF();
+
+            if (map.backupId.isEmpty()) {
+                map.backupId = null;
+            }
+
+            int    size  = in.readInt();
+            BitMap bits  = new BitMap(size, true);
+            int[]  words = bits.getIntArray();
+
+            for (int i = 0; i < (size + 31) / 32; i++) {
+                words[i] = in.readInt();
+            }
+
+            map.bitMap = bits;
+
+            return map;
+        } catch (Throwable t) {
+            logger.logWarningEvent(
+                "changed block map not readable, a full backup is required: "
+                + fileName,
+                t);
+            fa.removeElement(fileName);
+
+            return null;
+        } finally {
+            try {
+                if (is != null) {
+                    is.close();
+                }
+            } catch (IOException e) {}
+        }
+    }
+
+    /**
+     * Saves the map to a new file which then replaces the existing one.
+     */
+    void write() {
+
+        int     size;
+        int[]   words;
+        boolean all;
+        String  id;
+
+        synchronized (this) {
+            size  = bitMap.size();
+            words = Arrays.copyOf(bitMap.getIntArray(), (size + 31) / 32);
+            all   = allChanged;
+            id    = backupId;
+        }
+
+        String       newName = fileName + Logger.newFileExtension;
+        OutputStream os      = null;
+
+        try {
+            os = fa.openOutputStreamElement(newName);
+
+            DataOutputStream out = new DataOutputStream(os);
+
+            out.writeInt(fileVersion);
+            out.writeInt(pageSize);
+            out.writeBoolean(all);
+            out.writeUTF(id == null
+                         ? ""
+                         : id);
+            out.writeInt(size);
+
+            for (int i = 0; i < words.length; i++) {
+                out.writeInt(words[i]);
+            }
+
+            out.flush();
+            fa.getFileSync(os).sync();
+            os.close();
+
+            os = null;
+
+            fa.removeElement(fileName);
+            fa.renameElement(newName, fileName);
+        } catch (Throwable t) {
+            logger.logSevereEvent("changed block map write failed", t);
+        } finally {
+            try {
+                if (os != null) {
+                    os.close();
+                }
+            } catch (IOException e) {}
+        }
+    }
+
+    /**
+     * Marks the pages of a region of the .data file after it is written.
+     */
+    synchronized void mark(long fileOffset, int size) {
+
+        if (size <= 0) {
+            return;
+        }
+
+        int startPage = (int) (fileOffset / pageSize);
+        int endPage   = (int) ((fileOffset + size - 1) / pageSize);
+
+        bitMap.setRange(startPage, endPage - startPage + 1);
+    }
+
+    synchronized void markAll() {
+        allChanged = true;
+    }
+
+    synchronized String getBackupId() {
+        return backupId;
+    }
+
+    /**
+     * Starts a new backup with the given id. The pages below the limit are
+     * the pages that are copied by this backup and are cleared. The returned
+     * snapshot lists these pages and is used to cancel the backup if it
+     * fails.
+     */
+    synchronized Snapshot startBackup(String newBackupId, long limit) {
+
+        int limitPage = (int) ((limit + pageSize - 1) / pageSize);
+        Snapshot snapshot = new Snapshot(
+            bitMap.duplicate(),
+            allChanged,
+            backupId,
+            limit,
+            limitPage);
+
+        if (bitMap.size() > 0) {
+            bitMap.unsetRange(0, Math.min(limitPage, bitMap.size()));
+        }
+
+        allChanged = false;
+        backupId   = newBackupId;
+
+        return snapshot;
+    }
+
+    /**
+     * Restores the state before the backup, keeping the pages marked since
+     * the start of the backup.
+     */
+    synchronized void cancelBackup(Snapshot snapshot) {
+
+        for (int i = 0; i < snapshot.pages.size(); i++) {
+            if (snapshot.pages.isSet(i)) {
+                bitMap.set(i);
+            }
+        }
+
+        allChanged |= snapshot.allChanged;
+        backupId   = snapshot.baseBackupId;
+    }
+
+    /**
+     * Returns a stream of the pages of the snapshot, each preceded by the
+     * page size and position, in the same format as the RAShadowFile.
+     */
+    InputStreamInterface getInputStream(
+            Snapshot snapshot,
+            String dataFileName) {
+        return new InputStreamBlocks(snapshot, dataFileName);
+    }
+
+    static final class Snapshot {
+
+        final BitMap  pages;
+        final boolean allChanged;
+        final String  baseBackupId;
+        final long    limit;
+        final int     limitPage;
+        final int     pageCount;
+
+        Snapshot(
+                BitMap pages,
+                boolean allChanged,
+                String baseBackupId,
+                long limit,
+                int limitPage) {
+
+            this.pages        = pages;
+            this.allChanged   = allChanged;
+            this.baseBackupId = baseBackupId;
+            this.limit        = limit;
+            this.limitPage    = limitPage;
+
+            int count = 0;
+
+            for (int i = 0; i < limitPage; i = nextPage(i + 1)) {
+                count++;
+            }
+
+            pageCount = count;
+        }
+
+        /**
+         * Returns the first page from the given page that is copied, or the
+         * limit page. The first page holds the file header and is always
+         * copied.
+         */
+        int nextPage(int page) {
+
+            if (page == 0 || allChanged) {
+                return Math.min(page, limitPage);
+            }
+
+            int limit = Math.min(limitPage, pages.size());
+
+            for (; page < limit; page++) {
+                if (pages.isSet(page)) {
+                    return page;
+                }
+            }
+
+            return limitPage;
+        }
+    }
+
+    class InputStreamBlocks implements InputStreamInterface {
+
+        final Snapshot   snapshot;
+        final String     dataFileName;
+        final byte[]     buffer;
+        RandomAccessFile file;
+        int              page;
+        int              bufferPos;
+        long             limitSize;
+        long             fetchedSize;
+
+        InputStreamBlocks(Snapshot snapshot, String dataFileName) {
+
+            this.snapshot     = snapshot;
+            this.dataFileName = dataFileName;
+            this.buffer       = new byte[headerSize + pageSize];
+            this.page         = snapshot.nextPage(0);
+            this.bufferPos    = buffer.length;
+            this.limitSize    = (long) snapshot.pageCount * buffer.length;
+        }
+
+        public int read() throws IOException {
+
+            byte[] b     = new byte[1];
+            int    count = read(b, 0, 1);
+
+            return count < 0
+                   ? -1
+                   : b[0] & 0xff;
+        }
+
+        public int read(byte[] bytes) throws IOException {
+            return read(bytes, 0, bytes.length);
+        }
+
+        public int read(
+                byte[] bytes,
+                int offset,
+                int length)
+                throws IOException {
+
+            if (fetchedSize == limitSize) {
+                return -1;
+            }
+
+            if (bufferPos == buffer.length) {
+                readPage();
+            }
+
+            int count = Math.min(length, buffer.length - bufferPos);
+
+            System.arraycopy(buffer, bufferPos, bytes, offset, count);
+
+            bufferPos   += count;
+            fetchedSize += count;
+
+            return count;
+        }
+
+        private void readPage() throws IOException {
+
+            if (file == null) {
+                file = new RandomAccessFile(dataFileName, "r");
+            }
+
+            long position = (long) page * pageSize;
+            long fileSize = Math.min(file.length(), snapshot.limit);
+            int  readSize = (int) Math.min(pageSize, fileSize - position);
+
+            Arrays.fill(buffer, (byte) 0);
+
+            buffer[0]  = (byte) (pageSize >>> 24);
+            buffer[1]  = (byte) (pageSize >>> 16);
+            buffer[2]  = (byte) (pageSize >>> 8);
+            buffer[3]  = (byte) pageSize;
+
+            for (int i = 0; i < 8; i++) {
+                buffer[4 + i] = (byte) (position >>> (56 - i * 8));
+            }
+
+            if (readSize > 0) {
+                file.seek(position);
+                file.readFully(buffer, headerSize, readSize);
+            }
+
+            bufferPos = 0;
+            page      = snapshot.nextPage(page + 1);
+        }
+
+        public long skip(long count) {
+            return 0;
+        }
+
+        public int available() {
+            return 0;
+        }
+
+        public void close() throws IOException {
+            if (file != null) {
+                file.close();
+            }
+        }
+
+        public void setSizeLimit(long count) {
+            limitSize = count;
+        }
+
+        public long getSizeLimit() {
+            return limitSize;
+        }
+    }
+}
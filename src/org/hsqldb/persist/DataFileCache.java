@@ -34,9 +34,10 @@ package org.hsqldb.persist;
 import java.io.IOException;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.hsqldb.Database;
 import org.hsqldb.Session;
@@ -47,6 +48,7 @@ import org.hsqldb.lib.FileAccess;
 import org.hsqldb.lib.FileArchiver;
 import org.hsqldb.lib.IntIndex;
 import org.hsqldb.map.BitMap;
+import org.hsqldb.rowio.RowInputBinary;
 import org.hsqldb.rowio.RowInputBinaryDecode;
 import org.hsqldb.rowio.RowInputInterface;
 import org.hsqldb.rowio.RowOutputBinaryEncode;
@@ -58,8 +60,14 @@ import org.hsqldb.rowio.RowOutputInterface;
  * This contains the top level functionality. Provides file management services
  * and access.<p>
  *
+ * The cache can be split into segments with the hsqldb.cache_segments
+ * property. Threads that access rows in different segments do not wait for
+ * each other, and rows are read from the file without holding the segment
+ * lock. Operations on the whole cache or file use the write lock, which
+ * locks all the segments and the file.<p>
+ *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.5.1
+ * @version 2.7.4
  * @since 1.7.2
  */
 public class DataFileCache {
@@ -94,6 +102,7 @@ public class DataFileCache {
     //
     public DataSpaceManager spaceManager;
     static final int        initIOBufferSize = 4096;
+    static final int        shadowPageSize   = 1 << 14;
 
     //
     protected String   dataFileName;
@@ -137,19 +146,29 @@ public class DataFileCache {
     protected int                   maxCacheRows;     // number of Rows
     protected long                  maxCacheBytes;    // number of bytes
     protected Cache                 cache;
+    protected int                   cacheSegmentCount = 1;
+    protected int                   cachePolicy       = Cache.POLICY_LRU;
+    protected boolean               isMappedRead;
+    private Cache[]                 cacheSegments;
 
     //
     private RAShadowFile shadowFile;
 
+    // pages written since the last backup
+    ChangedBlockMap changedBlocks;
+
     //
-    ReadWriteLock lock      = new ReentrantReadWriteLock();
-    Lock          readLock  = lock.readLock();
-    Lock          writeLock = lock.writeLock();
+    final Lock writeLock = new CacheLock();
+
+    // for dataFile, rowIn and rowOut when the writeLock is not held
+    final Lock fileLock = new ReentrantLock();
+
+    // segments are not used when they would be smaller
+    static final int minSegmentRows = 1024;
 
     public DataFileCache(Database db, String baseFileName) {
         initParams(db, baseFileName, false);
-
-        cache = new Cache(this);
+        initCache();
     }
 
     /**
@@ -158,8 +177,7 @@ public class DataFileCache {
     public DataFileCache(Database db, String baseFileName, boolean defrag) {
 
         initParams(db, baseFileName, true);
-
-        cache = new Cache(this);
+        initCache();
 
         try {
             dataFile = new RAFileSimple(database.logger, dataFileName, "rw");
@@ -200,14 +218,64 @@ public class DataFileCache {
         cacheReadonly = database.isFilesReadOnly();
         maxCacheRows  = database.logger.getCacheMaxRows();
         maxCacheBytes = database.logger.getCacheSize();
+        cacheSegmentCount = database.logger.getCacheSegments();
+        cachePolicy       = database.logger.getCachePolicy();
+        isMappedRead      = database.logger.propNioDataFile
+                            && database.logger.getCrypto() == null;
         maxDataFileSize = (long) Integer.MAX_VALUE * dataFileScale
                           * database.logger.getDataFileFactor();
 
         if (defrag) {
             dataFileName   = dataFileName + Logger.newFileExtension;
             backupFileName = backupFileName + Logger.newFileExtension;
-            maxCacheRows   = 1024;
-            maxCacheBytes  = 1024 * 4096;
+            maxCacheRows      = 1024;
+            maxCacheBytes     = 1024 * 4096;
+            cacheSegmentCount = 1;
+            cachePolicy       = Cache.POLICY_LRU;
+            isMappedRead      = false;
+        }
+    }
+
+    /**
+     * Creates the cache. With more than one segment, each segment holds the
+     * objects whose file position hashes to it and has an equal share of
+     * the maximum rows and bytes of the cache.
+     */
+    private void initCache() {
+
+        int count = Integer.highestOneBit(Math.max(cacheSegmentCount, 1));
+
+        while (count > 1 && maxCacheRows / count < minSegmentRows) {
+            count >>= 1;
+        }
+
+        cacheSegments = new Cache[count];
+
+        for (int i = 0; i < count; i++) {
+            cacheSegments[i] = new Cache(
+                this,
+                maxCacheRows / count,
+                maxCacheBytes / count,
+                cachePolicy);
+        }
+
+        cache = cacheSegments[0];
+    }
+
+    final Cache getSegment(long pos) {
+
+        if (cacheSegments.length == 1) {
+            return cache;
+        }
+
+        int hash = (int) ((pos * 0x9E3779B97F4A7C15L) >>> 32);
+
+        return cacheSegments[hash & (cacheSegments.length - 1)];
+    }
+
+    private void saveAllSegments() {
+        for (int i = 0; i < cacheSegments.length; i++) {
+            cacheSegments[i].saveAll();
         }
     }
 
@@ -317,6 +385,8 @@ public class DataFileCache {
                 }
             }
 
+            boolean restored = false;
+
             if (preexists) {
                 if (isSaved) {
                     boolean existsBackup = fa.isStreamElement(backupFileName);
@@ -326,14 +396,12 @@ public class DataFileCache {
                             "data file was not modified but inc backup exists");
 
                         if (doRestore) {
-                            restoreBackupIncremental();
+                            restored = restoreBackupIncremental();
                         }
                     }
 
                     deleteBackupFile();
                 } else {
-                    boolean restored;
-
                     if (isIncremental) {
                         restored = restoreBackupIncremental();
                     } else {
@@ -401,6 +469,12 @@ public class DataFileCache {
                 reset();
             }
 
+            changedBlocks = database.logger.changedBlocks;
+
+            if (changedBlocks != null && (!preexists || restored)) {
+                changedBlocks.markAll();
+            }
+
             openShadowFile();
             logInfoEvent("dataFileCache open end");
         } catch (HsqlException e) {
@@ -489,7 +563,7 @@ public class DataFileCache {
             dataFile,
             backupFileName,
             fileFreePosition,
-            1 << 14);
+            shadowPageSize);
     }
 
     /**
@@ -621,7 +695,9 @@ public class DataFileCache {
         writeLock.lock();
 
         try {
-            cache.clear();
+            for (int i = 0; i < cacheSegments.length; i++) {
+                cacheSegments[i].clear();
+            }
         } finally {
             writeLock.unlock();
         }
@@ -664,7 +740,7 @@ public class DataFileCache {
 
             logInfoEvent("dataFileCache commit start");
             spaceManager.reset();
-            cache.saveAll();
+            saveAllSegments();
 
             // set empty
             long lostSize = spaceManager.getLostBlocksSize();
@@ -708,6 +784,10 @@ public class DataFileCache {
                 shadowFile = null;
             }
 
+            if (changedBlocks != null) {
+                changedBlocks.write();
+            }
+
             logInfoEvent("dataFileCache commit end");
         } catch (Throwable t) {
             logSevereEvent("DataFileCache.reset commit", t);
@@ -743,12 +823,17 @@ public class DataFileCache {
         writeLock.lock();
 
         try {
-            cache.saveAll();
+            saveAllSegments();
 
             DataFileDefrag dfd = new DataFileDefrag(database, this);
 
             dfd.process(session);
 
+            // all pages of the new .data file are copied by the next backup
+            if (changedBlocks != null) {
+                changedBlocks.markAll();
+            }
+
             return dfd;
         } finally {
             writeLock.unlock();
@@ -767,22 +852,30 @@ public class DataFileCache {
 
     public void add(CachedObject object, boolean keep) {
 
-        writeLock.lock();
+        Cache segment = getSegment(object.getPos());
+
+        segment.writeLock.lock();
 
         try {
             cacheModified = true;
 
-            cache.put(object);
+            segment.put(object);
 
             if (keep) {
                 object.keepInMemory(true);
             }
 
             if (object.getStorageSize() > initIOBufferSize) {
-                rowOut.reset(object.getStorageSize());
+                fileLock.lock();
+
+                try {
+                    rowOut.reset(object.getStorageSize());
+                } finally {
+                    fileLock.unlock();
+                }
             }
         } finally {
-            writeLock.unlock();
+            segment.writeLock.unlock();
         }
     }
 
@@ -791,11 +884,9 @@ public class DataFileCache {
             PersistentStore store,
             boolean keep) {
 
-        readLock.lock();
-
-        long pos;
+        long pos = object.getPos();
 
-        try {
+        if (pos < 0) {
             if (object.isInMemory()) {
                 if (keep) {
                     object.keepInMemory(true);
@@ -804,26 +895,28 @@ public class DataFileCache {
                 return object;
             }
 
-            pos = object.getPos();
+            return null;
+        }
 
-            if (pos < 0) {
-                return null;
-            }
+        Cache segment = getSegment(pos);
 
-            object = cache.get(pos);
+        segment.readLock.lock();
 
-            if (object != null) {
+        try {
+            if (object.isInMemory()) {
                 if (keep) {
                     object.keepInMemory(true);
                 }
 
+                segment.hitCount.incrementAndGet();
+
                 return object;
             }
         } finally {
-            readLock.unlock();
+            segment.readLock.unlock();
         }
 
-        return getFromFile(pos, store, keep);
+        return get(segment, pos, 0, store, keep);
     }
 
     public CachedObject get(
@@ -832,205 +925,239 @@ public class DataFileCache {
             PersistentStore store,
             boolean keep) {
 
-        CachedObject object;
-
         if (pos < 0) {
             return null;
         }
 
-        readLock.lock();
-
-        try {
-            object = cache.get(pos);
+        return get(getSegment(pos), pos, size, store, keep);
+    }
 
-            if (object != null) {
-                if (keep) {
-                    object.keepInMemory(true);
-                }
+    public CachedObject get(long pos, PersistentStore store, boolean keep) {
 
-                return object;
-            }
-        } finally {
-            readLock.unlock();
+        if (pos < 0) {
+            return null;
         }
 
-        return getFromFile(pos, size, store, keep);
+        return get(getSegment(pos), pos, 0, store, keep);
     }
 
-    public CachedObject get(long pos, PersistentStore store, boolean keep) {
+    /**
+     * Returns the object from the cache segment, or reads it from the file
+     * and adds it to the segment. The file is read without holding the
+     * segment lock, so that other threads can use the segment meanwhile.
+     * If objects were removed from the segment during the read, the file
+     * may have been written after the read and it is read again while
+     * holding the lock. When size is 0 the size is read from the file.
+     */
+    private CachedObject get(
+            Cache segment,
+            long pos,
+            int size,
+            PersistentStore store,
+            boolean keep) {
 
         CachedObject object;
+        long         removeCount;
 
-        if (pos < 0) {
-            return null;
-        }
-
-        readLock.lock();
+        segment.readLock.lock();
 
         try {
-            object = cache.get(pos);
+            object = segment.get(pos);
 
             if (object != null) {
                 if (keep) {
                     object.keepInMemory(true);
                 }
 
+                segment.hitCount.incrementAndGet();
+
                 return object;
             }
+
+            removeCount = segment.getRemoveCount();
         } finally {
-            readLock.unlock();
+            segment.readLock.unlock();
         }
 
-        return getFromFile(pos, store, keep);
-    }
+        segment.missCount.incrementAndGet();
 
-    private CachedObject getFromFile(
-            long pos,
-            PersistentStore store,
-            boolean keep) {
+        try {
+            object = getFromFile(segment, pos, size, store);
 
-        CachedObject object = null;
+            segment.writeLock.lock();
 
-        writeLock.lock();
+            try {
+                CachedObject existing = segment.get(pos);
 
-        try {
-            object = cache.get(pos);
+                if (existing == null) {
+                    if (segment.getRemoveCount() != removeCount) {
+                        object = getFromFile(segment, pos, size, store);
+                    }
+
+                    if (size == 0) {
+                        segment.put(object);
+                    } else {
+                        segment.putUsingReserve(object);
+                    }
+                } else {
+                    object = existing;
+                }
 
-            if (object != null) {
                 if (keep) {
                     object.keepInMemory(true);
                 }
 
                 return object;
+            } finally {
+                segment.writeLock.unlock();
             }
+        } catch (HsqlException e) {
+            logSevereEvent(dataFileName + " getFromFile failed " + pos, e);
 
-            for (int j = 0; j < 2; j++) {
-                try {
-                    readObject(pos);
+            throw e;
+        }
+    }
+
+    private CachedObject getFromFile(
+            Cache segment,
+            long pos,
+            int size,
+            PersistentStore store) {
 
-                    object = store.get(rowIn);
+        if (isMappedRead) {
+            CachedObject object = getFromMappedFile(pos, size, store);
 
-                    if (object == null) {
-                        throw Error.error(
-                            ErrorCode.GENERAL_IO_ERROR,
-                            "position " + pos);
-                    }
+            if (object != null) {
+                return object;
+            }
+        }
 
-                    break;
-                } catch (Throwable t) {
-                    if (t instanceof OutOfMemoryError) {
-                        cache.clearUnchanged();
+        for (int j = 0; ; j++) {
+            fileLock.lock();
 
-                        if (j > 0) {
-                            logInfoEvent(
-                                dataFileName + " getFromFile out of mem, pos: "
-                                + pos);
+            try {
+                if (size == 0) {
+                    readObject(pos);
+                } else {
+                    readObject(pos, size);
+                }
 
-                            HsqlException ex = Error.error(
-                                ErrorCode.OUT_OF_MEMORY,
-                                t);
+                CachedObject object = store.get(rowIn);
 
-                            ex.info = rowIn;
+                if (object == null) {
+                    throw Error.error(
+                        ErrorCode.GENERAL_IO_ERROR,
+                        "position " + pos);
+                }
 
-                            throw ex;
-                        }
-                    } else if (t instanceof HsqlException) {
-                        ((HsqlException) t).info = rowIn;
+                return object;
+            } catch (OutOfMemoryError err) {
+                if (j > 0) {
+                    logInfoEvent(
+                        dataFileName + " getFromFile out of mem, pos: " + pos);
 
-                        throw(HsqlException) t;
-                    } else {
-                        HsqlException ex = Error.error(
-                            ErrorCode.GENERAL_IO_ERROR,
-                            t);
+                    HsqlException ex = Error.error(
+                        ErrorCode.OUT_OF_MEMORY,
+                        err);
 
-                        ex.info = rowIn;
+                    ex.info = rowIn;
 
-                        throw ex;
-                    }
+                    throw ex;
                 }
-            }
+            } catch (HsqlException e) {
+                e.info = rowIn;
 
-            if (object == null) {
-                throw Error.error(ErrorCode.DATA_FILE_ERROR);
-            }
+                throw e;
+            } catch (Throwable t) {
+                HsqlException ex = Error.error(ErrorCode.GENERAL_IO_ERROR, t);
 
-            // for text tables with empty rows at the beginning,
-            // pos may move forward in readObject
-            cache.put(object);
+                ex.info = rowIn;
 
-            if (keep) {
-                object.keepInMemory(true);
+                throw ex;
+            } finally {
+                fileLock.unlock();
             }
 
-            return object;
-        } catch (HsqlException e) {
-            logSevereEvent(dataFileName + " getFromFile failed " + pos, e);
+            segment.writeLock.lock();
 
-            throw e;
-        } finally {
-            writeLock.unlock();
+            try {
+                segment.clearUnchanged();
+            } finally {
+                segment.writeLock.unlock();
+            }
         }
     }
 
-    private CachedObject getFromFile(
+    /**
+     * Reads the object from the memory mapped part of the data file into a
+     * new row input, without the fileLock. Several threads can read at the
+     * same time. Returns null if the object is not in a mapped part of the
+     * file or cannot be read this way. The caller then uses the normal read.
+     * The size in the header of the object is read without the fileLock and
+     * is checked against the used length of the file before allocation.
+     */
+    private CachedObject getFromMappedFile(
             long pos,
             int size,
-            PersistentStore store,
-            boolean keep) {
-
-        CachedObject object = null;
-
-        writeLock.lock();
+            PersistentStore store) {
 
         try {
-            object = cache.get(pos);
+            long           filePos = pos * dataFileScale;
+            RowInputBinary in;
 
-            if (object != null) {
-                if (keep) {
-                    object.keepInMemory(true);
+            if (size == 0) {
+                byte[] header = new byte[4];
+
+                if (!dataFile.readAt(filePos, header, 0, 4)) {
+                    return null;
                 }
 
-                return object;
-            }
+                size = ((header[0] & 0xff) << 24) | ((header[1] & 0xff) << 16)
+                       | ((header[2] & 0xff) << 8) | (header[3] & 0xff);
 
-            for (int j = 0; j < 2; j++) {
-                try {
-                    readObject(pos, size);
+                if (size <= 4 || size > getMappedReadLimit(filePos)) {
+                    return null;
+                }
 
-                    object = store.get(rowIn);
-                    break;
-                } catch (OutOfMemoryError err) {
-                    cache.clearUnchanged();
-                    System.gc();
+                in = new RowInputBinary(new byte[size]);
 
-                    if (j > 0) {
-                        logSevereEvent(
-                            dataFileName + " getFromFile out of mem " + pos,
-                            err);
+                in.resetRow(pos, size);
 
-                        throw err;
-                    }
+                if (!dataFile.readAt(
+                        filePos + 4,
+                        in.getBuffer(),
+                        4,
+                        size - 4)) {
+                    return null;
                 }
-            }
+            } else {
+                in = new RowInputBinary(new byte[size]);
+
+                in.resetBlock(pos, size);
 
-            if (object == null) {
-                throw Error.error(ErrorCode.DATA_FILE_ERROR);
+                if (!dataFile.readAt(filePos, in.getBuffer(), 0, size)) {
+                    return null;
+                }
             }
 
-            cache.putUsingReserve(object);
+            return store.get(in);
+        } catch (HsqlException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
 
-            if (keep) {
-                object.keepInMemory(true);
-            }
+    /**
+     * Returns the largest object size that can be read at the file position.
+     */
+    private long getMappedReadLimit(long filePos) {
 
-            return object;
-        } catch (HsqlException e) {
-            logSevereEvent(dataFileName + " getFromFile failed " + pos, e);
+        long limit = fileFreePosition - filePos;
 
-            throw e;
-        } finally {
-            writeLock.unlock();
+        if (limit > maxCacheBytes) {
+            limit = maxCacheBytes;
         }
+
+        return limit;
     }
 
     RowInputInterface getRaw(long pos) {
@@ -1094,7 +1221,9 @@ public class DataFileCache {
         try {
             cacheModified = true;
 
-            cache.releaseRange(startPos, limitPos);
+            for (int i = 0; i < cacheSegments.length; i++) {
+                cacheSegments[i].releaseRange(startPos, limitPos);
+            }
         } finally {
             writeLock.unlock();
         }
@@ -1107,7 +1236,9 @@ public class DataFileCache {
         try {
             cacheModified = true;
 
-            cache.releaseRange(list, fileBlockItemCount);
+            for (int i = 0; i < cacheSegments.length; i++) {
+                cacheSegments[i].releaseRange(list, fileBlockItemCount);
+            }
         } finally {
             writeLock.unlock();
         }
@@ -1115,14 +1246,16 @@ public class DataFileCache {
 
     public CachedObject release(long pos) {
 
-        writeLock.lock();
+        Cache segment = getSegment(pos);
+
+        segment.writeLock.lock();
 
         try {
             cacheModified = true;
 
-            return cache.release(pos);
+            return segment.release(pos);
         } finally {
-            writeLock.unlock();
+            segment.writeLock.unlock();
         }
     }
 
@@ -1180,6 +1313,12 @@ public class DataFileCache {
                 rowOut.getOutputStream().getBuffer(),
                 0,
                 rowOut.getOutputStream().size());
+
+            if (changedBlocks != null) {
+                changedBlocks.mark(
+                    pos * dataFileScale,
+                    rowOut.getOutputStream().size());
+            }
         } catch (Throwable t) {
             logSevereEvent("DataFileCache.saveRowOutput", t, pos);
 
@@ -1198,6 +1337,12 @@ public class DataFileCache {
                 0,
                 rowOut.getOutputStream().size());
             row.setChanged(false);
+
+            if (changedBlocks != null) {
+                changedBlocks.mark(
+                    row.getPos() * dataFileScale,
+                    row.getStorageSize());
+            }
         } catch (Throwable t) {
             logSevereEvent("DataFileCache.saveRowNoLock", t, row.getPos());
 
@@ -1322,7 +1467,14 @@ public class DataFileCache {
     }
 
     public long getTotalCachedBlockSize() {
-        return cache.getTotalCachedBlockSize();
+
+        long size = 0;
+
+        for (int i = 0; i < cacheSegments.length; i++) {
+            size += cacheSegments[i].getTotalCachedBlockSize();
+        }
+
+        return size;
     }
 
     public long getLostBlockSize() {
@@ -1334,7 +1486,42 @@ public class DataFileCache {
     }
 
     public int getCachedObjectCount() {
-        return cache.size();
+
+        int count = 0;
+
+        for (int i = 0; i < cacheSegments.length; i++) {
+            count += cacheSegments[i].size();
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of objects that were found in the memory cache.
+     */
+    public long getCacheHitCount() {
+
+        long count = 0;
+
+        for (int i = 0; i < cacheSegments.length; i++) {
+            count += cacheSegments[i].hitCount.get();
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of objects that were read from the file.
+     */
+    public long getCacheMissCount() {
+
+        long count = 0;
+
+        for (int i = 0; i < cacheSegments.length; i++) {
+            count += cacheSegments[i].missCount.get();
+        }
+
+        return count;
     }
 
     public String getFileName() {
@@ -1448,4 +1635,44 @@ public class DataFileCache {
             database.logger.logDetailEvent(message);
         }
     }
+
+    /**
+     * Locks all the segments of the cache, then the file.
+     */
+    private final class CacheLock implements Lock {
+
+        public void lock() {
+
+            for (int i = 0; i < cacheSegments.length; i++) {
+                cacheSegments[i].writeLock.lock();
+            }
+
+            fileLock.lock();
+        }
+
+        public void unlock() {
+
+            fileLock.unlock();
+
+            for (int i = cacheSegments.length - 1; i >= 0; i--) {
+                cacheSegments[i].writeLock.unlock();
+            }
+        }
+
+        public void lockInterruptibly() {
+            throw Error.runtimeError(ErrorCode.U_S0500, "CacheLock");
+        }
+
+        public boolean tryLock() {
+            throw Error.runtimeError(ErrorCode.U_S0500, "CacheLock");
+        }
+
+        public boolean tryLock(long time, TimeUnit unit) {
+            throw Error.runtimeError(ErrorCode.U_S0500, "CacheLock");
+        }
+
+        public Condition newCondition() {
+            throw Error.runtimeError(ErrorCode.U_S0500, "CacheLock");
+        }
+    }
 }
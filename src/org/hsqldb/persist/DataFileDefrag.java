@@ -55,7 +55,7 @@ import org.hsqldb.lib.StringUtil;
  *  image after translating the old pointers to the new.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version    2.7.3
+ * @version    2.7.4
  * @since      1.7.2
  */
 final class DataFileDefrag {
@@ -199,18 +199,27 @@ final class DataFileDefrag {
             + stopw.elapsedTime());
         store.moveDataToSpace(dataFileOut, pointerLookup);
 
-        for (int i = 0; i < table.getIndexCount(); i++) {
-            if (rootsArray[i] == -1) {
-                continue;
-            }
+        if (store instanceof RowStoreBTreeDisk) {
+
+            // index pages are rebuilt from the moved rows
+            rootsArray = ((RowStoreBTreeDisk) store).movePagesToSpace(
+                session,
+                dataFileOut,
+                pointerLookup);
+        } else {
+            for (int i = 0; i < table.getIndexCount(); i++) {
+                if (rootsArray[i] == -1) {
+                    continue;
+                }
 
-            long pos = pointerLookup.lookup(rootsArray[i], -1);
+                long pos = pointerLookup.lookup(rootsArray[i], -1);
 
-            if (pos == -1) {
-                throw Error.error(ErrorCode.DATA_FILE_ERROR);
-            }
+                if (pos == -1) {
+                    throw Error.error(ErrorCode.DATA_FILE_ERROR);
+                }
 
-            rootsArray[i] = pos;
+                rootsArray[i] = pos;
+            }
         }
 
         // log any discrepency in row count
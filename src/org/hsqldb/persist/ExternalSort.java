@@ -0,0 +1,544 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hsqldb.Database;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.error.HsqlException;
+import org.hsqldb.lib.ArraySort;
+import org.hsqldb.lib.FileUtil;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.Iterator;
+import org.hsqldb.lib.WrapperIterator;
+import org.hsqldb.rowio.RowInputBinary;
+import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.types.Type;
+
+/**
+ * External merge sort for the entries used to build indexes in bulk.<p>
+ *
+ * Entries are collected in memory until a run is full. Each run is then
+ * sorted and written to a file in the temp directory of the database. The
+ * iterator merges the sorted runs, with intermediate merges when there are
+ * too many runs to read at once. When the database has no temp directory,
+ * or all the entries fit in one run, the entries are sorted in memory.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class ExternalSort {
+
+    public static final int RUN_SIZE       = 1 << 17;
+    static final int        MAX_MERGE_RUNS = 64;
+    static final int        BUFFER_SIZE    = 1 << 16;
+
+    //
+    private static final AtomicLong fileSequence = new AtomicLong();
+
+    //
+    private final Database           database;
+    private final Type[]             types;
+    private final Comparator<Object> comparator;
+    private final String             path;
+    private final int                runSize;
+    private Object[]                 entries;
+    private int                      entryCount;
+    private boolean                  isSorted;
+    private long                     size;
+    private HsqlArrayList<SortRun>   runs;
+    private RowOutputBinary          rowOut;
+
+    /**
+     * Creates the sort for entries of the given types.
+     *
+     * @param database the database
+     * @param types the types of the values in each entry
+     * @param comparator the comparator for the entries
+     * @param runSize the number of entries in each sorted run
+     */
+    public ExternalSort(
+            Database database,
+            Type[] types,
+            Comparator<Object> comparator,
+            int runSize) {
+
+        this.database   = database;
+        this.types      = types;
+        this.comparator = comparator;
+        this.path       = database.logger.getTempDirectoryPath();
+        this.runSize    = runSize;
+        this.entries    = new Object[Math.min(runSize, 1024)];
+        this.runs       = new HsqlArrayList<>();
+    }
+
+    public void add(Object[] entry) {
+
+        if (entryCount == entries.length) {
+            if (isRunFull()) {
+                sortRun();
+                writeRun();
+            } else {
+                Object[] newEntries = new Object[entryCount * 2];
+
+                System.arraycopy(entries, 0, newEntries, 0, entryCount);
+
+                entries = newEntries;
+            }
+        }
+
+        entries[entryCount++] = entry;
+        isSorted              = false;
+
+        size++;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the entries in memory should be written as a run.
+     */
+    public boolean isRunFull() {
+        return path != null && entryCount >= runSize;
+    }
+
+    /**
+     * Sorts the entries in memory.
+     */
+    public void sortRun() {
+
+        if (!isSorted) {
+            ArraySort.sort(entries, entryCount, comparator);
+
+            isSorted = true;
+        }
+    }
+
+    /**
+     * Writes the sorted entries in memory to a new run file.
+     */
+    public void writeRun() {
+
+        if (entryCount == 0) {
+            return;
+        }
+
+        sortRun();
+
+        SortRun run = new SortRun();
+
+        runs.add(run);
+
+        try {
+            run.open(false);
+
+            for (int i = 0; i < entryCount; i++) {
+                run.write((Object[]) entries[i]);
+
+                entries[i] = null;
+            }
+
+            run.close();
+        } catch (IOException e) {
+            throw Error.error(ErrorCode.FILE_IO_ERROR, e);
+        }
+
+        entryCount = 0;
+    }
+
+    /**
+     * Returns the entries in sorted order. Can be called only once.
+     */
+    public Iterator<Object[]> iterator() {
+
+        if (runs.isEmpty()) {
+            sortRun();
+
+            Object[] sorted = entries;
+
+            entries = null;
+
+            if (entryCount < sorted.length) {
+                Object[] newEntries = new Object[entryCount];
+
+                System.arraycopy(sorted, 0, newEntries, 0, entryCount);
+
+                sorted = newEntries;
+            }
+
+            return new WrapperIterator<>(sorted);
+        }
+
+        writeRun();
+
+        entries = null;
+
+        try {
+            while (runs.size() > MAX_MERGE_RUNS) {
+                HsqlArrayList<SortRun> merged = new HsqlArrayList<>();
+
+                for (int i = 0; i < runs.size(); i += MAX_MERGE_RUNS) {
+                    int end = Math.min(i + MAX_MERGE_RUNS, runs.size());
+                    MergeIterator it  = new MergeIterator(i, end);
+                    SortRun       run = new SortRun();
+
+                    merged.add(run);
+                    run.open(false);
+
+                    while (it.hasNext()) {
+                        run.write(it.next());
+                    }
+
+                    run.close();
+
+                    for (int j = i; j < end; j++) {
+                        runs.get(j).delete();
+                    }
+                }
+
+                runs = merged;
+            }
+
+            return new MergeIterator(0, runs.size());
+        } catch (IOException e) {
+            throw Error.error(ErrorCode.FILE_IO_ERROR, e);
+        }
+    }
+
+    /**
+     * Deletes the run files.
+     */
+    public void close() {
+
+        entries = null;
+
+        for (int i = 0; i < runs.size(); i++) {
+            runs.get(i).delete();
+        }
+
+        runs.clear();
+    }
+
+    /**
+     * Sorts the entries in memory for each of the sorts. When the database
+     * allows parallel execution, the sorts run in parallel.
+     */
+    public static void sortRuns(Database database, ExternalSort[] sorts) {
+
+        if (sorts.length < 2 || database.getParallelThreads() == 0) {
+            for (int i = 0; i < sorts.length; i++) {
+                sorts[i].sortRun();
+            }
+
+            return;
+        }
+
+        ForkJoinPool      pool  = database.getParallelPool();
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[sorts.length];
+        Throwable         error = null;
+
+        for (int i = 1; i < sorts.length; i++) {
+            final ExternalSort sort = sorts[i];
+
+            tasks[i] = pool.submit(new Runnable() {
+
+                public void run() {
+                    sort.sortRun();
+                }
+            });
+        }
+
+        try {
+            sorts[0].sortRun();
+        } catch (Throwable t) {
+            error = t;
+        }
+
+        for (int i = 1; i < tasks.length; i++) {
+            try {
+                tasks[i].join();
+            } catch (Throwable t) {
+                if (error == null) {
+                    error = t.getCause() == null
+                            ? t
+                            : t.getCause();
+                }
+            }
+        }
+
+        if (error == null) {
+            return;
+        }
+
+        if (error instanceof HsqlException) {
+            throw (HsqlException) error;
+        }
+
+        throw Error.error(ErrorCode.GENERAL_ERROR, error);
+    }
+
+    /**
+     * A file holding one sorted run.
+     */
+    private class SortRun {
+
+        final String     fileName;
+        int              count;
+        DataOutputStream out;
+        DataInputStream  in;
+        RowInputBinary   rowIn;
+        int              readCount;
+
+        SortRun() {
+            fileName = path + "/sort_" + fileSequence.getAndIncrement()
+                       + ".tmp";
+        }
+
+        void open(boolean read) throws IOException {
+
+            if (read) {
+                in = new DataInputStream(
+                    new BufferedInputStream(
+                        FileUtil.getFileUtil().openInputStreamElement(
+                            fileName),
+                        BUFFER_SIZE));
+                rowIn     = new RowInputBinary(256);
+                readCount = 0;
+            } else {
+                if (rowOut == null) {
+                    rowOut = new RowOutputBinary(256, 1);
+                }
+
+                out = new DataOutputStream(
+                    new BufferedOutputStream(
+                        FileUtil.getFileUtil().openOutputStreamElement(
+                            fileName),
+                        BUFFER_SIZE));
+            }
+        }
+
+        void write(Object[] entry) throws IOException {
+
+            rowOut.reset();
+            rowOut.writeData(types.length, types, entry, null, null);
+            out.writeInt(rowOut.size());
+            out.write(rowOut.getBuffer(), 0, rowOut.size());
+
+            count++;
+        }
+
+        Object[] read() throws IOException {
+
+            if (readCount == count) {
+                return null;
+            }
+
+            int length = in.readInt();
+
+            rowIn.resetBlock(0, length);
+            in.readFully(rowIn.getBuffer(), 0, length);
+
+            readCount++;
+
+            return rowIn.readData(types);
+        }
+
+        void close() throws IOException {
+
+            if (out != null) {
+                out.close();
+
+                out = null;
+            }
+
+            if (in != null) {
+                in.close();
+
+                in = null;
+            }
+        }
+
+        void delete() {
+
+            try {
+                close();
+            } catch (IOException e) {}
+
+            FileUtil.getFileUtil().delete(fileName);
+        }
+    }
+
+    /**
+     * Merges a range of runs, using a binary heap ordered by the current
+     * entry of each run.
+     */
+    private class MergeIterator implements Iterator<Object[]> {
+
+        final SortRun[]  heap;
+        final Object[][] current;
+        int              heapSize;
+
+        MergeIterator(int start, int end) throws IOException {
+
+            heap    = new SortRun[end - start];
+            current = new Object[end - start][];
+
+            for (int i = start; i < end; i++) {
+                SortRun run = runs.get(i);
+
+                run.open(true);
+
+                Object[] entry = run.read();
+
+                if (entry == null) {
+                    run.close();
+
+                    continue;
+                }
+
+                heap[heapSize]    = run;
+                current[heapSize] = entry;
+
+                heapSize++;
+
+                siftUp(heapSize - 1);
+            }
+        }
+
+        public boolean hasNext() {
+            return heapSize > 0;
+        }
+
+        public Object[] next() {
+
+            if (heapSize == 0) {
+                throw new NoSuchElementException();
+            }
+
+            Object[] result = current[0];
+
+            try {
+                Object[] entry = heap[0].read();
+
+                if (entry == null) {
+                    heap[0].close();
+
+                    heapSize--;
+
+                    heap[0]           = heap[heapSize];
+                    current[0]        = current[heapSize];
+                    heap[heapSize]    = null;
+                    current[heapSize] = null;
+                } else {
+                    current[0] = entry;
+                }
+            } catch (IOException e) {
+                throw Error.error(ErrorCode.FILE_IO_ERROR, e);
+            }
+
+            siftDown(0);
+
+            return result;
+        }
+
+        private void siftUp(int i) {
+
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+
+                if (comparator.compare(current[i], current[parent]) >= 0) {
+                    break;
+                }
+
+                swap(i, parent);
+
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+
+            while (true) {
+                int left     = 2 * i + 1;
+                int right    = left + 1;
+                int smallest = i;
+
+                if (left < heapSize
+                        && comparator.compare(
+                            current[left],
+                            current[smallest]) < 0) {
+                    smallest = left;
+                }
+
+                if (right < heapSize
+                        && comparator.compare(
+                            current[right],
+                            current[smallest]) < 0) {
+                    smallest = right;
+                }
+
+                if (smallest == i) {
+                    break;
+                }
+
+                swap(i, smallest);
+
+                i = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+
+            SortRun  run   = heap[i];
+            Object[] entry = current[i];
+
+            heap[i]    = heap[j];
+            current[i] = current[j];
+            heap[j]    = run;
+            current[j] = entry;
+        }
+    }
+}
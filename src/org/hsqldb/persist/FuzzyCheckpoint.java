@@ -0,0 +1,306 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import org.hsqldb.Database;
+import org.hsqldb.SchemaObject;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.TableBase;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.Iterator;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.navigator.RowSetNavigator;
+import org.hsqldb.result.Result;
+import org.hsqldb.scriptio.ScriptWriterBinary;
+import org.hsqldb.scriptio.ScriptWriterEncode;
+import org.hsqldb.scriptio.ScriptWriterText;
+import org.hsqldb.types.Type;
+
+/**
+ * Writes the .script file of a fuzzy checkpoint in a background thread.<p>
+ *
+ * The DDL and the rows of the MEMORY tables are captured while the
+ * checkpoint holds the catalog lock and no transaction is in progress. The
+ * data array of a row is not modified after the row is inserted, and a
+ * deleted row keeps its data, so the captured references are a consistent
+ * image of the tables at the time of the checkpoint while sessions continue
+ * to change them. The schema and table names and the column types are
+ * captured together with the rows, so that DDL statements executed while
+ * the file is written do not affect its contents.<p>
+ *
+ * The statements executed after the capture are written to a new .log file.
+ * The previous .log file is kept as the prior log until the new .script
+ * file is complete, then both files are switched by Log.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class FuzzyCheckpoint implements Runnable {
+
+    private final Database                  database;
+    private final String                    fileName;
+    private final int                       scriptFormat;
+    private final String[]                  ddl;
+    private final HsqlArrayList<TableImage> tables;
+    private long                            rowCount;
+    private long                            startTime;
+    private volatile boolean                cancelled;
+    private volatile boolean                completed;
+    private Thread                          thread;
+
+    FuzzyCheckpoint(Database database, String fileName) {
+
+        this.database = database;
+        this.fileName = fileName;
+        scriptFormat  = database.logger.propScriptFormat;
+        startTime     = System.currentTimeMillis();
+
+        Result          result = database.getScript(true);
+        RowSetNavigator nav    = result.initialiseNavigator();
+
+        ddl = new String[nav.getSize()];
+
+        for (int i = 0; nav.next(); i++) {
+            ddl[i] = (String) nav.getCurrent()[0];
+        }
+
+        tables = new HsqlArrayList<>();
+
+        captureTables();
+    }
+
+    /**
+     * Captures the rows of all MEMORY tables, including the tables of the
+     * LOBS schema, in the order used by ScriptWriterBase.
+     */
+    private void captureTables() {
+
+        Session  session = database.sessionManager.getSysSession();
+        String[] schemas = database.schemaManager.getSchemaNamesArray();
+
+        for (int i = 0; i < schemas.length; i++) {
+            Iterator<SchemaObject> it =
+                database.schemaManager.databaseObjectIterator(
+                    schemas[i],
+                    SchemaObject.TABLE);
+
+            while (it.hasNext()) {
+                Table t = (Table) it.next();
+
+                if (t.getTableType() != TableBase.MEMORY_TABLE) {
+                    continue;
+                }
+
+                PersistentStore store = t.getRowStore(session);
+                long            size  = store.elementCount();
+                TableImage image = new TableImage(
+                    t,
+                    size > Integer.MAX_VALUE
+                    ? Integer.MAX_VALUE
+                    : (int) size);
+                RowIterator rows = t.rowIteratorForScript(store);
+
+                while (rows.next()) {
+                    image.rows.add(rows.getCurrent());
+                }
+
+                rowCount += image.rows.size();
+
+                if (!image.rows.isEmpty()) {
+                    tables.add(image);
+                }
+            }
+        }
+    }
+
+    void start() {
+
+        thread = new Thread(
+            this,
+            "HSQLDB Checkpoint " + database.getNameString());
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void run() {
+
+        ScriptWriterText writer    = null;
+        long             writeTime = System.currentTimeMillis();
+
+        try {
+            writer = newWriter();
+
+            writeScript(writer);
+            writer.close();
+
+            writer    = null;
+            completed = !cancelled;
+        } catch (Throwable t) {
+            database.logger.logSevereEvent("fuzzy checkpoint failed", t);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (Throwable t) {}
+            }
+        }
+
+        if (completed) {
+            database.logger.logInfoEvent(
+                "checkpointFuzzy script done - rows: " + rowCount
+                + ", capture ms: " + (writeTime - startTime)
+                + ", write ms: " + (System.currentTimeMillis() - writeTime));
+        }
+
+        database.logger.checkpointFuzzyEnd(this);
+    }
+
+    private ScriptWriterText newWriter() {
+
+        Crypto crypto = database.logger.getCrypto();
+
+        if (crypto == null) {
+            if (scriptFormat == 1 || scriptFormat == 2) {
+                return new ScriptWriterBinary(
+                    database,
+                    fileName,
+                    false,
+                    scriptFormat == 2);
+            }
+
+            return new ScriptWriterText(
+                database,
+                fileName,
+                false,
+                scriptFormat == 3);
+        } else {
+            return new ScriptWriterEncode(database, fileName, false, crypto);
+        }
+    }
+
+    private void writeScript(ScriptWriterText writer) {
+
+        for (int i = 0; i < ddl.length; i++) {
+            writer.writeLogStatement(null, ddl[i]);
+        }
+
+        String schemaName = null;
+
+        for (int i = 0; i < tables.size(); i++) {
+            TableImage image = tables.get(i);
+
+            if (!image.schemaName.equals(schemaName)) {
+                schemaName = image.schemaName;
+
+                writer.writeSchemaStatement(schemaName);
+            }
+
+            for (int j = 0; j < image.rows.size(); j++) {
+                if (cancelled) {
+                    return;
+                }
+
+                writer.writeRow(
+                    image.tableName,
+                    image.types,
+                    image.rows.get(j));
+            }
+
+            // release the references to deleted rows
+            tables.set(i, null);
+        }
+    }
+
+    /**
+     * Stops writing the file. The prior log is kept and the file is deleted
+     * by Log.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCompleted() {
+        return completed;
+    }
+
+    int getScriptFormat() {
+        return scriptFormat;
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Waits until the thread writing the file ends.
+     */
+    void join() {
+
+        Thread t = thread;
+
+        if (t == null || t == Thread.currentThread()) {
+            return;
+        }
+
+        boolean interrupted = false;
+
+        while (t.isAlive()) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static class TableImage {
+
+        final String                  schemaName;
+        final String                  tableName;
+        final Type[]                  types;
+        final HsqlArrayList<Object[]> rows;
+
+        TableImage(Table table, int size) {
+
+            schemaName = table.getName().schema.statementName;
+            tableName  = table.getName().statementName;
+            types      = table.getColumnTypes().clone();
+            rows       = new HsqlArrayList<>(size);
+        }
+    }
+}
@@ -141,6 +141,7 @@ public class HsqlDatabaseProperties extends HsqlProperties {
     public static final int FILES_MODIFIED_NEW      = 2;
     public static final int FILES_MODIFIED_NEW_DATA = 3;
     public static final int FILES_NEW               = 4;
+    public static final int FILES_MODIFIED_NEW_LOG  = 5;
 
     //
     private static final String MODIFIED_NO           = "no";
@@ -148,6 +149,7 @@ public class HsqlDatabaseProperties extends HsqlProperties {
     private static final String MODIFIED_YES_NEW      = "yes-new-files";
     private static final String MODIFIED_YES_NEW_DATA = "yes-new-files-data";
     private static final String MODIFIED_NO_NEW       = "no-new-files";
+    private static final String MODIFIED_YES_NEW_LOG  = "yes-new-files-log";
 
     // allowed property metadata
     private static final HashMap<String, PropertyMeta> dbMeta = new HashMap<>(
@@ -229,7 +231,10 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         "hsqldb.cache_file_scale";
     public static final String hsqldb_cache_free_count =
         "hsqldb.cache_free_count";
+    public static final String hsqldb_cache_policy = "hsqldb.cache_policy";
     public static final String hsqldb_cache_rows = "hsqldb.cache_rows";
+    public static final String hsqldb_cache_segments =
+        "hsqldb.cache_segments";
     public static final String hsqldb_cache_size = "hsqldb.cache_size";
     public static final String hsqldb_default_table_type =
         "hsqldb.default_table_type";
@@ -244,9 +249,15 @@ public class HsqlDatabaseProperties extends HsqlProperties {
     public static final String hsqldb_temp_directory = "hsqldb.temp_directory";
     public static final String hsqldb_result_max_memory_rows =
         "hsqldb.result_max_memory_rows";
+    public static final String hsqldb_parallel_threads =
+        "hsqldb.parallel_threads";
     public static final String hsqldb_write_delay     = "hsqldb.write_delay";
     public static final String hsqldb_write_delay_millis =
         "hsqldb.write_delay_millis";
+    public static final String hsqldb_commit_wait_micros =
+        "hsqldb.commit_wait_micros";
+    public static final String hsqldb_checkpoint_fuzzy =
+        "hsqldb.checkpoint_fuzzy";
     public static final String hsqldb_full_log_replay =
         "hsqldb.full_log_replay";
     public static final String hsqldb_large_data      = "hsqldb.large_data";
@@ -396,6 +407,9 @@ public class HsqlDatabaseProperties extends HsqlProperties {
                    newMeta(hsqldb_default_table_type, SQL_PROP, "MEMORY",
                            new String[] {"MEMORY", "CACHED"}));
         dbMeta.put(hsqldb_digest, newMeta(hsqldb_digest, DB_PROP, "MD5"));
+        dbMeta.put(hsqldb_cache_policy,
+                   newMeta(hsqldb_cache_policy, DB_PROP, "LRU",
+                           new String[] {"LRU", "2Q"}));
         dbMeta.put(sql_live_object, newMeta(sql_live_object, DB_PROP, false));
         dbMeta.put(tx_timestamp, newMeta(tx_timestamp, DB_PROP, 0));
 
@@ -475,12 +489,14 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         // integral defaults for user-defined props - sets
         dbMeta.put(hsqldb_write_delay_millis,
                    newMeta(hsqldb_write_delay_millis, DB_PROP, 500, 0, 10000));
+        dbMeta.put(hsqldb_commit_wait_micros,
+                   newMeta(hsqldb_commit_wait_micros, DB_PROP, 0, 0, 100000));
         dbMeta.put(hsqldb_applog, newMeta(hsqldb_applog, DB_PROP, 0, 0, 4));
         dbMeta.put(hsqldb_extlog, newMeta(hsqldb_extlog, DB_PROP, 0, 0, 4));
         dbMeta.put(hsqldb_sqllog, newMeta(hsqldb_sqllog, DB_PROP, 0, 0, 4));
         dbMeta.put(hsqldb_script_format,
                    newMeta(hsqldb_script_format, DB_PROP, 0, new int[] {
-            0, 1, 3
+            0, 1, 2, 3
         }));
         dbMeta.put(hsqldb_lob_file_scale,
                    newMeta(hsqldb_lob_file_scale, DB_PROP, 32, new int[] {
@@ -488,6 +504,8 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         }));
         dbMeta.put(hsqldb_lob_file_compressed,
                    newMeta(hsqldb_lob_file_compressed, DB_PROP, false));
+        dbMeta.put(hsqldb_checkpoint_fuzzy,
+                   newMeta(hsqldb_checkpoint_fuzzy, DB_PROP, false));
 
         // this property is normally 8 - or 1 for old databases from early versions
         dbMeta.put(hsqldb_cache_file_scale,
@@ -508,6 +526,8 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         dbMeta.put(hsqldb_cache_rows,
                    newMeta(hsqldb_cache_rows, DB_PROP, 50000, 100,
                            16 * 1024 * 1024));
+        dbMeta.put(hsqldb_cache_segments,
+                   newMeta(hsqldb_cache_segments, DB_PROP, 1, 1, 64));
         dbMeta.put(hsqldb_cache_free_count,
                    newMeta(hsqldb_cache_free_count, DB_PROP, 512, 0, 4096));
         dbMeta.put(hsqldb_result_max_memory_rows,
@@ -515,6 +535,8 @@ public class HsqlDatabaseProperties extends HsqlProperties {
                            16 * 1024 * 1024));
         dbMeta.put(hsqldb_nio_max_size,
                    newMeta(hsqldb_nio_max_size, DB_PROP, 256, 64, 262144));
+        dbMeta.put(hsqldb_parallel_threads,
+                   newMeta(hsqldb_parallel_threads, DB_PROP, 0, 0, 256));
         dbMeta.put(hsqldb_min_reuse,
                    newMeta(hsqldb_min_reuse, DB_PROP, 0, 0, 1024 * 1024));
     }
@@ -605,8 +627,10 @@ public class HsqlDatabaseProperties extends HsqlProperties {
                 database.logger.getFileAccess(),
                 false);
 
-            if (getIntegerProperty(hsqldb_script_format) == 3) {
-                props.setProperty(hsqldb_script_format, 3);
+            int scriptFormat = getIntegerProperty(hsqldb_script_format);
+
+            if (scriptFormat != 0) {
+                props.setProperty(hsqldb_script_format, scriptFormat);
             }
 
             props.setProperty(hsqldb_version, THIS_VERSION);
@@ -791,6 +815,10 @@ public class HsqlDatabaseProperties extends HsqlProperties {
                 value = MODIFIED_YES_NEW_DATA;
                 break;
 
+            case FILES_MODIFIED_NEW_LOG :
+                value = MODIFIED_YES_NEW_LOG;
+                break;
+
             default :
                 throw Error.runtimeError(
                     ErrorCode.U_S0500,
@@ -811,6 +839,8 @@ public class HsqlDatabaseProperties extends HsqlProperties {
             return FILES_MODIFIED_NEW;
         } else if (MODIFIED_YES_NEW_DATA.equals(value)) {
             return FILES_MODIFIED_NEW_DATA;
+        } else if (MODIFIED_YES_NEW_LOG.equals(value)) {
+            return FILES_MODIFIED_NEW_LOG;
         } else if (MODIFIED_NO_NEW.equals(value)) {
             return FILES_NEW;
         }
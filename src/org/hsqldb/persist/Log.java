@@ -45,9 +45,11 @@ import org.hsqldb.error.HsqlException;
 import org.hsqldb.lib.FileAccess;
 import org.hsqldb.lib.FileUtil;
 import org.hsqldb.scriptio.ScriptReaderBase;
+import org.hsqldb.scriptio.ScriptReaderBinary;
 import org.hsqldb.scriptio.ScriptReaderDecode;
 import org.hsqldb.scriptio.ScriptReaderText;
 import org.hsqldb.scriptio.ScriptWriterBase;
+import org.hsqldb.scriptio.ScriptWriterBinary;
 import org.hsqldb.scriptio.ScriptWriterEncode;
 import org.hsqldb.scriptio.ScriptWriterText;
 
@@ -60,6 +62,9 @@ import org.hsqldb.scriptio.ScriptWriterText;
  *
  *  When using TEXT tables, a data source for each table is also present.<p>
  *
+ *  While a fuzzy checkpoint writes the .script file, the previous .log file
+ *  is kept as a .log.prior file.<p>
+ *
  *  Notes on OpenOffice.org integration.
  *
  *  A Storage API is used when HSQLDB is integrated into OpenOffice.org. All
@@ -69,7 +74,7 @@ import org.hsqldb.scriptio.ScriptWriterText;
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
  * @author Bob Preston (sqlbob@users dot sourceforge.net) - text table support
- * @version 2.7.0
+ * @version 2.7.4
  * @since 1.8.0
  */
 public class Log {
@@ -83,12 +88,16 @@ public class Log {
     private String                 dataFileName;
     private String                 backupFileName;
     private String                 logFileName;
+    private String                 priorLogFileName;
     private boolean                filesReadOnly;
     private long                   maxLogSize;
     private int                    writeDelay;
     private DataFileCache          cache;
     private boolean                isModified;
 
+    // set while the .script file of a fuzzy checkpoint is written
+    private volatile FuzzyCheckpoint fuzzyCheckpoint;
+
     Log(Database db) {
 
         database     = db;
@@ -99,13 +108,14 @@ public class Log {
 
     void initParams() {
 
-        maxLogSize     = database.logger.getLogSize() * 1024L * 1024;
-        writeDelay     = database.logger.getWriteDelay();
-        filesReadOnly  = database.isFilesReadOnly();
-        scriptFileName = baseFileName + Logger.scriptFileExtension;
-        dataFileName   = baseFileName + Logger.dataFileExtension;
-        backupFileName = baseFileName + Logger.backupFileExtension;
-        logFileName    = baseFileName + Logger.logFileExtension;
+        maxLogSize       = database.logger.getLogSize() * 1024L * 1024;
+        writeDelay       = database.logger.getWriteDelay();
+        filesReadOnly    = database.isFilesReadOnly();
+        scriptFileName   = baseFileName + Logger.scriptFileExtension;
+        dataFileName     = baseFileName + Logger.dataFileExtension;
+        backupFileName   = baseFileName + Logger.backupFileExtension;
+        logFileName      = baseFileName + Logger.logFileExtension;
+        priorLogFileName = logFileName + Logger.priorFileExtension;
     }
 
     /**
@@ -120,6 +130,17 @@ public class Log {
 
         int state = properties.getDBModified();
 
+        // continue as modified files
+        if (state == HsqlDatabaseProperties.FILES_MODIFIED_NEW_LOG) {
+            database.logger.logInfoEvent(
+                "open start - state new files and log");
+            renameNewScriptFile();
+            deletePriorLogFile();
+            properties.setDBModified(HsqlDatabaseProperties.FILES_MODIFIED);
+
+            state = HsqlDatabaseProperties.FILES_MODIFIED;
+        }
+
         switch (state) {
 
             case HsqlDatabaseProperties.FILES_NEW :
@@ -130,7 +151,8 @@ public class Log {
                 deleteNewAndOldFiles();
                 deleteOldTempFiles();
                 processScript();
-                processLog();
+                processLog(priorLogFileName);
+                processLog(logFileName);
                 checkpoint();
                 break;
 
@@ -151,6 +173,7 @@ public class Log {
             case HsqlDatabaseProperties.FILES_NOT_MODIFIED :
                 database.logger.logInfoEvent("open start - state not modified");
                 deleteLogFile();
+                deletePriorLogFile();
 
                 /*
                  * if startup is after a SHUTDOWN SCRIPT and there are CACHED
@@ -205,6 +228,7 @@ public class Log {
             database.logger.propScriptFormat);
         properties.setDBModified(HsqlDatabaseProperties.FILES_MODIFIED_NEW);
         deleteLogFile();
+        deletePriorLogFile();
 
         if (cache != null) {
             if (script) {
@@ -351,6 +375,7 @@ public class Log {
 
         closeLog();
         deleteLogFile();
+        deletePriorLogFile();
         renameNewScriptFile();
 
         try {
@@ -389,6 +414,125 @@ public class Log {
         return true;
     }
 
+    /**
+     * Starts a fuzzy checkpoint. The tables are captured and a new .log file
+     * is opened while the caller holds the checkpoint locks. The .script
+     * file is then written in the background and switched with the log files
+     * in checkpointFuzzyEnd(). Returns false if the database has a .data
+     * file or the prior log of a failed fuzzy checkpoint has not been
+     * removed, in which case a blocking checkpoint must be performed.
+     */
+    boolean checkpointFuzzy() {
+
+        if (filesReadOnly) {
+            return true;
+        }
+
+        if (cache != null || fuzzyCheckpoint != null
+                || fa.isStreamElement(priorLogFileName)) {
+            return false;
+        }
+
+        database.logger.setFilesTimestamp(
+            database.txManager.getSystemChangeNumber());
+        database.logger.logInfoEvent("checkpointFuzzy start");
+        synchLog();
+        database.lobManager.synch();
+        deleteOldFiles();
+        deleteNewScriptFile();
+
+        FuzzyCheckpoint checkpoint = new FuzzyCheckpoint(
+            database,
+            scriptFileName + Logger.newFileExtension);
+
+        database.logger.logInfoEvent("checkpointFuzzy captured");
+        closeLog();
+
+        if (!fa.renameElement(logFileName, priorLogFileName)) {
+            database.logger.logWarningEvent(
+                "checkpointFuzzy log rename failed",
+                null);
+            openLog();
+
+            return false;
+        }
+
+        properties.setDBModified(HsqlDatabaseProperties.FILES_MODIFIED);
+        openLog();
+
+        isModified = true;
+
+        database.sessionManager.resetLoggedSchemas();
+
+        fuzzyCheckpoint = checkpoint;
+
+        checkpoint.start();
+
+        return true;
+    }
+
+    /**
+     * Completes a fuzzy checkpoint. Called by the writer thread when the
+     * new .script file is complete, or has failed or been cancelled.
+     */
+    void checkpointFuzzyEnd(FuzzyCheckpoint checkpoint) {
+
+        if (fuzzyCheckpoint != checkpoint) {
+            return;
+        }
+
+        fuzzyCheckpoint = null;
+
+        if (!checkpoint.isCompleted()) {
+            deleteNewScriptFile();
+            database.logger.logInfoEvent("checkpointFuzzy abandoned");
+
+            return;
+        }
+
+        try {
+            properties.setProperty(
+                HsqlDatabaseProperties.hsqldb_script_format,
+                checkpoint.getScriptFormat());
+
+            // the prior log is redundant once the state is saved
+            properties.setDBModified(
+                HsqlDatabaseProperties.FILES_MODIFIED_NEW_LOG);
+            deletePriorLogFile();
+            renameNewScriptFile();
+            properties.setDBModified(HsqlDatabaseProperties.FILES_MODIFIED);
+        } catch (Throwable t) {
+            database.logger.logSevereEvent("checkpointFuzzy end failed", t);
+
+            return;
+        }
+
+        database.logger.logInfoEvent("checkpointFuzzy end");
+    }
+
+    boolean isFuzzyCheckpointRunning() {
+        return fuzzyCheckpoint != null;
+    }
+
+    /**
+     * Waits for a fuzzy checkpoint to end. If cancel is true, the writing of
+     * the .script file is abandoned and the prior log is kept.
+     */
+    void waitFuzzyCheckpoint(boolean cancel) {
+
+        FuzzyCheckpoint checkpoint = fuzzyCheckpoint;
+
+        if (checkpoint == null) {
+            return;
+        }
+
+        if (cancel) {
+            checkpoint.cancel();
+        }
+
+        checkpoint.join();
+    }
+
     /**
      *  Writes out all the rows to a new .data file without fragmentation.
      */
@@ -431,6 +575,7 @@ public class Log {
                         HsqlDatabaseProperties.FILES_MODIFIED_NEW_DATA);
             closeLog();
             deleteLogFile();
+            deletePriorLogFile();
             deleteBackupFile();
             renameNewDataFile();
             renameNewScriptFile();
@@ -553,7 +698,10 @@ public class Log {
         setModified();
     }
 
-    void writeCommitStatement(Session session) {
+    /**
+     * Returns true if the commit must be synched with syncCommit()
+     */
+    boolean writeCommitStatement(Session session) {
 
         dbLogWriter.writeCommitStatement(session);
 
@@ -562,6 +710,8 @@ public class Log {
         }
 
         setModified();
+
+        return dbLogWriter.getWriteDelay() == 0;
     }
 
     private void setModified() {
@@ -580,6 +730,24 @@ public class Log {
         }
     }
 
+    int getSyncCount() {
+
+        ScriptWriterBase writer = dbLogWriter;
+
+        return writer == null
+               ? 0
+               : writer.getSyncCount();
+    }
+
+    void syncCommit(int waitMicros) {
+
+        ScriptWriterBase writer = dbLogWriter;
+
+        if (writer != null) {
+            writer.syncCommit(waitMicros);
+        }
+    }
+
     /**
      * Wrappers for opening-starting / stopping-closing the log file and
      * writer.
@@ -641,13 +809,21 @@ public class Log {
         Crypto           crypto = database.logger.getCrypto();
 
         if (crypto == null) {
-            boolean compressed = database.logger.propScriptFormat == 3;
+            int format = database.logger.propScriptFormat;
 
-            scw = new ScriptWriterText(
-                database,
-                scriptFileName + Logger.newFileExtension,
-                full,
-                compressed);
+            if (format == 1 || format == 2) {
+                scw = new ScriptWriterBinary(
+                    database,
+                    scriptFileName + Logger.newFileExtension,
+                    full,
+                    format == 2);
+            } else {
+                scw = new ScriptWriterText(
+                    database,
+                    scriptFileName + Logger.newFileExtension,
+                    full,
+                    format == 3);
+            }
         } else {
             scw = new ScriptWriterEncode(
                 database,
@@ -673,12 +849,19 @@ public class Log {
             Crypto crypto = database.logger.getCrypto();
 
             if (crypto == null) {
-                boolean compressed = database.logger.propScriptFormat == 3;
-
-                scr = new ScriptReaderText(
-                    database,
-                    scriptFileName,
-                    compressed);
+                int format = database.logger.propScriptFormat;
+
+                if ((format == 1 || format == 2)
+                        && ScriptReaderBinary.isBinaryScript(
+                            fa,
+                            scriptFileName)) {
+                    scr = new ScriptReaderBinary(database, scriptFileName);
+                } else {
+                    scr = new ScriptReaderText(
+                        database,
+                        scriptFileName,
+                        format == 3);
+                }
             } else {
                 scr = new ScriptReaderDecode(
                     database,
@@ -718,16 +901,22 @@ public class Log {
     }
 
     /**
-     * Performs all the commands in the .log file.
+     * Performs all the commands in the .log file, or in the prior log kept
+     * by an unfinished fuzzy checkpoint.
      */
-    private void processLog() {
+    private void processLog(String fileName) {
 
-        if (fa.isStreamElement(logFileName)) {
+        if (fa.isStreamElement(fileName)) {
             boolean fullReplay = database.getURLProperties()
                                          .isPropertyTrue(
                                              HsqlDatabaseProperties.hsqldb_full_log_replay);
 
-            ScriptRunner.runScript(database, logFileName, fullReplay);
+            long startTime = System.currentTimeMillis();
+
+            ScriptRunner.runScript(database, fileName, fullReplay);
+
+            database.logger.logInfoEvent(
+                "log replay - ms: " + (System.currentTimeMillis() - startTime));
         }
     }
 
@@ -799,6 +988,10 @@ public class Log {
         deleteFile(fa, logFileName);
     }
 
+    void deletePriorLogFile() {
+        deleteFile(fa, priorLogFileName);
+    }
+
     void deleteOldFiles() {
 
         try {
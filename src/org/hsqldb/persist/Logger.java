@@ -39,6 +39,7 @@ import java.text.SimpleDateFormat;
 
 import java.util.Locale;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.hsqldb.Database;
 import org.hsqldb.DatabaseType;
@@ -58,7 +59,9 @@ import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.index.IndexAVL;
+import org.hsqldb.index.IndexAVLHash;
 import org.hsqldb.index.IndexAVLMemory;
+import org.hsqldb.index.IndexBTree;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.EventLogInterface;
 import org.hsqldb.lib.FileAccess;
@@ -102,6 +105,10 @@ public class Logger implements EventLogInterface {
     FrameworkLogger fwLogger;
     FrameworkLogger sqlLogger;
 
+    // a lock rather than a monitor, as virtual threads that wait to enter a
+    // monitor are pinned to their carrier thread while the holder does i/o
+    private final ReentrantLock logLock = new ReentrantLock();
+
     //
     private Database database;
     private boolean  logsStatements;    // false indicates Log is being opened
@@ -113,6 +120,8 @@ public class Logger implements EventLogInterface {
     long            propNioMaxSize    = 256 * 1024 * 1024L;
     int             propMaxFreeBlocks = 512;
     private int     propCacheMaxRows;
+    private int     propCacheSegments;
+    private int     propCachePolicy;
     private long    propCacheMaxSize;
     int             propDataFileDefragLimit;
     private int     propDataFileScale;
@@ -120,6 +129,7 @@ public class Logger implements EventLogInterface {
     String          propTextSourceDefault = "";
     boolean         propTextAllowFullPath;
     private int     propWriteDelay;
+    private int     propCommitWait;
     private int     propLogSize;
     private boolean propLogData = true;
     private int     propExternalEventLogLevel;
@@ -130,6 +140,7 @@ public class Logger implements EventLogInterface {
     boolean         propRefIntegrity = true;
     int             propLobBlockSize = 32 * 1024;
     boolean         propCompressLobs;
+    boolean         propCheckpointFuzzy;
     int             propScriptFormat = 0;
     boolean         propLargeData;
     long            propFilesTimestamp;
@@ -141,6 +152,7 @@ public class Logger implements EventLogInterface {
     boolean           cryptLobs;
     public FileAccess fileAccess;
     String            tempDirectoryPath;
+    ChangedBlockMap   changedBlocks;
 
     //
     public TextTableStorageManager textTableManager =
@@ -175,6 +187,7 @@ public class Logger implements EventLogInterface {
     //
     public static final String oldFileExtension        = ".old";
     public static final String newFileExtension        = ".new";
+    public static final String priorFileExtension      = ".prior";
     public static final String appLogFileExtension     = ".app.log";
     public static final String sqlLogFileExtension     = ".sql.log";
     public static final String logFileExtension        = ".log";
@@ -184,6 +197,7 @@ public class Logger implements EventLogInterface {
     public static final String backupFileExtension     = ".backup";
     public static final String lobsFileExtension       = ".lobs";
     public static final String lockFileExtension       = ".lck";
+    public static final String changesFileExtension    = ".changes";
 
     public Logger(Database database) {
         this.database = database;
@@ -309,6 +323,12 @@ public class Logger implements EventLogInterface {
                     HsqlDatabaseProperties.hsqldb_lock_file,
                     false);
             }
+
+            // memory cache and thread settings are not persisted and are
+            // also applied
+            setURLProperty(HsqlDatabaseProperties.hsqldb_cache_segments);
+            setURLProperty(HsqlDatabaseProperties.hsqldb_cache_policy);
+            setURLProperty(HsqlDatabaseProperties.hsqldb_parallel_threads);
         }
 
         setVariables();
@@ -342,6 +362,17 @@ public class Logger implements EventLogInterface {
             acquireLock(database.getPath());
         }
 
+        if (!database.isFilesReadOnly()) {
+            changedBlocks = ChangedBlockMap.read(
+                this,
+                fileAccess,
+                database.getPath() + changesFileExtension);
+
+            // incremental backups cannot be applied after the files are used
+            fileAccess.removeElement(
+                database.getPath() + DbBackup.manifestFileExtension);
+        }
+
         log = new Log(database);
 
         log.open();
@@ -379,6 +410,19 @@ public class Logger implements EventLogInterface {
         }
     }
 
+    /**
+     * Applies a connection URL property to an existing database if the
+     * value is valid.
+     */
+    private void setURLProperty(String name) {
+
+        String value = database.urlProperties.getProperty(name);
+
+        if (value != null) {
+            database.databaseProperties.setDatabaseProperty(name, value);
+        }
+    }
+
     private void setVariables() {
 
         String cryptKey = database.urlProperties.getProperty(
@@ -446,6 +490,19 @@ public class Logger implements EventLogInterface {
                                   HsqlDatabaseProperties.hsqldb_digest);
 
         database.granteeManager.setDigestAlgo(temp);
+        database.setParallelThreads(
+            database.databaseProperties.getIntegerProperty(
+                HsqlDatabaseProperties.hsqldb_parallel_threads));
+
+        propCacheSegments = database.databaseProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_cache_segments);
+
+        String cachePolicy = database.databaseProperties.getStringProperty(
+            HsqlDatabaseProperties.hsqldb_cache_policy);
+
+        propCachePolicy = "2Q".equalsIgnoreCase(cachePolicy)
+                          ? Cache.POLICY_2Q
+                          : Cache.POLICY_LRU;
 
         if (!isNewDatabase) {
             return;
@@ -627,6 +684,11 @@ public class Logger implements EventLogInterface {
             propWriteDelay = 0;
         }
 
+        propCommitWait = database.databaseProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_commit_wait_micros);
+        propCheckpointFuzzy = database.databaseProperties.isPropertyTrue(
+            HsqlDatabaseProperties.hsqldb_checkpoint_fuzzy);
+
         setLogSize(
             database.databaseProperties.getIntegerProperty(
                 HsqlDatabaseProperties.hsqldb_log_size));
@@ -672,6 +734,8 @@ public class Logger implements EventLogInterface {
             return true;
         }
 
+        // the shutdown writes the .script file or leaves the logs for recovery
+        log.waitFuzzyCheckpoint(true);
         log.synchLog();
         database.lobManager.synch();
 
@@ -701,7 +765,8 @@ public class Logger implements EventLogInterface {
 
         logInfoEvent("Database closed");
 
-        log = null;
+        log           = null;
+        changedBlocks = null;
 
         appLog.close();
         sqlLog.close();
@@ -960,67 +1025,143 @@ public class Logger implements EventLogInterface {
      * Records a Log entry for the specified SQL statement, on behalf of
      * the specified Session object.
      */
-    public synchronized void writeOtherStatement(
+    public void writeOtherStatement(
             Session session,
             String statement) {
-        if (loggingEnabled) {
-            log.writeOtherStatement(session, statement);
+
+        logLock.lock();
+
+        try {
+            if (loggingEnabled) {
+                log.writeOtherStatement(session, statement);
+            }
+        } finally {
+            logLock.unlock();
         }
     }
 
     /**
      * Used exclusively by PersistentStore objects
      */
-    public synchronized void writeInsertStatement(
+    public void writeInsertStatement(
             Session session,
             Row row,
             Table table) {
-        if (loggingEnabled) {
-            log.writeInsertStatement(session, row, table);
+
+        logLock.lock();
+
+        try {
+            if (loggingEnabled) {
+                log.writeInsertStatement(session, row, table);
+            }
+        } finally {
+            logLock.unlock();
         }
     }
 
     /**
      * Used exclusively by PersistentStore objects
      */
-    public synchronized void writeDeleteStatement(
+    public void writeDeleteStatement(
             Session session,
             Table t,
             Object[] row) {
-        if (loggingEnabled) {
-            log.writeDeleteStatement(session, t, row);
+
+        logLock.lock();
+
+        try {
+            if (loggingEnabled) {
+                log.writeDeleteStatement(session, t, row);
+            }
+        } finally {
+            logLock.unlock();
         }
     }
 
     /**
      * Used at transaction commit
      */
-    public synchronized void writeSequenceStatement(
+    public void writeSequenceStatement(
             Session session,
             NumberSequence s) {
-        if (loggingEnabled) {
-            log.writeSequenceStatement(session, s);
+
+        logLock.lock();
+
+        try {
+            if (loggingEnabled) {
+                log.writeSequenceStatement(session, s);
+            }
+        } finally {
+            logLock.unlock();
         }
     }
 
     /**
-     * Used at transaction commit
+     * Used at transaction commit. Returns true if syncCommit() must be
+     * called after the transaction locks are released.
      */
-    public synchronized void writeCommitStatement(Session session) {
+    public boolean writeCommitStatement(Session session) {
 
-        if (loggingEnabled) {
-            log.writeCommitStatement(session);
-        } else {
-            if (maxLogSize > 0
-                    && database.lobManager.getUsageChanged() > maxLogSize) {
-                setCheckpointRequired();
+        logLock.lock();
+
+        try {
+            if (loggingEnabled) {
+                return log.writeCommitStatement(session);
+            } else {
+                if (maxLogSize > 0 && database.lobManager.getUsageChanged()
+                                      > maxLogSize) {
+                    setCheckpointRequired();
+                }
             }
+
+            return false;
+        } finally {
+            logLock.unlock();
         }
     }
 
-    public synchronized void synchLog() {
-        if (loggingEnabled) {
-            log.synchLog();
+    /**
+     * Group commit. Returns when the commit statement written by the session
+     * is synched to disk. Sessions that commit at the same time share one
+     * file sync, optionally waiting hsqldb.commit_wait_micros for others to
+     * join.<p>
+     *
+     * This is called after the transaction locks are released, so other
+     * sessions can read the committed changes before they are durable. Any
+     * later commit that depends on them is written after them in the log
+     * and is not durable before them.
+     */
+    public void syncCommit() {
+
+        Log current = log;
+
+        if (current != null) {
+            current.syncCommit(propCommitWait);
+        }
+    }
+
+    /**
+     * Returns the number of file syncs of the current .log file.
+     */
+    public int getLogSyncCount() {
+
+        Log current = log;
+
+        return current == null
+               ? 0
+               : current.getSyncCount();
+    }
+
+    public void synchLog() {
+
+        logLock.lock();
+
+        try {
+            if (loggingEnabled) {
+                log.synchLog();
+            }
+        } finally {
+            logLock.unlock();
         }
     }
 
@@ -1069,16 +1210,39 @@ public class Logger implements EventLogInterface {
         }
     }
 
-    private synchronized void checkpointInternal(
+    private void checkpointInternal(
             Session session,
             boolean defrag) {
 
-        if (logsStatements) {
-            logInfoEvent("Checkpoint start");
-            log.checkpoint(session, defrag);
-            logInfoEvent(
-                "Checkpoint end - txts: "
-                + database.txManager.getSystemChangeNumber());
+        boolean fuzzy = propCheckpointFuzzy && !defrag && session != null;
+
+        // an automatic checkpoint does not wait for a running fuzzy checkpoint
+        if (logsStatements && log.isFuzzyCheckpointRunning()) {
+            if (fuzzy && session.getUser().isSystem()) {
+                logInfoEvent("Checkpoint skipped - fuzzy checkpoint running");
+
+                return;
+            }
+
+            log.waitFuzzyCheckpoint(false);
+        }
+
+        logLock.lock();
+
+        try {
+            if (logsStatements) {
+                logInfoEvent("Checkpoint start");
+
+                if (!fuzzy || !log.checkpointFuzzy()) {
+                    log.checkpoint(session, defrag);
+                }
+
+                logInfoEvent(
+                    "Checkpoint end - txts: "
+                    + database.txManager.getSystemChangeNumber());
+            }
+        } finally {
+            logLock.unlock();
         }
     }
 
@@ -1088,42 +1252,61 @@ public class Logger implements EventLogInterface {
      *
      * @param  megas size in MB
      */
-    public synchronized void setLogSize(int megas) {
+    public void setLogSize(int megas) {
 
-        propLogSize = megas;
-        maxLogSize  = propLogSize * 1024L * 1024;
+        logLock.lock();
 
-        if (log != null) {
-            log.setLogSize(propLogSize);
+        try {
+            propLogSize = megas;
+            maxLogSize  = propLogSize * 1024L * 1024;
+
+            if (log != null) {
+                log.setLogSize(propLogSize);
+            }
+        } finally {
+            logLock.unlock();
         }
     }
 
     /**
      *  Sets logging on or off.
      */
-    public synchronized void setLogData(boolean mode) {
-        propLogData    = mode;
-        loggingEnabled = propLogData && !database.isFilesReadOnly();
-        loggingEnabled &= logsStatements;
+    public void setLogData(boolean mode) {
+
+        logLock.lock();
+
+        try {
+            propLogData    = mode;
+            loggingEnabled = propLogData && !database.isFilesReadOnly();
+            loggingEnabled &= logsStatements;
+        } finally {
+            logLock.unlock();
+        }
     }
 
     /**
-     *  Sets the type of script file, currently 0 for text (default)
-     *  3 for compressed
+     *  Sets the type of script file, currently 0 for text (default),
+     *  1 for binary, 2 for compressed binary and 3 for compressed text
      *
      * @param  format The type
      */
-    public synchronized void setScriptType(int format) {
+    public void setScriptType(int format) {
 
-        if (format == propScriptFormat) {
-            return;
-        }
+        logLock.lock();
 
-        propScriptFormat = format;
+        try {
+            if (format == propScriptFormat) {
+                return;
+            }
 
-        checkpointState.compareAndSet(
-            stateCheckpointNormal,
-            stateCheckpointRequired);
+            propScriptFormat = format;
+
+            checkpointState.compareAndSet(
+                stateCheckpointNormal,
+                stateCheckpointRequired);
+        } finally {
+            logLock.unlock();
+        }
     }
 
     /**
@@ -1139,12 +1322,18 @@ public class Logger implements EventLogInterface {
      *
      * @param delay in milliseconds
      */
-    public synchronized void setWriteDelay(int delay) {
+    public void setWriteDelay(int delay) {
 
-        propWriteDelay = delay;
+        logLock.lock();
 
-        if (log != null) {
-            log.setWriteDelay(delay);
+        try {
+            propWriteDelay = delay;
+
+            if (log != null) {
+                log.setWriteDelay(delay);
+            }
+        } finally {
+            logLock.unlock();
         }
     }
 
@@ -1172,6 +1361,14 @@ public class Logger implements EventLogInterface {
         return propCacheMaxRows;
     }
 
+    public int getCacheSegments() {
+        return propCacheSegments;
+    }
+
+    public int getCachePolicy() {
+        return propCachePolicy;
+    }
+
     public void setCacheSize(int value) {
         propCacheMaxSize = value * 1024L;
     }
@@ -1296,6 +1493,26 @@ public class Logger implements EventLogInterface {
         propCompressLobs = value;
     }
 
+    public void setCheckpointFuzzy(boolean value) {
+        propCheckpointFuzzy = value;
+    }
+
+    /**
+     * Called by the writer thread of a fuzzy checkpoint when it ends.
+     */
+    void checkpointFuzzyEnd(FuzzyCheckpoint checkpoint) {
+
+        logLock.lock();
+
+        try {
+            if (log != null) {
+                log.checkpointFuzzyEnd(checkpoint);
+            }
+        } finally {
+            logLock.unlock();
+        }
+    }
+
     public void setDefagLimit(int value) {
 
         if (value > 0 && value < 25) {
@@ -1359,6 +1576,14 @@ public class Logger implements EventLogInterface {
     }
 
     public boolean needsCheckpointReset() {
+
+        // the required state is kept until a fuzzy checkpoint ends
+        Log current = log;
+
+        if (current != null && current.isFuzzyCheckpointRunning()) {
+            return false;
+        }
+
         return checkpointState.compareAndSet(
             stateCheckpointRequired,
             stateCheckpointDue);
@@ -1402,6 +1627,10 @@ public class Logger implements EventLogInterface {
                     break;
                 }
 
+                if (table.isBTreeIndexed()) {
+                    return new RowStoreBTreeDisk(cache, (Table) table);
+                }
+
                 return new RowStoreAVLDisk(cache, (Table) table);
 
             case TableBase.MEMORY_TABLE :
@@ -1448,6 +1677,70 @@ public class Logger implements EventLogInterface {
             boolean constraint,
             boolean forward) {
 
+        return newIndex(
+            name,
+            id,
+            table,
+            columns,
+            descending,
+            nullsLast,
+            colTypes,
+            pk,
+            unique,
+            constraint,
+            forward,
+            false);
+    }
+
+    /**
+     * Returns a hash index when hash is true and the table and column types
+     * allow it, otherwise an ordinary index for the table type.
+     */
+    public Index newIndex(
+            HsqlName name,
+            long id,
+            TableBase table,
+            int[] columns,
+            boolean[] descending,
+            boolean[] nullsLast,
+            Type[] colTypes,
+            boolean pk,
+            boolean unique,
+            boolean constraint,
+            boolean forward,
+            boolean hash) {
+
+        if (hash && IndexAVLHash.isHashable(table, colTypes)) {
+            return new IndexAVLHash(
+                name,
+                id,
+                table,
+                columns,
+                descending,
+                nullsLast,
+                colTypes,
+                pk,
+                unique,
+                constraint,
+                forward);
+        }
+
+        if (table.getTableType() == TableBase.CACHED_TABLE
+                && table.isBTreeIndexed()) {
+            return new IndexBTree(
+                name,
+                id,
+                table,
+                columns,
+                descending,
+                nullsLast,
+                colTypes,
+                pk,
+                unique,
+                constraint,
+                forward);
+        }
+
         switch (table.getTableType()) {
 
             case TableBase.INFO_SCHEMA_TABLE :
@@ -1650,6 +1943,9 @@ public class Logger implements EventLogInterface {
         map.put(
             HsqlDatabaseProperties.hsqldb_lob_file_compressed,
             String.valueOf(propCompressLobs));
+        map.put(
+            HsqlDatabaseProperties.hsqldb_checkpoint_fuzzy,
+            String.valueOf(propCheckpointFuzzy));
         map.put(
             HsqlDatabaseProperties.hsqldb_cache_file_scale,
             String.valueOf(propDataFileScale));
@@ -1662,6 +1958,14 @@ public class Logger implements EventLogInterface {
         map.put(
             HsqlDatabaseProperties.hsqldb_cache_size,
             String.valueOf(propCacheMaxSize / 1024));
+        map.put(
+            HsqlDatabaseProperties.hsqldb_cache_segments,
+            String.valueOf(propCacheSegments));
+        map.put(
+            HsqlDatabaseProperties.hsqldb_cache_policy,
+            propCachePolicy == Cache.POLICY_2Q
+            ? "2Q"
+            : "LRU");
 
         {
             String prop;
@@ -1728,6 +2032,9 @@ public class Logger implements EventLogInterface {
         map.put(
             HsqlDatabaseProperties.hsqldb_result_max_memory_rows,
             String.valueOf(database.getResultMaxMemoryRows()));
+        map.put(
+            HsqlDatabaseProperties.hsqldb_parallel_threads,
+            String.valueOf(database.getParallelThreads()));
         map.put(
             HsqlDatabaseProperties.hsqldb_readonly,
             database.isReadOnly()
@@ -1744,6 +2051,9 @@ public class Logger implements EventLogInterface {
         map.put(
             HsqlDatabaseProperties.hsqldb_write_delay_millis,
             String.valueOf(propWriteDelay));
+        map.put(
+            HsqlDatabaseProperties.hsqldb_commit_wait_micros,
+            String.valueOf(propCommitWait));
         map.put(
             HsqlDatabaseProperties.hsqldb_digest,
             database.granteeManager.getDigestAlgo());
@@ -2211,6 +2521,15 @@ public class Logger implements EventLogInterface {
         sb.append(propDataFileDefragLimit);
         list.add(sb.toString());
         sb.setLength(0);
+
+        if (propCheckpointFuzzy) {
+            sb.append("SET FILES ").append(Tokens.T_CHECKPOINT).append(' ');
+            sb.append(Tokens.T_FUZZY).append(' ');
+            sb.append(Tokens.T_TRUE);
+            list.add(sb.toString());
+            sb.setLength(0);
+        }
+
         sb.append("SET FILES ").append(Tokens.T_NIO).append(' ');
         sb.append(propNioDataFile
                   ? Tokens.T_TRUE
@@ -2245,31 +2564,48 @@ public class Logger implements EventLogInterface {
             boolean script,
             boolean blocking,
             boolean compressed,
-            boolean files) {
+            boolean files,
+            boolean incremental,
+            int throttle) {
 
         if (!backupState.compareAndSet(stateNormal, stateBackup)) {
             throw Error.error(ErrorCode.BACKUP_ERROR, "backup in progress");
         }
 
+        // the files are consistent only after a fuzzy checkpoint ends
+        if (log != null) {
+            log.waitFuzzyCheckpoint(false);
+        }
+
         if (blocking) {
             database.lobManager.lock();
 
+            logLock.lock();
+
             try {
-                synchronized (this) {
-                    backupInternal(
-                        destPath,
-                        script,
-                        blocking,
-                        compressed,
-                        files);
-                }
+                backupInternal(
+                    destPath,
+                    script,
+                    blocking,
+                    compressed,
+                    files,
+                    incremental,
+                    throttle);
             } finally {
+                logLock.unlock();
                 backupState.set(stateNormal);
                 database.lobManager.unlock();
             }
         } else {
             try {
-                backupInternal(destPath, script, blocking, compressed, files);
+                backupInternal(
+                    destPath,
+                    script,
+                    blocking,
+                    compressed,
+                    files,
+                    incremental,
+                    throttle);
             } finally {
                 backupState.set(stateNormal);
             }
@@ -2288,7 +2624,9 @@ public class Logger implements EventLogInterface {
             boolean script,
             boolean blocking,
             boolean compressed,
-            boolean asFiles) {
+            boolean asFiles,
+            boolean incremental,
+            int throttle) {
 
         String scriptName = null;
         String dbPath     = database.getPath();
@@ -2377,10 +2715,21 @@ public class Logger implements EventLogInterface {
             }
         }
 
+        if (incremental
+                && (changedBlocks == null
+                    || changedBlocks.getBackupId() == null)) {
+            throw Error.error(
+                ErrorCode.BACKUP_ERROR,
+                "no full backup for incremental backup");
+        }
+
         if (blocking) {
             log.checkpointClose();
         }
 
+        ChangedBlockMap.Snapshot snapshot = null;
+        boolean                  done     = false;
+
         try {
             logInfoEvent(
                 "Initiating backup of instance '" + instanceName + "'");
@@ -2416,22 +2765,69 @@ public class Logger implements EventLogInterface {
                 backup = new DbBackup(archiveFile, dbPath);
 
                 backup.setAbortUponModify(false);
+                backup.setRateLimit(throttle * 1024L);
+
+                DataFileCache dataFileCache = null;
+                long          dataLength    = 0;
+
+                if (hasCache()) {
+                    dataFileCache = getCache();
+                    dataLength    = dataFileCache.fileStartFreePosition;
+                }
+
+                if (changedBlocks == null) {
+                    changedBlocks = new ChangedBlockMap(
+                        this,
+                        fileAccess,
+                        dbPath + changesFileExtension,
+                        DataFileCache.shadowPageSize);
+
+                    if (dataFileCache != null) {
+                        dataFileCache.changedBlocks = changedBlocks;
+                    }
+                }
+
+                String backupId = instanceName + '-'
+                                  + System.currentTimeMillis();
+
+                snapshot = changedBlocks.startBackup(backupId, dataLength);
+
+                if (incremental && dataFileCache != null) {
+                    backup.setStream(
+                        dataFileExtension,
+                        DbBackup.blocksFileExtension,
+                        changedBlocks.getInputStream(
+                            snapshot,
+                            dataFileCache.dataFileName));
+                }
+
+                backup.setManifest(
+                    backupId,
+                    incremental
+                    ? snapshot.baseBackupId
+                    : null,
+                    dataLength,
+                    changedBlocks.pageSize,
+                    incremental
+                    ? snapshot.pageCount
+                    : 0);
 
                 if (!blocking) {
                     InputStreamWrapper isw;
                     File               file = null;
 
-                    if (hasCache()) {
-                        DataFileCache dataFileCache = getCache();
-                        RAShadowFile  shadowFile =
+                    if (dataFileCache != null) {
+                        RAShadowFile shadowFile =
                             dataFileCache.getShadowFile();
 
-                        file = new File(dataFileCache.dataFileName);
-                        isw  = new InputStreamWrapper(
-                            new FileInputStream(file));
+                        if (!incremental) {
+                            file = new File(dataFileCache.dataFileName);
+                            isw  = new InputStreamWrapper(
+                                new FileInputStream(file));
 
-                        isw.setSizeLimit(dataFileCache.fileStartFreePosition);
-                        backup.setStream(dataFileExtension, isw);
+                            isw.setSizeLimit(dataLength);
+                            backup.setStream(dataFileExtension, isw);
+                        }
 
                         InputStreamInterface isi = shadowFile.getInputStream();
 
@@ -2458,6 +2854,10 @@ public class Logger implements EventLogInterface {
                 } else {
                     backup.write();
                 }
+
+                done = true;
+
+                changedBlocks.write();
             }
 
             logInfoEvent(
@@ -2472,6 +2872,10 @@ public class Logger implements EventLogInterface {
                 FileUtil.getFileUtil().delete(scriptName);
             }
 
+            if (snapshot != null && !done) {
+                changedBlocks.cancelBackup(snapshot);
+            }
+
             if (blocking) {
                 log.checkpointReopen();
             }
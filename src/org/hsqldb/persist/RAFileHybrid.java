@@ -45,7 +45,7 @@ import org.hsqldb.Database;
  * closed and a new one opened, up to the maximum size.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.3
+ * @version 2.7.4
  * @since 1.7.2
  */
 public final class RAFileHybrid implements RandomAccessInterface {
@@ -56,7 +56,7 @@ public final class RAFileHybrid implements RandomAccessInterface {
     boolean               preNio;
     boolean               isNio;
     long                  initialMaxLength = RAFileNIO.largeBufferSize / 2;
-    RandomAccessInterface store;
+    volatile RandomAccessInterface store;
 
     public RAFileHybrid(
             Database database,
@@ -149,6 +149,10 @@ public final class RAFileHybrid implements RandomAccessInterface {
         return store.setLength(newLength);
     }
 
+    public boolean readAt(long position, byte[] b, int offset, int length) {
+        return store.readAt(position, b, offset, length);
+    }
+
     public Database getDatabase() {
         return null;
     }
@@ -35,10 +35,14 @@ import java.io.FileDescriptor;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 import org.hsqldb.Database;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
@@ -51,10 +55,15 @@ import org.hsqldb.lib.java.JavaSystem;
  * TABLE .data file and cannot be used for TEXT TABLE source files.
  *
  * Once the maximum data file size allowed for NIO is reached, an ordinary
- * ScaledRAFile is used for data access.
+ * ScaledRAFile is used for data access.<p>
+ *
+ * The readAt method reads from the mapped buffers without using the current
+ * buffer and position and can be used by several threads without the
+ * external lock. The buffers are not unmapped while such a read is in
+ * progress.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version  2.7.0
+ * @version  2.7.4
  * @since 1.8.0.5
  */
 final class RAFileNIO implements RandomAccessInterface {
@@ -73,7 +82,11 @@ final class RAFileNIO implements RandomAccessInterface {
     private boolean                 buffersModified;
 
     //
-    private MappedByteBuffer[] buffers = new MappedByteBuffer[]{};
+    private volatile MappedByteBuffer[] buffers = new MappedByteBuffer[]{};
+
+    // prevents unmapping during readAt()
+    private final ReadWriteLock mapLock = new ReentrantReadWriteLock();
+    private boolean             isClosed;
 
     //
     private static final String JVM_ERROR = "NIO access failed";
@@ -337,15 +350,66 @@ final class RAFileNIO implements RandomAccessInterface {
         }
     }
 
+    public boolean readAt(long position, byte[] b, int offset, int length) {
+
+        mapLock.readLock().lock();
+
+        try {
+            if (isClosed) {
+                return false;
+            }
+
+            MappedByteBuffer[] current = buffers;
+
+            while (length > 0) {
+                int bufferIndex = (int) (position >> largeBufferScale);
+
+                if (bufferIndex >= current.length) {
+                    return false;
+                }
+
+                ByteBuffer source = current[bufferIndex].duplicate();
+                int bufferOffset = (int) (position & ~largeBufferMask);
+                int transferLength = source.limit() - bufferOffset;
+
+                if (transferLength <= 0) {
+                    return false;
+                }
+
+                if (transferLength > length) {
+                    transferLength = length;
+                }
+
+                source.position(bufferOffset);
+                source.get(b, offset, transferLength);
+
+                position += transferLength;
+                offset   += transferLength;
+                length   -= transferLength;
+            }
+
+            return true;
+        } catch (Throwable t) {
+            logger.logWarningEvent(JVM_ERROR, t);
+
+            return false;
+        } finally {
+            mapLock.readLock().unlock();
+        }
+    }
+
     public void close() throws IOException {
 
         Throwable thrown = null;
 
+        mapLock.writeLock().lock();
+
         try {
             logger.logDetailEvent("NIO file close, size: " + fileLength);
 
-            buffer  = null;
-            channel = null;
+            isClosed = true;
+            buffer   = null;
+            channel  = null;
 
             for (int i = 0; i < buffers.length; i++) {
                 thrown     = JavaSystem.unmap(buffers[i]);
@@ -360,6 +424,8 @@ final class RAFileNIO implements RandomAccessInterface {
 
             throw io;
         } finally {
+            mapLock.writeLock().unlock();
+
             if (thrown != null) {
                 logger.logWarningEvent("NIO buffer unmap exception", thrown);
             }
@@ -35,7 +35,7 @@ import java.io.IOException;
 
 /**
 * @author Fred Toussi (fredt@users dot sourceforge.net)
-* @version  2.2.9
+* @version  2.7.4
 * @since 2.0.0
 */
 public interface RandomAccessInterface {
@@ -69,4 +69,14 @@ public interface RandomAccessInterface {
     boolean ensureLength(long newLong);
 
     boolean setLength(long newLength);
+
+    /**
+     * Copies bytes from the given file position without using or changing
+     * the file pointer. Implementations that support this can be called by
+     * several threads at the same time and concurrently with the other
+     * methods. Returns false if the bytes were not read.
+     */
+    default boolean readAt(long position, byte[] b, int offset, int length) {
+        return false;
+    }
 }
@@ -31,6 +31,8 @@
 
 package org.hsqldb.persist;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -54,6 +56,7 @@ import org.hsqldb.index.IndexStats;
 import org.hsqldb.index.NodeAVL;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.LongKeyHashMap;
+import org.hsqldb.lib.WrapperIterator;
 import org.hsqldb.navigator.RowIterator;
 import org.hsqldb.rowio.RowInputInterface;
 import org.hsqldb.types.LobData;
@@ -63,7 +66,7 @@ import org.hsqldb.types.Type;
  * Base implementation of PersistentStore for different table types.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public abstract class RowStoreAVL implements PersistentStore {
@@ -568,6 +571,8 @@ public abstract class RowStoreAVL implements PersistentStore {
             int[] colIndex,
             int adjust) {
 
+        ExternalSort[] sorts = getIndexSorts(session);
+
         try {
             Table       table = (Table) this.table;
             RowIterator it    = other.rowIterator();
@@ -611,7 +616,15 @@ public abstract class RowStoreAVL implements PersistentStore {
                 // get object without RowAction
                 Row newrow = (Row) getNewCachedObject(session, data, false);
 
-                indexRow(session, newrow);
+                if (sorts == null) {
+                    indexRow(session, newrow);
+                } else {
+                    addIndexEntries(session, sorts, newrow);
+                }
+            }
+
+            if (sorts != null) {
+                buildIndexes(session, sorts);
             }
 
             if (table.isTemp()) {
@@ -661,9 +674,168 @@ public abstract class RowStoreAVL implements PersistentStore {
             }
         } catch (OutOfMemoryError e) {
             throw Error.error(ErrorCode.OUT_OF_MEMORY, e);
+        } finally {
+            if (sorts != null) {
+                for (int i = 0; i < sorts.length; i++) {
+                    sorts[i].close();
+                }
+            }
         }
     }
 
+    /**
+     * Returns the sorts used by moveData() to build the indexes in bulk, or
+     * null if each row is indexed when it is added.
+     */
+    ExternalSort[] getIndexSorts(Session session) {
+        return null;
+    }
+
+    /**
+     * Adds the entries for a row to the sorts of the indexes.
+     */
+    void addIndexEntries(Session session, ExternalSort[] sorts, Row row) {
+
+        Object[] data = row.getData();
+
+        for (int i = 0; i < indexList.length; i++) {
+            IndexAVL index = (IndexAVL) indexList[i];
+
+            if (index.isIndexed(session, data)) {
+                sorts[i].add(index.getEntry(session, data, row.getPos()));
+            }
+        }
+
+        if (sorts[0].isRunFull()) {
+            ExternalSort.sortRuns(database, sorts);
+
+            for (int i = 0; i < sorts.length; i++) {
+                sorts[i].writeRun();
+            }
+        }
+    }
+
+    /**
+     * Builds the indexes in bulk after moveData() has added all the rows.
+     */
+    void buildIndexes(Session session, ExternalSort[] sorts) {}
+
+    /**
+     * Builds a new index in bulk from rows that have empty nodes for the
+     * index. The rows are sorted in memory.
+     */
+    void buildIndex(Session session, IndexAVL index, Object[] rows, int count) {
+
+        index.sortRows(session, rows, count);
+        index.checkDuplicateRows(session, this, rows, count);
+        index.build(session, this, new WrapperIterator<Row>(rows), count);
+    }
+
+    /**
+     * Adds new rows to an empty store and builds each index in bulk. Used
+     * for loading the rows of a MEMORY table from the .script file. When the
+     * database allows parallel execution, the indexes are built at the same
+     * time on the threads of the parallel pool, each with its own session.
+     */
+    public void loadRows(Session session, Object[] rows, int count) {
+
+        writeLock();
+
+        try {
+            if (indexList.length < 2 || database.getParallelThreads() == 0) {
+                for (int i = 0; i < indexList.length; i++) {
+                    buildIndex(session, i, rows, count);
+                }
+            } else {
+                buildIndexesParallel(session, rows, count);
+            }
+
+            setElementCount(count);
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    private void buildIndexesParallel(
+            final Session session,
+            final Object[] rows,
+            final int count) {
+
+        ForkJoinPool      pool  = database.getParallelPool();
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[indexList.length];
+        Throwable         error = null;
+
+        for (int i = 1; i < indexList.length; i++) {
+            final int position = i;
+
+            tasks[i] = pool.submit(new Runnable() {
+
+                public void run() {
+
+                    Session indexSession =
+                        database.sessionManager.newSysSession(
+                            session.getCurrentSchemaHsqlName(),
+                            session.getUser());
+
+                    buildIndex(indexSession, position, rows, count);
+                }
+            });
+        }
+
+        try {
+            buildIndex(session, 0, rows, count);
+        } catch (Throwable t) {
+            error = t;
+        }
+
+        for (int i = 1; i < tasks.length; i++) {
+            try {
+                tasks[i].join();
+            } catch (Throwable t) {
+                if (error == null) {
+                    error = t.getCause() == null
+                            ? t
+                            : t.getCause();
+                }
+            }
+        }
+
+        if (error == null) {
+            return;
+        }
+
+        if (error instanceof HsqlException) {
+            throw (HsqlException) error;
+        }
+
+        throw Error.error(ErrorCode.GENERAL_ERROR, error);
+    }
+
+    /**
+     * Builds the index at the given position from the rows that qualify for
+     * the index.
+     */
+    private void buildIndex(
+            Session session,
+            int position,
+            Object[] rows,
+            int count) {
+
+        IndexAVL index      = (IndexAVL) indexList[position];
+        Object[] indexRows  = new Object[count];
+        int      indexCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            Row row = (Row) rows[i];
+
+            if (index.isIndexed(session, row.getData())) {
+                indexRows[indexCount++] = row;
+            }
+        }
+
+        buildIndex(session, index, indexRows, indexCount);
+    }
+
     public void reindex(Session session, Index index, Index useIndex) {
 
         writeLock();
@@ -684,7 +856,7 @@ public abstract class RowStoreAVL implements PersistentStore {
             while (it.next()) {
                 RowAVL row = (RowAVL) it.getCurrentRow();
 
-                row.getNode(index.getPosition()).delete();
+                row.resetNode(index);
                 index.insert(session, this, row);
             }
         } finally {
@@ -753,18 +925,28 @@ public abstract class RowStoreAVL implements PersistentStore {
             HsqlException error    = null;
 
             try {
+                Object[] rows = new Object[(int) elementCount()];
+
                 while (it.next()) {
                     Row row = it.getCurrentRow();
 
-                    ((RowAVL) row).insertNode(position);
+                    ((RowAVL) row).insertNode(newIndex);
 
-                    // count before inserting
-                    rowCount++;
+                    if (!newIndex.isIndexed(session, row.getData())) {
+                        continue;
+                    }
+
+                    if (rowCount == rows.length) {
+                        rows = (Object[]) ArrayUtil.resizeArray(
+                            rows,
+                            rowCount * 2 + 16);
+                    }
 
-                    newIndex.insert(session, this, row);
+                    rows[rowCount++] = row;
                 }
 
                 it.release();
+                buildIndex(session, (IndexAVL) newIndex, rows, rowCount);
 
                 return true;
             } catch (OutOfMemoryError e) {
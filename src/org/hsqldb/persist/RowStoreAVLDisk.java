@@ -45,11 +45,14 @@ import org.hsqldb.Table;
 import org.hsqldb.TransactionManager;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.error.HsqlException;
 import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexAVL;
 import org.hsqldb.index.NodeAVL;
 import org.hsqldb.index.NodeAVLDisk;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.DoubleLongIndex;
+import org.hsqldb.lib.Iterator;
 import org.hsqldb.lib.LongKeyHashMap;
 import org.hsqldb.lib.LongLookup;
 import org.hsqldb.navigator.RowIterator;
@@ -60,7 +63,7 @@ import org.hsqldb.rowio.RowOutputInterface;
  * Implementation of PersistentStore for CACHED tables.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.9.0
  */
 public class RowStoreAVLDisk extends RowStoreAVL {
@@ -93,7 +96,7 @@ public class RowStoreAVLDisk extends RowStoreAVL {
         return false;
     }
 
-    private void set(CachedObject object) {
+    void set(CachedObject object) {
 
         if (database.txManager.isMVRows()) {
             RowAction action = rowActionMap.get(object.getPos());
@@ -126,7 +129,7 @@ public class RowStoreAVLDisk extends RowStoreAVL {
 
         int size = object.getRealSize(rowOut);
 
-        size += indexList.length * NodeAVLDisk.SIZE_IN_BYTE;
+        size += getNodesStorageSize();
         size = rowOut.getStorageSize(size);
 
         object.setStorageSize(size);
@@ -152,6 +155,13 @@ public class RowStoreAVLDisk extends RowStoreAVL {
         storageSize += size;
     }
 
+    /**
+     * Returns the size of the index nodes stored with each row
+     */
+    int getNodesStorageSize() {
+        return indexList.length * NodeAVLDisk.SIZE_IN_BYTE;
+    }
+
     public boolean canRead(Session session, long pos, int mode, int[] colMap) {
 
         if (database.txManager.isMVRows()) {
@@ -591,7 +601,7 @@ public class RowStoreAVLDisk extends RowStoreAVL {
         moveDataToNewSpace(targetCache, pointerLookup);
     }
 
-    private DoubleLongIndex getPointerList() {
+    DoubleLongIndex getPointerList() {
 
         DoubleLongIndex pointerLookup = new DoubleLongIndex(
             (int) elementCount());
@@ -601,7 +611,7 @@ public class RowStoreAVLDisk extends RowStoreAVL {
         return pointerLookup;
     }
 
-    private void populatePointerList(LongLookup pointerLookup) {
+    void populatePointerList(LongLookup pointerLookup) {
 
         RowIterator it = indexList[0].firstRow(this);
 
@@ -614,7 +624,7 @@ public class RowStoreAVLDisk extends RowStoreAVL {
         pointerLookup.sort();
     }
 
-    private void moveDataToNewSpace(
+    void moveDataToNewSpace(
             DataFileCache targetCache,
             LongLookup pointerLookup) {
 
@@ -642,7 +652,7 @@ public class RowStoreAVLDisk extends RowStoreAVL {
         }
     }
 
-    private void removeDefaultSpaces(LongLookup removeList) {
+    void removeDefaultSpaces(LongLookup removeList) {
 
         DataSpaceManager manager = cache.spaceManager;
         int              scale   = cache.getDataFileScale();
@@ -675,6 +685,115 @@ public class RowStoreAVLDisk extends RowStoreAVL {
         return row.getStorageSize() * elementCount.get();
     }
 
+    ExternalSort[] getIndexSorts(Session session) {
+
+        if (indexList.length == 0 || table.isSystemVersioned()) {
+            return null;
+        }
+
+        ExternalSort[] sorts = new ExternalSort[indexList.length];
+
+        for (int i = 0; i < indexList.length; i++) {
+            sorts[i] = newIndexSort(session, indexList[i]);
+        }
+
+        return sorts;
+    }
+
+    ExternalSort newIndexSort(Session session, Index index) {
+
+        IndexAVL avl = (IndexAVL) index;
+
+        return new ExternalSort(
+            database,
+            avl.getEntryTypes(),
+            avl.getEntryComparator(session),
+            ExternalSort.RUN_SIZE);
+    }
+
+    void buildIndexes(Session session, ExternalSort[] sorts) {
+
+        writeLock();
+
+        try {
+            ExternalSort.sortRuns(database, sorts);
+            elementCount.set(sorts[0].size());
+
+            for (int i = 0; i < indexList.length; i++) {
+                buildIndex(session, indexList[i], sorts[i]);
+            }
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Builds the index from the sorted entries. A duplicate key in a unique
+     * index is reported after the index is complete, so that all the rows
+     * can be found when the store is removed.
+     */
+    void buildIndex(Session session, Index index, ExternalSort sort) {
+
+        final EntryIterator entries = new EntryIterator(
+            session,
+            (IndexAVL) index,
+            sort.iterator());
+        Iterator<Row> rows = new Iterator<Row>() {
+
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            public Row next() {
+                return (Row) get(entries.nextPos(), false);
+            }
+        };
+
+        ((IndexAVL) index).build(session, this, rows, sort.size());
+        entries.checkDuplicates();
+    }
+
+    /**
+     * Rebuilds the index in bulk with an external sort of its entries.
+     */
+    public void reindex(Session session, Index index, Index useIndex) {
+
+        writeLock();
+
+        try {
+            ExternalSort sort = newIndexSort(session, index);
+            RowIterator  it;
+
+            if (useIndex == null) {
+                it = table.rowIterator(this);
+            } else {
+                it = useIndex.firstRow(this);
+            }
+
+            try {
+                while (it.next()) {
+                    Row row = it.getCurrentRow();
+
+                    if (index.isIndexed(session, row.getData())) {
+                        sort.add(
+                            ((IndexAVL) index).getEntry(
+                                session,
+                                row.getData(),
+                                row.getPos()));
+                    }
+                }
+
+                it.release();
+                setAccessor(index, null);
+                buildIndex(session, index, sort);
+            } finally {
+                sort.close();
+            }
+        } finally {
+            writeUnlock();
+        }
+    }
+
     public void readLock() {
         readLock.lock();
     }
@@ -690,4 +809,58 @@ public class RowStoreAVLDisk extends RowStoreAVL {
     public void writeUnlock() {
         writeLock.unlock();
     }
+
+    /**
+     * Iterates over the sorted entries for an index and keeps the first
+     * duplicate key found in a unique index.
+     */
+    static class EntryIterator implements Iterator<Object[]> {
+
+        final Session            session;
+        final IndexAVL           index;
+        final Iterator<Object[]> it;
+        Object[]                 lastEntry;
+        HsqlException            error;
+
+        EntryIterator(Session session, IndexAVL index, Iterator<Object[]> it) {
+            this.session = session;
+            this.index   = index;
+            this.it      = it;
+        }
+
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        public Object[] next() {
+
+            Object[] entry = it.next();
+
+            if (lastEntry != null && error == null) {
+                try {
+                    index.checkDuplicateEntry(session, lastEntry, entry);
+                } catch (HsqlException e) {
+                    error = e;
+                }
+            }
+
+            lastEntry = entry;
+
+            return entry;
+        }
+
+        long nextPos() {
+
+            Object[] entry = next();
+
+            return ((Long) entry[entry.length - 1]).longValue();
+        }
+
+        void checkDuplicates() {
+
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
 }
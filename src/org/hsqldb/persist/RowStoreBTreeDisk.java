@@ -0,0 +1,401 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import org.hsqldb.Row;
+import org.hsqldb.RowBTreeDisk;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexBTree;
+import org.hsqldb.index.IndexStats;
+import org.hsqldb.index.NodeBTree;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.DoubleLongIndex;
+import org.hsqldb.lib.LongLookup;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.rowio.RowInputInterface;
+
+/*
+ * Implementation of PersistentStore for CACHED tables with B+tree indexes.
+ * The rows are stored without index nodes and each index is stored in pages
+ * allocated in the space of the table. The accessor of each index is the
+ * root page.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class RowStoreBTreeDisk extends RowStoreAVLDisk {
+
+    BTreePageStore[] pageStores;
+
+    public RowStoreBTreeDisk(DataFileCache cache, Table table) {
+
+        super(cache, table);
+
+        pageStores = getPageStores(indexList);
+    }
+
+    private BTreePageStore[] getPageStores(Index[] keys) {
+
+        BTreePageStore[] stores = new BTreePageStore[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            stores[i] = new BTreePageStore(this, (IndexBTree) keys[i]);
+        }
+
+        return stores;
+    }
+
+    int getNodesStorageSize() {
+        return 0;
+    }
+
+    public CachedObject get(RowInputInterface in) {
+
+        Row row = new RowBTreeDisk(this, in);
+
+        set(row);
+
+        return row;
+    }
+
+    public CachedObject getNewCachedObject(
+            Session session,
+            Object object,
+            boolean tx) {
+
+        Row row = new RowBTreeDisk(table, (Object[]) object, this);
+
+        add(session, row, tx);
+
+        return row;
+    }
+
+    public void removeAll() {
+
+        if (cache.spaceManager.isMultiSpace()
+                && tableSpace.isDefaultSpace()) {
+            DoubleLongIndex pointerLookup = new DoubleLongIndex(
+                (int) elementCount() + 16);
+
+            populatePointerList(pointerLookup);
+
+            for (int i = 0; i < indexList.length; i++) {
+                ((IndexBTree) indexList[i]).addPagePositions(
+                    this,
+                    pointerLookup);
+            }
+
+            pointerLookup.sort();
+            removeDefaultSpaces(pointerLookup);
+            elementCount.set(0);
+            ArrayUtil.fillArray(accessorList, null);
+        } else {
+            super.removeAll();
+        }
+
+        for (int i = 0; i < indexList.length; i++) {
+            ((IndexBTree) indexList[i]).setModified();
+        }
+    }
+
+    public PersistentStore getAccessorStore(Index index) {
+        return pageStores[index.getPosition()];
+    }
+
+    public CachedObject getAccessor(Index key) {
+
+        int position = key.getPosition();
+
+        if (position >= accessorList.length) {
+            throw Error.runtimeError(ErrorCode.U_S0500, "RowStoreBTreeDisk");
+        }
+
+        CachedObject page = accessorList[position];
+
+        if (page == null) {
+            return null;
+        }
+
+        page                   = pageStores[position].get(page.getPos(), false);
+        accessorList[position] = page;
+
+        return page;
+    }
+
+    public void setAccessor(Index key, long accessor) {
+
+        CachedObject page = pageStores[key.getPosition()].get(accessor, false);
+
+        setAccessor(key, page);
+    }
+
+    public void resetAccessorKeys(Session session, Index[] keys) {
+
+        super.resetAccessorKeys(session, keys);
+
+        pageStores = getPageStores(indexList);
+    }
+
+    public void moveDataToSpace(Session session) {
+
+        Table table    = (Table) this.table;
+        long  rowCount = elementCount();
+
+        if (rowCount == 0) {
+            return;
+        }
+
+        if (rowCount > Integer.MAX_VALUE) {
+
+            // error too big
+            return;
+        }
+
+        writeLock();
+
+        ExternalSort[] sorts = new ExternalSort[indexList.length];
+
+        try {
+            DoubleLongIndex pointerLookup = getPointerList();
+            LongLookup      removeList    = pointerLookup.duplicate();
+
+            moveDataToNewSpace(cache, pointerLookup);
+
+            for (int i = 0; i < indexList.length; i++) {
+                IndexBTree index = (IndexBTree) indexList[i];
+
+                sorts[i] = newIndexSort(session, index);
+
+                index.addEntries(this, sorts[i], pointerLookup);
+                index.addPagePositions(this, removeList);
+            }
+
+            removeList.sort();
+            removeDefaultSpaces(removeList);
+
+            IndexBTree.PageWriter writer = new FileWriter(cache, tableSpace);
+
+            for (int i = 0; i < indexList.length; i++) {
+                IndexBTree index = (IndexBTree) indexList[i];
+                NodeBTree  root  = index.build(sorts[i].iterator(), writer);
+
+                sorts[i].close();
+                setAccessor(index, root);
+            }
+        } finally {
+            for (int i = 0; i < sorts.length; i++) {
+                if (sorts[i] != null) {
+                    sorts[i].close();
+                }
+            }
+
+            writeUnlock();
+        }
+
+        database.logger.logDetailEvent("table written " + table.getName().name);
+    }
+
+    /**
+     * Writes the pages of the indexes to the target file after the rows have
+     * been moved with moveDataToSpace(). Returns the roots.
+     */
+    public long[] movePagesToSpace(
+            Session session,
+            DataFileCache targetCache,
+            LongLookup pointerLookup) {
+
+        long[] roots = new long[indexList.length];
+        TableSpaceManager targetSpace = targetCache.spaceManager.getTableSpace(
+            table.getSpaceID());
+        IndexBTree.PageWriter writer = new FileWriter(targetCache, targetSpace);
+
+        for (int i = 0; i < indexList.length; i++) {
+            IndexBTree   index = (IndexBTree) indexList[i];
+            ExternalSort sort  = newIndexSort(session, index);
+
+            try {
+                index.addEntries(this, sort, pointerLookup);
+
+                NodeBTree root = index.build(sort.iterator(), writer);
+
+                roots[i] = root == null
+                           ? -1
+                           : root.getPos();
+            } finally {
+                sort.close();
+            }
+        }
+
+        return roots;
+    }
+
+    void buildIndex(Session session, Index index, ExternalSort sort) {
+
+        IndexBTree    btree   = (IndexBTree) index;
+        EntryIterator entries = new EntryIterator(
+            session,
+            btree,
+            sort.iterator());
+        NodeBTree root = btree.build(entries, new CacheWriter());
+
+        setAccessor(btree, root);
+        entries.checkDuplicates();
+    }
+
+    public void reindex(Session session, Index index, Index useIndex) {
+
+        writeLock();
+
+        try {
+            int            position = index.getPosition();
+            IndexBTree     newIndex = (IndexBTree) index;
+            BTreePageStore oldStore = pageStores[position];
+            ExternalSort   sort     = newIndexSort(session, newIndex);
+            RowIterator    it;
+
+            if (useIndex == null) {
+                it = table.rowIterator(this);
+            } else {
+                it = useIndex.firstRow(this);
+            }
+
+            try {
+                while (it.next()) {
+                    Row row = it.getCurrentRow();
+
+                    if (newIndex.isIndexed(session, row.getData())) {
+                        sort.add(
+                            newIndex.getEntry(
+                                session,
+                                row.getData(),
+                                row.getPos()));
+                    }
+                }
+
+                it.release();
+
+                if (accessorList[position] != null) {
+                    DoubleLongIndex pageList = new DoubleLongIndex(16);
+
+                    oldStore.getIndex().addPagePositions(this, pageList);
+
+                    for (int i = 0; i < pageList.size(); i++) {
+                        oldStore.removePage(pageList.getLongKey(i));
+                    }
+                }
+
+                oldStore.getIndex().setModified();
+
+                pageStores[position] = new BTreePageStore(this, newIndex);
+
+                setAccessor(newIndex, null);
+                buildIndex(session, newIndex, sort);
+            } finally {
+                sort.close();
+            }
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    public IndexStats[] checkIndexes(Session session, int mode) {
+
+        IndexStats[] indexStats = new IndexStats[indexList.length];
+
+        for (int i = 0; i < indexList.length; i++) {
+            IndexBTree index = (IndexBTree) indexList[i];
+
+            indexStats[i] = index.checkIndex(session, this);
+        }
+
+        return indexStats;
+    }
+
+    long getStorageSizeEstimate() {
+
+        if (elementCount.get() == 0) {
+            return 0;
+        }
+
+        RowIterator it = indexList[0].firstRow(this);
+
+        if (!it.next()) {
+            return 0;
+        }
+
+        return it.getCurrentRow().getStorageSize() * elementCount.get();
+    }
+
+    /**
+     * Adds the pages built in bulk to the cache
+     */
+    class CacheWriter implements IndexBTree.PageWriter {
+
+        public long getFilePosition() {
+            return tableSpace.getFilePosition(NodeBTree.PAGE_SIZE);
+        }
+
+        public void write(NodeBTree page) {
+            page.setStorageSize(NodeBTree.PAGE_SIZE);
+            cache.add(page, false);
+        }
+    }
+
+    /**
+     * Writes the pages built in bulk directly to the file
+     */
+    static class FileWriter implements IndexBTree.PageWriter {
+
+        final DataFileCache     targetCache;
+        final TableSpaceManager targetSpace;
+
+        FileWriter(DataFileCache targetCache, TableSpaceManager targetSpace) {
+            this.targetCache = targetCache;
+            this.targetSpace = targetSpace;
+        }
+
+        public long getFilePosition() {
+            return targetSpace.getFilePosition(NodeBTree.PAGE_SIZE);
+        }
+
+        public void write(NodeBTree page) {
+            targetCache.rowOut.reset();
+            page.write(targetCache.rowOut);
+            targetCache.saveRowOutput(page.getPos());
+            page.setChanged(false);
+        }
+    }
+}
@@ -56,7 +56,7 @@ import org.hsqldb.types.Types;
  *
  * @author Bob Preston (sqlbob@users dot sourceforge.net)
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.5.0
+ * @version 2.7.4
  * @since 1.7.0
  */
 public class RowOutputBinary extends RowOutputBase {
@@ -349,7 +349,7 @@ public class RowOutputBinary extends RowOutputBase {
         return s;
     }
 
-    private int getSize(Object o, Type type) {
+    public static int getSize(Object o, Type type) {
 
         int s = 1;    // type or null
 
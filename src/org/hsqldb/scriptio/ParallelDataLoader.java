@@ -0,0 +1,351 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.scriptio;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+
+import org.hsqldb.Database;
+import org.hsqldb.Row;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.Iterator;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.persist.RowStoreAVL;
+import org.hsqldb.rowio.RowInputTextLog;
+import org.hsqldb.types.Type;
+
+/**
+ * Loads the INSERT lines of the data section of a .script file into the
+ * MEMORY tables using the threads of the parallel pool of the database.<p>
+ *
+ * The reader thread passes the lines in batches to tasks that decode the
+ * rows. When all the lines of a table have been read, a task for the table
+ * creates the rows in the order of the lines and builds the indexes of the
+ * table in bulk, one index per thread. The reader thread continues with the
+ * next table in the meantime. The count of batches waiting to be decoded is
+ * limited.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+class ParallelDataLoader {
+
+    static final int batchSize = 4096;
+
+    //
+    private final ScriptReaderText                reader;
+    private final Database                        database;
+    private final Session                         session;
+    private final ForkJoinPool                    pool;
+    private final Semaphore                       batchPermits;
+    private final HashMap<Table, ForkJoinTask<?>> tableTasks;
+    private TableLoader                           currentLoader;
+    private String[]                              lines;
+    private long[]                                lineNumbers;
+    private int                                   lineCount;
+    private long                                  rowCount;
+    private int                                   tableCount;
+    private volatile Throwable                    error;
+    private volatile long                         errorLineNumber;
+    private volatile boolean                      cancelled;
+
+    ParallelDataLoader(ScriptReaderText reader, Session session) {
+
+        this.reader       = reader;
+        this.database     = reader.database;
+        this.session      = session;
+        this.pool         = database.getParallelPool();
+        this.batchPermits = new Semaphore(database.getParallelThreads() * 4);
+        this.tableTasks   = new HashMap<>();
+    }
+
+    /**
+     * Adds an INSERT line for the table.
+     */
+    void insert(
+            Table table,
+            PersistentStore store,
+            String statement,
+            long lineNumber) {
+
+        checkError();
+
+        if (currentLoader == null || currentLoader.table != table) {
+            finishTable();
+
+            ForkJoinTask<?> previous = tableTasks.get(table);
+
+            // lines for a table that is already loaded are added to it
+            if (previous != null) {
+                join(previous);
+            }
+
+            currentLoader = new TableLoader(table, store, lineNumber);
+        }
+
+        if (lines == null) {
+            lines       = new String[batchSize];
+            lineNumbers = new long[batchSize];
+        }
+
+        lines[lineCount]       = statement;
+        lineNumbers[lineCount] = lineNumber;
+
+        lineCount++;
+        rowCount++;
+
+        if (lineCount == batchSize) {
+            submitBatch();
+        }
+    }
+
+    /**
+     * Ends the lines for the current table.
+     */
+    void finishTable() {
+
+        if (currentLoader == null) {
+            return;
+        }
+
+        if (lineCount > 0) {
+            submitBatch();
+        }
+
+        if (tableTasks.put(currentLoader.table, pool.submit(currentLoader))
+                == null) {
+            tableCount++;
+        }
+
+        currentLoader = null;
+    }
+
+    /**
+     * Waits for all the tasks. Throws the first error if check is true,
+     * otherwise the remaining work is abandoned.
+     */
+    void close(boolean check) {
+
+        if (!check) {
+            cancelled = true;
+        }
+
+        finishTable();
+
+        Iterator<ForkJoinTask<?>> it = tableTasks.values().iterator();
+
+        while (it.hasNext()) {
+            join(it.next());
+        }
+
+        tableTasks.clear();
+
+        if (check) {
+            checkError();
+        }
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    int getTableCount() {
+        return tableCount;
+    }
+
+    private void submitBatch() {
+
+        batchPermits.acquireUninterruptibly();
+
+        DecodeTask task = new DecodeTask(
+            currentLoader.table,
+            lines,
+            lineNumbers,
+            lineCount);
+
+        currentLoader.batches.add(pool.submit(task));
+
+        lines       = null;
+        lineNumbers = null;
+        lineCount   = 0;
+    }
+
+    private void join(ForkJoinTask<?> task) {
+
+        try {
+            task.join();
+        } catch (Throwable t) {
+            setError(
+                t.getCause() == null
+                ? t
+                : t.getCause(),
+                0);
+        }
+    }
+
+    private void checkError() {
+
+        Throwable t = error;
+
+        if (t == null) {
+            return;
+        }
+
+        cancelled = true;
+
+        throw reader.getError(t, errorLineNumber);
+    }
+
+    private synchronized void setError(Throwable t, long lineNumber) {
+
+        if (error == null) {
+            errorLineNumber = lineNumber;
+            error           = t;
+        }
+    }
+
+    /**
+     * Decodes the rows of a batch of lines.
+     */
+    private class DecodeTask implements Callable<Object[][]> {
+
+        final Table    table;
+        final String[] lines;
+        final long[]   lineNumbers;
+        final int      count;
+
+        DecodeTask(Table table, String[] lines, long[] lineNumbers,
+                   int count) {
+
+            this.table       = table;
+            this.lines       = lines;
+            this.lineNumbers = lineNumbers;
+            this.count       = count;
+        }
+
+        public Object[][] call() {
+
+            try {
+                if (cancelled) {
+                    return null;
+                }
+
+                RowInputTextLog rowIn    = new RowInputTextLog();
+                Type[]          colTypes = table.getColumnTypes();
+                Object[][]      data     = new Object[count][];
+
+                for (int i = 0; i < count; i++) {
+                    try {
+                        rowIn.setSource(session, lines[i]);
+
+                        data[i] = rowIn.readData(colTypes);
+                    } catch (Throwable t) {
+                        setError(t, lineNumbers[i]);
+
+                        return null;
+                    }
+                }
+
+                return data;
+            } finally {
+                batchPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Creates the rows of a table and builds the indexes.
+     */
+    private class TableLoader implements Runnable {
+
+        final Table                                   table;
+        final PersistentStore                         store;
+        final long                                    firstLineNumber;
+        final HsqlArrayList<ForkJoinTask<Object[][]>> batches;
+
+        TableLoader(Table table, PersistentStore store, long lineNumber) {
+            this.table           = table;
+            this.store           = store;
+            this.firstLineNumber = lineNumber;
+            this.batches         = new HsqlArrayList<>();
+        }
+
+        public void run() {
+
+            Object[] rows  = null;
+            int      count = 0;
+
+            for (int i = 0; i < batches.size(); i++) {
+                Object[][] data = batches.get(i).join();
+
+                if (data == null || cancelled) {
+                    return;
+                }
+
+                if (rows == null) {
+                    rows = new Object[batches.size() * batchSize];
+                }
+
+                for (int j = 0; j < data.length; j++) {
+                    table.systemUpdateIdentityValue(data[j]);
+
+                    rows[count++] = store.getNewCachedObject(
+                        session,
+                        data[j],
+                        false);
+                }
+            }
+
+            try {
+                Session tableSession = database.sessionManager.newSysSession(
+                    session.getCurrentSchemaHsqlName(),
+                    session.getUser());
+
+                if (store instanceof RowStoreAVL
+                        && store.elementCount() == 0) {
+                    ((RowStoreAVL) store).loadRows(tableSession, rows, count);
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        store.indexRow(tableSession, (Row) rows[i]);
+                    }
+                }
+            } catch (Throwable t) {
+                setError(t, firstLineNumber);
+            }
+        }
+    }
+}
@@ -0,0 +1,458 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.scriptio;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.hsqldb.Database;
+import org.hsqldb.Session;
+import org.hsqldb.TableBase;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.error.HsqlException;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.FileAccess;
+import org.hsqldb.lib.StringConverter;
+import org.hsqldb.persist.RowInsertInterface;
+import org.hsqldb.persist.RowInsertSimple;
+import org.hsqldb.persist.RowStoreAVL;
+import org.hsqldb.rowio.RowInputBinary;
+import org.hsqldb.rowio.RowInputTextLog;
+import org.hsqldb.types.Type;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Reads back a .script file written by ScriptWriterBinary.<p>
+ *
+ * The statement records of the DDL section are executed as with
+ * ScriptReaderText. The rows in the data records are decoded directly with
+ * the column types of the table. When the store of a MEMORY table is empty,
+ * all the rows of the table are added before the indexes are built in bulk.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class ScriptReaderBinary extends ScriptReaderText {
+
+    DataInputStream dataInput;
+    RowInputBinary  blockIn;
+    Inflater        inflater;
+    byte[]          recordBuffer = new byte[256];
+
+    // the block that has been read
+    String blockTableName;
+    int    blockRowCount;
+    long   blockCount;
+    long   rowCount;
+
+    // rows of a MEMORY table added in bulk
+    RowStoreAVL loadStore;
+    Object[]    loadRows;
+    int         loadCount;
+
+    public ScriptReaderBinary(Database db, String fileName) throws IOException {
+
+        super(db, fileName);
+
+        inputStream = database.logger.getFileAccess()
+                                     .openInputStreamElement(fileName);
+        bufferedStream = new BufferedInputStream(inputStream, 1 << 16);
+        dataInput      = new DataInputStream(bufferedStream);
+        rowIn          = new RowInputTextLog();
+        blockIn        = new RowInputBinary(ScriptWriterBinary.BLOCK_SIZE);
+
+        byte[] header = new byte[ScriptWriterBinary.HEADER.length];
+
+        try {
+            dataInput.readFully(header);
+        } catch (EOFException e) {}
+
+        if (!Arrays.equals(header, ScriptWriterBinary.HEADER)) {
+            close();
+
+            throw new IOException("not a binary script file: " + fileName);
+        }
+    }
+
+    /**
+     * Returns true if the file starts with the header of the binary format.
+     * A database may have the binary format property with a text .script
+     * file written by an earlier version.
+     */
+    public static boolean isBinaryScript(FileAccess fa, String fileName) {
+
+        byte[] header = new byte[ScriptWriterBinary.HEADER.length];
+
+        try (InputStream in = fa.openInputStreamElement(fileName)) {
+            new DataInputStream(in).readFully(header);
+        } catch (IOException e) {
+            return false;
+        }
+
+        return Arrays.equals(header, ScriptWriterBinary.HEADER);
+    }
+
+    public void readAll(Session session) {
+
+        int insertErrorMode;
+
+        if (database.recoveryMode == 0) {
+            errorLogger     = new RowInsertSimple.DefaultErrorHandler();
+            insertErrorMode = RowInsertInterface.modes.discardOnError;
+        } else {
+            errorLogger = new RowInsertSimple.InsertErrorHandler(
+                database,
+                fileNamePath);
+            insertErrorMode = RowInsertInterface.modes.continueOnError;
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        readDDL(session);
+
+        long dataTime = System.currentTimeMillis();
+
+        inserter = new RowInsertSimple(session, errorLogger, insertErrorMode);
+
+        readExistingData(session);
+
+        long endTime = System.currentTimeMillis();
+
+        database.logger.logInfoEvent(
+            "script read binary - DDL ms: " + (dataTime - startTime)
+            + ", data ms: " + (endTime - dataTime) + ", rows: " + rowCount
+            + ", blocks: " + blockCount);
+    }
+
+    /**
+     * Reads the next record. A statement record is processed as a line of
+     * a text script. A data record is read into the block buffer and its
+     * type is INSERT_STATEMENT.
+     */
+    public boolean readLoggedStatement(Session session) {
+
+        int recordType;
+
+        try {
+            recordType = dataInput.read();
+
+            switch (recordType) {
+
+                case ScriptWriterBinary.RECORD_STATEMENT : {
+                    int length = dataInput.readInt();
+
+                    if (length > recordBuffer.length) {
+                        recordBuffer = new byte[length];
+                    }
+
+                    dataInput.readFully(recordBuffer, 0, length);
+
+                    while (length > 0
+                            && (recordBuffer[length - 1] == '\n'
+                                || recordBuffer[length - 1] == '\r')) {
+                        length--;
+                    }
+
+                    rawStatement = new String(
+                        recordBuffer,
+                        0,
+                        length,
+                        ISO_8859_1);
+
+                    lineCount++;
+
+                    statement = StringConverter.unicodeStringToString(
+                        rawStatement);
+
+                    processStatement(session);
+
+                    return true;
+                }
+                case ScriptWriterBinary.RECORD_DATA : {
+                    readBlock();
+
+                    statementType = StatementLineTypes.INSERT_STATEMENT;
+
+                    return true;
+                }
+                case ScriptWriterBinary.RECORD_END :
+                    return false;
+
+                default :
+
+                    // end of file without the end record
+                    throw Error.error(
+                        ErrorCode.DATA_FILE_ERROR,
+                        "record type " + recordType);
+            }
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR, null);
+        }
+    }
+
+    public void readExistingData(Session session) {
+
+        String tablename = null;
+
+        try {
+            for (;;) {
+                try {
+                    boolean hasRow = false;
+
+                    if (isInsert) {
+                        isInsert = false;
+                        hasRow   = true;
+                    } else {
+                        hasRow = readLoggedStatement(session);
+                    }
+
+                    if (!hasRow) {
+                        finishTable(session);
+
+                        break;
+                    }
+
+                    switch (statementType) {
+
+                        case StatementLineTypes.SET_SCHEMA_STATEMENT : {
+                            finishTable(session);
+                            session.setSchema(currentSchema);
+
+                            tablename = null;
+                            break;
+                        }
+
+                        case StatementLineTypes.INSERT_STATEMENT : {
+                            if (!blockTableName.equals(tablename)) {
+                                finishTable(session);
+
+                                tablename = blockTableName;
+
+                                String schema = session.getSchemaName(
+                                    currentSchema);
+
+                                currentTable =
+                                    database.schemaManager.getUserTable(
+                                        getTableName(tablename),
+                                        schema);
+                                currentStore =
+                                    database.persistentStoreCollection.getStore(
+                                        currentTable);
+                                if (database.recoveryMode == 0
+                                        && currentTable.getTableType()
+                                           == TableBase.MEMORY_TABLE
+                                        && currentStore instanceof RowStoreAVL
+                                        && currentStore.elementCount() == 0) {
+                                    loadStore = (RowStoreAVL) currentStore;
+                                }
+                            }
+
+                            readBlockRows(session);
+                            break;
+                        }
+
+                        default : {
+                            HsqlException e = Error.error(
+                                ErrorCode.GENERAL_ERROR,
+                                statement);
+
+                            throw e;
+                        }
+                    }
+                } catch (Throwable t) {
+                    HsqlException e = getError(t, lineCount);
+
+                    loadStore = null;
+                    loadRows  = null;
+                    loadCount = 0;
+
+                    handleError(e);
+                }
+            }
+        } finally {
+            inserter.close();
+        }
+    }
+
+    /**
+     * Reads the data record into blockIn after checking the checksum.
+     */
+    private void readBlock() throws IOException {
+
+        int length = dataInput.readInt();
+
+        char[] name = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            name[i] = dataInput.readChar();
+        }
+
+        blockTableName = new String(name);
+        blockRowCount  = dataInput.readInt();
+
+        int  size     = dataInput.readInt();
+        int  stored   = dataInput.readInt();
+        long checksum = dataInput.readLong();
+
+        blockIn.resetBlock(0, size);
+
+        if (stored == size) {
+            dataInput.readFully(blockIn.getBuffer(), 0, size);
+        } else {
+            if (stored > recordBuffer.length) {
+                recordBuffer = new byte[stored];
+            }
+
+            dataInput.readFully(recordBuffer, 0, stored);
+
+            if (inflater == null) {
+                inflater = new Inflater();
+            }
+
+            inflater.reset();
+            inflater.setInput(recordBuffer, 0, stored);
+
+            try {
+                if (inflater.inflate(blockIn.getBuffer(), 0, size) != size) {
+                    throw Error.error(
+                        ErrorCode.DATA_FILE_ERROR,
+                        "block length " + blockTableName);
+                }
+            } catch (DataFormatException e) {
+                throw Error.error(e, ErrorCode.DATA_FILE_ERROR, blockTableName);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+
+        crc.update(blockIn.getBuffer(), 0, size);
+
+        if (crc.getValue() != checksum) {
+            throw Error.error(
+                ErrorCode.DATA_FILE_ERROR,
+                "block checksum " + blockTableName);
+        }
+
+        lineCount++;
+        blockCount++;
+    }
+
+    /**
+     * Returns the name of the table from the statement name written in the
+     * block, which is quoted when it is not a regular identifier.
+     */
+    private static String getTableName(String statementName) {
+
+        if (statementName.length() > 1 && statementName.charAt(0) == '"') {
+            return statementName.substring(1, statementName.length() - 1)
+                                .replace("\"\"", "\"");
+        }
+
+        return statementName;
+    }
+
+    /**
+     * Decodes the rows of the block and adds them to the current table.
+     */
+    private void readBlockRows(Session session) {
+
+        Type[] colTypes = currentTable.getColumnTypes();
+
+        if (loadStore != null) {
+            if (loadRows == null) {
+                loadRows = new Object[Math.max(blockRowCount, 1024)];
+            } else if (loadCount + blockRowCount > loadRows.length) {
+                loadRows = (Object[]) ArrayUtil.resizeArray(
+                    loadRows,
+                    Math.max(loadRows.length * 2, loadCount + blockRowCount));
+            }
+        }
+
+        for (int i = 0; i < blockRowCount; i++) {
+            rowData = blockIn.readData(colTypes);
+
+            if (loadStore != null) {
+                currentTable.systemUpdateIdentityValue(rowData);
+
+                loadRows[loadCount++] = currentStore.getNewCachedObject(
+                    session,
+                    rowData,
+                    false);
+            } else {
+                inserter.insert(currentTable, currentStore, rowData);
+            }
+        }
+
+        // the row count does not match the length of the block
+        if (blockIn.getPos() != blockIn.getSize()) {
+            throw Error.error(
+                ErrorCode.DATA_FILE_ERROR,
+                "block rows " + blockTableName);
+        }
+
+        rowCount += blockRowCount;
+    }
+
+    /**
+     * Builds the indexes for the rows of the table added in bulk.
+     */
+    private void finishTable(Session session) {
+
+        inserter.finishTable();
+
+        if (loadStore == null) {
+            return;
+        }
+
+        RowStoreAVL store = loadStore;
+        Object[]    rows  = loadRows;
+        int         count = loadCount;
+
+        loadStore = null;
+        loadRows  = null;
+        loadCount = 0;
+
+        if (count > 0) {
+            store.loadRows(session, rows, count);
+        }
+    }
+}
@@ -61,7 +61,7 @@ import org.hsqldb.types.Type;
  * corresponds to ScriptWriterText.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- *  @version 2.7.0
+ *  @version 2.7.4
  *  @since 1.7.2
  */
 public class ScriptReaderText extends ScriptReaderBase {
@@ -74,6 +74,9 @@ public class ScriptReaderText extends ScriptReaderBase {
     RowInputTextLog rowIn;
     boolean         isInsert;
 
+    // INSERT lines are decoded by the tasks of the loader
+    ParallelDataLoader loader;
+
     ScriptReaderText(Database db, String fileName) {
         super(db, fileName);
     }
@@ -117,11 +120,34 @@ public class ScriptReaderText extends ScriptReaderBase {
             insertErrorMode = RowInsertInterface.modes.continueOnError;
         }
 
+        long startTime = System.currentTimeMillis();
+
+        if (database.recoveryMode == 0 && database.getParallelThreads() > 0) {
+            loader = new ParallelDataLoader(this, session);
+        }
+
         readDDL(session);
 
+        long dataTime = System.currentTimeMillis();
+
         inserter = new RowInsertSimple(session, errorLogger, insertErrorMode);
 
         readExistingData(session);
+
+        long endTime = System.currentTimeMillis();
+
+        if (loader == null) {
+            database.logger.logInfoEvent(
+                "script read - DDL ms: " + (dataTime - startTime)
+                + ", data ms: " + (endTime - dataTime));
+        } else {
+            database.logger.logInfoEvent(
+                "script read parallel - DDL ms: " + (dataTime - startTime)
+                + ", data ms: " + (endTime - dataTime) + ", rows: "
+                + loader.getRowCount() + ", tables: "
+                + loader.getTableCount() + ", threads: "
+                + database.getParallelThreads());
+        }
     }
 
     protected void readDDL(Session session) {
@@ -137,8 +163,7 @@ public class ScriptReaderText extends ScriptReaderBase {
                     break;
                 }
 
-                if (rowIn.getStatementType()
-                        == StatementLineTypes.INSERT_STATEMENT) {
+                if (statementType == StatementLineTypes.INSERT_STATEMENT) {
                     isInsert = true;
                     break;
                 }
@@ -193,6 +218,11 @@ public class ScriptReaderText extends ScriptReaderBase {
 
                     if (!hasRow) {
                         inserter.finishTable();
+
+                        if (loader != null) {
+                            loader.close(true);
+                        }
+
                         break;
                     }
 
@@ -209,6 +239,10 @@ public class ScriptReaderText extends ScriptReaderBase {
                             if (!rowIn.getTableName().equals(tablename)) {
                                 inserter.finishTable();
 
+                                if (loader != null) {
+                                    loader.finishTable();
+                                }
+
                                 tablename = rowIn.getTableName();
 
                                 String schema = session.getSchemaName(
@@ -223,10 +257,19 @@ public class ScriptReaderText extends ScriptReaderBase {
                                         currentTable);
                             }
 
-                            inserter.insert(
-                                currentTable,
-                                currentStore,
-                                rowData);
+                            if (loader == null) {
+                                inserter.insert(
+                                    currentTable,
+                                    currentStore,
+                                    rowData);
+                            } else {
+                                loader.insert(
+                                    currentTable,
+                                    currentStore,
+                                    statement,
+                                    lineCount);
+                            }
+
                             break;
                         }
 
@@ -245,6 +288,10 @@ public class ScriptReaderText extends ScriptReaderBase {
                 }
             }
         } finally {
+            if (loader != null) {
+                loader.close(false);
+            }
+
             inserter.close();
         }
     }
@@ -322,6 +369,13 @@ public class ScriptReaderText extends ScriptReaderBase {
 
         Type[] colTypes;
 
+        if (statementType == StatementLineTypes.INSERT_STATEMENT
+                && loader != null) {
+            rowData = null;
+
+            return;
+        }
+
         if (statementType == StatementLineTypes.INSERT_STATEMENT) {
             colTypes = currentTable.getColumnTypes();
         } else if (currentTable.hasPrimaryKey()) {
@@ -367,7 +421,10 @@ public class ScriptReaderText extends ScriptReaderBase {
         if (t instanceof HsqlException) {
             HsqlException e = ((HsqlException) t);
 
-            if (e.getErrorCode() == -ErrorCode.ERROR_IN_SCRIPT_FILE) {
+            // the code of the error is the code of the line message
+            if (e.getErrorCode() == -ErrorCode.ERROR_IN_SCRIPT_FILE
+                    || e.getErrorCode()
+                       == -ErrorCode.M_DatabaseScriptReader_read) {
                 return e;
             }
         }
@@ -379,7 +436,7 @@ public class ScriptReaderText extends ScriptReaderBase {
             new String[]{ String.valueOf(lineCount), t.toString() });
     }
 
-    private void handleError(HsqlException e) {
+    void handleError(HsqlException e) {
 
         database.logger.logSevereEvent(e.getMessage(), e);
 
@@ -35,6 +35,10 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
 import org.hsqldb.Database;
 import org.hsqldb.DatabaseManager;
 import org.hsqldb.HsqlNameManager.HsqlName;
@@ -87,7 +91,7 @@ import org.hsqldb.types.TimestampData;
  * DatabaseScriptReader and its subclasses read back the data at startup time.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.7.2
  */
 public abstract class ScriptWriterBase implements Runnable {
@@ -108,22 +112,28 @@ public abstract class ScriptWriterBase implements Runnable {
      * this determines if the script is the normal script (false) used
      * internally by the engine or a user-initiated snapshot of the DB (true)
      */
-    boolean          isUserScript;
-    boolean          includeCachedData;
-    boolean          includeIndexRoots;
-    boolean          includeTableInit;
-    long             byteCount;
-    long             lineCount;
-    volatile boolean needsSync;
-    private int      syncCount;
+    boolean              isUserScript;
+    boolean              includeCachedData;
+    boolean              includeIndexRoots;
+    boolean              includeTableInit;
+    long                 byteCount;
+    long                 lineCount;
+    volatile boolean     needsSync;
+    private volatile int syncCount;
+
+    // group commit
+    private final ReentrantLock syncLock    = new ReentrantLock();
+    private final Condition     syncedCheck = syncLock.newCondition();
+    private long                syncedByteCount;
+    private boolean             isSyncing;
     static final int INSERT             = 0;
     static final int INSERT_WITH_SCHEMA = 1;
 
     /** the last schema for last sessionId */
     Session currentSession;
     public static final String[] LIST_SCRIPT_FORMATS = new String[]{
-        Tokens.T_TEXT,
-        Tokens.T_BINARY, null, Tokens.T_COMPRESSED };
+        Tokens.T_TEXT, Tokens.T_BINARY,
+        Tokens.T_BINARY + ' ' + Tokens.T_COMPRESSED, Tokens.T_COMPRESSED };
 
     ScriptWriterBase(
             Database db,
@@ -225,6 +235,8 @@ public abstract class ScriptWriterBase implements Runnable {
 
                 syncCount++;
 
+                setSynced(byteCount);
+
 /*
                 System.out.println(
                     this.outFile + " FD.sync done at "
@@ -238,6 +250,116 @@ public abstract class ScriptWriterBase implements Runnable {
         }
     }
 
+    /**
+     * Returns the number of file syncs since the file was opened.
+     */
+    public int getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * Returns when all the statements written before the call are synched
+     * to disk.<p>
+     *
+     * Used at commit after the transaction locks have been released. One of
+     * the waiting sessions flushes the file and calls the file sync, while
+     * the others wait for it to finish. The statements written by all the
+     * sessions up to the flush are covered by the single file sync, and new
+     * statements can be written to the buffer during the sync.
+     *
+     * @param waitMicros time to wait for other sessions to commit before
+     * the file sync
+     */
+    public void syncCommit(int waitMicros) {
+
+        long    target;
+        boolean isLeader = false;
+
+        synchronized (fileStreamOut) {
+            target = byteCount;
+        }
+
+        syncLock.lock();
+
+        try {
+            while (!isClosed && syncedByteCount < target) {
+                if (!isSyncing) {
+                    isSyncing = true;
+                    isLeader  = true;
+                    break;
+                }
+
+                syncedCheck.awaitUninterruptibly();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+
+        if (!isLeader) {
+            return;
+        }
+
+        long synced = 0;
+
+        try {
+            if (waitMicros > 0) {
+                LockSupport.parkNanos(waitMicros * 1000L);
+            }
+
+            FileAccess.FileSync descriptor;
+
+            synchronized (fileStreamOut) {
+                if (isClosed) {
+                    return;
+                }
+
+                needsSync = false;
+
+                fileStreamOut.flush();
+
+                descriptor = outDescriptor;
+                synced     = byteCount;
+            }
+
+            descriptor.sync();
+
+            synchronized (fileStreamOut) {
+                syncCount++;
+            }
+        } catch (IOException e) {
+            database.logger.logWarningEvent("ScriptWriter synch error: ", e);
+        } finally {
+            syncLock.lock();
+
+            try {
+                isSyncing = false;
+
+                if (synced > syncedByteCount) {
+                    syncedByteCount = synced;
+                }
+
+                syncedCheck.signalAll();
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    private void setSynced(long count) {
+
+        syncLock.lock();
+
+        try {
+            if (count > syncedByteCount) {
+                syncedByteCount = count;
+            }
+
+            syncedCheck.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
     public void close() {
 
         stop();
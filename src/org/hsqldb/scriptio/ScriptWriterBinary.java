@@ -0,0 +1,252 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.scriptio;
+
+import java.io.IOException;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.hsqldb.Database;
+import org.hsqldb.Row;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.HsqlByteArrayOutputStream;
+import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.types.Type;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Writes the .script file in the binary format, used when
+ * hsqldb.script_format is 1 (BINARY) or 2 (BINARY COMPRESSED).<p>
+ *
+ * The file starts with a fixed header and consists of records that begin
+ * with a record type byte. A statement record holds one line of the DDL
+ * section, or a SET SCHEMA line of the data section, as written by
+ * ScriptWriterText. A data record holds a block of rows of one table in the
+ * RowOutputBinary encoding, with the row count, the length and a CRC32 of
+ * the encoded rows. With BINARY COMPRESSED, each block is deflated
+ * separately. The file ends with an end record.<p>
+ *
+ * The rows of a large table are written in several blocks. ScriptReaderBinary
+ * reads back the rows without SQL parsing.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class ScriptWriterBinary extends ScriptWriterText {
+
+    static final byte[] HEADER = "HSQLDB BINARY SCRIPT 1\n".getBytes(
+        ISO_8859_1);
+
+    //
+    static final int RECORD_END       = 0;
+    static final int RECORD_STATEMENT = 1;
+    static final int RECORD_DATA      = 2;
+
+    //
+    static final int BLOCK_SIZE = 1 << 20;
+
+    //
+    private final boolean             isDeflated;
+    private RowOutputBinary           blockOut;
+    private HsqlByteArrayOutputStream recordOut;
+    private Deflater                  deflater;
+    private byte[]                    deflateBuffer;
+    private String                    blockTableName;
+    private int                       blockRowCount;
+
+    public ScriptWriterBinary(
+            Database db,
+            String file,
+            boolean includeCachedData,
+            boolean compressed) {
+
+        super(db, file, includeCachedData, true, false);
+
+        isDeflated = compressed;
+
+        if (compressed) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+
+        recordOut.reset();
+        recordOut.write(HEADER);
+        writeRecordOutToFile();
+    }
+
+    protected void initBuffers() {
+
+        super.initBuffers();
+
+        blockOut  = new RowOutputBinary(BLOCK_SIZE, 1);
+        recordOut = new HsqlByteArrayOutputStream(256);
+    }
+
+    public void writeRow(Session session, Row row, Table table) {
+
+        schemaToLog = table.getName().schema;
+
+        writeSessionIdAndSchema(session);
+        writeRow(
+            table.getName().statementName,
+            table.getColumnTypes(),
+            row.getData());
+    }
+
+    /**
+     * Adds the row to the block for the table. The block is written when
+     * it is full or when another table or statement follows.
+     */
+    public void writeRow(String tableName, Type[] types, Object[] data) {
+
+        if (!tableName.equals(blockTableName)) {
+            writeBlock();
+
+            blockTableName = tableName;
+        }
+
+        blockOut.writeData(types.length, types, data, null, null);
+
+        blockRowCount++;
+
+        if (blockOut.size() >= BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    public void writeTableTerm(Table t) {
+        writeBlock();
+    }
+
+    protected void finishStream() {
+
+        writeBlock();
+        recordOut.reset();
+        recordOut.writeByte(RECORD_END);
+        writeRecordOutToFile();
+
+        if (deflater != null) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes the text line in rowOut as a statement record.
+     */
+    void writeRowOutToFile() {
+
+        if (fileStreamOut == null) {
+            return;
+        }
+
+        writeBlock();
+
+        int length = rowOut.size();
+
+        recordOut.reset();
+        recordOut.writeByte(RECORD_STATEMENT);
+        recordOut.writeInt(length);
+        recordOut.write(rowOut.getBuffer(), 0, length);
+        writeRecordOutToFile();
+
+        lineCount++;
+    }
+
+    /**
+     * Writes the rows added since the last block as a data record.
+     */
+    private void writeBlock() {
+
+        if (blockRowCount == 0) {
+            return;
+        }
+
+        int    length = blockOut.size();
+        byte[] data   = blockOut.getBuffer();
+        int    stored = length;
+        CRC32  crc    = new CRC32();
+
+        crc.update(data, 0, length);
+
+        if (isDeflated) {
+            if (deflateBuffer == null || deflateBuffer.length < length + 64) {
+                deflateBuffer = new byte[length + 64];
+            }
+
+            deflater.reset();
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+
+            int size = deflater.deflate(deflateBuffer);
+
+            // the block is stored as it is unless compression makes it shorter
+            if (deflater.finished() && size < length) {
+                data   = deflateBuffer;
+                stored = size;
+            }
+        }
+
+        recordOut.reset();
+        recordOut.writeByte(RECORD_DATA);
+        recordOut.writeInt(blockTableName.length());
+        recordOut.writeChars(blockTableName);
+        recordOut.writeInt(blockRowCount);
+        recordOut.writeInt(length);
+        recordOut.writeInt(stored);
+        recordOut.writeLong(crc.getValue());
+        recordOut.write(data, 0, stored);
+        writeRecordOutToFile();
+
+        lineCount += blockRowCount;
+
+        blockOut.reset();
+
+        blockRowCount = 0;
+    }
+
+    private void writeRecordOutToFile() {
+
+        synchronized (fileStreamOut) {
+            try {
+                fileStreamOut.write(recordOut.getBuffer(), 0, recordOut.size());
+
+                byteCount += recordOut.size();
+            } catch (IOException io) {
+                throw Error.error(ErrorCode.FILE_IO_ERROR, outFile);
+            }
+        }
+    }
+}
@@ -51,6 +51,7 @@ import org.hsqldb.lib.FileAccess;
 import org.hsqldb.lib.java.JavaSystem;
 import org.hsqldb.rowio.RowOutputInterface;
 import org.hsqldb.rowio.RowOutputTextLog;
+import org.hsqldb.types.Type;
 
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
 
@@ -72,7 +73,7 @@ import static java.nio.charset.StandardCharsets.ISO_8859_1;
  *
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.7.3
+ * @version 2.7.4
  * @since 1.7.2
  */
 public class ScriptWriterText extends ScriptWriterBase {
@@ -212,6 +213,36 @@ public class ScriptWriterText extends ScriptWriterBase {
         writeRowOutToFile();
     }
 
+    /**
+     * Writes an INSERT statement for the row data with the given table name
+     * and column types. Used for the table images of a fuzzy checkpoint,
+     * which do not refer to the Table object.
+     */
+    public void writeRow(String tableName, Type[] types, Object[] data) {
+
+        rowOut.reset();
+        rowOut.setMode(RowOutputTextLog.MODE_INSERT);
+        rowOut.writeBytes(BYTES_INSERT_INTO);
+        rowOut.writeString(tableName);
+        rowOut.writeBytes(BYTES_VALUES);
+        rowOut.writeData(types.length, types, data, null, null);
+        rowOut.writeBytes(BYTES_TERM);
+        rowOut.writeBytes(BYTES_LINE_SEP);
+        writeRowOutToFile();
+    }
+
+    /**
+     * Writes a SET SCHEMA statement for the given schema name.
+     */
+    public void writeSchemaStatement(String schemaName) {
+
+        rowOut.reset();
+        rowOut.writeBytes(BYTES_SCHEMA);
+        rowOut.writeString(schemaName);
+        rowOut.writeBytes(BYTES_LINE_SEP);
+        writeRowOutToFile();
+    }
+
     public void writeTableInit(Table t) {
 
         if (t.isEmpty(currentSession)) {
@@ -293,11 +324,8 @@ public class ScriptWriterText extends ScriptWriterBase {
         rowOut.writeBytes(BYTES_LINE_SEP);
         writeRowOutToFile();
 
+        // with no write delay, the session calls syncCommit() after commit
         needsSync = true;
-
-        if (writeDelay == 0) {
-            sync();
-        }
     }
 
     protected void finishStream() {
@@ -35,10 +35,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
 
+import java.nio.channels.ServerSocketChannel;
+
 import java.sql.DriverManager;
 
 import java.util.Enumeration;
@@ -54,6 +58,7 @@ import org.hsqldb.error.HsqlException;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.FileUtil;
 import org.hsqldb.lib.HashSet;
+import org.hsqldb.lib.HsqlThreadFactory;
 import org.hsqldb.lib.IntKeyHashMap;
 import org.hsqldb.lib.Iterator;
 import org.hsqldb.lib.Notified;
@@ -279,6 +284,12 @@ public class Server implements HsqlSocketRequestHandler, Notified {
     protected HsqlSocketFactory     socketFactory;
     protected volatile ServerSocket socket;
 
+    // null when each connection has its own thread
+    volatile ServerConnectionDispatcher connectionDispatcher;
+
+    // null when connection threads are platform threads
+    private HsqlThreadFactory connectionThreadFactory;
+
 //
     private Thread             serverThread;
     private Throwable          serverError;
@@ -713,12 +724,27 @@ public class Server implements HsqlSocketRequestHandler, Notified {
         if (serverProtocol == ServerConstants.SC_PROTOCOL_HSQL) {
             r   = new ServerConnection(s, this);
             ctn = ((ServerConnection) r).getConnectionThreadName();
+
+            ServerConnectionDispatcher dispatcher = connectionDispatcher;
+
+            if (dispatcher != null && s.getChannel() != null) {
+                dispatcher.register((ServerConnection) r);
+                printWithThread("handleConnection() exited");
+
+                return;
+            }
         } else {
             r   = new WebServerConnection(s, (WebServer) this);
             ctn = ((WebServerConnection) r).getConnectionThreadName();
         }
 
-        t = new Thread(serverConnectionThreadGroup, r, ctn);
+        if (connectionThreadFactory == null) {
+            t = new Thread(serverConnectionThreadGroup, r, ctn);
+        } else {
+            t = connectionThreadFactory.newThread(r);
+
+            t.setName(ctn);
+        }
 
         t.start();
         printWithThread("handleConnection() exited");
@@ -765,6 +791,96 @@ public class Server implements HsqlSocketRequestHandler, Notified {
         return serverProperties.isPropertyTrue(ServerProperties.sc_key_tls);
     }
 
+    /**
+     * Retrieves the number of worker threads that handle the requests of
+     * all connections, as set by the server.worker_threads property. When
+     * zero, each connection has its own thread. Not used with TLS or by
+     * WebServer.
+     *
+     * @return the maximum number of worker threads
+     */
+    public int getWorkerThreads() {
+        return serverProperties.getIntegerProperty(
+            ServerProperties.sc_key_worker_threads,
+            0);
+    }
+
+    /**
+     * Retrieves the number of connections that have input from the client
+     * and are waiting for a worker thread.
+     *
+     * @return the number of waiting connections, or 0 if worker threads
+     *      are not used
+     */
+    public int getRequestQueueSize() {
+
+        ServerConnectionDispatcher dispatcher = connectionDispatcher;
+
+        return dispatcher == null
+               ? 0
+               : dispatcher.getQueueSize();
+    }
+
+    /**
+     * Retrieves the largest number of connections that have waited for a
+     * worker thread at the same time since the server was started.
+     *
+     * @return the largest number of waiting connections
+     */
+    public int getRequestQueueMaxSize() {
+
+        ServerConnectionDispatcher dispatcher = connectionDispatcher;
+
+        return dispatcher == null
+               ? 0
+               : dispatcher.getMaxQueueSize();
+    }
+
+    /**
+     * Retrieves the number of worker threads that are handling requests.
+     *
+     * @return the number of busy worker threads
+     */
+    public int getActiveWorkerCount() {
+
+        ServerConnectionDispatcher dispatcher = connectionDispatcher;
+
+        return dispatcher == null
+               ? 0
+               : dispatcher.getActiveCount();
+    }
+
+    /**
+     * Retrieves the number of times a connection with client input has been
+     * handled by a worker thread.
+     *
+     * @return the number of completed dispatches
+     */
+    public long getDispatchCount() {
+
+        ServerConnectionDispatcher dispatcher = connectionDispatcher;
+
+        return dispatcher == null
+               ? 0
+               : dispatcher.getCompletedCount();
+    }
+
+    /**
+     * Retrieves whether each connection is run on a virtual thread, as set
+     * by the server.virtual_threads property. Virtual threads are used only
+     * when supported by the JVM and worker threads are not used.
+     *
+     * @return true if connections use virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return connectionThreadFactory != null;
+    }
+
+    private boolean isWorkerThreads() {
+        return serverProtocol == ServerConstants.SC_PROTOCOL_HSQL && !isTls()
+               && getWorkerThreads() > 0;
+    }
+
     /**
      * Retrieves whether JDBC trace messages are to go to System.out or the
      * DriverManger PrintStream/PrintWriter, if any.
@@ -1942,10 +2058,10 @@ public class Server implements HsqlSocketRequestHandler, Notified {
         if (StringUtil.isEmpty(address)
                 || ServerConstants.SC_DEFAULT_ADDRESS.equalsIgnoreCase(
                     address.trim())) {
-            socket = socketFactory.createServerSocket(port);
+            socket = createServerSocket(port, null);
         } else {
             try {
-                socket = socketFactory.createServerSocket(port, address);
+                socket = createServerSocket(port, address);
             } catch (UnknownHostException e) {
                 candidateAddrs =
                     ServerConfiguration.listLocalInetAddressNames();
@@ -1992,6 +2108,42 @@ public class Server implements HsqlSocketRequestHandler, Notified {
         printWithThread("openServerSocket() exiting");
     }
 
+    /**
+     * With worker threads, the server socket is created from a channel so
+     * that the accepted sockets can be used with a Selector.
+     */
+    private ServerSocket createServerSocket(
+            int port,
+            String address)
+            throws Exception {
+
+        if (!isWorkerThreads()) {
+            return address == null
+                   ? socketFactory.createServerSocket(port)
+                   : socketFactory.createServerSocket(port, address);
+        }
+
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+
+        try {
+            if (address == null) {
+                serverSocket.bind(new InetSocketAddress(port));
+            } else {
+                serverSocket.bind(
+                    new InetSocketAddress(
+                        InetAddress.getByName(address),
+                        port),
+                    128);
+            }
+        } catch (Exception e) {
+            serverSocket.close();
+
+            throw e;
+        }
+
+        return serverSocket;
+    }
+
     /** Prints a timestamped message indicating that this server is online */
     private void printServerOnlineMessage() {
 
@@ -2093,6 +2245,30 @@ public class Server implements HsqlSocketRequestHandler, Notified {
         tgName = "HSQLDB Connections @" + Integer.toString(this.hashCode(), 16);
         serverConnectionThreadGroup = new ThreadGroup(tgName);
 
+        if (isWorkerThreads()) {
+            try {
+                connectionDispatcher = new ServerConnectionDispatcher(
+                    this,
+                    serverConnectionThreadGroup,
+                    getWorkerThreads());
+            } catch (IOException e) {
+                setServerError(e);
+                printError("run()/ServerConnectionDispatcher: ");
+                printStackTrace(e);
+                shutdown(true);
+
+                return;
+            }
+        } else if (serverProperties.isPropertyTrue(
+                ServerProperties.sc_key_virtual_threads)) {
+            connectionThreadFactory =
+                HsqlThreadFactory.newVirtualThreadFactory(tgName);
+
+            if (connectionThreadFactory == null) {
+                printWithThread("virtual threads are not supported by the JVM");
+            }
+        }
+
         // Mount the databases this server is supposed to host.
         // This may take some time if the databases are not all
         // already open.
@@ -2241,6 +2417,14 @@ public class Server implements HsqlSocketRequestHandler, Notified {
             }
         }
 
+        if (connectionDispatcher != null) {
+            connectionDispatcher.stop();
+
+            connectionDispatcher = null;
+        }
+
+        connectionThreadFactory = null;
+
         // Be nice and let applications exit if there are no
         // running connection threads - wait at most 100 ms per active thread
         if (serverConnectionThreadGroup != null) {
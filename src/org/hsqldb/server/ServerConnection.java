@@ -79,6 +79,8 @@ import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
 
+import java.nio.channels.SocketChannel;
+
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.hsqldb.ClientConnection;
@@ -139,6 +141,9 @@ class ServerConnection implements Runnable {
     private Server           server;
     private DataInputStream  dataInput;
     private DataOutputStream dataOutput;
+
+    // not null when the connection is handled by a dispatcher
+    private ServerConnectionInput connectionInput;
     private long             mThread;
     static final int         BUFFER_SIZE = 0x1000;
     final byte[]             mainBuffer  = new byte[BUFFER_SIZE];
@@ -257,7 +262,9 @@ class ServerConnection implements Runnable {
         }
 
         try {
-            runnerThread.setContextClassLoader(null);
+            if (server.connectionDispatcher == null) {
+                runnerThread.setContextClassLoader(null);
+            }
         } catch (Throwable t) {}
     }
 
@@ -275,8 +282,12 @@ class ServerConnection implements Runnable {
         try {
             socket.setTcpNoDelay(true);
 
-            dataInput = new DataInputStream(
-                new BufferedInputStream(socket.getInputStream(), 16 * 1024));
+            dataInput = connectionInput == null
+                        ? new DataInputStream(
+                            new BufferedInputStream(
+                                socket.getInputStream(),
+                                16 * 1024))
+                        : new DataInputStream(connectionInput);
             dataOutput = new DataOutputStream(socket.getOutputStream());
 
             int firstInt = handshake();
@@ -290,6 +301,12 @@ class ServerConnection implements Runnable {
                     break;
 
                 case ODBC_STREAM_PROTOCOL :
+
+                    // the client sends more packets when asked by the server
+                    if (connectionInput != null) {
+                        connectionInput.setStreaming(true);
+                    }
+
                     processor.receiveConnection(firstInt);
                     break;
 
@@ -1543,6 +1560,84 @@ class ServerConnection implements Runnable {
         close();
     }
 
+    /**
+     * Used when the server has a ServerConnectionDispatcher. Initializes
+     * this connection on the first call. Then handles the complete requests
+     * that have been read by the dispatcher and returns this connection to
+     * the dispatcher when there is no complete request.
+     */
+    void handleRequests(ServerConnectionDispatcher dispatcher) {
+
+        if (processor == null) {
+            init();
+            connectionInput.setStreaming(false);
+        } else {
+            runnerThread = Thread.currentThread();
+        }
+
+        if (session != null) {
+            try {
+                while (keepAlive
+                        && connectionInput.hasRequest(streamProtocol)) {
+                    processor.receiveResult((char) dataInput.readByte());
+                    connectionInput.setStreaming(false);
+                }
+
+                if (keepAlive) {
+                    runnerThread = null;
+
+                    dispatcher.register(this);
+
+                    return;
+                }
+            } catch (CleanExit ce) {
+                keepAlive = false;
+            } catch (IOException e) {
+                server.printWithThread(mThread + ":disconnected " + user);
+            } catch (HsqlException e) {
+                if (keepAlive) {
+                    server.printStackTrace(e);
+                }
+            } catch (Throwable e) {
+                if (keepAlive) {
+                    server.printStackTrace(e);
+                }
+            }
+        }
+
+        close();
+    }
+
+    /**
+     * Called by the dispatcher thread when the channel has input. Reads the
+     * input without blocking and returns true if there is a complete
+     * request, or the end of stream, for a worker thread.
+     */
+    boolean readInput(SocketChannel channel) {
+
+        if (connectionInput == null) {
+            connectionInput = new ServerConnectionInput(channel);
+        }
+
+        try {
+            connectionInput.fill();
+        } catch (IOException e) {
+            connectionInput.setEndOfStream();
+        }
+
+        return connectionInput.hasRequest(streamProtocol);
+    }
+
+    /**
+     * Returns the channel of the socket, or null if the socket is closed or
+     * has no channel.
+     */
+    synchronized SocketChannel getChannel() {
+        return socket == null
+               ? null
+               : socket.getChannel();
+    }
+
     private Result setDatabase(Result resultIn) {
 
         try {
@@ -1640,7 +1735,9 @@ class ServerConnection implements Runnable {
         long clientDataDeadline = new java.util.Date().getTime()
                                   + server.maxWaitForClientData;
 
-        if (!(socket instanceof javax.net.ssl.SSLSocket)) {
+        // the dispatcher has already read the handshake
+        if (!(socket instanceof javax.net.ssl.SSLSocket)
+                && connectionInput == null) {
 
             // available() does not work for SSL socket input stream
             do {
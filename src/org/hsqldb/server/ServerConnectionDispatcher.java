@@ -0,0 +1,254 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.server;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hsqldb.lib.HsqlArrayList;
+
+/**
+ * Runs the HSQL protocol connections of a Server on a fixed number of worker
+ * threads when the server.worker_threads property is set.<p>
+ *
+ * A connection is handled by a worker thread only while there are complete
+ * requests from the client. Otherwise the socket channel is registered with
+ * a Selector, which is watched by a single thread. This thread reads the
+ * input of each connection without blocking into a ServerConnectionInput.
+ * When a complete request has arrived, the connection is queued for the
+ * next free worker thread. Idle connections, and connections with a
+ * partially received request, therefore do not use a worker thread.<p>
+ *
+ * TLS connections cannot be used with a Selector and always use a thread
+ * per connection.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+final class ServerConnectionDispatcher implements Runnable {
+
+    private final Server             server;
+    private final Selector           selector;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentLinkedQueue<ServerConnection> pending =
+        new ConcurrentLinkedQueue<>();
+    private final AtomicInteger      maxQueueSize = new AtomicInteger();
+    private volatile boolean         isClosed;
+
+    ServerConnectionDispatcher(
+            Server server,
+            final ThreadGroup threadGroup,
+            int threads)
+            throws IOException {
+
+        this.server   = server;
+        this.selector = Selector.open();
+
+        final String name = "HSQLDB Connection Worker @"
+                            + Integer.toString(server.hashCode(), 16) + '-';
+        ThreadFactory factory = new ThreadFactory() {
+
+            final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                return new Thread(
+                    threadGroup,
+                    r,
+                    name + count.incrementAndGet());
+            }
+        };
+
+        executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            factory);
+
+        executor.allowCoreThreadTimeOut(true);
+
+        Thread thread = new Thread(
+            threadGroup,
+            this,
+            "HSQLDB Connection Selector @"
+            + Integer.toString(server.hashCode(), 16));
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues the connection for a worker thread.
+     */
+    private void dispatch(final ServerConnection connection) {
+
+        executor.execute(new Runnable() {
+
+            public void run() {
+                connection.handleRequests(ServerConnectionDispatcher.this);
+            }
+        });
+
+        int size = executor.getQueue().size();
+
+        maxQueueSize.accumulateAndGet(size, Math::max);
+    }
+
+    /**
+     * Called for a new connection, and by a worker thread when the
+     * connection has no complete request.
+     */
+    void register(ServerConnection connection) {
+
+        pending.add(connection);
+        selector.wakeup();
+    }
+
+    void stop() {
+
+        isClosed = true;
+
+        selector.wakeup();
+        executor.shutdown();
+    }
+
+    int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    int getMaxQueueSize() {
+        return maxQueueSize.get();
+    }
+
+    int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    public void run() {
+
+        HsqlArrayList<ServerConnection> ready = new HsqlArrayList<>();
+
+        try {
+            while (!isClosed) {
+                Set<SelectionKey> keys = selector.selectedKeys();
+
+                // keys may remain selected after selectNow() below
+                if (keys.isEmpty()) {
+                    selector.select();
+                }
+
+                registerPending();
+
+                Iterator<SelectionKey> it = keys.iterator();
+
+                while (it.hasNext()) {
+                    SelectionKey     key        = it.next();
+                    ServerConnection connection =
+                        (ServerConnection) key.attachment();
+
+                    if (connection.readInput((SocketChannel) key.channel())) {
+                        key.cancel();
+                        ready.add(connection);
+                    }
+                }
+
+                keys.clear();
+
+                if (ready.isEmpty()) {
+                    continue;
+                }
+
+                // deregisters the cancelled keys before blocking mode is set
+                selector.selectNow();
+
+                for (int i = 0; i < ready.size(); i++) {
+                    ServerConnection connection = ready.get(i);
+                    SocketChannel    channel    = connection.getChannel();
+
+                    try {
+                        if (channel != null) {
+                            channel.configureBlocking(true);
+                            dispatch(connection);
+                        }
+                    } catch (IOException e) {
+                        connection.signalClose();
+                    }
+                }
+
+                ready.clear();
+            }
+        } catch (Throwable t) {
+            if (!isClosed) {
+                server.printStackTrace(t);
+            }
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException e) {}
+        }
+    }
+
+    private void registerPending() {
+
+        ServerConnection connection;
+
+        while ((connection = pending.poll()) != null) {
+            SocketChannel channel = connection.getChannel();
+
+            if (channel == null) {
+                continue;
+            }
+
+            try {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (Exception e) {
+                connection.signalClose();
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import org.hsqldb.ClientConnection;
+import org.hsqldb.result.ResultConstants;
+import org.hsqldb.result.ResultLob;
+
+/**
+ * The input of a connection handled by a ServerConnectionDispatcher.<p>
+ *
+ * The dispatcher thread reads the input from the channel without blocking
+ * and keeps it in a buffer. The framing of the HSQL and ODBC protocols is
+ * used to check if the buffer holds a complete request. The connection is
+ * queued for a worker thread only then, and the worker reads the requests
+ * from the buffer. A client that sends a request slowly, or stops in the
+ * middle of a request, does not hold a worker thread.<p>
+ *
+ * A request that is larger than the maximum size of the buffer, for
+ * example a large LOB, is read by the worker thread directly from the
+ * channel after the buffer is full. The exchange of packets during an ODBC
+ * connection is also read directly from the channel.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+final class ServerConnectionInput extends InputStream {
+
+    static final int initialSize = 8 * 1024;
+    static final int maxSize     = 1024 * 1024;
+
+    // returned by the scan methods
+    private static final int INCOMPLETE = -1;
+    private static final int MALFORMED  = -2;
+
+    //
+    private final SocketChannel channel;
+
+    // the unread input is between position and limit
+    private ByteBuffer buffer;
+    private boolean    isEndOfStream;
+    private boolean    isStreaming;
+
+    ServerConnectionInput(SocketChannel channel) {
+
+        this.channel = channel;
+        this.buffer  = newBuffer(initialSize);
+    }
+
+    /**
+     * Reads from the channel into the buffer. The buffer is enlarged up to
+     * maxSize when it is full. Blocks only when the channel is in blocking
+     * mode.
+     *
+     * @return the number of bytes read, or -1 at the end of stream
+     */
+    int fill() throws IOException {
+
+        if (!buffer.hasRemaining() && buffer.capacity() > initialSize) {
+            buffer = newBuffer(initialSize);
+        }
+
+        if (buffer.remaining() == buffer.capacity()
+                && buffer.capacity() < maxSize) {
+            ByteBuffer newBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+
+            newBuffer.put(buffer);
+
+            buffer = newBuffer;
+        } else {
+            buffer.compact();
+        }
+
+        int count;
+
+        try {
+            count = channel.read(buffer);
+        } finally {
+            buffer.flip();
+        }
+
+        if (count < 0) {
+            isEndOfStream = true;
+        }
+
+        return count;
+    }
+
+    void setEndOfStream() {
+        isEndOfStream = true;
+    }
+
+    /**
+     * Allows or disallows reading directly from the channel when the
+     * buffer is empty.
+     */
+    void setStreaming(boolean streaming) {
+        isStreaming = streaming;
+    }
+
+    /**
+     * Returns true if a worker thread can handle the next request without
+     * waiting for more input. That is when the buffer holds the complete
+     * request, or the end of stream has been reached. When the request is
+     * incomplete but the buffer cannot be enlarged, streaming is allowed
+     * and the rest of the request is read from the channel.
+     *
+     * @param streamProtocol the protocol of the connection, or
+     *   UNDEFINED_STREAM_PROTOCOL before the handshake
+     */
+    boolean hasRequest(int streamProtocol) {
+
+        if (isEndOfStream) {
+            return true;
+        }
+
+        int start = buffer.position();
+        int end   = buffer.limit();
+
+        if (start == end) {
+            return false;
+        }
+
+        int result;
+
+        switch (streamProtocol) {
+
+            case ServerConnection.HSQL_STREAM_PROTOCOL :
+                result = scanResult(start, end);
+                break;
+
+            case ServerConnection.ODBC_STREAM_PROTOCOL :
+                result = scanOdbcPacket(start, end);
+                break;
+
+            default :
+                result = scanHandshake(start, end);
+        }
+
+        if (result != INCOMPLETE) {
+            return true;
+        }
+
+        if (end - start == maxSize) {
+            isStreaming = true;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    public int available() {
+        return buffer.remaining();
+    }
+
+    public int read() throws IOException {
+
+        if (!buffer.hasRemaining() && !readStream()) {
+            return -1;
+        }
+
+        return buffer.get() & 0xff;
+    }
+
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!buffer.hasRemaining() && !readStream()) {
+            return -1;
+        }
+
+        length = Math.min(length, buffer.remaining());
+
+        buffer.get(bytes, offset, length);
+
+        return length;
+    }
+
+    /**
+     * When the buffer is empty, reads from the channel if streaming is
+     * allowed. Otherwise the request was not complete, which is reported to
+     * the reader as end of stream.
+     */
+    private boolean readStream() throws IOException {
+
+        while (isStreaming && !isEndOfStream) {
+            if (fill() > 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The handshake is an int, followed by the connection request for the
+     * HSQL protocol, or by the rest of the startup packet for ODBC.
+     */
+    private int scanHandshake(int pos, int end) {
+
+        if (end - pos < 4) {
+            return INCOMPLETE;
+        }
+
+        int firstInt = buffer.getInt(pos);
+
+        switch (firstInt >> 24) {
+
+            case 80 :    // HTTP, rejected
+                return pos + 4;
+
+            case 0 :     // ODBC, the int is the length of the packet
+                return skipSized(pos, end);
+
+            default :
+                if (firstInt
+                        != ClientConnection.NETWORK_COMPATIBILITY_VERSION_INT) {
+                    return pos + 4;
+                }
+
+                return scanResult(pos + 4, end);
+        }
+    }
+
+    /**
+     * An HSQL request is a mode byte, followed by an int length and the rest
+     * of the result, or by a LOB operation. Any LOB operations follow, and
+     * the request ends with a NONE byte.
+     */
+    private int scanResult(int pos, int end) {
+
+        if (pos == end) {
+            return INCOMPLETE;
+        }
+
+        int mode = buffer.get(pos++);
+
+        if (mode == ResultConstants.LARGE_OBJECT_OP) {
+            pos = scanLob(pos, end);
+        } else {
+            pos = skipSized(pos, end);
+        }
+
+        while (pos >= 0) {
+            if (pos == end) {
+                return INCOMPLETE;
+            }
+
+            mode = buffer.get(pos++);
+
+            if (mode == ResultConstants.NONE) {
+                return pos;
+            }
+
+            if (mode != ResultConstants.LARGE_OBJECT_OP) {
+                return MALFORMED;
+            }
+
+            pos = scanLob(pos, end);
+        }
+
+        return pos;
+    }
+
+    /**
+     * A LOB operation has a 24 byte header, with the operation type last.
+     */
+    private int scanLob(int pos, int end) {
+
+        if (end - pos < 24) {
+            return INCOMPLETE;
+        }
+
+        int subType = buffer.getInt(pos + 20);
+
+        pos += 24;
+
+        switch (subType) {
+
+            case ResultLob.LobResultTypes.REQUEST_GET_LENGTH :
+            case ResultLob.LobResultTypes.REQUEST_TRUNCATE :
+                return skip(pos, end, 8);
+
+            case ResultLob.LobResultTypes.REQUEST_GET_LOB :
+            case ResultLob.LobResultTypes.REQUEST_DUPLICATE_LOB :
+            case ResultLob.LobResultTypes.REQUEST_GET_BYTES :
+            case ResultLob.LobResultTypes.REQUEST_GET_CHARS :
+                return skip(pos, end, 16);
+
+            case ResultLob.LobResultTypes.REQUEST_CREATE_BYTES :
+            case ResultLob.LobResultTypes.REQUEST_SET_BYTES :
+            case ResultLob.LobResultTypes.REQUEST_GET_BYTE_PATTERN_POSITION :
+                return skipBlock(pos, end, 1);
+
+            case ResultLob.LobResultTypes.REQUEST_CREATE_CHARS :
+            case ResultLob.LobResultTypes.REQUEST_SET_CHARS :
+            case ResultLob.LobResultTypes.REQUEST_GET_CHAR_PATTERN_POSITION :
+                return skipBlock(pos, end, 2);
+
+            default :
+                return MALFORMED;
+        }
+    }
+
+    /**
+     * An ODBC packet is a type byte and an int length, which includes the
+     * int itself.
+     */
+    private int scanOdbcPacket(int pos, int end) {
+
+        return skipSized(pos + 1, end);
+    }
+
+    /**
+     * Skips an int length and the rest of the data, with the int included
+     * in the length.
+     */
+    private int skipSized(int pos, int end) {
+
+        if (end - pos < 4) {
+            return INCOMPLETE;
+        }
+
+        int length = buffer.getInt(pos);
+
+        if (length < 4) {
+            return MALFORMED;
+        }
+
+        return skip(pos, end, length);
+    }
+
+    /**
+     * Skips the offset and length longs and the block of bytes or chars of
+     * a LOB operation.
+     */
+    private int skipBlock(int pos, int end, int unitSize) {
+
+        if (end - pos < 16) {
+            return INCOMPLETE;
+        }
+
+        long length = buffer.getLong(pos + 8);
+
+        if (length < 0) {
+            return MALFORMED;
+        }
+
+        return skip(pos, end, 16 + length * unitSize);
+    }
+
+    private static int skip(int pos, int end, long length) {
+
+        if (length < 0) {
+            return MALFORMED;
+        }
+
+        if (length > end - pos) {
+            return INCOMPLETE;
+        }
+
+        return pos + (int) length;
+    }
+
+    private static ByteBuffer newBuffer(int size) {
+
+        ByteBuffer newBuffer = ByteBuffer.allocate(size);
+
+        newBuffer.flip();
+
+        return newBuffer;
+    }
+}
@@ -95,6 +95,8 @@ public class ServerProperties extends HsqlProperties {
     static final String sc_key_web_root           = "server.root";
     static final String sc_key_max_connections    = "server.maxconnections";
     static final String sc_key_max_wait           = "server.max_wait";
+    static final String sc_key_worker_threads     = "server.worker_threads";
+    static final String sc_key_virtual_threads    = "server.virtual_threads";
     static final String sc_key_remote_open_db     = "server.remote_open";
     static final String sc_key_max_databases      = "server.maxdatabases";
     static final String sc_key_acl                = "server.acl";
@@ -311,6 +313,8 @@ public class ServerProperties extends HsqlProperties {
         serverMeta.put(sc_key_http_port, newMeta(sc_key_http_port, SERVER_PROPERTY, 80, 0, 65535));
         serverMeta.put(sc_key_max_connections, newMeta(sc_key_max_connections, SERVER_PROPERTY, 100, 1, 10000));
         serverMeta.put(sc_key_max_wait, newMeta(sc_key_max_wait, SERVER_PROPERTY, 1000, 0, 30000));
+        serverMeta.put(sc_key_worker_threads, newMeta(sc_key_worker_threads, SERVER_PROPERTY, 0, 0, 10000));
+        serverMeta.put(sc_key_virtual_threads, newMeta(sc_key_virtual_threads, SERVER_PROPERTY, false));
         serverMeta.put(sc_key_max_databases, newMeta(sc_key_max_databases, SERVER_PROPERTY, 10, 1, 1000));
 
         //
@@ -0,0 +1,192 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the scan resistance of the hsqldb.cache_policy settings. A small
+ * table is read several times, then a table ten times larger than the
+ * cache is scanned. With 2Q, the rows of the small table are still in the
+ * cache after the scan. With LRU, they are read again from the file.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class TestCachePolicy extends TestFileDbBase {
+
+    static final int cacheRows = 2000;
+    static final int hotRows   = 200;
+    static final int scanRows  = cacheRows * 10;
+
+    public TestCachePolicy(String name) {
+        super(name);
+    }
+
+    public void test2QKeepsHotRows() throws SQLException {
+
+        long[] counts = runScan("2Q");
+
+        assertTrue("hot rows were read from the file after the scan: "
+                   + counts[1], counts[1] < hotRows / 10);
+        assertTrue("hot rows were not found in the cache: " + counts[0],
+                   counts[0] >= hotRows);
+    }
+
+    public void testLRUEvictsHotRows() throws SQLException {
+
+        long[] counts = runScan("LRU");
+
+        assertTrue("hot rows were not read from the file after the scan: "
+                   + counts[1], counts[1] >= hotRows);
+    }
+
+    /**
+     * Returns the change in CACHE_HITS and CACHE_MISSES when the hot rows
+     * are read after the scan.
+     */
+    long[] runScan(String policy) throws SQLException {
+
+        String url = "jdbc:hsqldb:file:" + getDatabasePath(policy);
+        Connection conn = DriverManager.getConnection(url
+            + ";hsqldb.cache_rows=" + cacheRows, "SA", "");
+        Statement st = conn.createStatement();
+
+        st.execute("CREATE CACHED TABLE hot(i INT PRIMARY KEY, "
+                   + "v VARCHAR(100))");
+        st.execute("CREATE CACHED TABLE big(i INT PRIMARY KEY, "
+                   + "v VARCHAR(100))");
+        insertRows(conn, "hot", hotRows);
+        insertRows(conn, "big", scanRows);
+        st.execute("SHUTDOWN");
+        conn.close();
+
+        // the cache is empty after the database is opened
+        conn = DriverManager.getConnection(url + ";hsqldb.cache_policy="
+                                           + policy, "SA", "");
+        st = conn.createStatement();
+
+        for (int i = 0; i < 4; i++) {
+            readHotRows(conn);
+        }
+
+        ResultSet rs =
+            st.executeQuery("SELECT sum(char_length(v)) FROM big");
+
+        rs.next();
+        assertTrue(rs.getLong(1) > 0);
+
+        long[] before = getCacheCounts(st);
+
+        readHotRows(conn);
+
+        long[] after = getCacheCounts(st);
+
+        st.execute("SHUTDOWN");
+        conn.close();
+
+        return new long[] {
+            after[0] - before[0], after[1] - before[1]
+        };
+    }
+
+    static void insertRows(Connection conn, String table,
+                           int count) throws SQLException {
+
+        PreparedStatement ps = conn.prepareStatement("INSERT INTO " + table
+            + " VALUES(?, ?)");
+
+        for (int i = 0; i < count; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, "row " + i + " of the table " + table);
+            ps.executeUpdate();
+        }
+
+        ps.close();
+    }
+
+    static void readHotRows(Connection conn) throws SQLException {
+
+        PreparedStatement ps =
+            conn.prepareStatement("SELECT v FROM hot WHERE i = ?");
+
+        for (int i = 0; i < hotRows; i++) {
+            ps.setInt(1, i);
+
+            ResultSet rs = ps.executeQuery();
+
+            assertTrue(rs.next());
+            rs.close();
+        }
+
+        ps.close();
+    }
+
+    static long[] getCacheCounts(Statement st) throws SQLException {
+
+        ResultSet rs = st.executeQuery(
+            "SELECT sum(cache_hits), sum(cache_misses) "
+            + "FROM information_schema.system_cacheinfo");
+
+        rs.next();
+
+        long[] counts = new long[] {
+            rs.getLong(1), rs.getLong(2)
+        };
+
+        rs.close();
+
+        return counts;
+    }
+
+    public static Test suite() {
+
+        TestSuite newSuite = new TestSuite();
+
+        newSuite.addTest(new TestCachePolicy("test2QKeepsHotRows"));
+        newSuite.addTest(new TestCachePolicy("testLRUEvictsHotRows"));
+
+        return newSuite;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+}
@@ -0,0 +1,261 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests a segmented cache for CACHED tables with hsqldb.cache_segments.
+ * The cache is much smaller than the table, so rows are evicted while
+ * other threads read and update them. Each row holds a value derived from
+ * its key and its update count, which is checked by the readers and at the
+ * end of each phase. A CHECKPOINT and a SHUTDOWN COMPACT separate the
+ * phases.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class TestCacheSegments extends TestFileDbBase {
+
+    static final int rowCount     = 20000;
+    static final int updaterCount = 4;
+    static final int readerCount  = 4;
+    static final int operations   = 2000;
+    String           url;
+
+    // number of updates of each row, written only by the owning updater
+    int[] versions;
+
+    public TestCacheSegments(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+
+        super.setUp();
+
+        url = "jdbc:hsqldb:file:" + getDatabasePath("db")
+              + ";hsqldb.cache_rows=4096;hsqldb.cache_segments=4";
+        versions = new int[rowCount];
+    }
+
+    public void testConcurrentAccess() throws Exception {
+
+        Connection conn = DriverManager.getConnection(url, "SA", "");
+        Statement  st   = conn.createStatement();
+
+        st.execute("CREATE CACHED TABLE ts(i INT PRIMARY KEY, n INT, "
+                   + "v VARCHAR(100))");
+
+        PreparedStatement ps =
+            conn.prepareStatement("INSERT INTO ts VALUES(?, 0, ?)");
+
+        for (int i = 0; i < rowCount; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, value(i, 0));
+            ps.executeUpdate();
+        }
+
+        ps.close();
+        runPhase(1);
+        checkRows(conn);
+        st.execute("CHECKPOINT");
+        runPhase(2);
+        checkRows(conn);
+        checkCacheSize(conn);
+        st.execute("SHUTDOWN COMPACT");
+        conn.close();
+
+        conn = DriverManager.getConnection(url, "SA", "");
+
+        checkRows(conn);
+        runPhase(3);
+        checkRows(conn);
+        checkCacheSize(conn);
+        conn.createStatement().execute("SHUTDOWN");
+        conn.close();
+    }
+
+    /**
+     * Runs the updaters and readers concurrently. Updater t updates the
+     * rows with i % updaterCount == t. Readers check the value of random
+     * rows against their update count.
+     */
+    private void runPhase(final int phase) throws Exception {
+
+        int               threadCount = updaterCount + readerCount;
+        final Throwable[] failures    = new Throwable[threadCount];
+        Thread[]          threads     = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+            final int threadIndex = t;
+
+            threads[t] = new Thread() {
+
+                public void run() {
+
+                    try {
+                        Connection c = DriverManager.getConnection(url, "SA",
+                            "");
+
+                        if (threadIndex < updaterCount) {
+                            update(c, threadIndex, phase);
+                        } else {
+                            read(c, threadIndex + phase * threadCount);
+                        }
+
+                        c.close();
+                    } catch (Throwable e) {
+                        failures[threadIndex] = e;
+                    }
+                }
+            };
+
+            threads[t].start();
+        }
+
+        for (int t = 0; t < threadCount; t++) {
+            threads[t].join();
+        }
+
+        for (int t = 0; t < threadCount; t++) {
+            if (failures[t] != null) {
+                throw new RuntimeException("phase " + phase + " thread " + t,
+                                           failures[t]);
+            }
+        }
+    }
+
+    void update(Connection c, int updater, int phase) throws SQLException {
+
+        Random random = new Random(updater + phase * 31);
+        PreparedStatement ps = c.prepareStatement(
+            "UPDATE ts SET n = ?, v = ? WHERE i = ?");
+
+        for (int j = 0; j < operations; j++) {
+            int i = random.nextInt(rowCount / updaterCount) * updaterCount
+                    + updater;
+            int n = versions[i] + 1;
+
+            ps.setInt(1, n);
+            ps.setString(2, value(i, n));
+            ps.setInt(3, i);
+            assertEquals(1, ps.executeUpdate());
+
+            versions[i] = n;
+        }
+
+        ps.close();
+    }
+
+    void read(Connection c, int seed) throws SQLException {
+
+        Random random = new Random(seed);
+        PreparedStatement ps =
+            c.prepareStatement("SELECT n, v FROM ts WHERE i = ?");
+
+        for (int j = 0; j < operations * 2; j++) {
+            int i = random.nextInt(rowCount);
+
+            ps.setInt(1, i);
+
+            ResultSet rs = ps.executeQuery();
+
+            assertTrue("row " + i + " not found", rs.next());
+            assertEquals("row " + i, value(i, rs.getInt(1)),
+                         rs.getString(2));
+            rs.close();
+        }
+
+        ps.close();
+    }
+
+    void checkRows(Connection c) throws SQLException {
+
+        ResultSet rs = c.createStatement().executeQuery(
+            "SELECT i, n, v FROM ts ORDER BY i");
+        int count = 0;
+
+        while (rs.next()) {
+            int i = rs.getInt(1);
+
+            assertEquals(count, i);
+            assertEquals("row " + i, versions[i], rs.getInt(2));
+            assertEquals("row " + i, value(i, versions[i]), rs.getString(3));
+
+            count++;
+        }
+
+        rs.close();
+        assertEquals(rowCount, count);
+    }
+
+    void checkCacheSize(Connection c) throws SQLException {
+
+        ResultSet rs = c.createStatement().executeQuery(
+            "SELECT max_cache_count, cache_size, cache_misses "
+            + "FROM information_schema.system_cacheinfo");
+
+        assertTrue(rs.next());
+        assertEquals(4096L, rs.getLong(1));
+        assertTrue("cache size " + rs.getLong(2), rs.getLong(2) <= 4096);
+        assertTrue("no rows were read from the file", rs.getLong(3) > 0);
+        rs.close();
+    }
+
+    static String value(int i, int n) {
+        return "row " + i + " update " + n;
+    }
+
+    public static Test suite() {
+
+        TestSuite newSuite = new TestSuite();
+
+        newSuite.addTest(new TestCacheSegments("testConcurrentAccess"));
+
+        return newSuite;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+}
@@ -36,6 +36,7 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -344,6 +345,205 @@ public class TestDbBackup extends TestCase {
         }
     }
 
+    /**
+     * Test a full online backup followed by incremental backups, restored
+     * by applying the incremental backups to the extracted full backup.
+     */
+    public void testIncrementalBackup()
+    throws SQLException, IOException, TarMalformatException {
+
+        String fullTar = baseDir.getAbsolutePath() + "/full.tar";
+        String inc1Tar = baseDir.getAbsolutePath() + "/inc1.tar";
+        String inc2Tar = baseDir.getAbsolutePath() + "/inc2.tar";
+
+        try {
+            setupConn("db1");
+
+            Statement st = conn.createStatement();
+
+            try {
+                st.executeUpdate("BACKUP DATABASE TO '" + inc1Tar
+                                 + "' NOT BLOCKING NOT COMPRESSED INCREMENTAL");
+                fail("Incremental backup did not throw without full backup");
+            } catch (SQLException e) {}
+
+            st.executeUpdate(
+                "CREATE CACHED TABLE tc(i INT PRIMARY KEY, v VARCHAR(200))");
+
+            PreparedStatement ps =
+                conn.prepareStatement("INSERT INTO tc VALUES(?, ?)");
+
+            for (int i = 0; i < 2000; i++) {
+                ps.setInt(1, i);
+                ps.setString(2, "row " + i + " of the first set of rows");
+                ps.executeUpdate();
+            }
+
+            conn.commit();
+            st.executeUpdate("CHECKPOINT");
+            st.executeUpdate("BACKUP DATABASE TO '" + fullTar
+                             + "' NOT BLOCKING NOT COMPRESSED");
+            st.executeUpdate(
+                "UPDATE tc SET v = 'updated' WHERE i BETWEEN 500 AND 520");
+            st.executeUpdate("DELETE FROM tc WHERE i >= 1900");
+            conn.commit();
+            st.executeUpdate("CHECKPOINT");
+
+            for (int i = 2000; i < 2100; i++) {
+                ps.setInt(1, i);
+                ps.setString(2, "row " + i + " of the second set of rows");
+                ps.executeUpdate();
+            }
+
+            conn.commit();
+            st.executeUpdate("BACKUP DATABASE TO '" + inc1Tar
+                             + "' NOT BLOCKING NOT COMPRESSED INCREMENTAL");
+            st.executeUpdate("UPDATE tc SET v = 'last' WHERE i = 10");
+            st.executeUpdate("INSERT INTO t VALUES(35)");
+            conn.commit();
+            st.executeUpdate("BACKUP DATABASE TO '" + inc2Tar
+                             + "' BLOCKING NOT COMPRESSED INCREMENTAL");
+        } finally {
+            shutdownAndCloseConn();
+        }
+
+        File destDir = new File(baseDir, "increstored");
+
+        if (!destDir.mkdir()) {
+            throw new IOException("Failed to make new dir. to restore to: "
+                                  + destDir.getAbsolutePath());
+        }
+
+        DbBackupMain.main(new String[] {
+            "--extract", fullTar, destDir.getAbsolutePath()
+        });
+
+        // increments must be applied in order
+        try {
+            DbBackupMain.main(new String[] {
+                "--apply", destDir.getAbsolutePath(), inc2Tar
+            });
+            fail("Incremental backup applied to the wrong base backup");
+        } catch (IllegalStateException e) {}
+
+        DbBackupMain.main(new String[] {
+            "--apply", destDir.getAbsolutePath(), inc1Tar, inc2Tar
+        });
+
+        try {
+            setupConn("increstored");
+
+            Statement st = conn.createStatement();
+            ResultSet rs = st.executeQuery(
+                "SELECT count(*) FROM tc WHERE v LIKE 'row%'");
+
+            rs.next();
+            assertEquals("Wrong table 'tc' row count", 1978, rs.getInt(1));
+
+            rs = st.executeQuery("SELECT v FROM tc WHERE i = 10");
+
+            rs.next();
+            assertEquals("Wrong table 'tc' contents", "last",
+                         rs.getString(1));
+
+            rs = st.executeQuery(
+                "SELECT count(*) FROM tc WHERE v = 'updated'");
+
+            rs.next();
+            assertEquals("Wrong table 'tc' contents", 21, rs.getInt(1));
+
+            rs = st.executeQuery("SELECT count(*) FROM t");
+
+            rs.next();
+            assertEquals("Wrong table 't' contents", 2, rs.getInt(1));
+        } finally {
+            shutdownAndCloseConn();
+        }
+    }
+
+    /**
+     * Test a hot backup with a limited write rate while the database is
+     * updated.
+     */
+    public void testThrottledBackup()
+    throws SQLException, IOException, TarMalformatException {
+
+        String tarName = baseDir.getAbsolutePath() + "/throttled.tar";
+        long   elapsed;
+
+        try {
+            setupConn("db1");
+
+            Statement st = conn.createStatement();
+
+            try {
+                st.executeUpdate("BACKUP DATABASE TO '" + tarName
+                                 + "' BLOCKING NOT COMPRESSED THROTTLE 64");
+                fail("Blocking backup accepted THROTTLE");
+            } catch (SQLException e) {}
+
+            st.executeUpdate(
+                "CREATE CACHED TABLE tc(i INT PRIMARY KEY, v VARCHAR(200))");
+
+            PreparedStatement ps =
+                conn.prepareStatement("INSERT INTO tc VALUES(?, ?)");
+
+            for (int i = 0; i < 2000; i++) {
+                ps.setInt(1, i);
+                ps.setString(2, "row " + i + " written before the backup");
+                ps.executeUpdate();
+            }
+
+            conn.commit();
+            st.executeUpdate("CHECKPOINT");
+
+            long startTime = System.currentTimeMillis();
+
+            st.executeUpdate("BACKUP DATABASE TO '" + tarName
+                             + "' NOT BLOCKING NOT COMPRESSED THROTTLE 64");
+
+            elapsed = System.currentTimeMillis() - startTime;
+
+            st.executeUpdate("DELETE FROM tc");
+            conn.commit();
+        } finally {
+            shutdownAndCloseConn();
+        }
+
+        // every byte of an uncompressed archive is written through the
+        // rate limiter, so the backup cannot end before the time it takes
+        // to write the archive at the THROTTLE rate, less timer rounding
+        long archiveLength = new File(tarName).length();
+        long minimumTime   = archiveLength * 1000 / (64 * 1024);
+
+        assertTrue("Backup rate was not limited, " + archiveLength
+                   + " bytes in " + elapsed + " ms", elapsed
+                       >= minimumTime - 20);
+
+        File destDir = new File(baseDir, "throttlerestored");
+
+        if (!destDir.mkdir()) {
+            throw new IOException("Failed to make new dir. to restore to: "
+                                  + destDir.getAbsolutePath());
+        }
+
+        DbBackupMain.main(new String[] {
+            "--extract", tarName, destDir.getAbsolutePath()
+        });
+
+        try {
+            setupConn("throttlerestored");
+
+            ResultSet rs = conn.createStatement().executeQuery(
+                "SELECT count(*) FROM tc");
+
+            rs.next();
+            assertEquals("Wrong table 'tc' row count", 2000, rs.getInt(1));
+        } finally {
+            shutdownAndCloseConn();
+        }
+    }
+
     public void mainBackupAndRestore(String baseTarName)
     throws SQLException, IOException, TarMalformatException {
 
@@ -649,6 +849,8 @@ public class TestDbBackup extends TestCase {
         newSuite.addTest(new TestDbBackup("testMainAlreadyOpen"));
         newSuite.addTest(new TestDbBackup("testGzip"));
         newSuite.addTest(new TestDbBackup("testOnlineBackup"));
+        newSuite.addTest(new TestDbBackup("testIncrementalBackup"));
+        newSuite.addTest(new TestDbBackup("testThrottledBackup"));
         newSuite.addTest(new TestDbBackup("testTarFileNames"));
         newSuite.addTest(new TestDbBackup("testAutoNaming"));
 
@@ -0,0 +1,95 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+/**
+ * Base for tests that create file databases. Each test uses a new
+ * directory under java.io.tmpdir, which is removed with its contents after
+ * the test.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public abstract class TestFileDbBase extends TestCase {
+
+    File baseDir;
+
+    static {
+        try {
+            Class.forName("org.hsqldb.jdbc.JDBCDriver");
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public TestFileDbBase(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+        baseDir = new File(System.getProperty("java.io.tmpdir"),
+                           getClass().getSimpleName() + "-"
+                           + System.currentTimeMillis());
+    }
+
+    protected void tearDown() {
+        rmR(baseDir);
+    }
+
+    /**
+     * Returns the path of a database in the directory of the test.
+     */
+    String getDatabasePath(String name) {
+        return new File(baseDir, name).getAbsolutePath();
+    }
+
+    static void rmR(File dir) {
+
+        File[] children = dir.listFiles();
+
+        if (children != null) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i].isDirectory()) {
+                    rmR(children[i]);
+                } else {
+                    children[i].delete();
+                }
+            }
+        }
+
+        dir.delete();
+    }
+}
@@ -0,0 +1,192 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.hsqldb.Session;
+import org.hsqldb.jdbc.JDBCConnection;
+import org.hsqldb.persist.Logger;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests group commit of the log with WRITE DELAY FALSE. Several sessions
+ * commit concurrently, each recording the last row it has committed. The
+ * commits must share file syncs of the log. After SHUTDOWN IMMEDIATELY,
+ * which does not checkpoint, every recorded row must be recovered from the
+ * log.<p>
+ *
+ * This covers the recovery of the log, not durability after a crash. The
+ * operating system keeps the written data after SHUTDOWN IMMEDIATELY even
+ * if the file is not synched.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class TestGroupCommit extends TestFileDbBase {
+
+    static final int threadCount = 8;
+    static final int rowCount    = 250;
+    String           url;
+
+    public TestGroupCommit(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+
+        super.setUp();
+
+        url = "jdbc:hsqldb:file:" + getDatabasePath("db")
+              + ";hsqldb.commit_wait_micros=200";
+    }
+
+    public void testConcurrentCommit() throws Exception {
+
+        Connection conn = DriverManager.getConnection(url, "SA", "");
+        Statement  st   = conn.createStatement();
+
+        st.execute("SET FILES WRITE DELAY FALSE");
+        st.execute("CREATE CACHED TABLE tg(t INT, i INT, v VARCHAR(100), "
+                   + "PRIMARY KEY(t, i))");
+
+        Session session = (Session) ((JDBCConnection) conn).getSession();
+        Logger  logger  = session.getDatabase().logger;
+
+        // syncs of the log by the commits of the threads
+        int               syncCount = logger.getLogSyncCount();
+        final int[]       committed = new int[threadCount];
+        final Throwable[] failures  = new Throwable[threadCount];
+        Thread[]          threads   = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+            final int threadIndex = t;
+
+            threads[t] = new Thread() {
+
+                public void run() {
+
+                    try {
+                        Connection c = DriverManager.getConnection(url, "SA",
+                            "");
+
+                        c.setAutoCommit(false);
+
+                        PreparedStatement ps = c.prepareStatement(
+                            "INSERT INTO tg VALUES(?, ?, ?)");
+
+                        for (int i = 0; i < rowCount; i++) {
+                            ps.setInt(1, threadIndex);
+                            ps.setInt(2, i);
+                            ps.setString(3, "thread " + threadIndex
+                                         + " row " + i);
+                            ps.executeUpdate();
+                            c.commit();
+
+                            // the commit has returned and must be durable
+                            committed[threadIndex] = i + 1;
+                        }
+
+                        c.close();
+                    } catch (Throwable e) {
+                        failures[threadIndex] = e;
+                    }
+                }
+            };
+
+            threads[t].start();
+        }
+
+        for (int t = 0; t < threadCount; t++) {
+            threads[t].join();
+        }
+
+        for (int t = 0; t < threadCount; t++) {
+            if (failures[t] != null) {
+                throw new RuntimeException(failures[t]);
+            }
+        }
+
+        int commitCount = 0;
+
+        for (int t = 0; t < threadCount; t++) {
+            commitCount += committed[t];
+        }
+
+        assertEquals(threadCount * rowCount, commitCount);
+
+        syncCount = logger.getLogSyncCount() - syncCount;
+
+        assertTrue("commits synched " + syncCount + " times",
+                   syncCount > 0 && syncCount < commitCount / 4);
+
+        // no checkpoint, the rows are recovered from the .log file
+        st.execute("SHUTDOWN IMMEDIATELY");
+        conn.close();
+
+        conn = DriverManager.getConnection(url, "SA", "");
+        st   = conn.createStatement();
+
+        for (int t = 0; t < threadCount; t++) {
+            ResultSet rs = st.executeQuery(
+                "SELECT count(*), max(i) FROM tg WHERE t = " + t);
+
+            rs.next();
+            assertEquals("row count of thread " + t, committed[t],
+                         rs.getInt(1));
+            assertEquals("last row of thread " + t, committed[t] - 1,
+                         rs.getInt(2));
+        }
+
+        st.execute("SHUTDOWN");
+        conn.close();
+    }
+
+    public static Test suite() {
+
+        TestSuite newSuite = new TestSuite();
+
+        newSuite.addTest(new TestGroupCommit("testConcurrentCommit"));
+
+        return newSuite;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+}
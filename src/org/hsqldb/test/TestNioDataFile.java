@@ -0,0 +1,240 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests reads of CACHED table rows from a memory mapped .data file
+ * (hsqldb.nio_data_file) while the file grows. The rows are larger than the
+ * cache, so reader threads load rows from the mapped buffers while a writer
+ * enlarges the file past several mapped buffer boundaries.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class TestNioDataFile extends TestFileDbBase {
+
+    static final int initialRows = 1000;
+    static final int rowCount    = 9000;
+    static final int readerCount = 2;
+    static final int bufferSize  = 1 << 24;
+    String           url;
+
+    public TestNioDataFile(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+
+        super.setUp();
+
+        url = "jdbc:hsqldb:file:" + getDatabasePath("db")
+              + ";hsqldb.nio_data_file=true;hsqldb.cache_rows=1000"
+              + ";hsqldb.cache_size=1000";
+    }
+
+    public void testReadWhileGrowing() throws Exception {
+
+        Connection conn = DriverManager.getConnection(url, "SA", "");
+        Statement  st   = conn.createStatement();
+
+        st.execute("CREATE CACHED TABLE tn(i INT PRIMARY KEY, "
+                   + "v VARCHAR(4000))");
+
+        PreparedStatement ps =
+            conn.prepareStatement("INSERT INTO tn VALUES(?, ?)");
+
+        insertRows(ps, 0, initialRows);
+        st.execute("CHECKPOINT");
+
+        // rows below this are committed and may be read
+        final AtomicInteger committed = new AtomicInteger(initialRows);
+        final Throwable[]   failures  = new Throwable[readerCount];
+        final boolean[]     done      = new boolean[1];
+        Thread[]            readers   = new Thread[readerCount];
+
+        for (int t = 0; t < readerCount; t++) {
+            final int readerIndex = t;
+
+            readers[t] = new Thread() {
+
+                public void run() {
+
+                    try {
+                        Connection c = DriverManager.getConnection(url, "SA",
+                            "");
+
+                        readRows(c, readerIndex, committed, done);
+                        c.close();
+                    } catch (Throwable e) {
+                        failures[readerIndex] = e;
+                    }
+                }
+            };
+
+            readers[t].start();
+        }
+
+        for (int i = initialRows; i < rowCount; i += 100) {
+            insertRows(ps, i, i + 100);
+            committed.set(i + 100);
+        }
+
+        synchronized (done) {
+            done[0] = true;
+        }
+
+        for (int t = 0; t < readerCount; t++) {
+            readers[t].join();
+        }
+
+        for (int t = 0; t < readerCount; t++) {
+            if (failures[t] != null) {
+                throw new RuntimeException("reader " + t, failures[t]);
+            }
+        }
+
+        ps.close();
+
+        File dataFile = new File(baseDir, "db.data");
+
+        assertTrue("data file was not enlarged past two mapped buffers",
+                   dataFile.length() > 2L * bufferSize);
+
+        ResultSet rs = st.executeQuery(
+            "SELECT sum(cache_misses) "
+            + "FROM information_schema.system_cacheinfo");
+
+        rs.next();
+        assertTrue("no rows were read from the file", rs.getLong(1) > 0);
+        st.execute("SHUTDOWN");
+        conn.close();
+
+        // the file is mapped again when the database is opened
+        conn = DriverManager.getConnection(url, "SA", "");
+        st   = conn.createStatement();
+        rs   = st.executeQuery("SELECT i, v FROM tn ORDER BY i");
+
+        int count = 0;
+
+        while (rs.next()) {
+            assertEquals(count, rs.getInt(1));
+            assertEquals(value(count), rs.getString(2));
+
+            count++;
+        }
+
+        assertEquals(rowCount, count);
+        st.execute("SHUTDOWN");
+        conn.close();
+    }
+
+    static void insertRows(PreparedStatement ps, int from,
+                           int to) throws SQLException {
+
+        for (int i = from; i < to; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, value(i));
+            ps.executeUpdate();
+        }
+    }
+
+    static void readRows(Connection c, int seed, AtomicInteger committed,
+                         boolean[] done) throws SQLException {
+
+        Random random = new Random(seed);
+        PreparedStatement ps =
+            c.prepareStatement("SELECT v FROM tn WHERE i = ?");
+
+        while (true) {
+            synchronized (done) {
+                if (done[0]) {
+                    break;
+                }
+            }
+
+            int i = random.nextInt(committed.get());
+
+            ps.setInt(1, i);
+
+            ResultSet rs = ps.executeQuery();
+
+            assertTrue("row " + i + " not found", rs.next());
+            assertEquals("row " + i, value(i), rs.getString(1));
+            rs.close();
+
+            // leaves time for the writer
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {}
+        }
+
+        ps.close();
+    }
+
+    static String value(int i) {
+
+        StringBuilder sb = new StringBuilder(4000);
+
+        while (sb.length() < 3990) {
+            sb.append(i).append(' ');
+        }
+
+        return sb.toString();
+    }
+
+    public static Test suite() {
+
+        TestSuite newSuite = new TestSuite();
+
+        newSuite.addTest(new TestNioDataFile("testReadWhileGrowing"));
+
+        return newSuite;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+}
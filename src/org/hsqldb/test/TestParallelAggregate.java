@@ -0,0 +1,215 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.hsqldb.Session;
+import org.hsqldb.jdbc.JDBCConnection;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Compares the results of aggregate queries computed serially and by the
+ * parallel workers of hsqldb.parallel_threads (feature H901_06) on a table
+ * that is large enough for parallel execution.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class TestParallelAggregate extends TestCase {
+
+    static final int rowCount = 40000;
+    static final String url =
+        "jdbc:hsqldb:mem:testparallelaggregate;hsqldb.parallel_threads=4";
+    Connection conn;
+
+    static {
+        try {
+            Class.forName("org.hsqldb.jdbc.JDBCDriver");
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public TestParallelAggregate(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws SQLException {
+
+        conn = DriverManager.getConnection(url, "SA", "");
+
+        Statement st = conn.createStatement();
+
+        st.execute("CREATE TABLE tp(i INT PRIMARY KEY, d DECIMAL(10,2), "
+                   + "v VARCHAR(20))");
+
+        PreparedStatement ps =
+            conn.prepareStatement("INSERT INTO tp VALUES(?, ?, ?)");
+
+        for (int i = 0; i < rowCount; i++) {
+            ps.setInt(1, i);
+            ps.setBigDecimal(2, java.math.BigDecimal.valueOf(i % 1000, 2));
+            ps.setString(3, (i % 7 == 0 ? "seven-"
+                                        : "row-") + (i % 5000));
+            ps.executeUpdate();
+        }
+    }
+
+    protected void tearDown() throws SQLException {
+        conn.createStatement().execute("SHUTDOWN");
+        conn.close();
+    }
+
+    public void testParallelAndSerialResults() throws SQLException {
+
+        String[] queries = new String[] {
+            "SELECT COUNT(*), SUM(i), MIN(v), MAX(d), AVG(d) FROM tp",
+            "SELECT COUNT(*), SUM(i), MIN(v), MAX(v) FROM tp "
+            + "WHERE i > ? AND v LIKE ?",
+            "SELECT SUM(i * ?), MAX(d + ?), COUNT(DISTINCT v) FROM tp "
+            + "WHERE d < ?",
+            "SELECT COUNT(*), SUM(i) FROM tp WHERE v = ?",
+        };
+        Object[][] params = new Object[][] {
+            {}, {
+                Integer.valueOf(12345), "seven-%"
+            }, {
+                Integer.valueOf(3), Integer.valueOf(1),
+                java.math.BigDecimal.valueOf(500, 2)
+            }, { "no such value" }
+        };
+        ForkJoinPool pool = getParallelPool();
+
+        for (int i = 0; i < queries.length; i++) {
+            String serial = execute(false, queries[i], params[i]);
+
+            // the pool threads are started by the first parallel query
+            if (i == 0) {
+                assertEquals("serial query used the pool", 0,
+                             pool.getPoolSize());
+            }
+
+            String parallel = execute(true, queries[i], params[i]);
+
+            if (i == 0) {
+                assertTrue("query was not executed in parallel",
+                           pool.getPoolSize() > 0);
+            }
+
+            assertEquals(queries[i], serial, parallel);
+        }
+    }
+
+    public void testWorkerException() throws SQLException {
+
+        String query = "SELECT SUM(1 / (i - ?)) FROM tp";
+
+        for (int i = 0; i < 2; i++) {
+            boolean parallel = i == 1;
+
+            try {
+                execute(parallel, query,
+                        new Object[]{ Integer.valueOf(30000) });
+                fail("division by zero not reported, parallel " + parallel);
+            } catch (SQLException e) {
+                assertEquals("22012", e.getSQLState());
+            }
+
+            // the session is usable after the failure
+            String result = execute(parallel, query,
+                                    new Object[]{ Integer.valueOf(-1) });
+
+            assertNotNull(result);
+        }
+    }
+
+    private ForkJoinPool getParallelPool() {
+
+        Session session = (Session) ((JDBCConnection) conn).getSession();
+
+        return session.getDatabase().getParallelPool();
+    }
+
+    private String execute(boolean parallel, String sql,
+                           Object[] params) throws SQLException {
+
+        conn.createStatement().execute("SET SESSION FEATURE H901_06 "
+                                       + (parallel ? "TRUE"
+                                                   : "FALSE"));
+
+        PreparedStatement ps = conn.prepareStatement(sql);
+
+        for (int i = 0; i < params.length; i++) {
+            ps.setObject(i + 1, params[i]);
+        }
+
+        ResultSet     rs = ps.executeQuery();
+        StringBuilder sb = new StringBuilder();
+
+        while (rs.next()) {
+            for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                sb.append(rs.getString(i)).append(',');
+            }
+        }
+
+        rs.close();
+        ps.close();
+
+        return sb.toString();
+    }
+
+    public static Test suite() {
+
+        TestSuite newSuite = new TestSuite();
+
+        newSuite.addTest(
+            new TestParallelAggregate("testParallelAndSerialResults"));
+        newSuite.addTest(new TestParallelAggregate("testWorkerException"));
+
+        return newSuite;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+}
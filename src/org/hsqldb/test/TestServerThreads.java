@@ -0,0 +1,458 @@
+/* Copyright (c) 2001-2024, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import java.util.Arrays;
+
+import org.hsqldb.ClientConnection;
+import org.hsqldb.Database;
+import org.hsqldb.StatementTypes;
+import org.hsqldb.lib.DataOutputStream;
+import org.hsqldb.lib.HsqlByteArrayOutputStream;
+import org.hsqldb.lib.HsqlThreadFactory;
+import org.hsqldb.persist.HsqlProperties;
+import org.hsqldb.result.Result;
+import org.hsqldb.result.ResultConstants;
+import org.hsqldb.result.ResultProperties;
+import org.hsqldb.rowio.RowInputBinary;
+import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.server.Server;
+import org.hsqldb.server.ServerConstants;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the threading options of the Server with concurrent sessions.
+ *
+ * @version 2.7.4
+ * @since 2.7.4
+ */
+public class TestServerThreads extends TestCase {
+
+    static final int port        = 9137;
+    static final int clientCount = 24;
+    static final int rowCount    = 50;
+    static final String url = "jdbc:hsqldb:hsql://localhost:" + port
+                              + "/testserverthreads";
+    Server server;
+
+    static {
+        try {
+            Class.forName("org.hsqldb.jdbc.JDBCDriver");
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public TestServerThreads(String name) {
+        super(name);
+    }
+
+    protected void tearDown() {
+
+        if (server != null) {
+            server.shutdownWithCatalogs(Database.CLOSEMODE_IMMEDIATELY);
+
+            server = null;
+        }
+    }
+
+    void startServer(String key, String value) throws Exception {
+
+        HsqlProperties props = new HsqlProperties();
+
+        props.setProperty("server.port", port);
+        props.setProperty("server.database.0", "mem:testserverthreads");
+        props.setProperty("server.dbname.0", "testserverthreads");
+        props.setProperty(key, value);
+
+        server = new Server();
+
+        server.setProperties(props);
+        server.setLogWriter(null);
+        server.setErrWriter(null);
+        server.start();
+        assertEquals(ServerConstants.SERVER_STATE_ONLINE, server.getState());
+    }
+
+    /**
+     * With server.virtual_threads, connections run on virtual threads when
+     * the JVM supports them, otherwise on platform threads. In both cases,
+     * sessions that wait for a table lock held by another session must all
+     * proceed when the lock is released.
+     */
+    public void testVirtualThreads() throws Exception {
+
+        startServer("server.virtual_threads", "true");
+        assertEquals(HsqlThreadFactory.isVirtualThreadSupported(),
+                     server.isVirtualThreads());
+
+        Connection conn = DriverManager.getConnection(url, "SA", "");
+        Statement  st   = conn.createStatement();
+
+        st.execute("SET DATABASE TRANSACTION CONTROL LOCKS");
+        st.execute("CREATE TABLE tv(c INT, i INT, PRIMARY KEY(c, i))");
+        conn.setAutoCommit(false);
+
+        // the clients wait in their sessions until this lock is released
+        st.execute("LOCK TABLE tv WRITE");
+
+        final Throwable[] failures = new Throwable[clientCount];
+        Thread[]          threads  = new Thread[clientCount];
+
+        for (int t = 0; t < clientCount; t++) {
+            final int clientIndex = t;
+
+            threads[t] = new Thread() {
+
+                public void run() {
+
+                    try {
+                        Connection c = DriverManager.getConnection(url, "SA",
+                            "");
+                        PreparedStatement ps =
+                            c.prepareStatement("INSERT INTO tv VALUES(?, ?)");
+
+                        for (int i = 0; i < rowCount; i++) {
+                            ps.setInt(1, clientIndex);
+                            ps.setInt(2, i);
+                            ps.executeUpdate();
+                        }
+
+                        ResultSet rs = c.createStatement().executeQuery(
+                            "SELECT count(*) FROM tv WHERE c = "
+                            + clientIndex);
+
+                        rs.next();
+                        assertEquals(rowCount, rs.getInt(1));
+                        c.close();
+                    } catch (Throwable e) {
+                        failures[clientIndex] = e;
+                    }
+                }
+            };
+
+            threads[t].start();
+        }
+
+        Thread.sleep(500);
+        conn.commit();
+
+        for (int t = 0; t < clientCount; t++) {
+            threads[t].join(30000);
+            assertFalse("client " + t + " did not finish",
+                        threads[t].isAlive());
+        }
+
+        for (int t = 0; t < clientCount; t++) {
+            if (failures[t] != null) {
+                throw new RuntimeException("client " + t, failures[t]);
+            }
+        }
+
+        ResultSet rs = st.executeQuery("SELECT count(*) FROM tv");
+
+        rs.next();
+        assertEquals(clientCount * rowCount, rs.getInt(1));
+        conn.close();
+    }
+
+    /**
+     * With server.worker_threads, a client that sends several requests
+     * without waiting for the responses gets all the responses in order.
+     */
+    public void testPipelinedRequests() throws Exception {
+
+        startServer("server.worker_threads", "2");
+
+        Connection conn = DriverManager.getConnection(url, "SA", "");
+        Statement  st   = conn.createStatement();
+
+        st.execute("CREATE TABLE tp(i INT PRIMARY KEY)");
+
+        Result[] requests = new Result[rowCount + 1];
+
+        requests[0] = newConnectRequest();
+
+        for (int i = 0; i < rowCount; i++) {
+            requests[i + 1] = newExecuteRequest("INSERT INTO tp VALUES(" + i
+                                                + ")");
+        }
+
+        Socket socket = new Socket("localhost", port);
+
+        // one write with the handshake and all the requests
+        socket.getOutputStream().write(toBytes(requests));
+
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(socket.getInputStream()));
+
+        assertFalse(readResult(in).isError());
+
+        for (int i = 0; i < rowCount; i++) {
+            Result result = readResult(in);
+
+            assertTrue("request " + i, result.isUpdateCount());
+            assertEquals(1, result.getUpdateCount());
+        }
+
+        socket.close();
+
+        ResultSet rs = st.executeQuery("SELECT count(*) FROM tp");
+
+        rs.next();
+        assertEquals(rowCount, rs.getInt(1));
+        conn.close();
+    }
+
+    /**
+     * With a single worker thread, a client that sends its handshake and
+     * requests a few bytes at a time, with a long pause in the middle of a
+     * request, does not hold the worker thread. Another client runs its
+     * statements meanwhile.
+     */
+    public void testSlowClient() throws Exception {
+
+        startServer("server.worker_threads", "1");
+
+        Connection conn = DriverManager.getConnection(url, "SA", "");
+        Statement  st   = conn.createStatement();
+
+        st.execute("CREATE TABLE ts(i INT PRIMARY KEY)");
+
+        final byte[] bytes = toBytes(new Result[] {
+            newConnectRequest(), newExecuteRequest("INSERT INTO ts VALUES(-1)")
+        });
+        final Socket      socket   = new Socket("localhost", port);
+        final Throwable[] failures = new Throwable[1];
+        Thread            slow     = new Thread() {
+
+            public void run() {
+
+                try {
+                    OutputStream out = socket.getOutputStream();
+
+                    for (int i = 0; i < bytes.length; i += 7) {
+                        out.write(bytes, i, Math.min(7, bytes.length - i));
+                        out.flush();
+                        Thread.sleep(i == 63 ? 1000
+                                             : 20);
+                    }
+                } catch (Throwable e) {
+                    failures[0] = e;
+                }
+            }
+        };
+
+        slow.start();
+
+        for (int i = 0; i < rowCount; i++) {
+            Connection c = DriverManager.getConnection(url, "SA", "");
+
+            c.createStatement().execute("INSERT INTO ts VALUES(" + i + ")");
+            c.close();
+        }
+
+        assertTrue("the other client had to wait for the slow client",
+                   slow.isAlive());
+        slow.join();
+
+        if (failures[0] != null) {
+            throw new RuntimeException(failures[0]);
+        }
+
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(socket.getInputStream()));
+
+        assertFalse(readResult(in).isError());
+        assertEquals(1, readResult(in).getUpdateCount());
+        socket.close();
+
+        ResultSet rs = st.executeQuery("SELECT count(*), min(i) FROM ts");
+
+        rs.next();
+        assertEquals(rowCount + 1, rs.getInt(1));
+        assertEquals(-1, rs.getInt(2));
+        conn.close();
+    }
+
+    /**
+     * With server.worker_threads, LOB requests are received whole when
+     * small, and streamed by the worker thread when larger than the input
+     * buffer of the connection.
+     */
+    public void testWorkerThreadsLobs() throws Exception {
+
+        startServer("server.worker_threads", "2");
+
+        Connection conn = DriverManager.getConnection(url, "SA", "");
+        Statement  st   = conn.createStatement();
+
+        st.execute("CREATE TABLE tl(i INT PRIMARY KEY, b BLOB, c CLOB)");
+
+        int[] sizes = new int[] {
+            100, 100 * 1024, 3 * 1024 * 1024
+        };
+        PreparedStatement ps =
+            conn.prepareStatement("INSERT INTO tl VALUES(?, ?, ?)");
+
+        for (int i = 0; i < sizes.length; i++) {
+            ps.setInt(1, i);
+            ps.setBytes(2, newBytes(sizes[i]));
+            ps.setString(3, new String(newChars(sizes[i])));
+            ps.executeUpdate();
+        }
+
+        ResultSet rs = st.executeQuery("SELECT i, b, c FROM tl ORDER BY i");
+
+        for (int i = 0; i < sizes.length; i++) {
+            assertTrue(rs.next());
+
+            Blob blob = rs.getBlob(2);
+            Clob clob = rs.getClob(3);
+
+            assertTrue("blob " + i,
+                       Arrays.equals(newBytes(sizes[i]),
+                                     blob.getBytes(1, (int) blob.length())));
+            assertEquals("clob " + i, new String(newChars(sizes[i])),
+                         clob.getSubString(1, (int) clob.length()));
+        }
+
+        conn.close();
+    }
+
+    static byte[] newBytes(int size) {
+
+        byte[] bytes = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+
+        return bytes;
+    }
+
+    static char[] newChars(int size) {
+
+        char[] chars = new char[size];
+
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) ('a' + i % 26);
+        }
+
+        return chars;
+    }
+
+    static Result newConnectRequest() {
+        return Result.newConnectionAttemptRequest("SA", "",
+                "testserverthreads", "UTC", 0);
+    }
+
+    static Result newExecuteRequest(String sql) {
+
+        Result result = Result.newExecuteDirectRequest();
+
+        result.setPrepareOrExecuteProperties(
+            sql,
+            0,
+            0,
+            StatementTypes.RETURN_COUNT,
+            0,
+            ResultProperties.defaultPropsValue,
+            ResultConstants.RETURN_NO_GENERATED_KEYS,
+            null,
+            null);
+
+        return result;
+    }
+
+    /**
+     * Returns the handshake followed by the requests, as written by
+     * ClientConnection.
+     */
+    static byte[] toBytes(Result[] requests) throws IOException {
+
+        HsqlByteArrayOutputStream bytes  = new HsqlByteArrayOutputStream();
+        DataOutputStream          out    = new DataOutputStream(bytes);
+        RowOutputBinary           rowOut = new RowOutputBinary(new byte[1024]);
+
+        out.writeInt(ClientConnection.NETWORK_COMPATIBILITY_VERSION_INT);
+
+        for (int i = 0; i < requests.length; i++) {
+            requests[i].write(null, out, rowOut);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    static Result readResult(DataInputStream in) throws IOException {
+
+        RowInputBinary rowIn =
+            new RowInputBinary(new RowOutputBinary(new byte[1024]));
+        Result result = Result.newResult(in, rowIn);
+
+        result.readAdditionalResults(null, in, rowIn);
+
+        return result;
+    }
+
+    public static Test suite() {
+
+        TestSuite newSuite = new TestSuite();
+
+        newSuite.addTest(new TestServerThreads("testVirtualThreads"));
+        newSuite.addTest(new TestServerThreads("testPipelinedRequests"));
+        newSuite.addTest(new TestServerThreads("testSlowClient"));
+        newSuite.addTest(new TestServerThreads("testWorkerThreadsLobs"));
+
+        return newSuite;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+}
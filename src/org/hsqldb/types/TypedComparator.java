@@ -31,6 +31,7 @@
 
 package org.hsqldb.types;
 
+import java.math.BigDecimal;
 import java.util.Comparator;
 
 import org.hsqldb.Session;
@@ -41,7 +42,7 @@ import org.hsqldb.lib.ObjectComparator;
   * Comparator with sort order and null order.<p>
   *
   * @author Fred Toussi (fredt@users dot sourceforge.net)
-  * @version 2.6.0
+  * @version 2.7.4
   * @since 2.4.0
  */
 public class TypedComparator implements Comparator, ObjectComparator {
@@ -88,4 +89,102 @@ public class TypedComparator implements Comparator, ObjectComparator {
         this.type = type;
         this.sort = sort;
     }
+
+    /**
+     * Returns true if getKeyHash returns equal hashes for all values of the
+     * type that compare as equal.
+     */
+    public static boolean isKeyHashable(Type type) {
+
+        if (type.isLobType()) {
+            return false;
+        }
+
+        if (type.isNumberType()) {
+            return true;
+        }
+
+        if (type.isCharacterType()) {
+            Collation collation = type.getCollation();
+
+            return collation.isDefaultCollation()
+                   || collation == Collation.getDefaultIgnoreCaseInstance();
+        }
+
+        switch (type.typeCode) {
+
+            case Types.SQL_BOOLEAN :
+            case Types.SQL_DATE :
+            case Types.SQL_TIMESTAMP :
+            case Types.SQL_TIMESTAMP_WITH_TIME_ZONE :
+                return true;
+
+            default :
+                return false;
+        }
+    }
+
+    /**
+     * Hash that is equal for values that compare as equal. Numbers of
+     * different types are hashed on their numeric value and character strings
+     * ignore trailing spaces and, for case-insensitive collations, case.
+     */
+    public static int getKeyHash(Type type, Object value) {
+
+        if (value == null) {
+            return 0;
+        }
+
+        if (value instanceof Number) {
+            if (value instanceof BigDecimal) {
+                BigDecimal bd = (BigDecimal) value;
+
+                try {
+                    return Long.hashCode(bd.longValueExact());
+                } catch (ArithmeticException e) {
+                    return Double.hashCode(bd.doubleValue());
+                }
+            }
+
+            if (value instanceof Double || value instanceof Float) {
+                double d = ((Number) value).doubleValue();
+
+                if (d == (long) d) {
+                    return Long.hashCode((long) d);
+                }
+
+                return Double.hashCode(d);
+            }
+
+            return Long.hashCode(((Number) value).longValue());
+        }
+
+        if (value instanceof String) {
+            String s   = (String) value;
+            int    end = s.length();
+
+            if (type.getCollation().isPadSpace()) {
+                while (end > 0 && s.charAt(end - 1) == ' ') {
+                    end--;
+                }
+            }
+
+            boolean ignoreCase = !type.getCollation().isDefaultCollation();
+            int     hash       = 0;
+
+            for (int i = 0; i < end; i++) {
+                char c = s.charAt(i);
+
+                if (ignoreCase) {
+                    c = Character.toLowerCase(Character.toUpperCase(c));
+                }
+
+                hash = 31 * hash + c;
+            }
+
+            return hash;
+        }
+
+        return value.hashCode();
+    }
 }